@@ -4,20 +4,26 @@ import java.io.InputStream;
 import java.util.*;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.Set;
 
-import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ParserBasedInterleavingActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.CompiledInterleavingActDef;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
 import il.ac.bgu.cs.formalmethodsintro.base.automata.Automaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.BuchiReductions;
 import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
 import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystem;
 import il.ac.bgu.cs.formalmethodsintro.base.circuits.Circuit;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CircuitBmc;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CircuitExplorer;
 import il.ac.bgu.cs.formalmethodsintro.base.circuits.CircuitImp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.SymbolicCircuitChecker;
 import il.ac.bgu.cs.formalmethodsintro.base.exceptions.StateNotFoundException;
 import il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LtlToBuchi;
 import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaFileReader;
 import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.AtomicstmtContext;
 import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.DostmtContext;
@@ -27,17 +33,38 @@ import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.Option
 import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.StmtContext;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ActionDef;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ConditionDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.InterleavedProgramGraph;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
-import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedActDef;
-import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedCondDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.CompiledActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.CompiledCondDef;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraph;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraphBmc;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.Reachability;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.ExactStateStore;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.StateStoreKind;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.StateStoreStatistics;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.VisitedStateStore;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ChannelSystemStateSpace;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.CircuitStateSpace;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.EmptinessCheck;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ParallelCycleSearch;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ParallelCycleSearchResult;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ParallelExplorer;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ProgramGraphStateSpace;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ProductStateSpace;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.StateSpace;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.StateSpaces;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.TransitionSystemStateSpace;
 import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.AlternatingSequence;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.Interleaving;
 import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
 import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
 import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.BmcResult;
 import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -52,6 +79,11 @@ public class FvmFacade {
 
     private static FvmFacade INSTANCE = null;
 
+    /**
+     * The kind of visited-state store used by {@link #countStates(StateSpace)}.
+     */
+    private StateStoreKind stateStoreKind = StateStoreKind.EXACT;
+
     /**
      * @return an instance of this class.
      */
@@ -62,6 +94,41 @@ public class FvmFacade {
         return INSTANCE;
     }
 
+    /**
+     * @return The kind of visited-state store used by
+     * {@link #countStates(StateSpace)}.
+     */
+    public StateStoreKind getStateStoreKind() {
+        return stateStoreKind;
+    }
+
+    /**
+     * Selects the visited-state store used by {@link #countStates(StateSpace)}.
+     * Non-exact stores use less memory, but may miss states. The builders of
+     * transition systems always use an exact store: they hold every state in
+     * their result anyway, so a lossy store would save nothing.
+     *
+     * @param aKind The store kind. Default is {@link StateStoreKind#EXACT}.
+     */
+    public void setStateStoreKind(StateStoreKind aKind) {
+        stateStoreKind = aKind;
+    }
+
+    /**
+     * Counts the reachable states of {@code space} without building them into
+     * a transition system, using a store of the kind set by
+     * {@link #setStateStoreKind(StateStoreKind)}.
+     *
+     * @param <S>   Type of states.
+     * @param space The state space, e.g. from
+     *              {@link #stateSpaceOf(ProgramGraph, Set, Set)}.
+     * @return The statistics of the store; their size is the number of states
+     * found, which non-exact stores may underestimate.
+     */
+    public <S> StateStoreStatistics countStates(StateSpace<S, ?, ?> space) {
+        return StateSpaces.count(space, stateStoreKind.create());
+    }
+
     /**
      * Checks whether a transition system is action deterministic. I.e., if for
      * any given p and α there exists only a single tuple (p,α,q) in →. Note
@@ -127,7 +194,9 @@ public class FvmFacade {
      * @return {@code true} iff {@code e} is an execution of {@code ts}.
      */
     public <S, A, P> boolean isExecution(TransitionSystem<S, A, P> ts, AlternatingSequence<S, A> e) {
-        return isInitialExecutionFragment(ts, e) && isMaximalExecutionFragment(ts, e);
+        // one pass over the steps, where initial && maximal would take two
+        return ts.getInitialStates().contains(e.head()) && isExecutionFragment(ts, e)
+                && isStateTerminal(ts, e.last());
     }
 
     /**
@@ -144,15 +213,9 @@ public class FvmFacade {
      * {@code ts}.
      */
     public <S, A, P> boolean isExecutionFragment(TransitionSystem<S, A, P> ts, AlternatingSequence<S, A> e) {
-        while (!e.tail().isEmpty()) {
-            S from = e.head();
-            A action = e.tail().head();
-            e = e.tail().tail();
-            S to = e.head();
-            try {
-                if (!post(ts, from, action).contains(to))
-                    return false;
-            } catch (StateNotFoundException exp) {
+        for (AlternatingSequence.Cursor<S, A> step = e.cursor(); step.next();) {
+            // unknown states have no successors, so need no separate check
+            if (!ts.getSuccessors(step.from(), step.action()).contains(step.to())) {
                 return false;
             }
         }
@@ -203,7 +266,8 @@ public class FvmFacade {
      * @throws StateNotFoundException if {@code s} is not a state of {@code ts}.
      */
     public <S, A> boolean isStateTerminal(TransitionSystem<S, A, ?> ts, S s) {
-        return post(ts, s).size() == 0;
+        if (!ts.getStates().contains(s)) throw new StateNotFoundException(s);
+        return ts.hasNoOutgoingTransitions(s);
     }
 
     /**
@@ -215,13 +279,7 @@ public class FvmFacade {
      */
     public <S> Set<S> post(TransitionSystem<S, ?, ?> ts, S s) {
         if (!ts.getStates().contains(s)) throw new StateNotFoundException(s);
-        Set<S> post = new HashSet<S>();
-        for (TSTransition<S, ?> t : ts.getTransitions()) {
-            if (t.getFrom().equals(s)) {
-                post.add(t.getTo());
-            }
-        }
-        return post;
+        return ts.getSuccessors(s);
     }
 
     /**
@@ -233,14 +291,11 @@ public class FvmFacade {
      * @throws StateNotFoundException if {@code s} is not a state of {@code ts}.
      */
     public <S> Set<S> post(TransitionSystem<S, ?, ?> ts, Set<S> c) {
-        Set<S> post = new HashSet<S>();
         if (!ts.getStates().containsAll(c)) throw new StateNotFoundException(c);
-        for (TSTransition<S, ?> t : ts.getTransitions()) {
-            if (c.contains(t.getFrom())) {
-                post.add(t.getTo());
-            }
+        Set<S> post = new HashSet<S>();
+        for (S s : c) {
+            post.addAll(ts.getSuccessors(s));
         }
-
         return post;
     }
 
@@ -255,15 +310,8 @@ public class FvmFacade {
      * @throws StateNotFoundException if {@code s} is not a state of {@code ts}.
      */
     public <S, A> Set<S> post(TransitionSystem<S, A, ?> ts, S s, A a) {
-        Set<S> post = new HashSet<S>();
         if (!ts.getStates().contains(s)) throw new StateNotFoundException(s);
-        for (TSTransition<S, A> t : ts.getTransitions()) {
-            if (t.getFrom().equals(s)) {
-                if (t.getAction().equals(a))
-                    post.add(t.getTo());
-            }
-        }
-        return post;
+        return new HashSet<S>(ts.getSuccessors(s, a));
     }
 
     /**
@@ -277,9 +325,8 @@ public class FvmFacade {
      */
     public <S, A> Set<S> post(TransitionSystem<S, A, ?> ts, Set<S> c, A a) {
         Set<S> post = new HashSet<S>();
-        for (TSTransition<S, A> t : ts.getTransitions()) {
-            if (t.getAction().equals(a) && c.contains(t.getFrom()))
-                post.add(t.getTo());
+        for (S s : c) {
+            post.addAll(ts.getSuccessors(s, a));
         }
         return post;
     }
@@ -291,12 +338,7 @@ public class FvmFacade {
      * @return All the states in {@code Pre(s)}, in the context of {@code ts}.
      */
     public <S> Set<S> pre(TransitionSystem<S, ?, ?> ts, S s) {
-        Set<S> pre = new HashSet<S>();
-        for (TSTransition<S, ?> t : ts.getTransitions()) {
-            if (t.getTo().equals(s))
-                pre.add(t.getFrom());
-        }
-        return pre;
+        return ts.getPredecessors(s);
     }
 
     /**
@@ -309,18 +351,11 @@ public class FvmFacade {
      */
     public <S> Set<S> pre(TransitionSystem<S, ?, ?> ts, Set<S> c) {
         Set<S> pre = new HashSet<S>();
-        HashMap<S, Boolean> founds = new HashMap<S, Boolean>();
         for (S s : c) {
-            founds.put(s, false);
-        }
-        for (TSTransition<S, ?> t : ts.getTransitions()) {
-            if (c.contains(t.getTo())) {
-                pre.add(t.getFrom());
-                founds.put(t.getTo(), true);
-            }
+            Set<S> preds = ts.getPredecessors(s);
+            if (preds.isEmpty()) throw new StateNotFoundException(s);
+            pre.addAll(preds);
         }
-        for (Entry<S, Boolean> en : founds.entrySet())
-            if (!en.getValue()) throw new StateNotFoundException(en.getKey());
         return pre;
     }
 
@@ -336,14 +371,7 @@ public class FvmFacade {
      */
     public <S, A> Set<S> pre(TransitionSystem<S, A, ?> ts, S s, A a) {
         if (!ts.getStates().contains(s)) throw new StateNotFoundException(s);
-        Set<S> pre = new HashSet<S>();
-        for (TSTransition<S, A> t : ts.getTransitions()) {
-            if (t.getTo().equals(s)) {
-                if (t.getAction().equals(a))
-                    pre.add(t.getFrom());
-            }
-        }
-        return pre;
+        return new HashSet<S>(ts.getPredecessors(s, a));
     }
 
     /**
@@ -359,9 +387,8 @@ public class FvmFacade {
     public <S, A> Set<S> pre(TransitionSystem<S, A, ?> ts, Set<S> c, A a) {
         if (!ts.getStates().containsAll(c)) throw new StateNotFoundException(c);
         Set<S> pre = new HashSet<S>();
-        for (TSTransition<S, A> t : ts.getTransitions()) {
-            if (t.getAction().equals(a) && c.contains(t.getTo()))
-                pre.add(t.getFrom());
+        for (S s : c) {
+            pre.addAll(ts.getPredecessors(s, a));
         }
         return pre;
     }
@@ -375,22 +402,10 @@ public class FvmFacade {
      * @return All states reachable in {@code ts}.
      */
     public <S, A> Set<S> reach(TransitionSystem<S, A, ?> ts) {
-        Set<S> reachable = new HashSet<>();
-        for (S state : ts.getInitialStates()) {
-            reachHelp(reachable, ts, state);
-        }
-        return reachable;
-    }
-
-    public <S, A> void reachHelp(Set<S> reachable, TransitionSystem<S, A, ?> ts, S s) {
-        if (!reachable.contains(s))
-            reachable.add(s);
-        else return;
-        if (!isStateTerminal(ts, s)) {
-            for (S state : post(ts, s)) {
-                reachHelp(reachable, ts, state);
-            }
-        }
+        return new Reachability<S>(ts::getSuccessors)
+                .trackPaths(false)
+                .explore(ts.getInitialStates())
+                .getReachable();
     }
 
     /**
@@ -406,46 +421,8 @@ public class FvmFacade {
      */
     public <S1, S2, A, P> TransitionSystem<Pair<S1, S2>, A, P> interleave(TransitionSystem<S1, A, P> ts1,
                                                                           TransitionSystem<S2, A, P> ts2) {
-        List<Pair<S1, S2>> toProcess = new ArrayList<Pair<S1, S2>>(); //set of states to process
-        List<Pair<S1, S2>> wasProcessed = new ArrayList<Pair<S1, S2>>(); //set of states we already processed, to keep track
-        TransitionSystem<Pair<S1, S2>, A, P> output = new TransitionSystem<Pair<S1, S2>, A, P>();
+        TransitionSystem<Pair<S1, S2>, A, P> output = interleave(ts1, ts2, Collections.emptySet());
         output.setName("Interleaved Transition System");
-        for (S1 is1 : ts1.getInitialStates()) {
-            for (S2 is2 : ts2.getInitialStates()) {
-                Pair<S1, S2> is = new Pair<S1, S2>(is1, is2);
-                toProcess.add(is);
-            }
-        }
-        while (!toProcess.isEmpty()) {
-            Pair<S1, S2> state = toProcess.remove(0);
-            wasProcessed.add(state);
-            if (ts1.getInitialStates().contains(state.first) && ts2.getInitialStates().contains(state.second)) {
-                output.addInitialState(state);
-            } else output.addState(state);
-            for (TSTransition<S1, A> t1 : ts1.getTransitions()) {
-                if (!t1.getFrom().equals(state.first))
-                    continue;
-                Pair<S1, S2> toState = new Pair<S1, S2>(t1.getTo(), state.second);
-                output.addTransition(new TSTransition<Pair<S1, S2>, A>(state, t1.getAction(), toState));
-                output.addToLabel(toState, ts1.getLabel(toState.first));
-                output.addToLabel(toState, ts2.getLabel(toState.second));
-                if (!wasProcessed.contains(toState))
-                    toProcess.add(toState);
-            }
-            for (TSTransition<S2, A> t2 : ts2.getTransitions()) {
-                if (!t2.getFrom().equals(state.second))
-                    continue;
-                Pair<S1, S2> toState = new Pair<S1, S2>(state.first, t2.getTo());
-                output.addToLabel(toState, ts1.getLabel(toState.first));
-                output.addToLabel(toState, ts2.getLabel(toState.second));
-                output.addTransition(new TSTransition<Pair<S1, S2>, A>(state, t2.getAction(), toState));
-                if (!wasProcessed.contains(toState))
-                    toProcess.add(toState);
-            }
-        }
-        for (S1 s1 : ts1.getStates())
-            for (S2 s2 : ts2.getStates())
-                output.addState(new Pair<S1, S2>(s1, s2));
         return output;
     }
 
@@ -461,66 +438,32 @@ public class FvmFacade {
      * @param handShakingActions Set of actions both systems perform together.
      * @return A transition system that represents the product of the two.
      */
+    @SuppressWarnings("unchecked")
     public <S1, S2, A, P> TransitionSystem<Pair<S1, S2>, A, P> interleave(TransitionSystem<S1, A, P> ts1,
                                                                           TransitionSystem<S2, A, P> ts2, Set<A> handShakingActions) {
-        List<Pair<S1, S2>> toProcess = new ArrayList<Pair<S1, S2>>(); //set of states to process
-        List<Pair<S1, S2>> wasProcessed = new ArrayList<Pair<S1, S2>>(); //set of states we already processed, to keep track
-        TransitionSystem<Pair<S1, S2>, A, P> output = new TransitionSystem<Pair<S1, S2>, A, P>();
+        TransitionSystem<Pair<S1, S2>, A, P> output = Interleaving.interleave(Arrays.asList(ts1, ts2), handShakingActions,
+                states -> new Pair<>((S1) states[0], (S2) states[1]));
         output.setName("Interleaved Transition System with HankShaking Actions");
-        for (S1 is1 : ts1.getInitialStates()) {
-            for (S2 is2 : ts2.getInitialStates()) {
-                Pair<S1, S2> is = new Pair<S1, S2>(is1, is2);
-                toProcess.add(is);
-            }
-        }
-        while (!toProcess.isEmpty()) {
-            Pair<S1, S2> state = toProcess.remove(0);
-            wasProcessed.add(state);
-            if (ts1.getInitialStates().contains(state.first) && ts2.getInitialStates().contains(state.second)) {
-                output.addInitialState(state);
-            } else output.addState(state);
-            for (TSTransition<S1, A> t1 : ts1.getTransitions()) {
-                if (!t1.getFrom().equals(state.first))
-                    continue;
-                if (handShakingActions.contains(t1.getAction())) { //This transition is using a handshaking action
-                    for (TSTransition<S2, A> t2 : ts2.getTransitions()) { //find the corresponding ts2 transition
-                        if (!t2.getFrom().equals(state.second) || !t2.getAction().equals(t1.getAction()))
-                            continue;
-                        Pair<S1, S2> toState = new Pair<S1, S2>(t1.getTo(), t2.getTo());
-                        output.addTransition(new TSTransition<Pair<S1, S2>, A>(state, t1.getAction(), toState));
-                        output.addToLabel(toState, ts1.getLabel(toState.first));
-                        output.addToLabel(toState, ts2.getLabel(toState.second));
-                        if (!wasProcessed.contains(toState))
-                            toProcess.add(toState);
-                    }
-                    continue;
-                }
-                Pair<S1, S2> toState = new Pair<S1, S2>(t1.getTo(), state.second);
-                output.addTransition(new TSTransition<Pair<S1, S2>, A>(state, t1.getAction(), toState));
-                output.addToLabel(toState, ts1.getLabel(toState.first));
-                output.addToLabel(toState, ts2.getLabel(toState.second));
-                if (!wasProcessed.contains(toState))
-                    toProcess.add(toState);
-            }
-            for (TSTransition<S2, A> t2 : ts2.getTransitions()) {
-                if (!t2.getFrom().equals(state.second))
-                    continue;
-                if (handShakingActions.contains(t2.getAction())) // we already handled handshake actions in ts1 transitions loop
-                    continue;
-                Pair<S1, S2> toState = new Pair<S1, S2>(state.first, t2.getTo());
-                output.addToLabel(toState, ts1.getLabel(toState.first));
-                output.addToLabel(toState, ts2.getLabel(toState.second));
-                output.addTransition(new TSTransition<Pair<S1, S2>, A>(state, t2.getAction(), toState));
-                if (!wasProcessed.contains(toState))
-                    toProcess.add(toState);
-            }
-        }
-        for (S1 s1 : ts1.getStates())
-            for (S2 s2 : ts2.getStates())
-                output.addState(new Pair<S1, S2>(s1, s2));
         return output;
     }
 
+    /**
+     * Interleaves any number of transition systems at once. Handshaking
+     * actions are taken by all systems together; see {@link Interleaving}.
+     *
+     * @param <S>                Type of states (in all systems).
+     * @param <A>                Type of actions (in all systems).
+     * @param <P>                Type of atomic propositions (in all systems).
+     * @param systems            The transition systems.
+     * @param handShakingActions Set of actions all systems perform together.
+     * @return The reachable part of the interleaving, whose states list the
+     * states of the components in order.
+     */
+    public <S, A, P> TransitionSystem<List<S>, A, P> interleave(List<? extends TransitionSystem<? extends S, A, P>> systems,
+                                                               Set<A> handShakingActions) {
+        return Interleaving.interleave(systems, handShakingActions);
+    }
+
     /**
      * Creates a new {@link ProgramGraph} object.
      *
@@ -540,38 +483,12 @@ public class FvmFacade {
      * @param <A>  Type of actions in BOTH GRAPHS.
      * @param pg1  The first program graph.
      * @param pg2  The second program graph.
-     * @return Interleaved program graph.
+     * @return Interleaved program graph, with only the locations reachable
+     * from the initial ones. It is built lazily; see
+     * {@link InterleavedProgramGraph}.
      */
     public <L1, L2, A> ProgramGraph<Pair<L1, L2>, A> interleave(ProgramGraph<L1, A> pg1, ProgramGraph<L2, A> pg2) {
-        ProgramGraph<Pair<L1, L2>, A> interleaved = createProgramGraph();
-        interleaved.setName("Interleaved Program Graph");
-        // Adds all the cartesian product locations.
-        for (L1 loc1 : pg1.getLocations())
-            for (L2 loc2 : pg2.getLocations())
-                interleaved.addLocation(new Pair<>(loc1, loc2));
-        for (PGTransition<L1, A> t1 : pg1.getTransitions()) {
-            for (L2 loc2 : pg2.getLocations())
-                interleaved.addTransition(new PGTransition<>(new Pair(t1.getFrom(), loc2), t1.getCondition(), t1.getAction(), new Pair(t1.getTo(), loc2)));
-        }
-        for (PGTransition<L2, A> t2 : pg2.getTransitions()) {
-            for (L1 loc1 : pg1.getLocations())
-                interleaved.addTransition(new PGTransition<>(new Pair(loc1, t2.getFrom()), t2.getCondition(), t2.getAction(), new Pair(loc1, t2.getTo())));
-        }
-        //initial locations and initial conditions
-        for (L1 loc1 : pg1.getInitialLocations()) {
-            for (L2 loc2 : pg2.getInitialLocations()) {
-                interleaved.setInitial(new Pair<L1, L2>(loc1, loc2), true);
-            }
-        }
-        for (List<String> in1 : pg1.getInitalizations()) {
-            for (List<String> in2 : pg2.getInitalizations()) {
-                List<String> init = new ArrayList<String>();
-                init.addAll(in1);
-                init.addAll(in2);
-                interleaved.addInitalization(init);
-            }
-        }
-        return interleaved;
+        return new InterleavedProgramGraph<>(pg1, pg2);
     }
 
     /**
@@ -582,74 +499,65 @@ public class FvmFacade {
      */
     public TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> transitionSystemFromCircuit(
             Circuit c) {
-        TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> output = new TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object>();
-        output.setName("Transition System From Circuit");
-        Set<HashMap<String, Boolean>> registersMaps = CircuitImp.initMaps(c.getRegisterNames());
-        Set<HashMap<String, Boolean>> inputMaps = CircuitImp.initMaps(c.getInputPortNames());
-
-        //All States
-        for (HashMap<String, Boolean> registersMap : registersMaps)
-            for (HashMap<String, Boolean> inputMap : inputMaps)
-                output.addState(new Pair<Map<String, Boolean>, Map<String, Boolean>>(inputMap, registersMap));
-        //Initial States
-        HashMap<String, Boolean> falseRegistersMap = new HashMap<String, Boolean>();
-        for (String rname : c.getRegisterNames()) {
-            output.addAtomicProposition(rname);
-            falseRegistersMap.put(rname, false);
-        }
-        for (HashMap<String, Boolean> inputMap : inputMaps) {
-            output.addInitialState(new Pair<Map<String, Boolean>, Map<String, Boolean>>(inputMap, falseRegistersMap));
-            output.addAction(inputMap);
-        }
-        for (String iname : c.getInputPortNames())
-            output.addAtomicProposition(iname);
-        for (String oname : c.getOutputPortNames())
-            output.addAtomicProposition(oname);
-        //Transitions and Labels
-        for (Pair<Map<String, Boolean>, Map<String, Boolean>> state : output.getStates()) {
-            for (Map<String, Boolean> action : output.getActions()) {
-                Map<String, Boolean> tempInputs = state.first;
-                Map<String, Boolean> tempRegisters = state.second;
-                Map<String, Boolean> updatedRegs = c.updateRegisters(tempInputs, tempRegisters);
-                output.addTransition(new TSTransition<>(state, action, new Pair<Map<String, Boolean>, Map<String, Boolean>>(action, updatedRegs)));
-            }
-            for (String register : state.second.keySet())
-                if (state.second.get(register))
-                    output.addToLabel(state, register);
-            for (String input : state.first.keySet())
-                if (state.first.get(input))
-                    output.addToLabel(state, input);
-            Map<String, Boolean> outputs = c.computeOutputs(state.first, state.second);
-            for (String outputName : outputs.keySet())
-                if (outputs.get(outputName))
-                    output.addToLabel(state, outputName);
-        }
+        return new CircuitExplorer(c).toTransitionSystem();
+    }
 
-        ArrayList<Pair<Map<String, Boolean>, Map<String, Boolean>>> toRemove = new ArrayList<>();
-        ArrayList<TSTransition<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>>> transToRemove = new ArrayList<>();
-        Set<Pair<Map<String, Boolean>, Map<String, Boolean>>> reachable = reach(output);
-        for(Pair<Map<String, Boolean>, Map<String, Boolean>> s : output.getStates()){
-        	boolean isReachable = true;
-        	if(!reachable.contains(s)){
-        		toRemove.add(s);
-        		isReachable = false;
-        	}
-        	if(!isReachable){
-	        	for(TSTransition<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>> t : output.getTransitions()){
-	        		if(t.getFrom().equals(s)){
-	        			transToRemove.add(t);
-	        		}
-	        	}
-        	}
-        }
-        for(TSTransition<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>> tran : transToRemove){
-        	output.removeTransition(tran);
+    /**
+     * Checks an invariant of a circuit symbolically, with BDDs, over the
+     * transition system {@link #transitionSystemFromCircuit(Circuit)} would
+     * build. Suitable for circuits far too wide to enumerate.
+     *
+     * @param c         The circuit; its rules must be known, so it must be a
+     *                  {@link CircuitImp}.
+     * @param invariant A formula over the circuit's input, register and
+     *                  output names.
+     * @return A VerificationSucceeded object, or a VerificationFailed object
+     * whose prefix is a shortest path to a violating state and whose cycle is
+     * empty.
+     */
+    public VerificationResult<Pair<Map<String, Boolean>, Map<String, Boolean>>> verifyCircuitInvariant(
+            Circuit c, LogicalExp invariant) {
+        if (!(c instanceof CircuitImp)) {
+            throw new IllegalArgumentException("Symbolic checking needs the circuit's rules; got " + c.getClass());
         }
-        for(Pair<Map<String, Boolean>, Map<String, Boolean>> s : toRemove){
-        	output.removeState(s);
+        return new SymbolicCircuitChecker((CircuitImp) c).checkInvariant(invariant);
+    }
+
+    /**
+     * Bounded model checking of a circuit invariant: looks for a path of at
+     * most {@code bound} steps to a state violating {@code invariant}, with
+     * increasing lengths, using a SAT solver.
+     *
+     * @param c         The circuit; it must be a {@link CircuitImp}.
+     * @param invariant A formula over the circuit's input, register and
+     *                  output names.
+     * @param bound     The largest number of steps to consider.
+     * @return The result, with a shortest counterexample if there is one.
+     */
+    public BmcResult<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>> boundedModelCheck(
+            Circuit c, LogicalExp invariant, int bound) {
+        if (!(c instanceof CircuitImp)) {
+            throw new IllegalArgumentException("Bounded model checking needs the circuit's rules; got " + c.getClass());
         }
-        
-        return output;
+        return new CircuitBmc((CircuitImp) c).check(invariant, bound);
+    }
+
+    /**
+     * Bounded model checking of a program graph with NanoPromela conditions
+     * and actions: looks for a path of at most {@code bound} steps to a state
+     * violating {@code invariant}, with increasing lengths, using a SAT
+     * solver.
+     *
+     * @param <L>       Type of locations.
+     * @param pg        The program graph.
+     * @param invariant A NanoPromela boolean expression over the variables.
+     * @param bound     The largest number of steps to consider.
+     * @return The result, with a shortest counterexample if there is one.
+     * @see ProgramGraphBmc for the supported statements.
+     */
+    public <L> BmcResult<Pair<L, Map<String, Object>>, String> boundedModelCheck(ProgramGraph<L, String> pg,
+            String invariant, int bound) {
+        return new ProgramGraphBmc<>(pg).check(invariant, bound);
     }
 
     /**
@@ -684,11 +592,12 @@ public class FvmFacade {
             }
         }
 
-        Queue<Pair<L, Map<String, Object>>> q = new LinkedList<>(output.getInitialStates());
-        List<Pair<L, Map<String, Object>>> used_states = new LinkedList<>(output.getInitialStates());
+        Queue<Pair<L, Map<String, Object>>> q = new ArrayDeque<>(output.getInitialStates());
+        VisitedStateStore<Pair<L, Map<String, Object>>> used_states = new ExactStateStore<>();
+        output.getInitialStates().forEach(used_states::add);
         while (!q.isEmpty()) {
             Pair<L, Map<String, Object>> state = q.remove();
-            for (PGTransition<L, A> trans : pg.getTransitions()) {
+            for (PGTransition<L, A> trans : pg.getOutgoingTransitions(state.first)) {
                 L from = trans.getFrom();
                 A action = trans.getAction();
                 L to = trans.getTo();
@@ -697,9 +606,8 @@ public class FvmFacade {
                 if (from.equals(state.first) && ConditionDef.evaluate(conditionDefs, eval, cond)) {
                     Pair<L, Map<String, Object>> new_state = new Pair<>(to, ActionDef.effect(actionDefs, eval, action));
                     //transitions and stats
-                    if (!used_states.contains(new_state)) {
+                    if (used_states.add(new_state)) {
                         q.add(new_state);
-                        used_states.add(new_state);
                     }
                     output.addTransition(new TSTransition<>(state, action, new_state));
                     //Labeling and AP's
@@ -728,14 +636,31 @@ public class FvmFacade {
     public <L, A> TransitionSystem<Pair<List<L>, Map<String, Object>>, A, String> transitionSystemFromChannelSystem(
             ChannelSystem<L, A> cs) {
 
-        Set<ActionDef> actions = Collections.singleton(new ParserBasedActDef());
-        Set<ConditionDef> conditions = Collections.singleton(new ParserBasedCondDef());
+        Set<ActionDef> actions = Collections.singleton(new CompiledActDef());
+        Set<ConditionDef> conditions = Collections.singleton(new CompiledCondDef());
         return transitionSystemFromChannelSystem(cs, actions, conditions);
     }
 
+    /**
+     * Creates a transition system representing channel system {@code cs},
+     * exploring its states with several threads (see
+     * {@link ParallelExplorer}). The result equals that of
+     * {@link #transitionSystemFromChannelSystem(ChannelSystem)}.
+     *
+     * @param <L>         Type of locations in the channel system.
+     * @param <A>         Type of actions in the channel system.
+     * @param cs          The channel system to be translated into a transition system.
+     * @param parallelism Number of worker threads.
+     * @return A transition system representing {@code cs}.
+     */
+    public <L, A> TransitionSystem<Pair<List<L>, Map<String, Object>>, A, String> transitionSystemFromChannelSystem(
+            ChannelSystem<L, A> cs, int parallelism) {
+        return new ParallelExplorer<>(stateSpaceOf(cs)).parallelism(parallelism).explore().getTransitionSystem();
+    }
+
     public <L, A> TransitionSystem<Pair<List<L>, Map<String, Object>>, A, String> transitionSystemFromChannelSystem(
             ChannelSystem<L, A> cs, Set<ActionDef> actions, Set<ConditionDef> conditions) {
-        Set<ActionDef> interleaveActions = Collections.singleton(new ParserBasedInterleavingActDef());
+        Set<ActionDef> interleaveActions = Collections.singleton(new CompiledInterleavingActDef());
 
         TransitionSystem<Pair<List<L>, Map<String, Object>>, A, String> output = new TransitionSystem<Pair<List<L>, Map<String, Object>>, A, String>();
         List<Pair<List<L>, Map<String, Object>>> init_states = initial_helper(cs.getProgramGraphs(), actions);
@@ -747,8 +672,9 @@ public class FvmFacade {
             labels.addAll(loc_0.getFirst().stream().map(x -> x.toString()).collect(Collectors.toSet()));
             output.addToLabel(loc_0, labels);
         }
-        Queue<Pair<List<L>, Map<String, Object>>> q = new LinkedList<>(output.getInitialStates());
-        List<Pair<List<L>, Map<String, Object>>> used_states = new LinkedList<>(output.getInitialStates());
+        Queue<Pair<List<L>, Map<String, Object>>> q = new ArrayDeque<>(output.getInitialStates());
+        VisitedStateStore<Pair<List<L>, Map<String, Object>>> used_states = new ExactStateStore<>();
+        output.getInitialStates().forEach(used_states::add);
         while (!q.isEmpty()) {
             Pair<List<L>, Map<String, Object>> state = q.remove();
             List<Pair<PGTransition<L, A>, Integer>> questionMarks = new LinkedList<>();
@@ -769,9 +695,8 @@ public class FvmFacade {
                             Map<String, Object> new_eval = ActionDef.effect(actions, eval, action);
                             Pair<List<L>, Map<String, Object>> new_state = new Pair(copy_locs, new_eval);
                             if (new_eval == null) continue;
-                            if (!used_states.contains(new_state)) {
+                            if (used_states.add(new_state)) {
                                 q.add(new_state);
-                                used_states.add(new_state);
                             }
                             output.addTransition(new TSTransition<>(state, action, new_state));
                             //Labeling and AP's
@@ -800,7 +725,7 @@ public class FvmFacade {
         return output;
     }
 
-    private <L, A> void doInterleaveAction(Set<ActionDef> interleaveActions, TransitionSystem<Pair<List<L>, Map<String, Object>>, A, String> output, Queue<Pair<List<L>, Map<String, Object>>> q, List<Pair<List<L>, Map<String, Object>>> used_states, Pair<List<L>, Map<String, Object>> state, List<Pair<PGTransition<L, A>, Integer>> mark, Integer index, L from, A action, L to, List<L> locs, Map<String, Object> eval) {
+    private <L, A> void doInterleaveAction(Set<ActionDef> interleaveActions, TransitionSystem<Pair<List<L>, Map<String, Object>>, A, String> output, Queue<Pair<List<L>, Map<String, Object>>> q, VisitedStateStore<Pair<List<L>, Map<String, Object>>> used_states, Pair<List<L>, Map<String, Object>> state, List<Pair<PGTransition<L, A>, Integer>> mark, Integer index, L from, A action, L to, List<L> locs, Map<String, Object> eval) {
         for (Pair<PGTransition<L, A>, Integer> e : mark) {
             if (!e.getSecond().equals(index)) {
                 List<L> copy_locs = new LinkedList(locs);
@@ -811,9 +736,8 @@ public class FvmFacade {
                 Map<String, Object> new_eval = ActionDef.effect(interleaveActions, eval, newAction);
                 Pair<List<L>, Map<String, Object>> new_state = new Pair(copy_locs, new_eval);
                 if (new_eval == null) continue;
-                if (!used_states.contains(new_state)) {
+                if (used_states.add(new_state)) {
                     q.add(new_state);
-                    used_states.add(new_state);
                 }
                 output.addTransition(new TSTransition(state, newAction, new_state));
                 //Labeling and AP's
@@ -1000,6 +924,94 @@ public class FvmFacade {
         return contextToProgramGraph(context);
     }
 
+    /**
+     * A lazy view of a transition system, for the on-the-fly algorithms.
+     *
+     * @param <S> Type of states.
+     * @param <A> Type of actions.
+     * @param <P> Type of atomic propositions.
+     * @param ts  The transition system.
+     * @return A {@link StateSpace} over {@code ts}.
+     */
+    public <S, A, P> StateSpace<S, A, P> stateSpaceOf(TransitionSystem<S, A, P> ts) {
+        return new TransitionSystemStateSpace<>(ts);
+    }
+
+    /**
+     * The states of a program graph, generated on demand. Has the states,
+     * transitions and labels of
+     * {@link #transitionSystemFromProgramGraph(ProgramGraph, Set, Set)}.
+     *
+     * @param <L>           Type of program graph locations.
+     * @param <A>           Type of program graph actions.
+     * @param pg            The program graph.
+     * @param actionDefs    Defines the effect of each action.
+     * @param conditionDefs Defines the conditions (guards) of the program
+     *                      graph.
+     * @return A lazy state space of {@code pg}.
+     */
+    public <L, A> StateSpace<Pair<L, Map<String, Object>>, A, String> stateSpaceOf(
+            ProgramGraph<L, A> pg, Set<ActionDef> actionDefs, Set<ConditionDef> conditionDefs) {
+        return new ProgramGraphStateSpace<>(pg, actionDefs, conditionDefs);
+    }
+
+    /**
+     * The states of a channel system, generated on demand. Has the states,
+     * transitions and labels of
+     * {@link #transitionSystemFromChannelSystem(ChannelSystem)}.
+     *
+     * @param <L> Type of locations in the channel system.
+     * @param <A> Type of actions in the channel system.
+     * @param cs  The channel system.
+     * @return A lazy state space of {@code cs}.
+     */
+    public <L, A> ChannelSystemStateSpace<L, A> stateSpaceOf(ChannelSystem<L, A> cs) {
+        return new ChannelSystemStateSpace<>(cs, Collections.singleton(new CompiledActDef()),
+                Collections.singleton(new CompiledCondDef()), Collections.singleton(new CompiledInterleavingActDef()));
+    }
+
+    /**
+     * The states of a circuit, generated on demand. Has the states,
+     * transitions and labels of {@link #transitionSystemFromCircuit(Circuit)}.
+     *
+     * @param c The circuit.
+     * @return A lazy state space of {@code c}.
+     */
+    public StateSpace<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> stateSpaceOf(
+            Circuit c) {
+        return new CircuitStateSpace(c);
+    }
+
+    /**
+     * Computes the reachable states of a lazy state space, without building a
+     * transition system.
+     *
+     * @param <S>   Type of states.
+     * @param space The state space.
+     * @return All the states reachable from the initial states of
+     * {@code space}.
+     */
+    public <S> Set<S> reach(StateSpace<S, ?, ?> space) {
+        return StateSpaces.reach(space);
+    }
+
+    /**
+     * Checks an invariant on the fly: states are generated only until the
+     * first one whose label violates {@code invariant}.
+     *
+     * @param <S>       Type of states.
+     * @param <P>       Type of atomic propositions.
+     * @param space     The state space.
+     * @param invariant A predicate over labels.
+     * @return A VerificationSucceeded object, or a VerificationFailed object
+     * whose prefix is a shortest path to a violating state and whose cycle is
+     * empty.
+     */
+    public <S, P> VerificationResult<S> checkInvariant(StateSpace<S, ?, P> space,
+                                                       Predicate<? super Set<P>> invariant) {
+        return StateSpaces.checkInvariant(space, invariant);
+    }
+
     /**
      * Creates a transition system from a transition system and an automaton.
      *
@@ -1010,12 +1022,12 @@ public class FvmFacade {
      *               also the type of the automaton alphabet.
      * @param ts     The transition system.
      * @param aut    The automaton.
-     * @return The product of {@code ts} with {@code aut}.
+     * @return The reachable part of the product of {@code ts} with
+     * {@code aut}, as defined by {@link ProductStateSpace}.
      */
-    public <
-            Sts, Saut, A, P> TransitionSystem<Pair<Sts, Saut>, A, Saut> product(TransitionSystem<Sts, A, P> ts,
+    public <Sts, Saut, A, P> TransitionSystem<Pair<Sts, Saut>, A, Saut> product(TransitionSystem<Sts, A, P> ts,
                                                                                 Automaton<Saut, P> aut) {
-        throw new java.lang.UnsupportedOperationException();
+        return StateSpaces.materialize(new ProductStateSpace<>(stateSpaceOf(ts), aut));
     }
 
     /**
@@ -1030,11 +1042,56 @@ public class FvmFacade {
      * @param aut    A Büchi automaton for the words that do not satisfy the
      *               property.
      * @return A VerificationSucceeded object or a VerificationFailed object
-     * with a counterexample.
+     * with a counterexample, found by nested depth-first search on the fly.
      */
     public <S, A, P, Saut> VerificationResult<S> verifyAnOmegaRegularProperty(TransitionSystem<S, A, P> ts,
                                                                               Automaton<Saut, P> aut) {
-        throw new java.lang.UnsupportedOperationException();
+        return verifyAnOmegaRegularProperty(stateSpaceOf(ts), aut, EmptinessCheck.NESTED_DFS);
+    }
+
+    /**
+     * Verify that a lazily generated system satisfies an omega regular
+     * property, exploring the product with {@code aut} only until the first
+     * accepting cycle.
+     *
+     * @param <S>       Type of states in the state space.
+     * @param <Saut>    Type of states in the automaton.
+     * @param <A>       Type of actions in the state space.
+     * @param <P>       Type of atomic propositions in the state space, which
+     *                  is also the type of the automaton alphabet.
+     * @param space     The state space.
+     * @param aut       A Büchi automaton for the words that do not satisfy
+     *                  the property.
+     * @param algorithm The accepting cycle search to use.
+     * @return A VerificationSucceeded object or a VerificationFailed object
+     * with a counterexample.
+     */
+    public <S, A, P, Saut> VerificationResult<S> verifyAnOmegaRegularProperty(StateSpace<S, A, P> space,
+                                                                              Automaton<Saut, P> aut,
+                                                                              EmptinessCheck algorithm) {
+        return StateSpaces.verifyOmegaRegularProperty(space, aut, algorithm);
+    }
+
+    /**
+     * Verify that a lazily generated system satisfies an omega regular
+     * property, searching the product with {@code aut} for an accepting cycle
+     * with several threads (see {@link ParallelCycleSearch}).
+     *
+     * @param <S>         Type of states in the state space.
+     * @param <Saut>      Type of states in the automaton.
+     * @param <A>         Type of actions in the state space.
+     * @param <P>         Type of atomic propositions in the state space,
+     *                    which is also the type of the automaton alphabet.
+     * @param space       The state space, safe to query from several threads.
+     * @param aut         A Büchi automaton for the words that do not satisfy
+     *                    the property.
+     * @param parallelism Number of worker threads.
+     * @return The verification result, with per-thread throughput.
+     */
+    public <S, A, P, Saut> ParallelCycleSearchResult<S> verifyAnOmegaRegularProperty(StateSpace<S, A, P> space,
+                                                                                      Automaton<Saut, P> aut,
+                                                                                      int parallelism) {
+        return StateSpaces.verifyOmegaRegularProperty(space, aut, parallelism);
     }
 
     /**
@@ -1043,10 +1100,11 @@ public class FvmFacade {
      *
      * @param <L> Type of resultant automaton transition alphabet
      * @param ltl The LTL formula represented as a parse-tree.
-     * @return An automaton A such that L_\omega(A)=Words(ltl)
+     * @return An automaton A such that L_\omega(A)=Words(ltl), built on the
+     * fly and reduced (see {@link LtlToBuchi}).
      */
     public <L> Automaton<?, L> LTL2NBA(LTL<L> ltl) {
-        throw new java.lang.UnsupportedOperationException();
+        return LtlToBuchi.translate(ltl);
     }
 
     /**
@@ -1055,10 +1113,16 @@ public class FvmFacade {
      *
      * @param <L>    Type of resultant automaton transition alphabet
      * @param mulAut An automaton with a set of accepting states (colors).
-     * @return An equivalent automaton with a single set of accepting states.
+     * @return An equivalent automaton with a single set of accepting states,
+     * without useless states and reduced by simulation (see
+     * {@link BuchiReductions}).
      */
     public <L> Automaton<?, L> GNBA2NBA(MultiColorAutomaton<?, L> mulAut) {
-        throw new java.lang.UnsupportedOperationException();
+        return degeneralize(mulAut);
+    }
+
+    private static <S, L> Automaton<?, L> degeneralize(MultiColorAutomaton<S, L> mulAut) {
+        return BuchiReductions.reduce(BuchiReductions.degeneralize(mulAut));
     }
 
 }
@@ -2,13 +2,15 @@ package il.ac.bgu.cs.formalmethodsintro.base.automata;
 
 import static java.util.Arrays.asList;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Set;
 
 import org.svvrl.goal.cmd.Constant;
 import org.svvrl.goal.cmd.Context;
 import org.svvrl.goal.cmd.EquivalenceCommand;
+import org.svvrl.goal.cmd.EvaluationException;
 import org.svvrl.goal.cmd.Expression;
 import org.svvrl.goal.cmd.LoadCommand;
 import org.svvrl.goal.cmd.Lval;
@@ -23,8 +25,7 @@ import org.svvrl.goal.core.io.CodecRepository;
 import org.svvrl.goal.core.io.FSACodec;
 
 import il.ac.bgu.cs.formalmethodsintro.base.goal.AutomatonIO;
-import org.svvrl.goal.cmd.EvaluationException;
-import org.svvrl.goal.core.io.OldGFFCodec;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
 
 /**
  * An non-deterministic automaton, composed of states and transitions.
@@ -34,6 +35,8 @@ import org.svvrl.goal.core.io.OldGFFCodec;
  */
 public class Automaton<State, Sigma> extends MultiColorAutomaton<State, Sigma> {
 
+    private static boolean goalRegistered = false;
+
     public void setAccepting(State s) {
         super.setAccepting(s, 0);
     }
@@ -42,67 +45,63 @@ public class Automaton<State, Sigma> extends MultiColorAutomaton<State, Sigma> {
         return super.getAcceptingStates(0);
     }
 
+    /**
+     * @param other An automaton over the same propositions.
+     * @return Whether both automata accept the same words.
+     * @throws EvaluationException Never: the check no longer goes through
+     * GOAL, but the clause is kept so that callers catching it still compile.
+     * @throws Exception Never, likewise.
+     * @see BuchiInclusion#checkEquivalence(MultiColorAutomaton, MultiColorAutomaton)
+     */
     public boolean isEquivalentTo(Automaton<?, Sigma> other) throws EvaluationException, Exception {
-        AutomatonIO.write((Automaton<?, Sigma>) other, "other.gff");
-        AutomatonIO.write(this, "this.gff");
-
-        Context context = new Context();
-
-        Constant con1 = new Constant("this.gff");
-        Constant con2 = new Constant("other.gff");
-
-        Lval lval1 = new Lval("th", new Expression[]{});
-        Lval lval2 = new Lval("ot", new Expression[]{});
-
-        // CodecRepository..add(0, new GFFCodec());
-        CodecRepository.add(0, new OldGFFCodec());
+        return BuchiInclusion.checkEquivalence(this, other) instanceof VerificationSucceeded;
+    }
 
+    /**
+     * GOAL needs its codecs and constructions registered once per JVM.
+     */
+    private static synchronized void registerGoal() {
+        if (goalRegistered) {
+            return;
+        }
+        CodecRepository.add(0, new FSACodec());
         SimulationRepository.addSimulation2("RefinedSimilarity", FSA.class, RefinedSimulation2.class);
         SimulationRepository.addSimulation("RefinedSimilarity", FSA.class, RefinedSimulation.class);
-
         ComplementRepository.add("Safra-Piterman Construction", PitermanConstruction.class);
-
-        LoadCommand lc1 = new LoadCommand(asList(lval1, con1));
-        lc1.eval(context);
-
-        LoadCommand lc2 = new LoadCommand(asList(lval2, con2));
-        lc2.eval(context);
-
-        EquivalenceCommand ec = new EquivalenceCommand(asList(lval1, lval2));
-
-        return (Boolean) ec.eval(context);
-
+        goalRegistered = true;
     }
 
+    /**
+     * Compares this automaton with a QPTL formula, through GOAL. Unlike
+     * {@link #isEquivalentTo(Automaton)}, this needs GOAL to translate the
+     * formula; the files it exchanges with GOAL are temporary files.
+     *
+     * @param serializedAutomaton A QPTL formula.
+     * @return Whether this automaton accepts the words that satisfy the
+     * formula.
+     */
     public boolean isEquivalentTo(String serializedAutomaton) {
         String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\r\n"
                 + "<logic name=\"QPTL\">\r\n <name/>\r\n <description/>\r\n <formula>"
                 + serializedAutomaton + "</formula>\r\n</logic>\r\n";
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("formula.gff"))) {
-
-            writer.write(xml);
-            writer.close();
-
-            AutomatonIO.write(this, "this.gff");
+        Path formulaFile = null;
+        Path thisFile = null;
+        try {
+            formulaFile = Files.createTempFile("formula", ".gff");
+            thisFile = Files.createTempFile("this", ".gff");
+            Files.writeString(formulaFile, xml);
+            AutomatonIO.write(this, thisFile.toString());
 
+            registerGoal();
             Context context = new Context();
 
-            Constant con1 = new Constant("this.gff");
-            Constant con3 = new Constant("formula.gff");
+            Constant con1 = new Constant(thisFile.toString());
+            Constant con3 = new Constant(formulaFile.toString());
 
             Lval lval1 = new Lval("th", new Expression[]{});
             Lval lval3 = new Lval("fo", new Expression[]{});
 
-            //CodecRepository.add(0, new GFFCodec());
-            CodecRepository.add(0, new FSACodec());
-            
-            
-            SimulationRepository.addSimulation2("RefinedSimilarity", FSA.class, RefinedSimulation2.class);
-            SimulationRepository.addSimulation("RefinedSimilarity", FSA.class, RefinedSimulation.class);
-
-            ComplementRepository.add("Safra-Piterman Construction", PitermanConstruction.class);
-
             LoadCommand lc1 = new LoadCommand(asList(lval1, con1));
             lc1.eval(context);
 
@@ -120,6 +119,19 @@ public class Automaton<State, Sigma> extends MultiColorAutomaton<State, Sigma> {
         catch (Exception e) {
             e.printStackTrace(System.err);
             return false;
+        } finally {
+            deleteQuietly(formulaFile);
+            deleteQuietly(thisFile);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // a leftover temporary file is harmless
+            }
         }
     }
 
@@ -0,0 +1,621 @@
+package il.ac.bgu.cs.formalmethodsintro.base.automata;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
+
+/**
+ * Language inclusion and equivalence of Büchi automata, computed in memory.
+ *
+ * {@code L(A) ⊆ L(B)} fails exactly when some word {@code u v^ω} is accepted
+ * by {@code A} and rejected by {@code B}. Following the Ramsey-based method
+ * of Fogarty and Vardi, with the antichains of Abdulla et al. ("Simulation
+ * subsumption in Ramsey-based Büchi automata universality and inclusion
+ * testing", CAV 2010), the runs of {@code B} on {@code v} are summarized by a
+ * graph over its states, with arcs marked when they pass an accepting state,
+ * and it is enough to try the words {@code v} whose graph is idempotent (some
+ * power of every graph is). The prefixes {@code u} are summarized by a state
+ * of {@code A} and the set of states {@code B} can be in. Fewer states or arcs
+ * make a better candidate, so only the minimal prefixes and graphs are kept
+ * for each state of {@code A} (antichains).
+ *
+ * Before that, the automata are reduced, and inclusion is accepted at once if
+ * the initial states of {@code B} directly simulate those of {@code A}.
+ *
+ * The alphabet is the sets of atomic propositions of the two automata. It is
+ * split into the classes of letters that no guard of either automaton tells
+ * apart, so the search does not depend on the number of propositions.
+ * Counterexamples are lassos of letters, with one letter of each class.
+ *
+ * @param <L> Type of atomic propositions.
+ */
+public final class BuchiInclusion<L> {
+
+    private static final class Edge {
+
+        final Guard guard;
+        final int target;
+
+        Edge(Guard guard, int target) {
+            this.guard = guard;
+            this.target = target;
+        }
+    }
+
+    /**
+     * One of the two automata, with numbered states.
+     */
+    private static final class Side<L> {
+
+        final int n;
+        final List<L> propositions;
+        final List<List<Edge>> edges = new ArrayList<>();
+        final boolean[] accepting;
+        final BitSet initial = new BitSet();
+
+        <S> Side(Automaton<S, L> aut) {
+            List<S> states = new ArrayList<>(aut.getGuardedTransitions().keySet());
+            n = states.size();
+            propositions = aut.getPropositions();
+            Map<S, Integer> ids = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                ids.put(states.get(i), i);
+            }
+            accepting = new boolean[n];
+            Set<S> acc = aut.getAcceptingStates();
+            for (int q = 0; q < n; q++) {
+                S s = states.get(q);
+                accepting[q] = acc.contains(s);
+                if (aut.getInitialStates().contains(s)) {
+                    initial.set(q);
+                }
+                List<Edge> out = new ArrayList<>();
+                for (Map.Entry<Guard, Set<S>> e : aut.getGuardedTransitions().get(s).entrySet()) {
+                    for (S t : e.getValue()) {
+                        out.add(new Edge(e.getKey(), ids.get(t)));
+                    }
+                }
+                edges.add(out);
+            }
+        }
+    }
+
+    /**
+     * A prefix: the state of {@code A} and the states of {@code B} it leads
+     * to.
+     */
+    private static final class Prefix {
+
+        final int state;
+        final BitSet reached;
+        final Prefix parent;
+        final int letter;
+        boolean subsumed;
+
+        Prefix(int state, BitSet reached, Prefix parent, int letter) {
+            this.state = state;
+            this.reached = reached;
+            this.parent = parent;
+            this.letter = letter;
+        }
+    }
+
+    /**
+     * The summary of a nonempty word {@code v} read from a fixed state of
+     * {@code A}: where the run of {@code A} ends and whether it passed an
+     * accepting state, and the graph of the runs of {@code B}.
+     */
+    private static final class Graph {
+
+        final int state;
+        final boolean accepting;
+        /** reach[p]: where {@code B} can go from {@code p}. */
+        final BitSet[] reach;
+        /** reachAcc[p]: where {@code B} can go from {@code p} through an accepting state. */
+        final BitSet[] reachAcc;
+        final Graph parent;
+        final int letter;
+        boolean subsumed;
+
+        Graph(int state, boolean accepting, BitSet[] reach, BitSet[] reachAcc, Graph parent, int letter) {
+            this.state = state;
+            this.accepting = accepting;
+            this.reach = reach;
+            this.reachAcc = reachAcc;
+            this.parent = parent;
+            this.letter = letter;
+        }
+
+        /**
+         * @return Whether this graph is as good a candidate as {@code other}:
+         * the same run of {@code A}, passing an accepting state if
+         * {@code other}'s does, and a subset of the arcs of {@code other}.
+         */
+        boolean below(Graph other) {
+            if (state != other.state || (other.accepting && !accepting)) {
+                return false;
+            }
+            for (int p = 0; p < reach.length; p++) {
+                if (!subset(reach[p], other.reach[p]) || !subset(reachAcc[p], other.reachAcc[p])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean equalArcs(Graph other) {
+            return Arrays.equals(reach, other.reach) && Arrays.equals(reachAcc, other.reachAcc);
+        }
+    }
+
+    private final Side<L> a;
+    private final Side<L> b;
+    private final BitSet acceptingB = new BitSet();
+    /** One letter of each class, as a set of propositions. */
+    private final List<Set<L>> letters = new ArrayList<>();
+    /** succA[letter][q] and succB[letter][p]. */
+    private final int[][][] succA;
+    private final BitSet[][] succB;
+
+    private BuchiInclusion(Automaton<?, L> left, Automaton<?, L> right) {
+        a = new Side<>(left);
+        b = new Side<>(right);
+        for (int p = 0; p < b.n; p++) {
+            if (b.accepting[p]) {
+                acceptingB.set(p);
+            }
+        }
+
+        // both automata over one numbering of the propositions
+        List<L> propositions = new ArrayList<>(a.propositions);
+        for (L p : b.propositions) {
+            if (!propositions.contains(p)) {
+                propositions.add(p);
+            }
+        }
+        if (propositions.size() > 63) {
+            throw new IllegalArgumentException("Too many atomic propositions (" + propositions.size() + ")");
+        }
+        long relevant = (1L << propositions.size()) - 1;
+        List<List<Edge>> edgesA = unify(a, propositions, relevant);
+        List<List<Edge>> edgesB = unify(b, propositions, relevant);
+
+        Set<Guard> guards = new LinkedHashSet<>();
+        edgesA.forEach(out -> out.forEach(e -> guards.add(e.guard)));
+        edgesB.forEach(out -> out.forEach(e -> guards.add(e.guard)));
+        List<Long> classes = new ArrayList<>();
+        for (Guard atom : atoms(guards)) {
+            long letter = atom.getPositive();
+            // letters that A cannot read play no part
+            boolean readable = false;
+            for (List<Edge> out : edgesA) {
+                for (Edge e : out) {
+                    readable |= e.guard.matches(letter);
+                }
+            }
+            if (readable) {
+                classes.add(letter);
+                Set<L> symbol = new HashSet<>();
+                for (int i = 0; i < propositions.size(); i++) {
+                    if ((letter & (1L << i)) != 0) {
+                        symbol.add(propositions.get(i));
+                    }
+                }
+                letters.add(Collections.unmodifiableSet(symbol));
+            }
+        }
+
+        succA = new int[classes.size()][a.n][];
+        succB = new BitSet[classes.size()][b.n];
+        for (int k = 0; k < classes.size(); k++) {
+            long letter = classes.get(k);
+            for (int q = 0; q < a.n; q++) {
+                succA[k][q] = edgesA.get(q).stream().filter(e -> e.guard.matches(letter))
+                        .mapToInt(e -> e.target).distinct().toArray();
+            }
+            for (int p = 0; p < b.n; p++) {
+                succB[k][p] = new BitSet(b.n);
+                for (Edge e : edgesB.get(p)) {
+                    if (e.guard.matches(letter)) {
+                        succB[k][p].set(e.target);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether every word accepted by {@code a} is accepted by
+     * {@code b}. Automata that are not {@link Automaton}s are degeneralized
+     * first.
+     *
+     * @param <L> Type of atomic propositions.
+     * @param a An automaton.
+     * @param b An automaton.
+     * @return {@link VerificationSucceeded} if {@code L(a) ⊆ L(b)}, or a
+     * {@link VerificationFailed} whose prefix and cycle are the letters of a
+     * word accepted by {@code a} but not by {@code b}.
+     */
+    public static <L> VerificationResult<Set<L>> checkInclusion(MultiColorAutomaton<?, L> a,
+            MultiColorAutomaton<?, L> b) {
+        return new BuchiInclusion<>(buchi(a), buchi(b)).check();
+    }
+
+    /**
+     * Checks whether {@code a} and {@code b} accept the same words.
+     *
+     * @param <L> Type of atomic propositions.
+     * @param a An automaton.
+     * @param b An automaton.
+     * @return {@link VerificationSucceeded} if {@code L(a) = L(b)}, or a
+     * {@link VerificationFailed} whose prefix and cycle are the letters of a
+     * word accepted by exactly one of them.
+     */
+    public static <L> VerificationResult<Set<L>> checkEquivalence(MultiColorAutomaton<?, L> a,
+            MultiColorAutomaton<?, L> b) {
+        Automaton<?, L> ba = buchi(a);
+        Automaton<?, L> bb = buchi(b);
+        VerificationResult<Set<L>> res = new BuchiInclusion<>(ba, bb).check();
+        return res instanceof VerificationFailed ? res : new BuchiInclusion<>(bb, ba).check();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <L> Automaton<?, L> buchi(MultiColorAutomaton<?, L> aut) {
+        if (aut instanceof Automaton) {
+            return BuchiReductions.reduce((Automaton<Object, L>) aut);
+        }
+        return BuchiReductions.reduce(BuchiReductions.degeneralize(aut));
+    }
+
+    /**
+     * @return The edges of {@code side}, with their guards over
+     * {@code propositions}.
+     */
+    private static <L> List<List<Edge>> unify(Side<L> side, List<L> propositions, long relevant) {
+        long[] bit = new long[side.propositions.size()];
+        for (int i = 0; i < bit.length; i++) {
+            bit[i] = 1L << propositions.indexOf(side.propositions.get(i));
+        }
+        List<List<Edge>> res = new ArrayList<>();
+        for (List<Edge> out : side.edges) {
+            List<Edge> unified = new ArrayList<>();
+            for (Edge e : out) {
+                long pos = 0, neg = 0;
+                for (int i = 0; i < bit.length; i++) {
+                    if ((e.guard.getPositive() & (1L << i)) != 0) {
+                        pos |= bit[i];
+                    }
+                    if ((e.guard.getNegative() & (1L << i)) != 0) {
+                        neg |= bit[i];
+                    }
+                }
+                if (e.guard.isExact()) {
+                    neg = relevant & ~pos; // the propositions of the other automaton, too
+                }
+                unified.add(new Edge(Guard.of(pos, neg), e.target));
+            }
+            res.add(unified);
+        }
+        return res;
+    }
+
+    /**
+     * @return Disjoint cubes covering all the letters, each inside or outside
+     * every guard of {@code guards}.
+     */
+    private static List<Guard> atoms(Set<Guard> guards) {
+        List<Guard> atoms = new ArrayList<>();
+        atoms.add(Guard.TRUE);
+        for (Guard g : guards) {
+            List<Guard> next = new ArrayList<>();
+            for (Guard c : atoms) {
+                long free = (g.getPositive() | g.getNegative()) & ~(c.getPositive() | c.getNegative());
+                boolean disjoint = (c.getPositive() & g.getNegative()) != 0
+                        || (c.getNegative() & g.getPositive()) != 0;
+                if (free == 0 || disjoint) {
+                    next.add(c);
+                    continue;
+                }
+                long pos = c.getPositive(), neg = c.getNegative();
+                for (long rest = free; rest != 0; rest &= rest - 1) {
+                    long bit = rest & -rest;
+                    if ((g.getPositive() & bit) != 0) {
+                        next.add(Guard.of(pos, neg | bit));
+                        pos |= bit;
+                    } else {
+                        next.add(Guard.of(pos | bit, neg));
+                        neg |= bit;
+                    }
+                }
+                next.add(Guard.of(pos, neg));
+            }
+            atoms = next;
+        }
+        return atoms;
+    }
+
+    private VerificationResult<Set<L>> check() {
+        if (a.initial.isEmpty() || simulated()) {
+            return new VerificationSucceeded<>();
+        }
+        List<List<Prefix>> prefixes = prefixes();
+        for (int q = 0; q < a.n; q++) {
+            if (!prefixes.get(q).isEmpty()) {
+                VerificationFailed<Set<L>> res = loops(q, prefixes.get(q));
+                if (res != null) {
+                    return res;
+                }
+            }
+        }
+        return new VerificationSucceeded<>();
+    }
+
+    /**
+     * @return Whether every initial state of {@code A} is directly simulated
+     * by an initial state of {@code B}, which implies inclusion.
+     */
+    private boolean simulated() {
+        BitSet[] sim = new BitSet[a.n];
+        for (int q = 0; q < a.n; q++) {
+            sim[q] = new BitSet(b.n);
+            for (int p = 0; p < b.n; p++) {
+                if (!a.accepting[q] || b.accepting[p]) {
+                    sim[q].set(p);
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int q = 0; q < a.n; q++) {
+                for (int p = sim[q].nextSetBit(0); p >= 0; p = sim[q].nextSetBit(p + 1)) {
+                    if (!matches(q, p, sim)) {
+                        sim[q].clear(p);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        for (int q = a.initial.nextSetBit(0); q >= 0; q = a.initial.nextSetBit(q + 1)) {
+            if (!sim[q].intersects(b.initial)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(int q, int p, BitSet[] sim) {
+        for (int k = 0; k < letters.size(); k++) {
+            for (int qt : succA[k][q]) {
+                if (!succB[k][p].intersects(sim[qt])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private BitSet post(BitSet states, int letter) {
+        BitSet res = new BitSet(b.n);
+        for (int p = states.nextSetBit(0); p >= 0; p = states.nextSetBit(p + 1)) {
+            res.or(succB[letter][p]);
+        }
+        return res;
+    }
+
+    /**
+     * Explores the prefixes breadth first.
+     *
+     * @return For each state of {@code A}, the prefixes leading to it with a
+     * minimal set of states of {@code B}.
+     */
+    private List<List<Prefix>> prefixes() {
+        List<List<Prefix>> minimal = new ArrayList<>();
+        for (int q = 0; q < a.n; q++) {
+            minimal.add(new ArrayList<>());
+        }
+        Deque<Prefix> todo = new ArrayDeque<>();
+        for (int q = a.initial.nextSetBit(0); q >= 0; q = a.initial.nextSetBit(q + 1)) {
+            addPrefix(new Prefix(q, (BitSet) b.initial.clone(), null, -1), minimal, todo);
+        }
+        while (!todo.isEmpty()) {
+            Prefix pre = todo.remove();
+            if (pre.subsumed) {
+                continue;
+            }
+            for (int k = 0; k < letters.size(); k++) {
+                if (succA[k][pre.state].length == 0) {
+                    continue;
+                }
+                BitSet reached = post(pre.reached, k);
+                for (int t : succA[k][pre.state]) {
+                    addPrefix(new Prefix(t, reached, pre, k), minimal, todo);
+                }
+            }
+        }
+        return minimal;
+    }
+
+    private static void addPrefix(Prefix pre, List<List<Prefix>> minimal, Deque<Prefix> todo) {
+        List<Prefix> known = minimal.get(pre.state);
+        for (Prefix other : known) {
+            if (subset(other.reached, pre.reached)) {
+                return;
+            }
+        }
+        known.removeIf(other -> {
+            other.subsumed = subset(pre.reached, other.reached);
+            return other.subsumed;
+        });
+        known.add(pre);
+        todo.add(pre);
+    }
+
+    private static boolean subset(BitSet small, BitSet large) {
+        BitSet rest = (BitSet) small.clone();
+        rest.andNot(large);
+        return rest.isEmpty();
+    }
+
+    /**
+     * Explores the graphs of the words read from {@code q}, and tries each
+     * one that loops on {@code q} through an accepting state with the
+     * prefixes. A graph with fewer arcs is a better candidate, and stays so
+     * when the word is extended, so only the minimal graphs are kept for
+     * each state of {@code A}.
+     *
+     * @return A counterexample, or {@code null}.
+     */
+    private VerificationFailed<Set<L>> loops(int q, List<Prefix> prefixes) {
+        List<List<Graph>> minimal = new ArrayList<>();
+        for (int t = 0; t < a.n; t++) {
+            minimal.add(new ArrayList<>());
+        }
+        Deque<Graph> todo = new ArrayDeque<>();
+        for (int k = 0; k < letters.size(); k++) {
+            BitSet[] reach = new BitSet[b.n];
+            BitSet[] reachAcc = new BitSet[b.n];
+            for (int p = 0; p < b.n; p++) {
+                reach[p] = (BitSet) succB[k][p].clone();
+                reachAcc[p] = (BitSet) succB[k][p].clone();
+                if (!b.accepting[p]) {
+                    reachAcc[p].and(acceptingB);
+                }
+            }
+            for (int t : succA[k][q]) {
+                addGraph(new Graph(t, a.accepting[q] || a.accepting[t], reach, reachAcc, null, k), minimal, todo);
+            }
+        }
+        while (!todo.isEmpty()) {
+            Graph g = todo.remove();
+            if (g.subsumed) {
+                continue;
+            }
+            if (g.state == q && g.accepting) {
+                // v^n, for the n that makes the graph idempotent
+                int n = 1;
+                Graph power = g;
+                while (!power.equalArcs(compose(power, power))) {
+                    power = compose(power, g);
+                    n++;
+                }
+                for (Prefix pre : prefixes) {
+                    if (!acceptsLasso(pre.reached, power)) {
+                        VerificationFailed<Set<L>> res = new VerificationFailed<>();
+                        res.setPrefix(word(pre));
+                        List<Set<L>> cycle = new ArrayList<>();
+                        List<Set<L>> v = word(g);
+                        for (int i = 0; i < n; i++) {
+                            cycle.addAll(v);
+                        }
+                        res.setCycle(cycle);
+                        return res;
+                    }
+                }
+            }
+            for (int k = 0; k < letters.size(); k++) {
+                if (succA[k][g.state].length == 0) {
+                    continue;
+                }
+                BitSet[] reach = new BitSet[b.n];
+                BitSet[] reachAcc = new BitSet[b.n];
+                for (int p = 0; p < b.n; p++) {
+                    reach[p] = post(g.reach[p], k);
+                    reachAcc[p] = post(g.reachAcc[p], k);
+                    BitSet accepting = (BitSet) reach[p].clone();
+                    accepting.and(acceptingB);
+                    reachAcc[p].or(accepting);
+                }
+                for (int t : succA[k][g.state]) {
+                    addGraph(new Graph(t, g.accepting || a.accepting[t], reach, reachAcc, g, k), minimal, todo);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void addGraph(Graph g, List<List<Graph>> minimal, Deque<Graph> todo) {
+        List<Graph> known = minimal.get(g.state);
+        for (Graph other : known) {
+            if (other.below(g)) {
+                return;
+            }
+        }
+        known.removeIf(other -> {
+            other.subsumed = g.below(other);
+            return other.subsumed;
+        });
+        known.add(g);
+        todo.add(g);
+    }
+
+    /**
+     * @return The graph of the words of {@code g} followed by those of
+     * {@code h}, for {@code B} only.
+     */
+    private Graph compose(Graph g, Graph h) {
+        BitSet[] reach = new BitSet[b.n];
+        BitSet[] reachAcc = new BitSet[b.n];
+        for (int p = 0; p < b.n; p++) {
+            reach[p] = new BitSet(b.n);
+            reachAcc[p] = new BitSet(b.n);
+            for (int m = g.reach[p].nextSetBit(0); m >= 0; m = g.reach[p].nextSetBit(m + 1)) {
+                reach[p].or(h.reach[m]);
+                reachAcc[p].or(h.reachAcc[m]);
+            }
+            for (int m = g.reachAcc[p].nextSetBit(0); m >= 0; m = g.reachAcc[p].nextSetBit(m + 1)) {
+                reachAcc[p].or(h.reach[m]);
+            }
+        }
+        return new Graph(h.state, g.accepting || h.accepting, reach, reachAcc, null, -1);
+    }
+
+    /**
+     * @return Whether {@code B} accepts {@code u v^ω}, where {@code u} leads
+     * to {@code reached} and {@code v} has the idempotent graph {@code g}.
+     */
+    private static boolean acceptsLasso(BitSet reached, Graph g) {
+        BitSet loopStates = new BitSet();
+        for (int p = reached.nextSetBit(0); p >= 0; p = reached.nextSetBit(p + 1)) {
+            loopStates.or(g.reach[p]);
+        }
+        for (int p = loopStates.nextSetBit(0); p >= 0; p = loopStates.nextSetBit(p + 1)) {
+            if (g.reachAcc[p].get(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Set<L>> word(Prefix pre) {
+        List<Set<L>> res = new ArrayList<>();
+        for (Prefix p = pre; p.parent != null; p = p.parent) {
+            res.add(letters.get(p.letter));
+        }
+        Collections.reverse(res);
+        return res;
+    }
+
+    private List<Set<L>> word(Graph g) {
+        List<Set<L>> res = new ArrayList<>();
+        for (Graph h = g; h != null; h = h.parent) {
+            res.add(letters.get(h.letter));
+        }
+        Collections.reverse(res);
+        return res;
+    }
+
+}
@@ -0,0 +1,436 @@
+package il.ac.bgu.cs.formalmethodsintro.base.automata;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Language-preserving transformations of Büchi automata, to keep the
+ * automata small before they are multiplied with a system.
+ */
+public final class BuchiReductions {
+
+    private BuchiReductions() {
+    }
+
+    /**
+     * Degeneralizes {@code gnba} with the counter construction: a state of the
+     * result is a state of {@code gnba} and the index of the color it waits
+     * for. Only states reachable from the initial states are built.
+     *
+     * @param <S> Type of states.
+     * @param <L> Type of the alphabet.
+     * @param gnba An automaton with any number of colors. With no colors,
+     * every state is accepting.
+     * @return An automaton with the same language and a single set of
+     * accepting states: the states that wait for the first color and have it.
+     */
+    public static <S, L> Automaton<Pair<S, Integer>, L> degeneralize(MultiColorAutomaton<S, L> gnba) {
+        List<Set<S>> colors = new ArrayList<>();
+        for (int c : new TreeSet<>(gnba.getColors())) {
+            colors.add(gnba.getAcceptingStates(c));
+        }
+        int k = Math.max(colors.size(), 1);
+
+        Automaton<Pair<S, Integer>, L> res = new Automaton<>();
+        copyPropositions(gnba, res);
+        Deque<Pair<S, Integer>> todo = new ArrayDeque<>();
+        for (S q : gnba.getInitialStates()) {
+            Pair<S, Integer> s = new Pair<>(q, 0);
+            res.setInitial(s);
+            todo.add(s);
+        }
+        Set<Pair<S, Integer>> seen = new HashSet<>(todo);
+        while (!todo.isEmpty()) {
+            Pair<S, Integer> s = todo.remove();
+            boolean hasColor = colors.isEmpty() || colors.get(s.second).contains(s.first);
+            if (hasColor && s.second == 0) {
+                res.setAccepting(s);
+            }
+            res.addState(s);
+            int next = hasColor ? (s.second + 1) % k : s.second;
+            Map<Guard, Set<S>> out = gnba.getGuardedTransitions().get(s.first);
+            if (out == null) {
+                continue;
+            }
+            for (Map.Entry<Guard, Set<S>> e : out.entrySet()) {
+                for (S q : e.getValue()) {
+                    Pair<S, Integer> t = new Pair<>(q, next);
+                    res.addTransition(s, e.getKey(), t);
+                    if (seen.add(t)) {
+                        todo.add(t);
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Removes the states that cannot take part in an accepting run, then
+     * merges states that simulate each other and drops transitions to states
+     * that are simulated by a sibling (direct simulation, which respects
+     * acceptance, so both steps keep the language).
+     *
+     * @param <S> Type of states.
+     * @param <L> Type of the alphabet.
+     * @param aut The automaton.
+     * @return A new automaton with the same language, whose states are a
+     * subset of those of {@code aut}.
+     */
+    public static <S, L> Automaton<S, L> reduce(Automaton<S, L> aut) {
+        Indexed<S, L> a = new Indexed<>(removeUseless(aut));
+        BitSet[] sim = a.directSimulation();
+
+        int[] rep = new int[a.n];
+        for (int q = 0; q < a.n; q++) {
+            rep[q] = q;
+            for (int p = sim[q].nextSetBit(0); p >= 0 && p < q; p = sim[q].nextSetBit(p + 1)) {
+                if (sim[p].get(q)) {
+                    rep[q] = p;
+                    break;
+                }
+            }
+        }
+
+        Automaton<S, L> res = new Automaton<>();
+        copyPropositions(aut, res);
+        List<Integer> initials = new ArrayList<>();
+        for (int q = 0; q < a.n; q++) {
+            if (a.initial[q] && !initials.contains(rep[q])) {
+                initials.add(rep[q]);
+            }
+        }
+        for (int q : strictMaxima(initials, sim)) {
+            res.setInitial(a.states.get(q));
+        }
+        for (int q = 0; q < a.n; q++) {
+            if (rep[q] != q) {
+                continue;
+            }
+            S s = a.states.get(q);
+            res.addState(s);
+            if (a.accepting[q]) {
+                res.setAccepting(s);
+            }
+            for (int l = 0; l < a.guards.size(); l++) {
+                List<Integer> targets = new ArrayList<>();
+                for (int t : a.succ[q][l]) {
+                    if (!targets.contains(rep[t])) {
+                        targets.add(rep[t]);
+                    }
+                }
+                for (int t : strictMaxima(targets, sim)) {
+                    res.addTransition(s, a.guards.get(l), a.states.get(t));
+                }
+            }
+        }
+        return removeUseless(res);
+    }
+
+    /**
+     * @return The states of {@code qs} that no other state of {@code qs}
+     * strictly simulates.
+     */
+    private static List<Integer> strictMaxima(List<Integer> qs, BitSet[] sim) {
+        List<Integer> res = new ArrayList<>();
+        for (int q : qs) {
+            boolean dominated = false;
+            for (int p : qs) {
+                dominated |= p != q && sim[q].get(p) && !sim[p].get(q);
+            }
+            if (!dominated) {
+                res.add(q);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param <S> Type of states.
+     * @param <L> Type of the alphabet.
+     * @param aut The automaton.
+     * @return A copy of {@code aut} with only the states that are reachable
+     * and can reach an accepting state on a cycle.
+     */
+    public static <S, L> Automaton<S, L> removeUseless(Automaton<S, L> aut) {
+        Indexed<S, L> a = new Indexed<>(aut);
+        BitSet reachable = a.forward(a.initialSet());
+
+        BitSet good = new BitSet();
+        for (int f = reachable.nextSetBit(0); f >= 0; f = reachable.nextSetBit(f + 1)) {
+            if (a.accepting[f]) {
+                BitSet from = new BitSet();
+                for (int[] targets : a.succ[f]) {
+                    for (int t : targets) {
+                        from.set(t);
+                    }
+                }
+                if (a.forward(from).get(f)) {
+                    good.set(f);
+                }
+            }
+        }
+        BitSet keep = a.backward(good);
+        keep.and(reachable);
+
+        Automaton<S, L> res = new Automaton<>();
+        copyPropositions(aut, res);
+        for (int q = keep.nextSetBit(0); q >= 0; q = keep.nextSetBit(q + 1)) {
+            S s = a.states.get(q);
+            res.addState(s);
+            if (a.initial[q]) {
+                res.setInitial(s);
+            }
+            if (a.accepting[q]) {
+                res.setAccepting(s);
+            }
+            for (int l = 0; l < a.guards.size(); l++) {
+                for (int t : a.succ[q][l]) {
+                    if (keep.get(t)) {
+                        res.addTransition(s, a.guards.get(l), a.states.get(t));
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param <S> Type of states.
+     * @param <L> Type of the alphabet.
+     * @param aut The automaton.
+     * @return A copy of {@code aut} whose states are numbered from 0, in
+     * breadth-first order from the initial states.
+     */
+    public static <S, L> Automaton<Integer, L> renumber(Automaton<S, L> aut) {
+        Map<S, Integer> ids = new HashMap<>();
+        Deque<S> todo = new ArrayDeque<>();
+        Automaton<Integer, L> res = new Automaton<>();
+        copyPropositions(aut, res);
+        for (S s : aut.getInitialStates()) {
+            ids.put(s, ids.size());
+            todo.add(s);
+            res.setInitial(ids.get(s));
+        }
+        Set<S> accepting = aut.getAcceptingStates();
+        while (!todo.isEmpty()) {
+            S s = todo.remove();
+            int id = ids.get(s);
+            res.addState(id);
+            if (accepting.contains(s)) {
+                res.setAccepting(id);
+            }
+            for (Map.Entry<Guard, Set<S>> e : aut.getGuardedTransitions().getOrDefault(s, Collections.emptyMap())
+                    .entrySet()) {
+                for (S t : e.getValue()) {
+                    if (!ids.containsKey(t)) {
+                        ids.put(t, ids.size());
+                        todo.add(t);
+                    }
+                    res.addTransition(id, e.getKey(), ids.get(t));
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Gives {@code to} the propositions of {@code from}, with the same
+     * indices, so that guards can be copied between them.
+     */
+    private static <L> void copyPropositions(MultiColorAutomaton<?, L> from, MultiColorAutomaton<?, L> to) {
+        for (L p : from.getPropositions()) {
+            to.addProposition(p);
+        }
+    }
+
+    /**
+     * An automaton with states and guards numbered, for the fixpoint
+     * computations.
+     */
+    private static final class Indexed<S, L> {
+
+        final int n;
+        final List<S> states;
+        final List<Guard> guards = new ArrayList<>();
+        /** succ[state][guard] are the successor states. */
+        final int[][][] succ;
+        /** implied[g] are the guards that {@code g} implies. */
+        final BitSet[] implied;
+        final boolean[] initial;
+        final boolean[] accepting;
+
+        Indexed(Automaton<S, L> aut) {
+            states = new ArrayList<>(aut.getGuardedTransitions().keySet());
+            n = states.size();
+            Map<S, Integer> ids = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                ids.put(states.get(i), i);
+            }
+            Set<Guard> seen = new HashSet<>();
+            for (Map<Guard, Set<S>> out : aut.getGuardedTransitions().values()) {
+                for (Guard g : out.keySet()) {
+                    if (seen.add(g)) {
+                        guards.add(g);
+                    }
+                }
+            }
+            implied = new BitSet[guards.size()];
+            for (int g = 0; g < guards.size(); g++) {
+                implied[g] = new BitSet();
+                for (int h = 0; h < guards.size(); h++) {
+                    if (guards.get(g).implies(guards.get(h))) {
+                        implied[g].set(h);
+                    }
+                }
+            }
+            succ = new int[n][guards.size()][];
+            initial = new boolean[n];
+            accepting = new boolean[n];
+            Set<S> acc = aut.getAcceptingStates();
+            for (int q = 0; q < n; q++) {
+                S s = states.get(q);
+                initial[q] = aut.getInitialStates().contains(s);
+                accepting[q] = acc.contains(s);
+                Map<Guard, Set<S>> out = aut.getGuardedTransitions().get(s);
+                for (int l = 0; l < guards.size(); l++) {
+                    Set<S> targets = out.get(guards.get(l));
+                    succ[q][l] = new int[targets == null ? 0 : targets.size()];
+                    int i = 0;
+                    if (targets != null) {
+                        for (S t : targets) {
+                            succ[q][l][i++] = ids.get(t);
+                        }
+                    }
+                }
+            }
+        }
+
+        BitSet initialSet() {
+            BitSet res = new BitSet();
+            for (int q = 0; q < n; q++) {
+                if (initial[q]) {
+                    res.set(q);
+                }
+            }
+            return res;
+        }
+
+        /**
+         * @return The states reachable from {@code from}, inclusive.
+         */
+        BitSet forward(BitSet from) {
+            BitSet res = (BitSet) from.clone();
+            Deque<Integer> todo = new ArrayDeque<>();
+            from.stream().forEach(todo::add);
+            while (!todo.isEmpty()) {
+                int q = todo.remove();
+                for (int[] targets : succ[q]) {
+                    for (int t : targets) {
+                        if (!res.get(t)) {
+                            res.set(t);
+                            todo.add(t);
+                        }
+                    }
+                }
+            }
+            return res;
+        }
+
+        /**
+         * @return The states that can reach {@code to}, inclusive.
+         */
+        BitSet backward(BitSet to) {
+            List<List<Integer>> pred = new ArrayList<>();
+            for (int q = 0; q < n; q++) {
+                pred.add(new ArrayList<>());
+            }
+            for (int q = 0; q < n; q++) {
+                for (int[] targets : succ[q]) {
+                    for (int t : targets) {
+                        pred.get(t).add(q);
+                    }
+                }
+            }
+            BitSet res = (BitSet) to.clone();
+            Deque<Integer> todo = new ArrayDeque<>();
+            to.stream().forEach(todo::add);
+            while (!todo.isEmpty()) {
+                for (int p : pred.get(todo.remove())) {
+                    if (!res.get(p)) {
+                        res.set(p);
+                        todo.add(p);
+                    }
+                }
+            }
+            return res;
+        }
+
+        /**
+         * The greatest direct simulation: {@code p} simulates {@code q} if
+         * {@code p} is accepting whenever {@code q} is, and every move of
+         * {@code q} can be matched by a move of {@code p} on the same letters
+         * to a state simulating the target. A move is only matched by a
+         * single move whose guard is implied by its own, so this may miss
+         * some pairs, which is safe.
+         *
+         * @return {@code sim[q]}, the states that simulate {@code q}.
+         */
+        BitSet[] directSimulation() {
+            BitSet[] sim = new BitSet[n];
+            for (int q = 0; q < n; q++) {
+                sim[q] = new BitSet(n);
+                for (int p = 0; p < n; p++) {
+                    if (!accepting[q] || accepting[p]) {
+                        sim[q].set(p);
+                    }
+                }
+            }
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int q = 0; q < n; q++) {
+                    for (int p = sim[q].nextSetBit(0); p >= 0; p = sim[q].nextSetBit(p + 1)) {
+                        if (p != q && !matches(q, p, sim)) {
+                            sim[q].clear(p);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+            return sim;
+        }
+
+        private boolean matches(int q, int p, BitSet[] sim) {
+            for (int l = 0; l < guards.size(); l++) {
+                for (int qt : succ[q][l]) {
+                    boolean matched = false;
+                    for (int m = implied[l].nextSetBit(0); m >= 0 && !matched; m = implied[l].nextSetBit(m + 1)) {
+                        for (int pt : succ[p][m]) {
+                            if (sim[qt].get(pt)) {
+                                matched = true;
+                                break;
+                            }
+                        }
+                    }
+                    if (!matched) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+}
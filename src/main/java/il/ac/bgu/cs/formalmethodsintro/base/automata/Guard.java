@@ -0,0 +1,100 @@
+package il.ac.bgu.cs.formalmethodsintro.base.automata;
+
+/**
+ * A transition guard of a {@link MultiColorAutomaton}: a conjunction of
+ * literals over the atomic propositions of the automaton (a cube). Bit
+ * {@code i} stands for the proposition of index {@code i} in
+ * {@link MultiColorAutomaton#getPropositions()}, and a letter is a bitmask of
+ * the propositions that hold.
+ *
+ * A letter satisfies the guard if it has all the {@link #getPositive()}
+ * propositions and none of the {@link #getNegative()} ones; the other
+ * propositions are free. An <em>exact</em> guard fixes every bit, so it
+ * accepts a single letter. The explicit {@code Set<L>} symbols of the
+ * automaton are exact guards.
+ */
+public final class Guard {
+
+    /** The guard that accepts every letter. */
+    public static final Guard TRUE = new Guard(0L, 0L);
+
+    private final long positive;
+    private final long negative;
+
+    private Guard(long positive, long negative) {
+        this.positive = positive;
+        this.negative = negative;
+    }
+
+    /**
+     * @param positive Propositions that must hold.
+     * @param negative Propositions that must not hold.
+     * @return The cube {@code positive ∧ ¬negative}.
+     */
+    public static Guard of(long positive, long negative) {
+        if ((positive & negative) != 0) {
+            throw new IllegalArgumentException("Contradictory guard: propositions "
+                    + Long.toBinaryString(positive & negative) + " are both required and forbidden");
+        }
+        return new Guard(positive, negative);
+    }
+
+    /**
+     * @param letter A letter.
+     * @return The guard that accepts {@code letter} only.
+     */
+    public static Guard exactly(long letter) {
+        return new Guard(letter, ~letter);
+    }
+
+    public long getPositive() {
+        return positive;
+    }
+
+    public long getNegative() {
+        return negative;
+    }
+
+    public boolean isExact() {
+        return (positive | negative) == -1L;
+    }
+
+    public boolean matches(long letter) {
+        return (letter & positive) == positive && (letter & negative) == 0;
+    }
+
+    /**
+     * @param other Another guard.
+     * @return Whether every letter that satisfies this guard satisfies
+     * {@code other}.
+     */
+    public boolean implies(Guard other) {
+        return (other.positive & ~positive) == 0 && (other.negative & ~negative) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(positive) * 31 + Long.hashCode(negative);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Guard)) {
+            return false;
+        }
+        Guard other = (Guard) obj;
+        return positive == other.positive && negative == other.negative;
+    }
+
+    @Override
+    public String toString() {
+        if (isExact()) {
+            return "=" + Long.toBinaryString(positive);
+        }
+        return "+" + Long.toBinaryString(positive) + "-" + Long.toBinaryString(negative);
+    }
+
+}
@@ -1,21 +1,51 @@
 package il.ac.bgu.cs.formalmethodsintro.base.automata;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
+/**
+ * An automaton with several sets ("colors") of accepting states.
+ *
+ * Transitions are labeled by {@link Guard}s over the atomic propositions of
+ * the automaton, numbered in the order they are met. A transition added with
+ * an explicit symbol ({@code Set<L>}) gets the exact guard of that symbol,
+ * while {@link #addTransition(Object, Guard, Object)} adds a single
+ * transition for all the letters of a cube, so an automaton over {@code n}
+ * propositions does not need {@code 2^n} transitions per state.
+ * {@link #nextStates(Object, long)} reads letters as bitmasks over the
+ * proposition numbers; propositions unknown to the automaton satisfy no
+ * exact guard and are free in the other guards.
+ *
+ * @param <State> Type of states.
+ * @param <L> Type of atomic propositions.
+ */
 public class MultiColorAutomaton<State, L> {
 
+    /** At most 63 propositions: the last bit of a letter stands for the unknown ones. */
+    private static final int MAX_PROPOSITIONS = 63;
+    private static final long UNKNOWN = 1L << MAX_PROPOSITIONS;
+
     private final Set<State> initial;
     private final Map<Integer, Set<State>> accepting;
-    private final Map<State, Map<Set<L>, Set<State>>> transitions;
+    private final Map<State, Map<Guard, Set<State>>> transitions;
+    /** The guards of each state that are not exact, which lookups must scan. */
+    private final Map<State, List<Guard>> cubes;
+    private final List<L> propositions;
+    private final Map<L, Integer> propositionIndex;
 
     public MultiColorAutomaton() {
         transitions = new HashMap<>();
+        cubes = new HashMap<>();
         initial = new HashSet<>();
         accepting = new HashMap<>();
+        propositions = new ArrayList<>();
+        propositionIndex = new HashMap<>();
     }
 
     public void addState(State s) {
@@ -25,22 +55,93 @@ public class MultiColorAutomaton<State, L> {
     }
 
     public void addTransition(State source, Set<L> symbol, State destination) {
-        if (!transitions.containsKey(source)) {
-            addState(source);
+        long letter = 0;
+        for (L p : symbol) {
+            letter |= 1L << addProposition(p);
         }
+        addTransition(source, Guard.exactly(letter), destination);
+    }
 
-        if (!transitions.containsKey(destination)) {
-            addState(destination);
-        }
+    /**
+     * Adds a transition for all the letters that satisfy {@code guard}.
+     *
+     * @param source The source state.
+     * @param guard A guard over the propositions of this automaton.
+     * @param destination The destination state.
+     */
+    public void addTransition(State source, Guard guard, State destination) {
+        addState(source);
+        addState(destination);
 
-        Set<State> set = transitions.get(source).get(symbol);
+        Map<Guard, Set<State>> out = transitions.get(source);
+        Set<State> set = out.get(guard);
         if (set == null) {
             set = new HashSet<>();
-            transitions.get(source).put(symbol, set);
+            out.put(guard, set);
+            if (!guard.isExact()) {
+                cubes.computeIfAbsent(source, s -> new ArrayList<>()).add(guard);
+            }
         }
         set.add(destination);
     }
 
+    /**
+     * @param p An atomic proposition.
+     * @return The index of {@code p}, which is added to the propositions of
+     * the automaton if needed.
+     */
+    public int addProposition(L p) {
+        Integer i = propositionIndex.get(p);
+        if (i == null) {
+            if (propositions.size() == MAX_PROPOSITIONS) {
+                throw new IllegalArgumentException("Too many atomic propositions (more than "
+                        + MAX_PROPOSITIONS + ") at " + p);
+            }
+            i = propositions.size();
+            propositions.add(p);
+            propositionIndex.put(p, i);
+        }
+        return i;
+    }
+
+    /**
+     * @return The atomic propositions, in the order of their indices.
+     */
+    public List<L> getPropositions() {
+        return Collections.unmodifiableList(propositions);
+    }
+
+    /**
+     * @param mustHold Propositions that must hold.
+     * @param mustNotHold Propositions that must not hold.
+     * @return The guard of {@code mustHold ∧ ¬mustNotHold}. The propositions
+     * are added to the automaton if needed.
+     */
+    public Guard guardOf(Set<L> mustHold, Set<L> mustNotHold) {
+        long pos = 0, neg = 0;
+        for (L p : mustHold) {
+            pos |= 1L << addProposition(p);
+        }
+        for (L p : mustNotHold) {
+            neg |= 1L << addProposition(p);
+        }
+        return Guard.of(pos, neg);
+    }
+
+    /**
+     * @param symbol A set of atomic propositions.
+     * @return {@code symbol} as a letter for
+     * {@link #nextStates(Object, long)}.
+     */
+    public long toLetter(Set<L> symbol) {
+        long letter = 0;
+        for (L p : symbol) {
+            Integer i = propositionIndex.get(p);
+            letter |= i == null ? UNKNOWN : 1L << i;
+        }
+        return letter;
+    }
+
     public Set<State> getAcceptingStates(int color) {
         Set<State> acc = accepting.get(color);
 
@@ -56,16 +157,100 @@ public class MultiColorAutomaton<State, L> {
         return initial;
     }
 
-    public Map<State, Map<Set<L>, Set<State>>> getTransitions() {
+    /**
+     * @return The transitions of each state, by guard.
+     */
+    public Map<State, Map<Guard, Set<State>>> getGuardedTransitions() {
         return transitions;
     }
 
+    /**
+     * The transitions with explicit symbols: every guard is expanded to the
+     * sets of known propositions that satisfy it, so this takes time and
+     * space exponential in the number of free propositions of the guards.
+     * Prefer {@link #getGuardedTransitions()}.
+     *
+     * @return A new map; changing it does not change the automaton.
+     */
+    public Map<State, Map<Set<L>, Set<State>>> getTransitions() {
+        Map<State, Map<Set<L>, Set<State>>> res = new HashMap<>();
+        for (Map.Entry<State, Map<Guard, Set<State>>> ent : transitions.entrySet()) {
+            Map<Set<L>, Set<State>> out = new HashMap<>();
+            for (Map.Entry<Guard, Set<State>> tr : ent.getValue().entrySet()) {
+                for (Set<L> symbol : symbolsOf(tr.getKey())) {
+                    out.computeIfAbsent(symbol, k -> new HashSet<>()).addAll(tr.getValue());
+                }
+            }
+            res.put(ent.getKey(), out);
+        }
+        return res;
+    }
+
+    /**
+     * @return The sets of known propositions that satisfy {@code guard}.
+     */
+    public List<Set<L>> symbolsOf(Guard guard) {
+        long known = (1L << propositions.size()) - 1;
+        long free = known & ~(guard.getPositive() | guard.getNegative());
+        List<Set<L>> res = new ArrayList<>();
+        if ((guard.getPositive() & ~known) != 0) {
+            return res;
+        }
+        for (long sub = free;; sub = (sub - 1) & free) {
+            res.add(symbolOf(guard.getPositive() | sub));
+            if (sub == 0) {
+                break;
+            }
+        }
+        return res;
+    }
+
+    private Set<L> symbolOf(long letter) {
+        Set<L> res = new HashSet<>();
+        for (int i = 0; i < propositions.size(); i++) {
+            if ((letter & (1L << i)) != 0) {
+                res.add(propositions.get(i));
+            }
+        }
+        return res;
+    }
+
     public Set<State> nextStates(State source, Set<L> symbol) {
-        if (!transitions.containsKey(source)) {
-            throw new IllegalArgumentException();
-        } else {
-            return transitions.get(source).get(symbol);
+        Set<State> res = nextStates(source, toLetter(symbol));
+        return res.isEmpty() ? null : res;
+    }
+
+    /**
+     * @param source A state of the automaton.
+     * @param letter A letter, as from {@link #toLetter(Set)}.
+     * @return The states reachable from {@code source} by reading
+     * {@code letter}; possibly a set of the automaton, which must not be
+     * changed.
+     */
+    public Set<State> nextStates(State source, long letter) {
+        Map<Guard, Set<State>> out = transitions.get(source);
+        if (out == null) {
+            throw new IllegalArgumentException("Unknown state " + source);
+        }
+        Set<State> res = out.get(Guard.exactly(letter));
+        List<Guard> guards = cubes.get(source);
+        if (guards != null) {
+            boolean copied = false;
+            for (Guard g : guards) {
+                if (g.matches(letter)) {
+                    if (res == null) {
+                        res = out.get(g);
+                    } else {
+                        if (!copied) {
+                            res = new HashSet<>(res);
+                            copied = true;
+                        }
+                        res.addAll(out.get(g));
+                    }
+                }
+            }
         }
+        return res == null ? Collections.emptySet() : res;
     }
 
     public void setAccepting(State s, int color) {
@@ -97,6 +282,11 @@ public class MultiColorAutomaton<State, L> {
         return hash;
     }
 
+    /**
+     * Automata are equal when they have the same initial and accepting
+     * states and the same transitions letter by letter, as given by
+     * {@link #getTransitions()}, however the letters are grouped into guards.
+     */
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -115,7 +305,12 @@ public class MultiColorAutomaton<State, L> {
         if (!Objects.equals(this.accepting, other.accepting)) {
             return false;
         }
-        return Objects.equals(this.transitions, other.transitions);
+        if (this.propositions.equals(other.propositions) && this.transitions.equals(other.transitions)) {
+            return true; // a shortcut: equal guards over the same numbering have the same letters
+        }
+        // a cube and the exact letters it covers are different guards, so
+        // only the letters are canonical
+        return Objects.equals(getTransitions(), other.getTransitions());
     }
 
 }
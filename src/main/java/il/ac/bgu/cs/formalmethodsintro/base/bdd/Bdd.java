@@ -0,0 +1,930 @@
+package il.ac.bgu.cs.formalmethodsintro.base.bdd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reduced ordered binary decision diagram package.
+ *
+ * A BDD is an {@code int} handle into this manager's node table;
+ * {@link #FALSE} and {@link #TRUE} are the terminals. Nodes are hash-consed
+ * through a unique table, so two handles denote the same function iff they
+ * are equal. Results of the recursive operations are memoized in a
+ * direct-mapped computed cache.
+ *
+ * <b>Garbage collection.</b> Handles that must survive should be protected
+ * with {@link #ref(int)} and released with {@link #deref(int)}. Collection
+ * only happens on entry to a public operation, and keeps the referenced nodes
+ * and that operation's operands; everything else may be reclaimed, so an
+ * unreferenced handle is only good until the next operation that is not
+ * given it as an operand.
+ *
+ * <b>Variable order.</b> Variables are numbered {@code 0..varCount-1} and
+ * start in that order. {@link #reorder(int[], int...)} and
+ * {@link #sift(int[][], int...)} change the order by rebuilding the given
+ * roots in a fresh node table; all other handles are invalid afterwards.
+ */
+public class Bdd {
+
+    public static final int FALSE = 0;
+    public static final int TRUE = 1;
+
+    private static final int OP_AND = 0, OP_OR = 1, OP_XOR = 2, OP_ITE = 3, OP_EXISTS = 4, OP_RELPROD = 5;
+
+    private final int varCount;
+    private int[] var2level;
+    private int[] level2var;
+
+    // Node table. Free slots have nodeVar -1 and are chained through next.
+    private int[] nodeVar;
+    private int[] low;
+    private int[] high;
+    private int[] refs;
+    private int[] next;
+    private int[] buckets;
+    private int used = 2;
+    private int freeList = -1;
+    private int liveNodes = 2;
+
+    // Computed cache, direct-mapped.
+    private int[] cacheKey;
+    private int[] cacheA;
+    private int[] cacheB;
+    private int[] cacheC;
+    private int[] cacheRes;
+
+    private int gcThreshold;
+    private int nodeLimit = Integer.MAX_VALUE;
+    private int gcCount;
+    private int reorderCount;
+
+    public Bdd(int varCount) {
+        this(varCount, identity(varCount), 1 << 12);
+    }
+
+    private Bdd(int varCount, int[] level2var, int initialNodes) {
+        if (varCount < 0) {
+            throw new IllegalArgumentException("Negative variable count " + varCount);
+        }
+        this.varCount = varCount;
+        setOrder(level2var);
+        int cap = Integer.highestOneBit(Math.max(16, initialNodes - 1)) << 1;
+        nodeVar = new int[cap];
+        low = new int[cap];
+        high = new int[cap];
+        refs = new int[cap];
+        next = new int[cap];
+        buckets = new int[cap];
+        Arrays.fill(buckets, -1);
+        nodeVar[FALSE] = nodeVar[TRUE] = varCount;
+        low[TRUE] = high[TRUE] = TRUE;
+        newCache(cap);
+        gcThreshold = cap;
+    }
+
+    private static int[] identity(int n) {
+        int[] res = new int[n];
+        for (int i = 0; i < n; i++) {
+            res[i] = i;
+        }
+        return res;
+    }
+
+    private void setOrder(int[] order) {
+        if (order.length != varCount) {
+            throw new IllegalArgumentException("Order has " + order.length + " variables, expected " + varCount);
+        }
+        int[] v2l = new int[varCount + 1];
+        Arrays.fill(v2l, -1);
+        for (int l = 0; l < varCount; l++) {
+            if (order[l] < 0 || order[l] >= varCount || v2l[order[l]] != -1) {
+                throw new IllegalArgumentException("Not a permutation: " + Arrays.toString(order));
+            }
+            v2l[order[l]] = l;
+        }
+        v2l[varCount] = varCount; // terminals sit below every variable
+        var2level = v2l;
+        level2var = order.clone();
+    }
+
+    private void newCache(int nodeCapacity) {
+        int size = Math.min(1 << 22, Math.max(1 << 10, nodeCapacity));
+        cacheKey = new int[size];
+        Arrays.fill(cacheKey, -1);
+        cacheA = new int[size];
+        cacheB = new int[size];
+        cacheC = new int[size];
+        cacheRes = new int[size];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Accessors
+    public int getVarCount() {
+        return varCount;
+    }
+
+    /**
+     * @return The variable at the root of {@code f}, or {@link #getVarCount()}
+     * for a terminal.
+     */
+    public int var(int f) {
+        return nodeVar[f];
+    }
+
+    public int low(int f) {
+        return low[f];
+    }
+
+    public int high(int f) {
+        return high[f];
+    }
+
+    /**
+     * @return The variables, top to bottom.
+     */
+    public int[] getOrder() {
+        return level2var.clone();
+    }
+
+    /**
+     * @return Number of nodes currently allocated, terminals included.
+     */
+    public int getLiveNodeCount() {
+        return liveNodes;
+    }
+
+    public int getGcCount() {
+        return gcCount;
+    }
+
+    public int getReorderCount() {
+        return reorderCount;
+    }
+
+    private int level(int f) {
+        return var2level[nodeVar[f]];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// References and garbage collection
+    /**
+     * Protects {@code f} from garbage collection.
+     *
+     * @return {@code f}
+     */
+    public int ref(int f) {
+        if (f > TRUE) {
+            refs[f]++;
+        }
+        return f;
+    }
+
+    /**
+     * Releases one {@link #ref(int)} of {@code f}.
+     */
+    public void deref(int f) {
+        if (f > TRUE) {
+            if (refs[f] == 0) {
+                throw new IllegalStateException("Node " + f + " is not referenced");
+            }
+            refs[f]--;
+        }
+    }
+
+    private void maybeGc(int... operands) {
+        if (liveNodes >= gcThreshold) {
+            gc(operands);
+        }
+    }
+
+    /**
+     * Reclaims every node not reachable from a referenced node or from
+     * {@code keep}, and clears the computed cache.
+     */
+    public void gc(int... keep) {
+        boolean[] marked = new boolean[used];
+        int[] stack = new int[64];
+        int sp = 0;
+        for (int i = 2; i < used; i++) {
+            if (nodeVar[i] >= 0 && refs[i] > 0) {
+                stack = push(stack, sp++, i);
+            }
+        }
+        for (int k : keep) {
+            stack = push(stack, sp++, k);
+        }
+        while (sp > 0) {
+            int n = stack[--sp];
+            if (n > TRUE && !marked[n]) {
+                marked[n] = true;
+                stack = push(stack, sp++, low[n]);
+                stack = push(stack, sp++, high[n]);
+            }
+        }
+
+        Arrays.fill(buckets, -1);
+        freeList = -1;
+        liveNodes = 2;
+        for (int i = used - 1; i >= 2; i--) {
+            if (marked[i]) {
+                int b = hash(nodeVar[i], low[i], high[i]) & (buckets.length - 1);
+                next[i] = buckets[b];
+                buckets[b] = i;
+                liveNodes++;
+            } else {
+                nodeVar[i] = -1;
+                refs[i] = 0;
+                next[i] = freeList;
+                freeList = i;
+            }
+        }
+        Arrays.fill(cacheKey, -1);
+        gcCount++;
+        // collect again only once the live set has doubled
+        gcThreshold = Math.max(gcThreshold, liveNodes * 2);
+    }
+
+    private static int[] push(int[] stack, int sp, int v) {
+        if (sp == stack.length) {
+            stack = Arrays.copyOf(stack, sp * 2);
+        }
+        stack[sp] = v;
+        return stack;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Unique table
+    private static int hash(int v, int lo, int hi) {
+        int h = v * 0x9E3779B1 + lo * 0x85EBCA6B + hi * 0xC2B2AE35;
+        return h ^ (h >>> 15);
+    }
+
+    private int mk(int v, int lo, int hi) {
+        if (lo == hi) {
+            return lo;
+        }
+        int b = hash(v, lo, hi) & (buckets.length - 1);
+        for (int n = buckets[b]; n >= 0; n = next[n]) {
+            if (nodeVar[n] == v && low[n] == lo && high[n] == hi) {
+                return n;
+            }
+        }
+        if (liveNodes >= nodeLimit) {
+            throw new NodeLimitExceeded();
+        }
+        int n;
+        if (freeList >= 0) {
+            n = freeList;
+            freeList = next[n];
+        } else {
+            if (used == nodeVar.length) {
+                grow();
+                b = hash(v, lo, hi) & (buckets.length - 1);
+            }
+            n = used++;
+        }
+        nodeVar[n] = v;
+        low[n] = lo;
+        high[n] = hi;
+        refs[n] = 0;
+        next[n] = buckets[b];
+        buckets[b] = n;
+        liveNodes++;
+        return n;
+    }
+
+    private void grow() {
+        int cap = nodeVar.length * 2;
+        nodeVar = Arrays.copyOf(nodeVar, cap);
+        low = Arrays.copyOf(low, cap);
+        high = Arrays.copyOf(high, cap);
+        refs = Arrays.copyOf(refs, cap);
+        next = Arrays.copyOf(next, cap);
+        buckets = new int[cap];
+        Arrays.fill(buckets, -1);
+        for (int i = 2; i < used; i++) {
+            if (nodeVar[i] >= 0) {
+                int b = hash(nodeVar[i], low[i], high[i]) & (cap - 1);
+                next[i] = buckets[b];
+                buckets[b] = i;
+            }
+        }
+        if (cacheKey.length < cap && cacheKey.length < (1 << 22)) {
+            newCache(cap);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Computed cache
+    private int cacheSlot(int op, int a, int b, int c) {
+        int h = hash(op * 31 + a, b, c);
+        return h & (cacheKey.length - 1);
+    }
+
+    private int lookup(int slot, int op, int a, int b, int c) {
+        if (cacheKey[slot] == op && cacheA[slot] == a && cacheB[slot] == b && cacheC[slot] == c) {
+            return cacheRes[slot];
+        }
+        return -1;
+    }
+
+    private int store(int slot, int op, int a, int b, int c, int res) {
+        cacheKey[slot] = op;
+        cacheA[slot] = a;
+        cacheB[slot] = b;
+        cacheC[slot] = c;
+        cacheRes[slot] = res;
+        return res;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Constructors
+    /**
+     * @return The function "variable {@code v} is true".
+     */
+    public int ithVar(int v) {
+        checkVar(v);
+        maybeGc();
+        return mk(v, FALSE, TRUE);
+    }
+
+    /**
+     * @return The function "variable {@code v} is false".
+     */
+    public int nithVar(int v) {
+        checkVar(v);
+        maybeGc();
+        return mk(v, TRUE, FALSE);
+    }
+
+    /**
+     * @return The conjunction of the given (positive) variables, as used by
+     * {@link #exists(int, int)}.
+     */
+    public int cube(int... vars) {
+        maybeGc();
+        return cubeOf(vars);
+    }
+
+    private int cubeOf(int[] vars) {
+        Integer[] sorted = new Integer[vars.length];
+        for (int i = 0; i < vars.length; i++) {
+            checkVar(vars[i]);
+            sorted[i] = vars[i];
+        }
+        Arrays.sort(sorted, (x, y) -> var2level[y] - var2level[x]);
+        int res = TRUE;
+        for (int v : sorted) {
+            res = mk(v, FALSE, res);
+        }
+        return res;
+    }
+
+    /**
+     * @return The conjunction of literals setting {@code vars[i]} to
+     * {@code values[i]}.
+     */
+    public int minterm(int[] vars, boolean[] values) {
+        maybeGc();
+        return mintermOf(vars, values);
+    }
+
+    private int mintermOf(int[] vars, boolean[] values) {
+        Integer[] idx = new Integer[vars.length];
+        for (int i = 0; i < vars.length; i++) {
+            checkVar(vars[i]);
+            idx[i] = i;
+        }
+        Arrays.sort(idx, (x, y) -> var2level[vars[y]] - var2level[vars[x]]);
+        int res = TRUE;
+        for (int i : idx) {
+            res = values[i] ? mk(vars[i], FALSE, res) : mk(vars[i], res, FALSE);
+        }
+        return res;
+    }
+
+    private void checkVar(int v) {
+        if (v < 0 || v >= varCount) {
+            throw new IllegalArgumentException("No such variable: " + v);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Boolean operations
+    public int not(int f) {
+        return xor(f, TRUE);
+    }
+
+    public int and(int f, int g) {
+        maybeGc(f, g);
+        return apply(OP_AND, f, g);
+    }
+
+    public int or(int f, int g) {
+        maybeGc(f, g);
+        return apply(OP_OR, f, g);
+    }
+
+    public int xor(int f, int g) {
+        maybeGc(f, g);
+        return apply(OP_XOR, f, g);
+    }
+
+    /**
+     * @return {@code f <-> g}
+     */
+    public int biimp(int f, int g) {
+        maybeGc(f, g);
+        return apply(OP_XOR, apply(OP_XOR, f, g), TRUE);
+    }
+
+    /**
+     * @return {@code f -> g}
+     */
+    public int imp(int f, int g) {
+        maybeGc(f, g);
+        return apply(OP_OR, apply(OP_XOR, f, TRUE), g);
+    }
+
+    /**
+     * @return If {@code f} then {@code g} else {@code h}.
+     */
+    public int ite(int f, int g, int h) {
+        maybeGc(f, g, h);
+        return iteRec(f, g, h);
+    }
+
+    private int apply(int op, int f, int g) {
+        switch (op) {
+            case OP_AND:
+                if (f == FALSE || g == FALSE) {
+                    return FALSE;
+                }
+                if (f == TRUE || f == g) {
+                    return g;
+                }
+                if (g == TRUE) {
+                    return f;
+                }
+                break;
+            case OP_OR:
+                if (f == TRUE || g == TRUE) {
+                    return TRUE;
+                }
+                if (f == FALSE || f == g) {
+                    return g;
+                }
+                if (g == FALSE) {
+                    return f;
+                }
+                break;
+            default:
+                if (f == g) {
+                    return FALSE;
+                }
+                if (f == FALSE) {
+                    return g;
+                }
+                if (g == FALSE) {
+                    return f;
+                }
+                if (f == TRUE && g == TRUE) {
+                    return FALSE;
+                }
+                break;
+        }
+        if (f > g) { // all three operations commute
+            int t = f;
+            f = g;
+            g = t;
+        }
+        int slot = cacheSlot(op, f, g, 0);
+        int res = lookup(slot, op, f, g, 0);
+        if (res >= 0) {
+            return res;
+        }
+        int lf = level(f), lg = level(g);
+        int top = Math.min(lf, lg);
+        int v = level2var[top];
+        int lo = apply(op, lf == top ? low[f] : f, lg == top ? low[g] : g);
+        int hi = apply(op, lf == top ? high[f] : f, lg == top ? high[g] : g);
+        return store(slot, op, f, g, 0, mk(v, lo, hi));
+    }
+
+    private int iteRec(int f, int g, int h) {
+        if (f == TRUE) {
+            return g;
+        }
+        if (f == FALSE) {
+            return h;
+        }
+        if (g == h) {
+            return g;
+        }
+        if (g == TRUE && h == FALSE) {
+            return f;
+        }
+        int slot = cacheSlot(OP_ITE, f, g, h);
+        int res = lookup(slot, OP_ITE, f, g, h);
+        if (res >= 0) {
+            return res;
+        }
+        int top = Math.min(level(f), Math.min(level(g), level(h)));
+        int v = level2var[top];
+        int lo = iteRec(cofactor(f, top, false), cofactor(g, top, false), cofactor(h, top, false));
+        int hi = iteRec(cofactor(f, top, true), cofactor(g, top, true), cofactor(h, top, true));
+        return store(slot, OP_ITE, f, g, h, mk(v, lo, hi));
+    }
+
+    private int cofactor(int f, int level, boolean value) {
+        if (level(f) != level) {
+            return f;
+        }
+        return value ? high[f] : low[f];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Quantification and substitution
+    /**
+     * @param cube A {@link #cube(int...)} of the variables to quantify.
+     * @return {@code exists vars. f}
+     */
+    public int exists(int f, int cube) {
+        maybeGc(f, cube);
+        return existsRec(f, cube);
+    }
+
+    private int existsRec(int f, int cube) {
+        if (f <= TRUE || cube == TRUE) {
+            return f;
+        }
+        int lf = level(f);
+        while (cube != TRUE && level(cube) < lf) {
+            cube = high[cube];
+        }
+        if (cube == TRUE) {
+            return f;
+        }
+        int slot = cacheSlot(OP_EXISTS, f, cube, 0);
+        int res = lookup(slot, OP_EXISTS, f, cube, 0);
+        if (res >= 0) {
+            return res;
+        }
+        if (level(cube) == lf) {
+            int lo = existsRec(low[f], high[cube]);
+            res = lo == TRUE ? TRUE : apply(OP_OR, lo, existsRec(high[f], high[cube]));
+        } else {
+            res = mk(nodeVar[f], existsRec(low[f], cube), existsRec(high[f], cube));
+        }
+        return store(slot, OP_EXISTS, f, cube, 0, res);
+    }
+
+    /**
+     * The relational product, computed without building {@code f & g}.
+     *
+     * @return {@code exists vars. (f & g)}
+     */
+    public int relProd(int f, int g, int cube) {
+        maybeGc(f, g, cube);
+        return relProdRec(f, g, cube);
+    }
+
+    private int relProdRec(int f, int g, int cube) {
+        if (f == FALSE || g == FALSE) {
+            return FALSE;
+        }
+        if (f == TRUE) {
+            return existsRec(g, cube);
+        }
+        if (g == TRUE || f == g) {
+            return existsRec(f, cube);
+        }
+        if (f > g) {
+            int t = f;
+            f = g;
+            g = t;
+        }
+        int top = Math.min(level(f), level(g));
+        while (cube != TRUE && level(cube) < top) {
+            cube = high[cube];
+        }
+        if (cube == TRUE) {
+            return apply(OP_AND, f, g);
+        }
+        int slot = cacheSlot(OP_RELPROD, f, g, cube);
+        int res = lookup(slot, OP_RELPROD, f, g, cube);
+        if (res >= 0) {
+            return res;
+        }
+        int v = level2var[top];
+        int f0 = cofactor(f, top, false), f1 = cofactor(f, top, true);
+        int g0 = cofactor(g, top, false), g1 = cofactor(g, top, true);
+        if (level(cube) == top) {
+            int lo = relProdRec(f0, g0, high[cube]);
+            res = lo == TRUE ? TRUE : apply(OP_OR, lo, relProdRec(f1, g1, high[cube]));
+        } else {
+            res = mk(v, relProdRec(f0, g0, cube), relProdRec(f1, g1, cube));
+        }
+        return store(slot, OP_RELPROD, f, g, cube, res);
+    }
+
+    /**
+     * Renames variables: every {@code v} with {@code map[v] >= 0} is replaced
+     * by {@code map[v]}. The renaming need not preserve the order, but the
+     * result is only meaningful if it does not merge a renamed variable with
+     * one that {@code f} also depends on.
+     *
+     * @param map Variable to variable, {@code -1} for "unchanged".
+     */
+    public int replace(int f, int[] map) {
+        maybeGc(f);
+        return replaceRec(f, map, new HashMap<>());
+    }
+
+    private int replaceRec(int f, int[] map, Map<Integer, Integer> memo) {
+        if (f <= TRUE) {
+            return f;
+        }
+        Integer known = memo.get(f);
+        if (known != null) {
+            return known;
+        }
+        int lo = replaceRec(low[f], map, memo);
+        int hi = replaceRec(high[f], map, memo);
+        int v = map[nodeVar[f]] >= 0 ? map[nodeVar[f]] : nodeVar[f];
+        int res = iteRec(mk(v, FALSE, TRUE), hi, lo);
+        memo.put(f, res);
+        return res;
+    }
+
+    /**
+     * @return {@code f} with each {@code vars[i]} fixed to {@code values[i]}.
+     */
+    public int restrict(int f, int[] vars, boolean[] values) {
+        maybeGc(f);
+        return existsRec(apply(OP_AND, f, mintermOf(vars, values)), cubeOf(vars));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Satisfying assignments and sizes
+    /**
+     * @return A satisfying assignment of {@code f}, indexed by variable, with
+     * don't-care variables false; {@code null} if {@code f} is
+     * {@link #FALSE}.
+     */
+    public boolean[] satOne(int f) {
+        if (f == FALSE) {
+            return null;
+        }
+        boolean[] res = new boolean[varCount];
+        while (f != TRUE) {
+            if (low[f] != FALSE) {
+                f = low[f];
+            } else {
+                res[nodeVar[f]] = true;
+                f = high[f];
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param supportSize Number of variables {@code f} ranges over; variables
+     * outside its support among those count as don't-cares.
+     * @return Number of satisfying assignments over that many variables.
+     */
+    public double satCount(int f, int supportSize) {
+        return fraction(f, new HashMap<>()) * Math.pow(2, supportSize);
+    }
+
+    private double fraction(int f, Map<Integer, Double> memo) {
+        if (f <= TRUE) {
+            return f;
+        }
+        Double known = memo.get(f);
+        if (known != null) {
+            return known;
+        }
+        double res = (fraction(low[f], memo) + fraction(high[f], memo)) / 2;
+        memo.put(f, res);
+        return res;
+    }
+
+    /**
+     * @return Number of distinct non-terminal nodes reachable from the given
+     * roots.
+     */
+    public int nodeCount(int... roots) {
+        boolean[] seen = new boolean[used];
+        int[] stack = new int[64];
+        int sp = 0, count = 0;
+        for (int r : roots) {
+            stack = push(stack, sp++, r);
+        }
+        while (sp > 0) {
+            int n = stack[--sp];
+            if (n > TRUE && !seen[n]) {
+                seen[n] = true;
+                count++;
+                stack = push(stack, sp++, low[n]);
+                stack = push(stack, sp++, high[n]);
+            }
+        }
+        return count;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Reordering
+    /**
+     * Switches to a new variable order, rebuilding {@code roots} under it.
+     * Each rebuilt root keeps the reference count of the original; every
+     * other handle becomes invalid.
+     *
+     * @param order The variables, top to bottom.
+     * @return The rebuilt roots, index-aligned with {@code roots}.
+     */
+    public int[] reorder(int[] order, int... roots) {
+        Bdd target = new Bdd(varCount, order, Math.max(16, nodeCount(roots) * 2));
+        int[] res = copyInto(target, roots);
+        for (int i = 0; i < roots.length; i++) {
+            if (res[i] > TRUE) {
+                target.refs[res[i]] += refs[roots[i]];
+            }
+        }
+        adopt(target);
+        reorderCount++;
+        return res;
+    }
+
+    /**
+     * Group sifting: moves each group of variables, as a block, to the
+     * position where {@code roots} have the fewest nodes, one group at a time.
+     * A block is moved down, then up, one position at a time, and a direction
+     * is abandoned once the size exceeds {@link #MAX_GROWTH} times the best
+     * so far. Variables not in any group form groups of their own. Each
+     * candidate position is measured by rebuilding the roots, so this suits a
+     * few large relations rather than frequent calls.
+     *
+     * @param groups Variables to keep adjacent, in their given order.
+     * @return The rebuilt roots, as for {@link #reorder(int[], int...)}.
+     */
+    public int[] sift(int[][] groups, int... roots) {
+        List<int[]> blocks = blocks(groups);
+        int best = nodeCount(roots);
+        for (int[] g : new ArrayList<>(blocks)) {
+            int from = indexOf(blocks, g);
+            blocks.remove(from);
+            int bestPos = from;
+            for (int step = 1; step >= -1; step -= 2) {
+                for (int pos = from + step; pos >= 0 && pos <= blocks.size(); pos += step) {
+                    blocks.add(pos, g);
+                    int size = trialSize(flatten(blocks), roots, (int) (best * MAX_GROWTH));
+                    blocks.remove(pos);
+                    if (size < 0) {
+                        break;
+                    }
+                    if (size < best) {
+                        best = size;
+                        bestPos = pos;
+                    }
+                }
+            }
+            blocks.add(bestPos, g);
+        }
+        int[] order = flatten(blocks);
+        if (Arrays.equals(order, level2var)) {
+            return roots.clone();
+        }
+        return reorder(order, roots);
+    }
+
+    /** How much a sifted block may grow the diagram before its move stops. */
+    private static final double MAX_GROWTH = 1.2;
+
+    /**
+     * @return The size of {@code roots} under {@code order}, or -1 if it
+     * exceeds {@code limit}.
+     */
+    private int trialSize(int[] order, int[] roots, int limit) {
+        Bdd trial = new Bdd(varCount, order, 1 << 10);
+        trial.nodeLimit = limit + 2;
+        try {
+            return trial.nodeCount(copyInto(trial, roots));
+        } catch (NodeLimitExceeded e) {
+            return -1;
+        }
+    }
+
+    /** Aborts a trial rebuild; see {@link #trialSize}. */
+    private static final class NodeLimitExceeded extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        NodeLimitExceeded() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * The groups, plus singletons for ungrouped variables, in the order of
+     * their topmost variable.
+     */
+    private List<int[]> blocks(int[][] groups) {
+        int[] groupOf = new int[varCount];
+        Arrays.fill(groupOf, -1);
+        for (int i = 0; i < groups.length; i++) {
+            for (int v : groups[i]) {
+                checkVar(v);
+                if (groupOf[v] != -1) {
+                    throw new IllegalArgumentException("Variable " + v + " is in two groups");
+                }
+                groupOf[v] = i;
+            }
+        }
+        List<int[]> res = new ArrayList<>();
+        boolean[] emitted = new boolean[groups.length];
+        for (int l = 0; l < varCount; l++) {
+            int v = level2var[l];
+            if (groupOf[v] < 0) {
+                res.add(new int[]{v});
+            } else if (!emitted[groupOf[v]]) {
+                emitted[groupOf[v]] = true;
+                res.add(groups[groupOf[v]]);
+            }
+        }
+        return res;
+    }
+
+    private static int indexOf(List<int[]> blocks, int[] g) {
+        for (int i = 0; i < blocks.size(); i++) {
+            if (blocks.get(i) == g) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] flatten(List<int[]> blocks) {
+        int n = 0;
+        for (int[] b : blocks) {
+            n += b.length;
+        }
+        int[] res = new int[n];
+        int i = 0;
+        for (int[] b : blocks) {
+            for (int v : b) {
+                res[i++] = v;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Rebuilds {@code roots} in {@code target}, bottom-up, under its order.
+     */
+    private int[] copyInto(Bdd target, int[] roots) {
+        int[] memo = new int[used];
+        Arrays.fill(memo, -1);
+        int[] res = new int[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            res[i] = copyRec(target, roots[i], memo);
+        }
+        return res;
+    }
+
+    private int copyRec(Bdd target, int f, int[] memo) {
+        if (f <= TRUE) {
+            return f;
+        }
+        if (memo[f] < 0) {
+            int lo = copyRec(target, low[f], memo);
+            int hi = copyRec(target, high[f], memo);
+            memo[f] = target.iteRec(target.mk(nodeVar[f], FALSE, TRUE), hi, lo);
+        }
+        return memo[f];
+    }
+
+    private void adopt(Bdd other) {
+        var2level = other.var2level;
+        level2var = other.level2var;
+        nodeVar = other.nodeVar;
+        low = other.low;
+        high = other.high;
+        refs = other.refs;
+        next = other.next;
+        buckets = other.buckets;
+        used = other.used;
+        freeList = other.freeList;
+        liveNodes = other.liveNodes;
+        cacheKey = other.cacheKey;
+        cacheA = other.cacheA;
+        cacheB = other.cacheB;
+        cacheC = other.cacheC;
+        cacheRes = other.cacheRes;
+        gcThreshold = Math.max(other.gcThreshold, liveNodes * 2);
+    }
+
+}
@@ -0,0 +1,31 @@
+package il.ac.bgu.cs.formalmethodsintro.base.channelsystem;
+
+import java.util.Map;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.CompiledStmt;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaCompiler;
+
+/**
+ * Identifies and interprets joined actions such as {@code _C!0 | _C?x}, like
+ * {@link ParserBasedInterleavingActDef}, but parses each action string only
+ * once (see {@link NanoPromelaCompiler}).
+ */
+public class CompiledInterleavingActDef implements InterleavingActDef {
+
+    @Override
+    public Map<String, Object> effect(Map<String, Object> eval, Object action) {
+        CompiledStmt stmt = NanoPromelaCompiler.compileJoined((String) action);
+        return (stmt == null) ? null : stmt.effect(eval);
+    }
+
+    @Override
+    public boolean isMatchingAction(Object action) {
+        return NanoPromelaCompiler.compileJoined((String) action) != null;
+    }
+
+    @Override
+    public boolean isOneSidedAction(String action) {
+        return NanoPromelaCompiler.isOneSided(action);
+    }
+
+}
@@ -14,6 +14,21 @@ public class AtomicLogicalExp implements LogicalExp {
 		this.op = op;
 	}
 	
+	public String getLeft() {
+		return left;
+	}
+
+	/**
+	 * @return The right operand; not used by {@link LogicalOp#not}.
+	 */
+	public String getRight() {
+		return right;
+	}
+
+	public LogicalOp getOp() {
+		return op;
+	}
+
 	@Override
 	public boolean getResult(HashMap<String, Boolean> values){
 		if(op == LogicalOp.and){
@@ -0,0 +1,108 @@
+package il.ac.bgu.cs.formalmethodsintro.base.circuits;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable {@code Map<String, Boolean>} view of a valuation stored as a
+ * {@code long} bitmask: name {@code i} of the name array is {@code true} iff
+ * bit {@code i} is set. Equal to (and hashes like) any other map with the
+ * same entries, so it can stand in for the {@code HashMap}s used elsewhere.
+ */
+public final class BitValuation extends AbstractMap<String, Boolean> {
+
+	private final String[] names;
+	private final long bits;
+
+	/**
+	 * @param names The names, by bit index. Not copied; must not change.
+	 * @param bits The values.
+	 */
+	public BitValuation(String[] names, long bits) {
+		this.names = names;
+		this.bits = bits;
+	}
+
+	public long getBits() {
+		return bits;
+	}
+
+	/**
+	 * @param names Names, by bit index.
+	 * @param valuation A valuation of (at least) these names.
+	 * @return The bitmask of {@code valuation}.
+	 */
+	public static long encode(String[] names, Map<String, Boolean> valuation) {
+		if (valuation instanceof BitValuation && ((BitValuation) valuation).names == names) {
+			return ((BitValuation) valuation).bits;
+		}
+		long res = 0;
+		for (int i = 0; i < names.length; i++) {
+			if (Boolean.TRUE.equals(valuation.get(names[i]))) {
+				res |= 1L << i;
+			}
+		}
+		return res;
+	}
+
+	@Override
+	public Boolean get(Object key) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(key)) {
+				return (bits & (1L << i)) != 0;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		for (String name : names) {
+			if (name.equals(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return names.length;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Boolean>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Boolean>>() {
+			@Override
+			public Iterator<Map.Entry<String, Boolean>> iterator() {
+				return new Iterator<Map.Entry<String, Boolean>>() {
+					int next = 0;
+
+					@Override
+					public boolean hasNext() {
+						return next < names.length;
+					}
+
+					@Override
+					public Map.Entry<String, Boolean> next() {
+						if (next >= names.length) {
+							throw new NoSuchElementException();
+						}
+						int i = next++;
+						return new SimpleImmutableEntry<>(names[i], (bits & (1L << i)) != 0);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return names.length;
+			}
+		};
+	}
+
+}
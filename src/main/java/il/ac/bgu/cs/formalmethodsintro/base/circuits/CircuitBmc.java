@@ -0,0 +1,219 @@
+package il.ac.bgu.cs.formalmethodsintro.base.circuits;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp.LogicalOp;
+import il.ac.bgu.cs.formalmethodsintro.base.sat.SatSolver;
+import il.ac.bgu.cs.formalmethodsintro.base.sat.Tseitin;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.AlternatingSequence;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.BmcResult;
+
+/**
+ * Bounded model checking of an invariant of a {@link CircuitImp}, over the
+ * transition system that
+ * {@link il.ac.bgu.cs.formalmethodsintro.base.FvmFacade#transitionSystemFromCircuit(Circuit)}
+ * would build.
+ *
+ * The circuit is unrolled one step at a time into a single incremental SAT
+ * problem: step {@code t} has fresh input variables, and its registers are the
+ * Tseitin encoding of the rules over step {@code t - 1}. At each depth
+ * {@code k} the solver is asked, under the assumption "the invariant fails at
+ * step k", for a path; if there is none, "the invariant holds at step k" is
+ * added as a clause, which prunes the deeper searches.
+ */
+public class CircuitBmc {
+
+	private final CircuitImp c;
+	private final String[] inputs;
+	private final String[] registers;
+	private final SatSolver solver = new SatSolver();
+	private final Tseitin enc = new Tseitin(solver);
+
+	/** Per step: input literals, register literals. */
+	private final List<int[]> inputLits = new ArrayList<>();
+	private final List<int[]> registerLits = new ArrayList<>();
+
+	public CircuitBmc(CircuitImp c) {
+		this.c = c;
+		this.inputs = new TreeSet<>(c.getInputPortNames()).toArray(new String[0]);
+		this.registers = new TreeSet<>(c.getRegisterNames()).toArray(new String[0]);
+		int[] regs = new int[registers.length];
+		for (int j = 0; j < regs.length; j++) {
+			regs[j] = enc.constant(false);
+		}
+		registerLits.add(regs);
+		inputLits.add(freshInputs());
+	}
+
+	private int[] freshInputs() {
+		int[] res = new int[inputs.length];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = enc.newVar();
+		}
+		return res;
+	}
+
+	/**
+	 * Unrolls one more step.
+	 */
+	private void unroll() {
+		int t = registerLits.size() - 1;
+		Step step = new Step(t);
+		int[] next = new int[registers.length];
+		for (int j = 0; j < registers.length; j++) {
+			next[j] = enc.constant(false); // registers without a rule reset
+		}
+		for (Pair<String, LogicalExp> rule : c.getRegisterRules()) {
+			next[indexOf(registers, rule.first)] = step.encode(rule.second);
+		}
+		registerLits.add(next);
+		inputLits.add(freshInputs());
+	}
+
+	private static int indexOf(String[] names, String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Looks for a violation of {@code invariant} within {@code bound} steps,
+	 * trying shorter paths first.
+	 *
+	 * @param invariant A formula over input, register and output names.
+	 * @param bound The largest number of steps to consider.
+	 * @return The result; a counterexample is a shortest one.
+	 * @throws IllegalArgumentException if {@code invariant} mentions an unknown
+	 * name.
+	 */
+	public BmcResult<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>> check(LogicalExp invariant,
+			int bound) {
+		for (int k = 0; k <= bound; k++) {
+			while (registerLits.size() <= k) {
+				unroll();
+			}
+			int holds = new Step(k).encode(invariant, true);
+			if (solver.solve(-holds)) {
+				return new BmcResult<>(counterexample(k), k);
+			}
+			solver.addClause(holds);
+		}
+		return new BmcResult<>(null, bound);
+	}
+
+	private AlternatingSequence<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>> counterexample(
+			int k) {
+		List<Pair<Map<String, Boolean>, Map<String, Boolean>>> states = new ArrayList<>();
+		List<Map<String, Boolean>> actions = new ArrayList<>();
+		for (int t = 0; t <= k; t++) {
+			Map<String, Boolean> in = valuation(inputs, inputLits.get(t));
+			if (t > 0) {
+				actions.add(in); // the action of a step is the next state's inputs
+			}
+			states.add(new Pair<>(in, valuation(registers, registerLits.get(t))));
+		}
+		return new AlternatingSequence<>(states, actions);
+	}
+
+	private Map<String, Boolean> valuation(String[] names, int[] lits) {
+		Map<String, Boolean> res = new HashMap<>();
+		for (int i = 0; i < names.length; i++) {
+			res.put(names[i], solver.modelValue(lits[i]));
+		}
+		return res;
+	}
+
+	/**
+	 * @return The SAT solver, for statistics.
+	 */
+	public SatSolver getSolver() {
+		return solver;
+	}
+
+	/**
+	 * Encodes expressions over the inputs and registers of one step, sharing
+	 * the encoding of a subexpression object that occurs twice.
+	 */
+	private final class Step {
+
+		private final int t;
+		private final Map<LogicalExp, Integer> memo = new IdentityHashMap<>();
+
+		Step(int t) {
+			this.t = t;
+		}
+
+		int encode(LogicalExp exp) {
+			return encode(exp, false);
+		}
+
+		int encode(LogicalExp exp, boolean withOutputs) {
+			Integer known = memo.get(exp);
+			if (known != null) {
+				return known;
+			}
+			LogicalOp op;
+			int left, right;
+			if (exp instanceof AtomicLogicalExp) {
+				AtomicLogicalExp e = (AtomicLogicalExp) exp;
+				op = e.getOp();
+				left = name(e.getLeft(), withOutputs);
+				right = op == LogicalOp.not ? left : name(e.getRight(), withOutputs);
+			} else if (exp instanceof CompoundLogicalExp) {
+				CompoundLogicalExp e = (CompoundLogicalExp) exp;
+				op = e.getOp();
+				left = encode(e.getLeft(), withOutputs);
+				right = op == LogicalOp.not ? left : encode(e.getRight(), withOutputs);
+			} else {
+				throw new IllegalArgumentException("Cannot encode expression " + exp);
+			}
+			int res;
+			switch (op) {
+				case and:
+					res = enc.and(left, right);
+					break;
+				case or:
+					res = enc.or(left, right);
+					break;
+				case xor:
+					res = enc.xor(left, right);
+					break;
+				default:
+					res = -left;
+					break;
+			}
+			memo.put(exp, res);
+			return res;
+		}
+
+		private int name(String name, boolean withOutputs) {
+			int i = indexOf(inputs, name);
+			if (i >= 0) {
+				return inputLits.get(t)[i];
+			}
+			int j = indexOf(registers, name);
+			if (j >= 0) {
+				return registerLits.get(t)[j];
+			}
+			if (withOutputs && c.getOutputPortNames().contains(name)) {
+				for (Pair<String, LogicalExp> rule : c.getOutputRules()) {
+					if (rule.first.equals(name)) {
+						return encode(rule.second, false);
+					}
+				}
+				return enc.constant(false);
+			}
+			throw new IllegalArgumentException("Unknown circuit variable " + name);
+		}
+	}
+
+}
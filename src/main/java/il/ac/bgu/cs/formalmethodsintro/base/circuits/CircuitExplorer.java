@@ -0,0 +1,295 @@
+package il.ac.bgu.cs.formalmethodsintro.base.circuits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.VisitedStateStore;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Explores the reachable states of a {@link Circuit}, with inputs and
+ * registers encoded as bitmasks. A state is the long
+ * {@code registers << inputCount | inputs}; only states reachable from the
+ * all-false registers are ever generated. The {@code Pair<Map, Map>} states of
+ * {@link #toTransitionSystem()} are {@link BitValuation} views over these
+ * bits.
+ *
+ * Supports up to 30 inputs (each state has {@code 2^inputs} successors) and
+ * up to 63 inputs and registers together.
+ *
+ * For a {@link CircuitImp}, steps run on its {@link CompiledCircuit}, and the
+ * breadth-first search steps 64 frontier states per pass in bit-parallel mode.
+ */
+public class CircuitExplorer {
+
+	private final Circuit c;
+	private final String[] inputs;
+	private final String[] registers;
+	private final String[] outputs;
+	private final int inputCount;
+	private final long inputMask;
+	private final CompiledCircuit compiled;
+
+	private long[] reachable;
+
+	public CircuitExplorer(Circuit c) {
+		this.c = c;
+		this.inputs = new TreeSet<>(c.getInputPortNames()).toArray(new String[0]);
+		this.registers = new TreeSet<>(c.getRegisterNames()).toArray(new String[0]);
+		this.outputs = new TreeSet<>(c.getOutputPortNames()).toArray(new String[0]);
+		if (inputs.length > 30 || inputs.length + registers.length > 63) {
+			throw new IllegalArgumentException("Circuit too wide: " + inputs.length + " inputs and "
+					+ registers.length + " registers");
+		}
+		this.inputCount = inputs.length;
+		this.inputMask = (1L << inputCount) - 1;
+		this.compiled = compile(c);
+	}
+
+	private static CompiledCircuit compile(Circuit c) {
+		if (c instanceof CircuitImp) {
+			try {
+				return ((CircuitImp) c).compile();
+			} catch (IllegalArgumentException e) {
+				// fall back to the map-based step functions
+			}
+		}
+		return null;
+	}
+
+	public String[] getInputNames() {
+		return inputs.clone();
+	}
+
+	public String[] getRegisterNames() {
+		return registers.clone();
+	}
+
+	public String[] getOutputNames() {
+		return outputs.clone();
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	/// Bit-level step functions
+	public long inputsOf(long state) {
+		return state & inputMask;
+	}
+
+	public long registersOf(long state) {
+		return state >>> inputCount;
+	}
+
+	public long state(long inputBits, long registerBits) {
+		return (registerBits << inputCount) | inputBits;
+	}
+
+	/**
+	 * @return The register bits after a step from the given inputs and
+	 * registers.
+	 */
+	public long nextRegisters(long inputBits, long registerBits) {
+		if (compiled != null) {
+			return compiled.nextRegisters(state(inputBits, registerBits));
+		}
+		return BitValuation.encode(registers,
+				c.updateRegisters(new BitValuation(inputs, inputBits), new BitValuation(registers, registerBits)));
+	}
+
+	/**
+	 * @return The output bits for the given inputs and registers.
+	 */
+	public long outputs(long inputBits, long registerBits) {
+		if (compiled != null) {
+			return compiled.outputs(state(inputBits, registerBits));
+		}
+		return BitValuation.encode(outputs,
+				c.computeOutputs(new BitValuation(inputs, inputBits), new BitValuation(registers, registerBits)));
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	/// Exploration
+	/**
+	 * @return The reachable states, in discovery (breadth-first) order.
+	 * Computed once.
+	 */
+	public long[] reachableStates() {
+		if (reachable == null) {
+			LongSet seen = new LongSet();
+			long[] queue = new long[16];
+			int head = 0, tail = 0;
+			for (long in = 0; in <= inputMask; in++) {
+				seen.add(in);
+				if (tail == queue.length) {
+					queue = Arrays.copyOf(queue, tail * 2);
+				}
+				queue[tail++] = in;
+			}
+			while (head < tail) {
+				int batch = Math.min(64, tail - head);
+				long[] nexts = nextRegisters(queue, head, batch);
+				head += batch;
+				for (long regs : nexts) {
+					for (long in = 0; in <= inputMask; in++) {
+						long next = state(in, regs);
+						if (seen.add(next)) {
+							if (tail == queue.length) {
+								queue = Arrays.copyOf(queue, tail * 2);
+							}
+							queue[tail++] = next;
+						}
+					}
+				}
+			}
+			reachable = Arrays.copyOf(queue, tail);
+		}
+		return reachable.clone();
+	}
+
+	/**
+	 * @return The next register bits of {@code states[from..from+count)},
+	 * {@code count <= 64}.
+	 */
+	private long[] nextRegisters(long[] states, int from, int count) {
+		if (compiled != null) {
+			return CompiledCircuit.fromLanes(compiled.nextRegisters(compiled.toLanes(states, from, count)), count);
+		}
+		long[] res = new long[count];
+		for (int k = 0; k < count; k++) {
+			long s = states[from + k];
+			res[k] = nextRegisters(inputsOf(s), registersOf(s));
+		}
+		return res;
+	}
+
+	/**
+	 * @return The {@code Pair<Map, Map>} view of a state: (inputs, registers).
+	 */
+	public Pair<Map<String, Boolean>, Map<String, Boolean>> toPair(long state) {
+		return new Pair<>(new BitValuation(inputs, inputsOf(state)), new BitValuation(registers, registersOf(state)));
+	}
+
+	/**
+	 * Builds the reachable transition system, as
+	 * {@link il.ac.bgu.cs.formalmethodsintro.base.FvmFacade#transitionSystemFromCircuit(Circuit)}
+	 * specifies it.
+	 *
+	 * @return The transition system of the circuit.
+	 */
+	public TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> toTransitionSystem() {
+		TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> ts = new TransitionSystem<>();
+		ts.setName("Transition System From Circuit");
+		for (String name : registers) {
+			ts.addAtomicProposition(name);
+		}
+		for (String name : inputs) {
+			ts.addAtomicProposition(name);
+		}
+		for (String name : outputs) {
+			ts.addAtomicProposition(name);
+		}
+
+		List<Map<String, Boolean>> actions = inputValuations();
+		for (Map<String, Boolean> a : actions) {
+			ts.addAction(a);
+		}
+
+		long[] states = reachableStates();
+		Map<Long, Pair<Map<String, Boolean>, Map<String, Boolean>>> views = new HashMap<>();
+		for (long s : states) {
+			views.put(s, toPair(s));
+		}
+		for (long in = 0; in <= inputMask; in++) {
+			ts.addInitialState(views.get(in));
+		}
+		for (long s : states) {
+			Pair<Map<String, Boolean>, Map<String, Boolean>> from = views.get(s);
+			long in = inputsOf(s);
+			long regs = registersOf(s);
+			long next = nextRegisters(in, regs);
+			for (long a = 0; a <= inputMask; a++) {
+				ts.addTransition(new TSTransition<>(from, actions.get((int) a), views.get(state(a, next))));
+			}
+			addLabels(ts, from, inputs, in);
+			addLabels(ts, from, registers, regs);
+			addLabels(ts, from, outputs, outputs(in, regs));
+		}
+		return ts;
+	}
+
+	/**
+	 * @return All input valuations, indexed by their bits.
+	 */
+	public List<Map<String, Boolean>> inputValuations() {
+		List<Map<String, Boolean>> res = new ArrayList<>((int) inputMask + 1);
+		for (int in = 0; in <= inputMask; in++) {
+			res.add(new BitValuation(inputs, in));
+		}
+		return res;
+	}
+
+	private static void addLabels(TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> ts,
+			Pair<Map<String, Boolean>, Map<String, Boolean>> state, String[] names, long bits) {
+		for (int i = 0; i < names.length; i++) {
+			if ((bits & (1L << i)) != 0) {
+				ts.addToLabel(state, names[i]);
+			}
+		}
+	}
+
+	/**
+	 * An open-addressing set of longs.
+	 */
+	private static final class LongSet {
+
+		private static final long EMPTY = Long.MIN_VALUE;
+
+		private long[] table = new long[64];
+		private int size = 0;
+		private boolean hasEmpty = false;
+
+		LongSet() {
+			Arrays.fill(table, EMPTY);
+		}
+
+		boolean add(long v) {
+			if (v == EMPTY) {
+				boolean added = !hasEmpty;
+				hasEmpty = true;
+				return added;
+			}
+			if ((size + 1) * 2 > table.length) {
+				grow();
+			}
+			int mask = table.length - 1;
+			int i = (int) (VisitedStateStore.mix64(v) & mask);
+			while (table[i] != EMPTY) {
+				if (table[i] == v) {
+					return false;
+				}
+				i = (i + 1) & mask;
+			}
+			table[i] = v;
+			size++;
+			return true;
+		}
+
+		private void grow() {
+			long[] old = table;
+			table = new long[old.length * 2];
+			Arrays.fill(table, EMPTY);
+			size = 0;
+			for (long v : old) {
+				if (v != EMPTY) {
+					add(v);
+				}
+			}
+		}
+	}
+
+}
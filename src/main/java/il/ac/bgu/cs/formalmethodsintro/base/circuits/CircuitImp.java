@@ -1,5 +1,6 @@
 package il.ac.bgu.cs.formalmethodsintro.base.circuits;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.HashSet;
@@ -21,6 +22,14 @@ public class CircuitImp implements Circuit{
 	private Set<Pair<String, LogicalExp>> registersRules;
 	private Set<Pair<String, LogicalExp>> outputRules;
 	
+	/**
+	 * The rules compiled to gates; dropped whenever a rule is added. Volatile
+	 * so that simulating threads see a fully built instance; racing threads
+	 * may each compile, which is harmless.
+	 */
+	private volatile CompiledCircuit compiled;
+	private volatile boolean compilable = true;
+	
 	public CircuitImp(Set<String> registersNames, Set<String> inputNames, Set<String> outputNames){
 		registers = registersNames;//new HashMap<String, Boolean>();
 		inputs = inputNames;//new HashMap<String, Boolean>();
@@ -52,6 +61,10 @@ public class CircuitImp implements Circuit{
 
 	@Override
 	public Map<String, Boolean> updateRegisters(Map<String, Boolean> inputs, Map<String, Boolean> registers) {
+		CompiledCircuit cc = compiled();
+		if (cc != null) {
+			return cc.decodeRegisters(cc.nextRegisters(cc.encode(inputs, registers)));
+		}
 		HashMap<String, Boolean> values = new HashMap<String, Boolean>();
 		HashMap<String, Boolean> output = new HashMap<String, Boolean>();
 		values.putAll(inputs);
@@ -59,13 +72,15 @@ public class CircuitImp implements Circuit{
 		for(Pair<String, LogicalExp> rule : registersRules){
 			output.put(rule.first, rule.second.getResult(values));
 		}
-		//this.inputs = (HashMap<String, Boolean>) inputs;
-		//this.registers = (HashMap<String, Boolean>) registers;
 		return output;
 	}
 
 	@Override
 	public Map<String, Boolean> computeOutputs(Map<String, Boolean> inputs, Map<String, Boolean> registers) {
+		CompiledCircuit cc = compiled();
+		if (cc != null) {
+			return cc.decodeOutputs(cc.outputs(cc.encode(inputs, registers)));
+		}
 		HashMap<String, Boolean> values = new HashMap<String, Boolean>();
 		HashMap<String, Boolean> output = new HashMap<String, Boolean>();
 		values.putAll(inputs);
@@ -73,12 +88,52 @@ public class CircuitImp implements Circuit{
 		for(Pair<String, LogicalExp> rule : outputRules){
 			output.put(rule.first, rule.second.getResult(values));
 		}
-		//this.inputs = (HashMap<String, Boolean>) inputs;
-		//this.registers = (HashMap<String, Boolean>) registers;
 		return output;
 	}
 	
+	public Set<Pair<String, LogicalExp>> getRegisterRules() {
+		return Collections.unmodifiableSet(registersRules);
+	}
+	
+	public Set<Pair<String, LogicalExp>> getOutputRules() {
+		return Collections.unmodifiableSet(outputRules);
+	}
+	
+	/**
+	 * Compiles the rules to a flat gate array, once per set of rules.
+	 * 
+	 * @return The compiled rules.
+	 * @throws IllegalArgumentException if a rule mentions an unknown name or
+	 * the circuit is wider than 64 bits.
+	 */
+	public CompiledCircuit compile() {
+		CompiledCircuit cc = compiled;
+		if (cc == null) {
+			cc = new CompiledCircuit(this);
+			compiled = cc;
+		}
+		return cc;
+	}
+	
+	/**
+	 * @return The compiled rules, or {@code null} if they cannot be compiled,
+	 * in which case the rules are interpreted as before.
+	 */
+	private CompiledCircuit compiled() {
+		CompiledCircuit cc = compiled;
+		if (cc == null && compilable) {
+			try {
+				cc = compile();
+			} catch (IllegalArgumentException e) {
+				compilable = false;
+			}
+		}
+		return cc;
+	}
+	
 	public void addRule(Pair<String, LogicalExp> rule){
+		compiled = null;
+		compilable = true;
 		if(registers.contains(rule.first))
 			registersRules.add(rule);
 		else if(outputs.contains(rule.first))
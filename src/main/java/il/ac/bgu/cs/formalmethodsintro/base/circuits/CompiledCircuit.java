@@ -0,0 +1,374 @@
+package il.ac.bgu.cs.formalmethodsintro.base.circuits;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp.LogicalOp;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * The register and output rules of a circuit, compiled into a flat array of
+ * gate instructions over bit indices.
+ *
+ * Variables are numbered inputs first, then registers, each group in name
+ * order, so a state is the word {@code registers << inputCount | inputs},
+ * exactly as in {@link CircuitExplorer}. Each gate reads two slots (variables
+ * or earlier gates) and writes a new one; identical gates are shared.
+ *
+ * Two evaluation modes are offered. The scalar mode ({@link #nextRegisters(long)},
+ * {@link #outputs(long)}) takes a whole state as one {@code long} and returns
+ * the new registers (or outputs) as one {@code long}. The bit-parallel mode
+ * ({@link #nextRegisters(long[])}, {@link #outputs(long[])}) takes one word per
+ * variable whose 64 bits are 64 independent states, and evaluates all of them
+ * in one pass.
+ */
+public final class CompiledCircuit {
+
+	private static final int AND = 0, OR = 1, XOR = 2, NOT = 3;
+
+	private final String[] inputs;
+	private final String[] registers;
+	private final String[] outputs;
+	private final int variableCount;
+
+	/**
+	 * Gates, as triples (op, left slot, right slot). Gate {@code g} writes slot
+	 * {@code variableCount + g}.
+	 */
+	private final int[] code;
+	private final int slotCount;
+
+	/**
+	 * Slot holding the next value of each register / each output, or -1 for
+	 * "always false" (no rule).
+	 */
+	private final int[] registerSlots;
+	private final int[] outputSlots;
+
+	/**
+	 * Compiles the rules of {@code c}.
+	 *
+	 * @param c A circuit.
+	 * @throws IllegalArgumentException if a rule refers to a name that is not
+	 * an input or a register, or the circuit is wider than 64 bits.
+	 */
+	public CompiledCircuit(CircuitImp c) {
+		inputs = new TreeSet<>(c.getInputPortNames()).toArray(new String[0]);
+		registers = new TreeSet<>(c.getRegisterNames()).toArray(new String[0]);
+		outputs = new TreeSet<>(c.getOutputPortNames()).toArray(new String[0]);
+		variableCount = inputs.length + registers.length;
+		if (variableCount > 64 || outputs.length > 64) {
+			throw new IllegalArgumentException("Cannot compile a circuit with more than 64 inputs and registers, or 64 outputs");
+		}
+
+		Map<String, Integer> variables = new HashMap<>();
+		for (int i = 0; i < inputs.length; i++) {
+			variables.put(inputs[i], i);
+		}
+		for (int i = 0; i < registers.length; i++) {
+			variables.put(registers[i], inputs.length + i);
+		}
+
+		Builder b = new Builder(variables, variableCount);
+		registerSlots = b.compileRules(c.getRegisterRules(), registers);
+		outputSlots = b.compileRules(c.getOutputRules(), outputs);
+		code = Arrays.copyOf(b.code, b.size * 3);
+		slotCount = variableCount + b.size;
+	}
+
+	public String[] getInputNames() {
+		return inputs.clone();
+	}
+
+	public String[] getRegisterNames() {
+		return registers.clone();
+	}
+
+	public String[] getOutputNames() {
+		return outputs.clone();
+	}
+
+	/**
+	 * @return A mask of the registers (in {@link #getRegisterNames()} order)
+	 * that have a rule.
+	 */
+	public long getRegisterRuleMask() {
+		return ruleMask(registerSlots);
+	}
+
+	/**
+	 * @return A mask of the outputs (in {@link #getOutputNames()} order) that
+	 * have a rule.
+	 */
+	public long getOutputRuleMask() {
+		return ruleMask(outputSlots);
+	}
+
+	private static long ruleMask(int[] slots) {
+		long res = 0;
+		for (int i = 0; i < slots.length; i++) {
+			if (slots[i] >= 0) {
+				res |= 1L << i;
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @return Number of gates after sharing identical ones.
+	 */
+	public int getGateCount() {
+		return code.length / 3;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	/// Conversions
+	/**
+	 * @return The state word of the given valuations; missing names are false.
+	 */
+	public long encode(Map<String, Boolean> inputValues, Map<String, Boolean> registerValues) {
+		return (BitValuation.encode(registers, registerValues) << inputs.length)
+				| BitValuation.encode(inputs, inputValues);
+	}
+
+	/**
+	 * @return The registers that have a rule, mapped to their bit in
+	 * {@code bits}.
+	 */
+	public Map<String, Boolean> decodeRegisters(long bits) {
+		return decode(registers, registerSlots, bits);
+	}
+
+	/**
+	 * @return The outputs that have a rule, mapped to their bit in
+	 * {@code bits}.
+	 */
+	public Map<String, Boolean> decodeOutputs(long bits) {
+		return decode(outputs, outputSlots, bits);
+	}
+
+	private static Map<String, Boolean> decode(String[] names, int[] slots, long bits) {
+		HashMap<String, Boolean> res = new HashMap<>();
+		for (int i = 0; i < names.length; i++) {
+			if (slots[i] >= 0) {
+				res.put(names[i], (bits & (1L << i)) != 0);
+			}
+		}
+		return res;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	/// Scalar mode
+	/**
+	 * @param state Input bits, then register bits.
+	 * @return The register bits after one step.
+	 */
+	public long nextRegisters(long state) {
+		return collect(runScalar(state), registerSlots);
+	}
+
+	/**
+	 * @param state Input bits, then register bits.
+	 * @return The output bits in {@code state}.
+	 */
+	public long outputs(long state) {
+		return collect(runScalar(state), outputSlots);
+	}
+
+	private long[] runScalar(long state) {
+		long[] slots = new long[slotCount];
+		for (int v = 0; v < variableCount; v++) {
+			slots[v] = (state >>> v) & 1;
+		}
+		run(slots);
+		return slots;
+	}
+
+	private static long collect(long[] slots, int[] targets) {
+		long res = 0;
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] >= 0) {
+				res |= (slots[targets[i]] & 1) << i;
+			}
+		}
+		return res;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	/// Bit-parallel mode
+	/**
+	 * @param lanes One word per variable (inputs, then registers); bit
+	 * {@code k} of every word belongs to state {@code k}.
+	 * @return One word per register, holding its next value in each lane.
+	 */
+	public long[] nextRegisters(long[] lanes) {
+		return collectLanes(runLanes(lanes), registerSlots);
+	}
+
+	/**
+	 * @param lanes One word per variable (inputs, then registers); bit
+	 * {@code k} of every word belongs to state {@code k}.
+	 * @return One word per output, holding its value in each lane.
+	 */
+	public long[] outputs(long[] lanes) {
+		return collectLanes(runLanes(lanes), outputSlots);
+	}
+
+	private long[] runLanes(long[] lanes) {
+		if (lanes.length != variableCount) {
+			throw new IllegalArgumentException("Expected " + variableCount + " lanes, got " + lanes.length);
+		}
+		long[] slots = Arrays.copyOf(lanes, slotCount);
+		run(slots);
+		return slots;
+	}
+
+	private static long[] collectLanes(long[] slots, int[] targets) {
+		long[] res = new long[targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			res[i] = targets[i] >= 0 ? slots[targets[i]] : 0;
+		}
+		return res;
+	}
+
+	/**
+	 * Transposes up to 64 states into lanes: bit {@code k} of word {@code v}
+	 * is bit {@code v} of {@code states[from + k]}.
+	 */
+	public long[] toLanes(long[] states, int from, int count) {
+		long[] lanes = new long[variableCount];
+		for (int k = 0; k < count; k++) {
+			long s = states[from + k];
+			while (s != 0) {
+				int v = Long.numberOfTrailingZeros(s);
+				lanes[v] |= 1L << k;
+				s &= s - 1;
+			}
+		}
+		return lanes;
+	}
+
+	/**
+	 * The inverse of {@link #toLanes(long[], int, int)} for the result words:
+	 * bit {@code i} of result {@code k} is bit {@code k} of {@code lanes[i]}.
+	 */
+	public static long[] fromLanes(long[] lanes, int count) {
+		long[] res = new long[count];
+		for (int i = 0; i < lanes.length; i++) {
+			long w = lanes[i];
+			while (w != 0) {
+				int k = Long.numberOfTrailingZeros(w);
+				if (k >= count) {
+					break;
+				}
+				res[k] |= 1L << i;
+				w &= w - 1;
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Runs the gates. {@code NOT} complements the whole word, which is what
+	 * lane mode needs, as every bit is a separate state. In scalar mode only
+	 * bit 0 of a slot is meaningful: the upper bits that {@code ~} sets are
+	 * carried along by the other gates, which work bitwise, and dropped by the
+	 * {@code & 1} in {@link #collect}.
+	 */
+	private void run(long[] slots) {
+		int out = variableCount;
+		for (int pc = 0; pc < code.length; pc += 3) {
+			long a = slots[code[pc + 1]];
+			switch (code[pc]) {
+				case AND:
+					slots[out++] = a & slots[code[pc + 2]];
+					break;
+				case OR:
+					slots[out++] = a | slots[code[pc + 2]];
+					break;
+				case XOR:
+					slots[out++] = a ^ slots[code[pc + 2]];
+					break;
+				default:
+					slots[out++] = ~a;
+					break;
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	/// Compilation
+	private static final class Builder {
+
+		final Map<String, Integer> variables;
+		final int variableCount;
+		final Map<Long, Integer> shared = new HashMap<>();
+		int[] code = new int[48];
+		int size = 0;
+
+		Builder(Map<String, Integer> variables, int variableCount) {
+			this.variables = variables;
+			this.variableCount = variableCount;
+		}
+
+		int[] compileRules(Set<Pair<String, LogicalExp>> rules, String[] targets) {
+			int[] slots = new int[targets.length];
+			Arrays.fill(slots, -1);
+			List<String> names = Arrays.asList(targets);
+			for (Pair<String, LogicalExp> rule : rules) {
+				slots[names.indexOf(rule.first)] = compile(rule.second);
+			}
+			return slots;
+		}
+
+		int compile(LogicalExp exp) {
+			if (exp instanceof AtomicLogicalExp) {
+				AtomicLogicalExp e = (AtomicLogicalExp) exp;
+				int left = variable(e.getLeft());
+				return gate(e.getOp(), left, e.getOp() == LogicalOp.not ? left : variable(e.getRight()));
+			}
+			if (exp instanceof CompoundLogicalExp) {
+				CompoundLogicalExp e = (CompoundLogicalExp) exp;
+				int left = compile(e.getLeft());
+				return gate(e.getOp(), left, e.getOp() == LogicalOp.not ? left : compile(e.getRight()));
+			}
+			throw new IllegalArgumentException("Cannot compile expression " + exp);
+		}
+
+		int variable(String name) {
+			Integer v = variables.get(name);
+			if (v == null) {
+				throw new IllegalArgumentException("Unknown circuit variable " + name);
+			}
+			return v;
+		}
+
+		int gate(LogicalOp op, int a, int b) {
+			int opcode = op.ordinal();
+			if (opcode != NOT && a > b) { // and/or/xor are commutative
+				int t = a;
+				a = b;
+				b = t;
+			}
+			long key = ((long) opcode << 58) | ((long) a << 29) | b;
+			Integer existing = shared.get(key);
+			if (existing != null) {
+				return existing;
+			}
+			if (size * 3 == code.length) {
+				code = Arrays.copyOf(code, code.length * 2);
+			}
+			code[size * 3] = opcode;
+			code[size * 3 + 1] = a;
+			code[size * 3 + 2] = b;
+			int slot = variableCount + size++;
+			shared.put(key, slot);
+			return slot;
+		}
+	}
+
+}
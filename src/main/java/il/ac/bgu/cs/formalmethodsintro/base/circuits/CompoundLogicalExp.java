@@ -16,6 +16,21 @@ public class CompoundLogicalExp implements LogicalExp {
 		this.op = op;
 	}
 	
+	public LogicalExp getLeft() {
+		return left;
+	}
+
+	/**
+	 * @return The right operand; not used by {@link LogicalOp#not}.
+	 */
+	public LogicalExp getRight() {
+		return right;
+	}
+
+	public LogicalOp getOp() {
+		return op;
+	}
+
 	@Override
 	public boolean getResult(HashMap<String, Boolean> values){
 		if(op == LogicalOp.and){
@@ -0,0 +1,403 @@
+package il.ac.bgu.cs.formalmethodsintro.base.circuits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import il.ac.bgu.cs.formalmethodsintro.base.bdd.Bdd;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp.LogicalOp;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
+
+/**
+ * Symbolic (BDD-based) reachability and invariant checking for a
+ * {@link CircuitImp}, over the transition system that
+ * {@link il.ac.bgu.cs.formalmethodsintro.base.FvmFacade#transitionSystemFromCircuit(Circuit)}
+ * would build, without enumerating its states.
+ *
+ * Each input has one BDD variable, each register a current and a next one.
+ * The transition relation is {@code AND_r (r' <-> rule_r(inputs, registers))};
+ * inputs are free in every state, so the reachable sets only mention
+ * registers. Reachability is a breadth-first fixpoint, and each new layer
+ * (frontier) is kept so that a violation found in layer {@code k} yields a
+ * shortest counterexample of {@code k + 1} states.
+ *
+ * The initial variable order follows the first appearance of each name in the
+ * rules, with every register's next variable right below its current one.
+ * When the transition relation is large, the order is then improved by
+ * sifting (inputs and register pairs as blocks).
+ */
+public class SymbolicCircuitChecker {
+
+	/** Relations smaller than this (in nodes) are not worth reordering. */
+	private static final int SIFT_THRESHOLD = 256;
+
+	private final CircuitImp c;
+	private final String[] inputs;
+	private final String[] registers;
+	private final Map<String, Integer> inputVar = new HashMap<>();
+	private final Map<String, Integer> currentVar = new HashMap<>();
+	private final Map<String, Integer> nextVar = new HashMap<>();
+	private final Bdd bdd;
+
+	private int transitions;
+	private int currentCube;
+	private int[] nextToCurrent;
+	private int[] nextVars;
+	private final List<Integer> layers = new ArrayList<>();
+	private int reachable;
+	private boolean complete = false;
+
+	public SymbolicCircuitChecker(CircuitImp c) {
+		this(c, true);
+	}
+
+	/**
+	 * @param c The circuit.
+	 * @param reorder Whether to sift the variable order once the transition
+	 * relation is built.
+	 */
+	public SymbolicCircuitChecker(CircuitImp c, boolean reorder) {
+		this.c = c;
+		this.inputs = new TreeSet<>(c.getInputPortNames()).toArray(new String[0]);
+		this.registers = new TreeSet<>(c.getRegisterNames()).toArray(new String[0]);
+		this.bdd = new Bdd(inputs.length + 2 * registers.length);
+		for (int i = 0; i < inputs.length; i++) {
+			inputVar.put(inputs[i], i);
+		}
+		for (int j = 0; j < registers.length; j++) {
+			currentVar.put(registers[j], inputs.length + 2 * j);
+			nextVar.put(registers[j], inputs.length + 2 * j + 1);
+		}
+		bdd.reorder(initialOrder());
+
+		transitions = bdd.ref(buildTransitions());
+		if (reorder && bdd.nodeCount(transitions) > SIFT_THRESHOLD) {
+			transitions = bdd.sift(groups(), transitions)[0];
+		}
+
+		nextToCurrent = new int[bdd.getVarCount()];
+		Arrays.fill(nextToCurrent, -1);
+		nextVars = new int[registers.length];
+		int[] current = new int[inputs.length + registers.length];
+		for (int i = 0; i < inputs.length; i++) {
+			current[i] = inputVar.get(inputs[i]);
+		}
+		for (int j = 0; j < registers.length; j++) {
+			nextVars[j] = nextVar.get(registers[j]);
+			nextToCurrent[nextVars[j]] = currentVar.get(registers[j]);
+			current[inputs.length + j] = currentVar.get(registers[j]);
+		}
+		currentCube = bdd.ref(bdd.cube(current));
+
+		int init = bdd.ref(Bdd.TRUE);
+		for (String r : registers) {
+			int conj = bdd.and(init, bdd.nithVar(currentVar.get(r)));
+			bdd.deref(init);
+			init = bdd.ref(conj);
+		}
+		layers.add(init);
+		reachable = bdd.ref(init);
+	}
+
+	/**
+	 * Names in order of first appearance in the register rules (by register
+	 * name), then the output rules; names never mentioned go last.
+	 */
+	private int[] initialOrder() {
+		Set<String> seen = new LinkedHashSet<>();
+		for (Pair<String, LogicalExp> rule : sortedRules(c.getRegisterRules())) {
+			collectNames(rule.second, seen);
+			seen.add(rule.first);
+		}
+		for (Pair<String, LogicalExp> rule : sortedRules(c.getOutputRules())) {
+			collectNames(rule.second, seen);
+		}
+		Collections.addAll(seen, inputs);
+		Collections.addAll(seen, registers);
+		int[] order = new int[bdd.getVarCount()];
+		int l = 0;
+		for (String name : seen) {
+			if (inputVar.containsKey(name)) {
+				order[l++] = inputVar.get(name);
+			} else if (currentVar.containsKey(name)) {
+				order[l++] = currentVar.get(name);
+				order[l++] = nextVar.get(name);
+			}
+		}
+		return order;
+	}
+
+	private static List<Pair<String, LogicalExp>> sortedRules(Set<Pair<String, LogicalExp>> rules) {
+		List<Pair<String, LogicalExp>> res = new ArrayList<>(rules);
+		res.sort((a, b) -> a.first.compareTo(b.first));
+		return res;
+	}
+
+	private static void collectNames(LogicalExp exp, Set<String> names) {
+		if (exp instanceof AtomicLogicalExp) {
+			AtomicLogicalExp e = (AtomicLogicalExp) exp;
+			names.add(e.getLeft());
+			if (e.getOp() != LogicalOp.not) {
+				names.add(e.getRight());
+			}
+		} else if (exp instanceof CompoundLogicalExp) {
+			CompoundLogicalExp e = (CompoundLogicalExp) exp;
+			collectNames(e.getLeft(), names);
+			if (e.getOp() != LogicalOp.not) {
+				collectNames(e.getRight(), names);
+			}
+		}
+	}
+
+	private int[][] groups() {
+		int[][] res = new int[registers.length][];
+		for (int j = 0; j < registers.length; j++) {
+			res[j] = new int[]{currentVar.get(registers[j]), nextVar.get(registers[j])};
+		}
+		return res;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	/// Encoding
+	private int buildTransitions() {
+		int t = bdd.ref(Bdd.TRUE);
+		for (Pair<String, LogicalExp> rule : sortedRules(c.getRegisterRules())) {
+			int f = bdd.ref(toBdd(rule.second, false));
+			int step = bdd.ref(bdd.biimp(bdd.ithVar(nextVar.get(rule.first)), f));
+			int conj = bdd.and(t, step);
+			bdd.deref(t);
+			bdd.deref(step);
+			bdd.deref(f);
+			t = bdd.ref(conj);
+		}
+		// a register without a rule is reset to false on every step
+		for (String r : registers) {
+			if (!hasRule(r)) {
+				int conj = bdd.and(t, bdd.nithVar(nextVar.get(r)));
+				bdd.deref(t);
+				t = bdd.ref(conj);
+			}
+		}
+		bdd.deref(t);
+		return t;
+	}
+
+	private boolean hasRule(String register) {
+		for (Pair<String, LogicalExp> rule : c.getRegisterRules()) {
+			if (rule.first.equals(register)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param withOutputs Whether output names may appear, standing for their
+	 * rules.
+	 * @return An unreferenced BDD of {@code exp} over the current variables.
+	 * @throws IllegalArgumentException if {@code exp} mentions an unknown name.
+	 */
+	private int toBdd(LogicalExp exp, boolean withOutputs) {
+		LogicalOp op;
+		int left, right;
+		if (exp instanceof AtomicLogicalExp) {
+			AtomicLogicalExp e = (AtomicLogicalExp) exp;
+			op = e.getOp();
+			left = bdd.ref(nameToBdd(e.getLeft(), withOutputs));
+			right = op == LogicalOp.not ? Bdd.TRUE : bdd.ref(nameToBdd(e.getRight(), withOutputs));
+		} else if (exp instanceof CompoundLogicalExp) {
+			CompoundLogicalExp e = (CompoundLogicalExp) exp;
+			op = e.getOp();
+			left = bdd.ref(toBdd(e.getLeft(), withOutputs));
+			right = op == LogicalOp.not ? Bdd.TRUE : bdd.ref(toBdd(e.getRight(), withOutputs));
+		} else {
+			throw new IllegalArgumentException("Cannot encode expression " + exp);
+		}
+		int res;
+		switch (op) {
+			case and:
+				res = bdd.and(left, right);
+				break;
+			case or:
+				res = bdd.or(left, right);
+				break;
+			case xor:
+				res = bdd.xor(left, right);
+				break;
+			default:
+				res = bdd.not(left);
+				break;
+		}
+		bdd.deref(left);
+		bdd.deref(right);
+		return res;
+	}
+
+	private int nameToBdd(String name, boolean withOutputs) {
+		if (inputVar.containsKey(name)) {
+			return bdd.ithVar(inputVar.get(name));
+		}
+		if (currentVar.containsKey(name)) {
+			return bdd.ithVar(currentVar.get(name));
+		}
+		if (withOutputs && c.getOutputPortNames().contains(name)) {
+			for (Pair<String, LogicalExp> rule : c.getOutputRules()) {
+				if (rule.first.equals(name)) {
+					return toBdd(rule.second, false);
+				}
+			}
+			return Bdd.FALSE;
+		}
+		throw new IllegalArgumentException("Unknown circuit variable " + name);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	/// Reachability
+	/**
+	 * Computes one more breadth-first layer.
+	 *
+	 * @return {@code false} iff the fixpoint was already reached.
+	 */
+	private boolean extend() {
+		if (complete) {
+			return false;
+		}
+		int frontier = layers.get(layers.size() - 1);
+		int image = bdd.ref(bdd.relProd(frontier, transitions, currentCube));
+		int renamed = bdd.ref(bdd.replace(image, nextToCurrent));
+		bdd.deref(image);
+		int unseen = bdd.ref(bdd.not(reachable));
+		int fresh = bdd.and(renamed, unseen);
+		bdd.deref(renamed);
+		bdd.deref(unseen);
+		if (fresh == Bdd.FALSE) {
+			complete = true;
+			return false;
+		}
+		layers.add(bdd.ref(fresh));
+		int all = bdd.or(reachable, fresh);
+		bdd.deref(reachable);
+		reachable = bdd.ref(all);
+		return true;
+	}
+
+	private void exploreAll() {
+		while (extend()) {
+		}
+	}
+
+	/**
+	 * @return Number of reachable states, i.e. (inputs, registers) pairs.
+	 */
+	public double reachableStateCount() {
+		exploreAll();
+		return bdd.satCount(reachable, registers.length) * Math.pow(2, inputs.length);
+	}
+
+	/**
+	 * @return Number of breadth-first steps until the fixpoint, i.e. the
+	 * largest distance of a reachable state from an initial one.
+	 */
+	public int getDiameter() {
+		exploreAll();
+		return layers.size() - 1;
+	}
+
+	/**
+	 * @param registerValues A register valuation; missing registers are false.
+	 * @return Whether some reachable state has these register values.
+	 */
+	public boolean isReachable(Map<String, Boolean> registerValues) {
+		exploreAll();
+		int[] vars = new int[registers.length];
+		boolean[] values = new boolean[registers.length];
+		for (int j = 0; j < registers.length; j++) {
+			vars[j] = currentVar.get(registers[j]);
+			values[j] = Boolean.TRUE.equals(registerValues.get(registers[j]));
+		}
+		return bdd.and(reachable, bdd.minterm(vars, values)) != Bdd.FALSE;
+	}
+
+	/**
+	 * Checks that {@code invariant} holds in every reachable state, stopping
+	 * at the first breadth-first layer that violates it.
+	 *
+	 * @param invariant A formula over input, register and output names.
+	 * @return A {@link VerificationSucceeded}, or a {@link VerificationFailed}
+	 * whose prefix is a shortest path from an initial state to a violating
+	 * state (inclusive) and whose cycle is empty.
+	 * @throws IllegalArgumentException if {@code invariant} mentions an unknown
+	 * name.
+	 */
+	public VerificationResult<Pair<Map<String, Boolean>, Map<String, Boolean>>> checkInvariant(LogicalExp invariant) {
+		int inv = bdd.ref(toBdd(invariant, true));
+		int bad = bdd.ref(bdd.not(inv));
+		bdd.deref(inv);
+		try {
+			for (int k = 0; k < layers.size() || extend(); k++) {
+				int hit = bdd.and(layers.get(k), bad);
+				if (hit != Bdd.FALSE) {
+					VerificationFailed<Pair<Map<String, Boolean>, Map<String, Boolean>>> failed = new VerificationFailed<>();
+					failed.setPrefix(trace(k, bdd.satOne(hit)));
+					failed.setCycle(Collections.emptyList());
+					return failed;
+				}
+			}
+			return new VerificationSucceeded<>();
+		} finally {
+			bdd.deref(bad);
+		}
+	}
+
+	/**
+	 * Walks back from {@code last}, in layer {@code k}, to an initial state,
+	 * picking in each layer a state whose successor registers match the next
+	 * state's.
+	 */
+	private List<Pair<Map<String, Boolean>, Map<String, Boolean>>> trace(int k, boolean[] last) {
+		List<boolean[]> states = new ArrayList<>();
+		states.add(last);
+		for (int i = k - 1; i >= 0; i--) {
+			boolean[] after = states.get(states.size() - 1);
+			boolean[] values = new boolean[registers.length];
+			for (int j = 0; j < registers.length; j++) {
+				values[j] = after[currentVar.get(registers[j])];
+			}
+			int into = bdd.ref(bdd.restrict(transitions, nextVars, values));
+			boolean[] before = bdd.satOne(bdd.and(layers.get(i), into));
+			bdd.deref(into);
+			states.add(before);
+		}
+		Collections.reverse(states);
+		List<Pair<Map<String, Boolean>, Map<String, Boolean>>> res = new ArrayList<>();
+		for (boolean[] s : states) {
+			Map<String, Boolean> in = new HashMap<>();
+			for (String name : inputs) {
+				in.put(name, s[inputVar.get(name)]);
+			}
+			Map<String, Boolean> regs = new HashMap<>();
+			for (String name : registers) {
+				regs.put(name, s[currentVar.get(name)]);
+			}
+			res.add(new Pair<>(in, regs));
+		}
+		return res;
+	}
+
+	/**
+	 * @return The BDD manager, for statistics.
+	 */
+	public Bdd getBdd() {
+		return bdd;
+	}
+
+}
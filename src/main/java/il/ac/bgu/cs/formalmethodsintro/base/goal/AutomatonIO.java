@@ -1,21 +1,21 @@
 package il.ac.bgu.cs.formalmethodsintro.base.goal;
 
 import java.io.File;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 
 import il.ac.bgu.cs.formalmethodsintro.base.automata.Automaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Guard;
 import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
 import il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.Acc;
 import il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.Alphabet;
@@ -50,22 +50,13 @@ public class AutomatonIO {
         gs.acc.stateID = new NoDuplicatesList<>();
         gs.transitionSet.transition = new NoDuplicatesList<>();
 
-        Set<L> symbols = new HashSet<>();
-
-        for (Entry<State, Map<Set<L>, Set<State>>> ent : aut.getTransitions().entrySet()) {
-
-            for (Entry<Set<L>, Set<State>> tr : ent.getValue().entrySet()) {
-                Set<L> symbol = tr.getKey();
-
-                for (L s : symbol) {
-                    gs.alphabet.proposition.add(s.toString());
-                    symbols.add(s);
-                }
-            }
+        List<L> propositions = aut.getPropositions();
+        for (L p : propositions) {
+            gs.alphabet.proposition.add(p.toString());
         }
 
         long tid = 1;
-        for (Entry<State, Map<Set<L>, Set<State>>> ent : aut.getTransitions().entrySet()) {
+        for (Entry<State, Map<Guard, Set<State>>> ent : aut.getGuardedTransitions().entrySet()) {
             State source = ent.getKey();
 
             il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.StateSet.State stt = new il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.StateSet.State();
@@ -74,18 +65,20 @@ public class AutomatonIO {
 
             gs.stateSet.state.add(stt);
 
-            for (Entry<Set<L>, Set<State>> tr : ent.getValue().entrySet()) {
-
-                Set<L> symbol = tr.getKey();
+            for (Entry<Guard, Set<State>> tr : ent.getValue().entrySet()) {
 
+                // one label per guard: propositions the guard leaves free are
+                // left out, so the file does not grow with 2^|AP|
+                Guard guard = tr.getKey();
                 String label = "";
-                for (L s : symbol) {
-                    label += s + " ";
+                for (int i = 0; i < propositions.size(); i++) {
+                    if ((guard.getPositive() & (1L << i)) != 0) {
+                        label += propositions.get(i) + " ";
+                    }
                 }
-
-                for (L s : symbols) {
-                    if (!symbol.contains(s)) {
-                        label += "~" + s + " ";
+                for (int i = 0; i < propositions.size(); i++) {
+                    if ((guard.getNegative() & (1L << i)) != 0) {
+                        label += "~" + propositions.get(i) + " ";
                     }
                 }
 
@@ -143,14 +136,25 @@ public class AutomatonIO {
 
         MultiColorAutomaton<String, String> aut = new MultiColorAutomaton<>();
 
-        for (Transition t : gs.getTransitionSet().getTransition()) {
-            Set<String> symbol = new HashSet<>(Arrays.asList(t.label.split(" ")));
+        if (gs.getAlphabet() != null && gs.getAlphabet().getProposition() != null) {
+            gs.getAlphabet().getProposition().forEach(aut::addProposition);
+        }
 
-            symbol = symbol.stream().filter(s -> !s.startsWith("~")).collect(Collectors.toSet());
+        for (Transition t : gs.getTransitionSet().getTransition()) {
+            Set<String> mustHold = new HashSet<>();
+            Set<String> mustNotHold = new HashSet<>();
+            for (String literal : t.label.split(" ")) {
+                if (literal.startsWith("~")) {
+                    mustNotHold.add(literal.substring(1));
+                } else if (!literal.isEmpty() && !literal.equals("True")) {
+                    mustHold.add(literal);
+                }
+            }
+            Guard guard = aut.guardOf(mustHold, mustNotHold);
 
             String source = "" + t.getFrom();
             String destination = "" + t.getTo();
-            aut.addTransition(source, symbol, destination);
+            aut.addTransition(source, guard, destination);
 
             if (gs.initialStateSet.getStateID() == t.getFrom()) {
                 aut.setInitial(source);
@@ -1,16 +1,19 @@
 package il.ac.bgu.cs.formalmethodsintro.base.ltl;
 
+import java.util.Objects;
+
 public class AP<L> extends LTL<L> {
 
-    L name;
+    private final L name;
 
     public AP(L name) {
+        super(31 * 3 + Objects.hashCode(name));
         this.name = name;
     }
 
     @Override
     public String toString() {
-        return name.toString();
+        return String.valueOf(name);
     }
 
     /**
@@ -20,47 +23,14 @@ public class AP<L> extends LTL<L> {
         return name;
     }
 
-    /**
-     * @param name the name to set
-     */
-    public void setName(L name) {
-        this.name = name;
-    }
-
-    /* (non-Javadoc)
-	 * @see java.lang.Object#hashCode()
-     */
     @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((name == null) ? 0 : name.hashCode());
-        return result;
+    LTL<L> withInternedChildren() {
+        return this;
     }
 
-    /* (non-Javadoc)
-	 * @see java.lang.Object#equals(java.lang.Object)
-     */
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (!(obj instanceof AP)) {
-            return false;
-        }
-        AP<?> other = (AP<?>) obj;
-        if (name == null) {
-            if (other.name != null) {
-                return false;
-            }
-        } else if (!name.equals(other.name)) {
-            return false;
-        }
-        return true;
+    boolean sameParts(LTL<?> other) {
+        return Objects.equals(name, ((AP<?>) other).name);
     }
 
 }
@@ -2,12 +2,13 @@ package il.ac.bgu.cs.formalmethodsintro.base.ltl;
 
 public class And<L> extends LTL<L> {
 
-    private LTL<L> left;
-    private LTL<L> right;
+    private final LTL<L> left;
+    private final LTL<L> right;
 
     public And(LTL<L> left, LTL<L> right) {
-        this.setLeft(left);
-        this.setRight(right);
+        super(31 * (31 + left.hashCode()) + right.hashCode());
+        this.left = left;
+        this.right = right;
     }
 
     /**
@@ -17,13 +18,6 @@ public class And<L> extends LTL<L> {
         return left;
     }
 
-    /**
-     * @param left the left to set
-     */
-    public void setLeft(LTL<L> left) {
-        this.left = left;
-    }
-
     /**
      * @return the right
      */
@@ -31,59 +25,22 @@ public class And<L> extends LTL<L> {
         return right;
     }
 
-    /**
-     * @param right the right to set
-     */
-    public void setRight(LTL<L> right) {
-        this.right = right;
-    }
-
     @Override
     public String toString() {
         return "(" + left + " /\\ " + right + ")";
     }
 
-    /* (non-Javadoc)
-	 * @see java.lang.Object#hashCode()
-     */
     @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((left == null) ? 0 : left.hashCode());
-        result = prime * result + ((right == null) ? 0 : right.hashCode());
-        return result;
+    LTL<L> withInternedChildren() {
+        LTL<L> l = intern(left);
+        LTL<L> r = intern(right);
+        return l == left && r == right ? this : new And<>(l, r);
     }
 
-    /* (non-Javadoc)
-	 * @see java.lang.Object#equals(java.lang.Object)
-     */
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (!(obj instanceof And)) {
-            return false;
-        }
-        And<?> other = (And<?>) obj;
-        if (left == null) {
-            if (other.left != null) {
-                return false;
-            }
-        } else if (!left.equals(other.left)) {
-            return false;
-        }
-        if (right == null) {
-            if (other.right != null) {
-                return false;
-            }
-        } else if (!right.equals(other.right)) {
-            return false;
-        }
-        return true;
+    boolean sameParts(LTL<?> other) {
+        And<?> o = (And<?>) other;
+        return left.equals(o.left) && right.equals(o.right);
     }
+
 }
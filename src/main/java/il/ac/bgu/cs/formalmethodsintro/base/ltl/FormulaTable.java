@@ -0,0 +1,308 @@
+package il.ac.bgu.cs.formalmethodsintro.base.ltl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash-consed LTL formulas in negation normal form, identified by
+ * {@code int}s: building the same formula twice gives the same id, so
+ * formulas compare by {@code ==} and sets of formulas are bitsets.
+ *
+ * The constructors simplify as they build: constants are folded, operands of
+ * the commutative operators are ordered, and some LTL identities are applied,
+ * e.g. {@code X a ∧ X b = X (a ∧ b)}, {@code a U (a U b) = a U b} and
+ * {@code b ∨ (a U b) = a U b}.
+ *
+ * @param <L> Type of atomic propositions.
+ */
+final class FormulaTable<L> {
+
+    static final int TRUE = 0;
+    static final int FALSE = 1;
+
+    static final byte K_TRUE = 0;
+    static final byte K_FALSE = 1;
+    static final byte K_AP = 2;
+    static final byte K_NOT_AP = 3;
+    static final byte K_AND = 4;
+    static final byte K_OR = 5;
+    static final byte K_NEXT = 6;
+    static final byte K_UNTIL = 7;
+    static final byte K_RELEASE = 8;
+
+    private byte[] kind = new byte[64];
+    private int[] left = new int[64];
+    private int[] right = new int[64];
+    private int size;
+
+    private final Map<Long, Integer> table = new HashMap<>();
+    private final List<L> aps = new ArrayList<>();
+    private final Map<L, Integer> apIndex = new HashMap<>();
+    /** Translations of interned formulas, by identity. */
+    private final Map<LTL<L>, Integer> positive = new IdentityHashMap<>();
+    private final Map<LTL<L>, Integer> negative = new IdentityHashMap<>();
+
+    FormulaTable() {
+        intern(K_TRUE, 0, 0);
+        intern(K_FALSE, 0, 0);
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte kind(int f) {
+        return kind[f];
+    }
+
+    int left(int f) {
+        return left[f];
+    }
+
+    int right(int f) {
+        return right[f];
+    }
+
+    /**
+     * @return The atomic propositions met so far, indexed by
+     * {@link #apOf(int)}.
+     */
+    List<L> aps() {
+        return aps;
+    }
+
+    /**
+     * @return The index of the proposition of a literal.
+     */
+    int apOf(int f) {
+        return left[f];
+    }
+
+    private int intern(byte k, int l, int r) {
+        long key = ((long) k << 56) | ((long) l << 28) | r;
+        Integer id = table.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (size == kind.length) {
+            kind = Arrays.copyOf(kind, size * 2);
+            left = Arrays.copyOf(left, size * 2);
+            right = Arrays.copyOf(right, size * 2);
+        }
+        kind[size] = k;
+        left[size] = l;
+        right[size] = r;
+        table.put(key, size);
+        return size++;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Constructors
+    int ap(L name, boolean positive) {
+        Integer i = apIndex.get(name);
+        if (i == null) {
+            i = aps.size();
+            aps.add(name);
+            apIndex.put(name, i);
+        }
+        return intern(positive ? K_AP : K_NOT_AP, i, 0);
+    }
+
+    /**
+     * @return The negation of literal {@code f}.
+     */
+    int negateLiteral(int f) {
+        switch (kind[f]) {
+            case K_TRUE:
+                return FALSE;
+            case K_FALSE:
+                return TRUE;
+            case K_AP:
+                return intern(K_NOT_AP, left[f], 0);
+            case K_NOT_AP:
+                return intern(K_AP, left[f], 0);
+            default:
+                throw new IllegalArgumentException("Not a literal: " + toString(f));
+        }
+    }
+
+    private boolean isLiteral(int f) {
+        return kind[f] <= K_NOT_AP;
+    }
+
+    int and(int a, int b) {
+        if (a == FALSE || b == FALSE) {
+            return FALSE;
+        }
+        if (a == TRUE || a == b) {
+            return b;
+        }
+        if (b == TRUE) {
+            return a;
+        }
+        if (isLiteral(a) && isLiteral(b) && negateLiteral(a) == b) {
+            return FALSE;
+        }
+        if (kind[a] == K_NEXT && kind[b] == K_NEXT) {
+            return next(and(left[a], left[b]));
+        }
+        // b ∧ (a R b) = a R b
+        if (kind[b] == K_RELEASE && right[b] == a) {
+            return b;
+        }
+        if (kind[a] == K_RELEASE && right[a] == b) {
+            return a;
+        }
+        return a < b ? intern(K_AND, a, b) : intern(K_AND, b, a);
+    }
+
+    int or(int a, int b) {
+        if (a == TRUE || b == TRUE) {
+            return TRUE;
+        }
+        if (a == FALSE || a == b) {
+            return b;
+        }
+        if (b == FALSE) {
+            return a;
+        }
+        if (isLiteral(a) && isLiteral(b) && negateLiteral(a) == b) {
+            return TRUE;
+        }
+        if (kind[a] == K_NEXT && kind[b] == K_NEXT) {
+            return next(or(left[a], left[b]));
+        }
+        // b ∨ (a U b) = a U b
+        if (kind[b] == K_UNTIL && right[b] == a) {
+            return b;
+        }
+        if (kind[a] == K_UNTIL && right[a] == b) {
+            return a;
+        }
+        return a < b ? intern(K_OR, a, b) : intern(K_OR, b, a);
+    }
+
+    int next(int a) {
+        if (a == TRUE || a == FALSE) {
+            return a;
+        }
+        return intern(K_NEXT, a, 0);
+    }
+
+    int until(int a, int b) {
+        if (b == TRUE || b == FALSE || a == FALSE || a == b) {
+            return b;
+        }
+        if (kind[a] == K_NEXT && kind[b] == K_NEXT) {
+            return next(until(left[a], left[b]));
+        }
+        // a U (a U b) = a U b
+        if (kind[b] == K_UNTIL && left[b] == a) {
+            return b;
+        }
+        // F G F c = G F c
+        if (a == TRUE && kind[b] == K_RELEASE && left[b] == FALSE && isInfinitelyOften(right[b])) {
+            return b;
+        }
+        return intern(K_UNTIL, a, b);
+    }
+
+    int release(int a, int b) {
+        if (b == TRUE || b == FALSE || a == TRUE || a == b) {
+            return b;
+        }
+        if (kind[a] == K_NEXT && kind[b] == K_NEXT) {
+            return next(release(left[a], left[b]));
+        }
+        // a R (a R b) = a R b
+        if (kind[b] == K_RELEASE && left[b] == a) {
+            return b;
+        }
+        // G F G c = F G c
+        if (a == FALSE && kind[b] == K_UNTIL && left[b] == TRUE && isEventuallyAlways(right[b])) {
+            return b;
+        }
+        return intern(K_RELEASE, a, b);
+    }
+
+    /**
+     * @return Whether {@code f} is {@code G F c} for some {@code c}.
+     */
+    private boolean isInfinitelyOften(int f) {
+        return kind[f] == K_UNTIL && left[f] == TRUE;
+    }
+
+    /**
+     * @return Whether {@code f} is {@code F G c} for some {@code c}.
+     */
+    private boolean isEventuallyAlways(int f) {
+        return kind[f] == K_RELEASE && left[f] == FALSE;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Conversion
+    /**
+     * @return The id of {@code ltl} (or of its negation) in negation normal
+     * form, simplified.
+     */
+    int of(LTL<L> ltl, boolean negated) {
+        ltl = LTL.intern(ltl);
+        Map<LTL<L>, Integer> memo = negated ? negative : positive;
+        Integer known = memo.get(ltl);
+        if (known != null) {
+            return known;
+        }
+        int res;
+        if (ltl instanceof TRUE) {
+            res = negated ? FALSE : TRUE;
+        } else if (ltl instanceof AP) {
+            res = ap(((AP<L>) ltl).getName(), !negated);
+        } else if (ltl instanceof Not) {
+            res = of(((Not<L>) ltl).getInner(), !negated);
+        } else if (ltl instanceof And) {
+            And<L> and = (And<L>) ltl;
+            int l = of(and.getLeft(), negated);
+            int r = of(and.getRight(), negated);
+            res = negated ? or(l, r) : and(l, r);
+        } else if (ltl instanceof Next) {
+            res = next(of(((Next<L>) ltl).getInner(), negated));
+        } else if (ltl instanceof Until) {
+            Until<L> until = (Until<L>) ltl;
+            int l = of(until.getLeft(), negated);
+            int r = of(until.getRight(), negated);
+            res = negated ? release(l, r) : until(l, r);
+        } else {
+            throw new IllegalArgumentException("Unknown LTL formula " + ltl);
+        }
+        memo.put(ltl, res);
+        return res;
+    }
+
+    String toString(int f) {
+        switch (kind[f]) {
+            case K_TRUE:
+                return "true";
+            case K_FALSE:
+                return "false";
+            case K_AP:
+                return String.valueOf(aps.get(left[f]));
+            case K_NOT_AP:
+                return "!" + aps.get(left[f]);
+            case K_AND:
+                return "(" + toString(left[f]) + " /\\ " + toString(right[f]) + ")";
+            case K_OR:
+                return "(" + toString(left[f]) + " \\/ " + toString(right[f]) + ")";
+            case K_NEXT:
+                return "()" + toString(left[f]);
+            case K_UNTIL:
+                return "(" + toString(left[f]) + " U " + toString(right[f]) + ")";
+            default:
+                return "(" + toString(left[f]) + " R " + toString(right[f]) + ")";
+        }
+    }
+
+}
@@ -1,30 +1,137 @@
 package il.ac.bgu.cs.formalmethodsintro.base.ltl;
 
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /**
  * A representation of an LTL formula as a parse tree.
  *
+ * Formulas are immutable, and cache their hash codes. The factory methods of
+ * this class return interned formulas: building the same formula twice gives
+ * the same object, so two interned formulas are equal exactly when they are
+ * the same object, and each has a unique integer id (see {@link #getId()}).
+ * The pool holds formulas weakly: one no longer used elsewhere is dropped,
+ * and building it again gives a new object with a new id.
+ * Formulas built with the constructors of the subclasses are not interned
+ * until passed to {@link #intern(LTL)}, and are compared structurally.
+ *
  * @param <L> The type of the atomic propositions.
  */
 public abstract class LTL<L> {
 
+    /** Each interned formula, mapped to a weak reference to itself; also the lock of interning. */
+    private static final Map<LTL<?>, WeakReference<LTL<?>>> POOL = new WeakHashMap<>();
+    private static int nextId;
+
+    private final int hash;
+    /** Set once, under the lock of {@link #POOL}; volatile as it is read without it. */
+    private volatile int id = -1;
+
+    LTL(int hash) {
+        this.hash = hash;
+    }
+
     public static <L> And<L> and(LTL<L> l, LTL<L> r) {
-        return new And<>(l, r);
+        return intern(new And<>(intern(l), intern(r)));
     }
 
     public static <L> LTL<L> until(LTL<L> l, LTL<L> r) {
-        return new Until<>(l, r);
+        return intern(new Until<>(intern(l), intern(r)));
     }
 
     public static <L> LTL<L> not(LTL<L> l) {
-        return new Not<>(l);
+        return intern(new Not<>(intern(l)));
     }
 
     public static <L> LTL<L> next(LTL<L> l) {
-        return new Next<>(l);
+        return intern(new Next<>(intern(l)));
     }
 
     public static <L> LTL<L> true_() {
-        return new TRUE<>();
+        return intern(new TRUE<>());
+    }
+
+    public static <L> AP<L> ap(L name) {
+        return intern(new AP<>(name));
+    }
+
+    /**
+     * @param <L> The type of the atomic propositions.
+     * @param <F> The type of the formula.
+     * @param f A formula.
+     * @return The interned formula equal to {@code f}, which is {@code f}
+     * itself if it is interned already or is the first of its kind.
+     * @throws IllegalStateException if {@link Integer#MAX_VALUE} formulas
+     * have been interned in this process, as ids are never reused.
+     */
+    @SuppressWarnings("unchecked")
+    public static <L, F extends LTL<L>> F intern(F f) {
+        if (f.isInterned()) {
+            return f;
+        }
+        LTL<L> canonical = f.withInternedChildren();
+        synchronized (POOL) {
+            WeakReference<LTL<?>> ref = POOL.get(canonical);
+            LTL<?> existing = ref == null ? null : ref.get();
+            if (existing != null) {
+                return (F) existing;
+            }
+            if (nextId == Integer.MAX_VALUE) {
+                // ids are never reused, and a negative one would read as not interned
+                throw new IllegalStateException("Interned " + nextId + " LTL formulas; no ids left");
+            }
+            canonical.id = nextId++;
+            POOL.put(canonical, new WeakReference<>(canonical));
+            return (F) canonical;
+        }
+    }
+
+    /**
+     * @return A formula equal to this one whose subformulas are interned;
+     * {@code this} if they already are.
+     */
+    abstract LTL<L> withInternedChildren();
+
+    /**
+     * @return Whether this formula and {@code other}, of the same class, have
+     * equal parts.
+     */
+    abstract boolean sameParts(LTL<?> other);
+
+    /**
+     * @return A number unique to this formula among the interned ones,
+     * counting from 0 in interning order; -1 if this formula is not interned.
+     * Ids of dropped formulas are not reused, so ids are sparse and grow
+     * over the life of the process: to index arrays, map the formulas at
+     * hand to local dense numbers first, as {@code FormulaTable} does.
+     */
+    public int getId() {
+        return id;
+    }
+
+    public boolean isInterned() {
+        return id >= 0;
+    }
+
+    @Override
+    public final int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public final boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        LTL<?> other = (LTL<?>) obj;
+        if ((id >= 0 && other.id >= 0) || hash != other.hash) {
+            return false;
+        }
+        return sameParts(other);
     }
 
 }
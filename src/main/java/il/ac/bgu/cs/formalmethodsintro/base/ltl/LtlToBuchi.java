@@ -0,0 +1,255 @@
+package il.ac.bgu.cs.formalmethodsintro.base.ltl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Automaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.BuchiReductions;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Guard;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Translates LTL formulas to Büchi automata.
+ *
+ * The formula is first brought to negation normal form and simplified in a
+ * {@link FormulaTable}. The generalized automaton is then built with the
+ * tableau construction of Gerth, Peled, Vardi and Wolper ("Simple on-the-fly
+ * automatic verification of linear temporal logic", 1995): starting from the
+ * formula, nodes are split on disjunctions and temporal operators only as far
+ * as needed, and nodes with the same obligations are merged, so only the
+ * reachable consistent sets of subformulas are ever built. Sets of
+ * subformulas are {@link BitSet}s over formula ids.
+ *
+ * The result is degeneralized and reduced with {@link BuchiReductions}.
+ *
+ * The alphabet of the automata is all the subsets of the atomic propositions
+ * of the formula. The transitions into a node are guarded by the literals it
+ * promises (a {@link Guard}), so there is one transition per edge of the
+ * tableau whatever the number of propositions.
+ *
+ * @param <L> Type of atomic propositions.
+ */
+public class LtlToBuchi<L> {
+
+    private static final int INIT = -1;
+
+    private final FormulaTable<L> formulas = new FormulaTable<>();
+
+    /**
+     * A tableau node: formulas still to process ({@code pending}), processed
+     * formulas that hold now ({@code now}), and formulas that must hold in the
+     * next step ({@code next}).
+     */
+    private static final class Node {
+
+        final Set<Integer> incoming;
+        final BitSet pending;
+        final BitSet now;
+        final BitSet next;
+
+        Node(Set<Integer> incoming, BitSet pending, BitSet now, BitSet next) {
+            this.incoming = incoming;
+            this.pending = pending;
+            this.now = now;
+            this.next = next;
+        }
+
+        Node copy() {
+            return new Node(new HashSet<>(incoming), (BitSet) pending.clone(), (BitSet) now.clone(),
+                    (BitSet) next.clone());
+        }
+    }
+
+    /**
+     * Translates {@code ltl} to a Büchi automaton with integer states.
+     *
+     * @param <L> Type of atomic propositions.
+     * @param ltl The formula.
+     * @return A reduced automaton accepting exactly the words that satisfy
+     * {@code ltl}.
+     */
+    public static <L> Automaton<Integer, L> translate(LTL<L> ltl) {
+        MultiColorAutomaton<Integer, L> gnba = new LtlToBuchi<L>().toGnba(ltl);
+        return BuchiReductions.renumber(BuchiReductions.reduce(BuchiReductions.degeneralize(gnba)));
+    }
+
+    /**
+     * Translates {@code ltl} to a generalized Büchi automaton, with a color
+     * for each until subformula of its negation normal form.
+     *
+     * @param <L> Type of atomic propositions.
+     * @param ltl The formula.
+     * @return An automaton accepting exactly the words that satisfy
+     * {@code ltl}.
+     */
+    public static <L> MultiColorAutomaton<Integer, L> translateToGnba(LTL<L> ltl) {
+        return new LtlToBuchi<L>().toGnba(ltl);
+    }
+
+    private MultiColorAutomaton<Integer, L> toGnba(LTL<L> ltl) {
+        int root = formulas.of(ltl, false);
+        List<Node> nodes = expand(root);
+
+        // the propositions get the same indices as in the formula table, so
+        // guards can be built from the literal bitmasks directly
+        MultiColorAutomaton<Integer, L> aut = new MultiColorAutomaton<>();
+        formulas.aps().forEach(aut::addProposition);
+        int init = nodes.size();
+        aut.setInitial(init);
+        for (int q = 0; q < nodes.size(); q++) {
+            Node node = nodes.get(q);
+            long pos = 0, neg = 0;
+            for (int f = node.now.nextSetBit(0); f >= 0; f = node.now.nextSetBit(f + 1)) {
+                if (formulas.kind(f) == FormulaTable.K_AP) {
+                    pos |= 1L << formulas.apOf(f);
+                } else if (formulas.kind(f) == FormulaTable.K_NOT_AP) {
+                    neg |= 1L << formulas.apOf(f);
+                }
+            }
+            Guard guard = Guard.of(pos, neg);
+            aut.addState(q);
+            for (int from : node.incoming) {
+                aut.addTransition(from == INIT ? init : from, guard, q);
+            }
+        }
+
+        // a color per until: the nodes that do not promise it, or fulfill it now
+        int color = 0;
+        for (int f = 0; f < formulas.size(); f++) {
+            if (formulas.kind(f) != FormulaTable.K_UNTIL) {
+                continue;
+            }
+            boolean used = false;
+            for (Node node : nodes) {
+                used |= node.now.get(f);
+            }
+            if (!used) {
+                continue;
+            }
+            aut.getAcceptingStates(color); // the color exists even if no node has it
+            for (int q = 0; q < nodes.size(); q++) {
+                BitSet now = nodes.get(q).now;
+                if (!now.get(f) || now.get(formulas.right(f))) {
+                    aut.setAccepting(q, color);
+                }
+            }
+            color++;
+        }
+        return aut;
+    }
+
+    /**
+     * The GPVW expansion, with an explicit stack instead of recursion.
+     *
+     * @return The nodes, indexed by their state number.
+     */
+    private List<Node> expand(int root) {
+        List<Node> nodes = new ArrayList<>();
+        Map<Pair<BitSet, BitSet>, Integer> byObligations = new HashMap<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        BitSet start = new BitSet();
+        start.set(root);
+        stack.push(new Node(new HashSet<>(Collections.singleton(INIT)), start, new BitSet(), new BitSet()));
+
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.pending.isEmpty()) {
+                Pair<BitSet, BitSet> key = new Pair<>(node.now, node.next);
+                Integer existing = byObligations.get(key);
+                if (existing != null) {
+                    nodes.get(existing).incoming.addAll(node.incoming);
+                    continue;
+                }
+                int id = nodes.size();
+                nodes.add(node);
+                byObligations.put(key, id);
+                stack.push(new Node(new HashSet<>(Collections.singleton(id)), (BitSet) node.next.clone(),
+                        new BitSet(), new BitSet()));
+                continue;
+            }
+
+            int f = node.pending.nextSetBit(0);
+            node.pending.clear(f);
+            if (node.now.get(f)) {
+                stack.push(node);
+                continue;
+            }
+            int l = formulas.left(f), r = formulas.right(f);
+            switch (formulas.kind(f)) {
+                case FormulaTable.K_FALSE:
+                    break; // contradiction: drop the node
+                case FormulaTable.K_TRUE:
+                    node.now.set(f);
+                    stack.push(node);
+                    break;
+                case FormulaTable.K_AP:
+                case FormulaTable.K_NOT_AP:
+                    if (!node.now.get(formulas.negateLiteral(f))) {
+                        node.now.set(f);
+                        stack.push(node);
+                    }
+                    break;
+                case FormulaTable.K_AND:
+                    node.now.set(f);
+                    addPending(node, l);
+                    addPending(node, r);
+                    stack.push(node);
+                    break;
+                case FormulaTable.K_NEXT:
+                    node.now.set(f);
+                    node.next.set(l);
+                    stack.push(node);
+                    break;
+                case FormulaTable.K_OR: {
+                    node.now.set(f);
+                    Node other = node.copy();
+                    addPending(node, l);
+                    addPending(other, r);
+                    stack.push(other);
+                    stack.push(node);
+                    break;
+                }
+                case FormulaTable.K_UNTIL: {
+                    // l U r = r ∨ (l ∧ X(l U r))
+                    node.now.set(f);
+                    Node other = node.copy();
+                    addPending(node, l);
+                    node.next.set(f);
+                    addPending(other, r);
+                    stack.push(other);
+                    stack.push(node);
+                    break;
+                }
+                default: {
+                    // l R r = (l ∧ r) ∨ (r ∧ X(l R r))
+                    node.now.set(f);
+                    Node other = node.copy();
+                    addPending(node, l);
+                    addPending(node, r);
+                    addPending(other, r);
+                    other.next.set(f);
+                    stack.push(other);
+                    stack.push(node);
+                    break;
+                }
+            }
+        }
+        return nodes;
+    }
+
+    private static void addPending(Node node, int f) {
+        if (!node.now.get(f)) {
+            node.pending.set(f);
+        }
+    }
+
+}
@@ -2,18 +2,22 @@ package il.ac.bgu.cs.formalmethodsintro.base.ltl;
 
 public class TRUE<L> extends LTL<L> {
 
+    public TRUE() {
+        super(9876543);
+    }
+
     @Override
-    public int hashCode() {
-        return 9876543;
+    public String toString() {
+        return "true";
     }
 
     @Override
-    public boolean equals(Object obj) {
-        return obj instanceof TRUE;
+    LTL<L> withInternedChildren() {
+        return this;
     }
 
     @Override
-    public String toString() {
-        return "true";
+    boolean sameParts(LTL<?> other) {
+        return true;
     }
 }
@@ -0,0 +1,634 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.BoolexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.IntexprContext;
+
+/**
+ * A NanoPromela condition (a {@code boolexpr}) in canonical form, so that
+ * conditions can be compared and hashed without evaluating them.
+ *
+ * Integer expressions are brought to linear form: a constant plus a sum of
+ * terms with coefficients, where a term is a variable, a channel size, or a
+ * product, quotient, remainder or xor that does not fold to a constant. Every
+ * comparison then becomes {@code t <= k} or {@code t == k} for a normalized
+ * linear combination {@code t} (coefficients without a common divisor, the
+ * first one positive), possibly negated.
+ *
+ * Taking each such combination as a free integer, the condition depends only
+ * on which interval between its constants each combination falls in. The
+ * canonical form keeps the combinations and interval bounds the condition
+ * really depends on, and its value on each interval, so:
+ * <ul>
+ * <li>conditions with equal canonical forms agree on every valuation;</li>
+ * <li>conditions that agree on every valuation have equal canonical forms
+ * when their combinations are independent, e.g. when each compares a single
+ * variable (or the same combination) with constants, as bounded-integer
+ * guards usually do: {@code x >= 0 && x < 2} and {@code x == 0 || x == 1} are
+ * equal.</li>
+ * </ul>
+ * Conditions with too many interval combinations, and strings that are not
+ * conditions, are compared by a normalized text instead.
+ *
+ * Arithmetic is over unbounded integers, so conditions that differ only when
+ * an {@code int} overflows are identified; a condition whose constants or
+ * coefficients do not fit in a {@code long} is compared by its text. The
+ * canonical forms of the most recently used source texts are cached; the
+ * cache is safe for concurrent use.
+ */
+public final class CanonicalCondition {
+
+    private static final int MAX_CELLS = 1 << 12;
+    private static final int MAX_CACHED = 1 << 12;
+    /** Least recently used first. */
+    private static final Map<String, CanonicalCondition> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, CanonicalCondition>(64, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CanonicalCondition> eldest) {
+                    return size() > MAX_CACHED;
+                }
+            });
+
+    /** The linear combinations the condition depends on, sorted. */
+    private final List<String> terms;
+    /** For each term, the upper bounds of its intervals but the last. */
+    private final List<long[]> cuts;
+    /** The value on each combination of intervals, first term slowest. */
+    private final BitSet table;
+    /** The normalized text, for conditions without a table. */
+    private final String text;
+    private final int hash;
+
+    private CanonicalCondition(List<String> terms, List<long[]> cuts, BitSet table, String text) {
+        this.terms = terms;
+        this.cuts = cuts;
+        this.table = table;
+        this.text = text;
+        int h = Objects.hash(terms, table, text);
+        for (long[] c : cuts) {
+            h = h * 31 + Arrays.hashCode(c);
+        }
+        this.hash = h;
+    }
+
+    /**
+     * @param condition A condition. The empty string is {@code true}.
+     * @return Its canonical form.
+     */
+    public static CanonicalCondition of(String condition) {
+        CanonicalCondition res = CACHE.get(condition);
+        if (res == null) {
+            res = build(condition); // outside the lock: racing threads may both build
+            CACHE.put(condition, res);
+        }
+        return res;
+    }
+
+    /**
+     * @return Whether the form is a table of values rather than a normalized
+     * text.
+     */
+    public boolean isSemantic() {
+        return text == null;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CanonicalCondition)) {
+            return false;
+        }
+        CanonicalCondition other = (CanonicalCondition) obj;
+        if (hash != other.hash || !terms.equals(other.terms) || !Objects.equals(table, other.table)
+                || !Objects.equals(text, other.text)) {
+            return false;
+        }
+        for (int i = 0; i < cuts.size(); i++) {
+            if (!Arrays.equals(cuts.get(i), other.cuts.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        if (text != null) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < terms.size(); i++) {
+            sb.append(terms.get(i)).append(" cut at ").append(Arrays.toString(cuts.get(i))).append("; ");
+        }
+        return sb.append("table ").append(table).toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Construction
+    private static CanonicalCondition build(String condition) {
+        Node root;
+        if (condition.equals("")) {
+            root = Node.constant(true);
+        } else {
+            try {
+                root = node(NanoPromelaCompiler.parseCondition(condition));
+            } catch (RuntimeException e) {
+                // not a condition, or overflowing arithmetic
+                return new CanonicalCondition(List.of(), List.of(), null, condition);
+            }
+        }
+        try {
+            return tabulate(root);
+        } catch (ArithmeticException e) {
+            // an interval bound at the edge of long
+            return new CanonicalCondition(List.of(), List.of(), null, root.toString());
+        }
+    }
+
+    private static CanonicalCondition tabulate(Node root) {
+
+        // the intervals of each term
+        TreeMap<String, TreeSet<Long>> cutsByTerm = new TreeMap<>();
+        List<Atom> atoms = new ArrayList<>();
+        root.atoms(atoms);
+        for (Atom a : atoms) {
+            TreeSet<Long> c = cutsByTerm.computeIfAbsent(a.term, t -> new TreeSet<>());
+            if (a.equality) {
+                c.add(Math.subtractExact(a.bound, 1));
+            }
+            c.add(a.bound);
+        }
+        List<String> terms = new ArrayList<>(cutsByTerm.keySet());
+        List<List<Long>> cuts = new ArrayList<>();
+        long cells = 1;
+        for (String t : terms) {
+            cuts.add(new ArrayList<>(cutsByTerm.get(t)));
+            cells *= cutsByTerm.get(t).size() + 1;
+            if (cells > MAX_CELLS) {
+                return new CanonicalCondition(List.of(), List.of(), null, root.toString());
+            }
+        }
+        for (Atom a : atoms) {
+            a.index = terms.indexOf(a.term);
+        }
+
+        // the value on each combination of intervals
+        int[] dims = new int[terms.size()];
+        for (int i = 0; i < dims.length; i++) {
+            dims[i] = cuts.get(i).size() + 1;
+        }
+        boolean[] table = new boolean[(int) cells];
+        long[] values = new long[terms.size()];
+        int[] index = new int[terms.size()];
+        for (int cell = 0; cell < table.length; cell++) {
+            for (int i = 0; i < values.length; i++) {
+                List<Long> c = cuts.get(i);
+                values[i] = index[i] < c.size() ? c.get(index[i]) : Math.addExact(c.get(c.size() - 1), 1);
+            }
+            table[cell] = root.evaluate(values);
+            increment(index, dims);
+        }
+
+        // merge the intervals the condition does not tell apart
+        for (int i = 0; i < dims.length; i++) {
+            int j = 0;
+            while (j < dims[i] - 1) {
+                if (sameSlices(table, dims, i, j, j + 1)) {
+                    table = dropSlice(table, dims, i, j + 1);
+                    dims[i]--;
+                    cuts.get(i).remove(j);
+                } else {
+                    j++;
+                }
+            }
+        }
+
+        // drop the terms it does not depend on
+        List<String> keptTerms = new ArrayList<>();
+        List<long[]> keptCuts = new ArrayList<>();
+        for (int i = dims.length - 1; i >= 0; i--) {
+            if (dims[i] == 1) {
+                table = dropSlice(table, dims, i, 1);
+            }
+        }
+        for (int i = 0; i < dims.length; i++) {
+            if (dims[i] > 1) {
+                keptTerms.add(terms.get(i));
+                keptCuts.add(cuts.get(i).stream().mapToLong(Long::longValue).toArray());
+            }
+        }
+        BitSet bits = new BitSet(table.length);
+        for (int cell = 0; cell < table.length; cell++) {
+            bits.set(cell, table[cell]);
+        }
+        return new CanonicalCondition(keptTerms, keptCuts, bits, null);
+    }
+
+    /** Advances a mixed-radix counter, last digit fastest. */
+    private static void increment(int[] index, int[] dims) {
+        for (int i = index.length - 1; i >= 0; i--) {
+            if (++index[i] < dims[i]) {
+                return;
+            }
+            index[i] = 0;
+        }
+    }
+
+    private static int stride(int[] dims, int dim) {
+        int stride = 1;
+        for (int i = dim + 1; i < dims.length; i++) {
+            stride *= dims[i];
+        }
+        return stride;
+    }
+
+    /**
+     * @return Whether the table has the same values with {@code dim} at
+     * {@code a} and at {@code b}.
+     */
+    private static boolean sameSlices(boolean[] table, int[] dims, int dim, int a, int b) {
+        int stride = stride(dims, dim);
+        int block = stride * dims[dim];
+        for (int base = 0; base < table.length; base += block) {
+            for (int k = 0; k < stride; k++) {
+                if (table[base + a * stride + k] != table[base + b * stride + k]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The table without the cells where {@code dim} is at
+     * {@code drop}, or at 0 if {@code dim} has a single value.
+     */
+    private static boolean[] dropSlice(boolean[] table, int[] dims, int dim, int drop) {
+        if (dims[dim] == 1) {
+            return table; // one slice: the dimension is only a factor of 1
+        }
+        int stride = stride(dims, dim);
+        int block = stride * dims[dim];
+        boolean[] res = new boolean[table.length / dims[dim] * (dims[dim] - 1)];
+        int n = 0;
+        for (int base = 0; base < table.length; base += block) {
+            for (int s = 0; s < dims[dim]; s++) {
+                if (s != drop) {
+                    System.arraycopy(table, base + s * stride, res, n, stride);
+                    n += stride;
+                }
+            }
+        }
+        return res;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Normalization
+    private static Node node(BoolexprContext context) {
+        if (context.NOT() != null) {
+            return Node.not(node(context.boolexpr(0)));
+        }
+        if (context.AND() != null) {
+            return Node.of(Node.AND, node(context.boolexpr(0)), node(context.boolexpr(1)));
+        }
+        if (context.OR() != null) {
+            return Node.of(Node.OR, node(context.boolexpr(0)), node(context.boolexpr(1)));
+        }
+        if (context.intexpr().size() == 2) {
+            Linear p = linear(context.intexpr(0)).plus(linear(context.intexpr(1)).times(-1));
+            if (context.LTEQ() != null) {
+                return atMostZero(p);
+            }
+            if (context.GTEQ() != null) {
+                return atMostZero(p.times(-1));
+            }
+            if (context.LT() != null) {
+                return atMostZero(p.plus(Linear.constant(1)));
+            }
+            if (context.GT() != null) {
+                return atMostZero(p.times(-1).plus(Linear.constant(1)));
+            }
+            if (context.EQ() != null) {
+                return isZero(p);
+            }
+            return Node.not(isZero(p));
+        }
+        if (context.TRUE() != null) {
+            return Node.constant(true);
+        }
+        if (context.FALSE() != null) {
+            return Node.constant(false);
+        }
+        return node(context.boolexpr(0));
+    }
+
+    /** {@code p <= 0} */
+    private static Node atMostZero(Linear p) {
+        if (p.isConstant()) {
+            return Node.constant(p.constant <= 0);
+        }
+        long g = p.divisor();
+        Linear t = p.normalized();
+        if (p.leadingSign() > 0) {
+            // g t + c <= 0 iff t <= floor(-c / g)
+            return Node.atom(new Atom(t.toString(), false, Math.floorDiv(Math.negateExact(p.constant), g)));
+        }
+        // -g t + c <= 0 iff t >= ceil(c / g)
+        long atLeast = -Math.floorDiv(Math.negateExact(p.constant), g);
+        return Node.not(Node.atom(new Atom(t.toString(), false, Math.subtractExact(atLeast, 1))));
+    }
+
+    /** {@code p == 0} */
+    private static Node isZero(Linear p) {
+        if (p.isConstant()) {
+            return Node.constant(p.constant == 0);
+        }
+        long g = p.divisor();
+        if (p.constant % g != 0) {
+            return Node.constant(false);
+        }
+        return Node.atom(new Atom(p.normalized().toString(), true, Math.negateExact(Math.multiplyExact(p.leadingSign(), p.constant / g))));
+    }
+
+    private static Linear linear(IntexprContext context) {
+        if (context.POW() != null) {
+            return opaque(context, "^");
+        }
+        if (context.MINUS() != null && context.intexpr().size() == 1) {
+            return linear(context.intexpr(0)).times(-1);
+        }
+        if (context.MULT() != null) {
+            Linear l = linear(context.intexpr(0)), r = linear(context.intexpr(1));
+            if (l.isConstant()) {
+                return r.times(l.constant);
+            }
+            if (r.isConstant()) {
+                return l.times(r.constant);
+            }
+            String a = l.toString(), b = r.toString();
+            return Linear.term(a.compareTo(b) <= 0 ? "(" + a + "*" + b + ")" : "(" + b + "*" + a + ")");
+        }
+        if (context.DIV() != null) {
+            return opaque(context, "/");
+        }
+        if (context.MOD() != null) {
+            return opaque(context, "%");
+        }
+        if (context.PLUS() != null) {
+            return linear(context.intexpr(0)).plus(linear(context.intexpr(1)));
+        }
+        if (context.MINUS() != null) {
+            return linear(context.intexpr(0)).plus(linear(context.intexpr(1)).times(-1));
+        }
+        if (context.INT() != null) {
+            return Linear.constant(Long.parseLong(context.getText()));
+        }
+        if (context.VARNAME() != null) {
+            return Linear.term(context.getText());
+        }
+        if (context.CHANNAME() != null) {
+            return Linear.term("size(" + context.CHANNAME().getText() + ")");
+        }
+        return linear(context.intexpr(0));
+    }
+
+    /**
+     * @return The value of a non-linear operation if both sides are
+     * constants (with the semantics of {@link Evaluator}), or else a term.
+     */
+    private static Linear opaque(IntexprContext context, String op) {
+        Linear l = linear(context.intexpr(0)), r = linear(context.intexpr(1));
+        if (l.isConstant() && r.isConstant() && (op.equals("^") || r.constant != 0)) {
+            int a = (int) l.constant, b = (int) r.constant;
+            switch (op) {
+                case "^":
+                    return Linear.constant(a ^ b);
+                case "/":
+                    return Linear.constant(a / b);
+                default:
+                    return Linear.constant((a + b) % b);
+            }
+        }
+        return Linear.term("(" + l + op + r + ")");
+    }
+
+    /**
+     * A constant plus terms with coefficients. Arithmetic that overflows a
+     * {@code long} throws {@link ArithmeticException}.
+     */
+    private static final class Linear {
+
+        final TreeMap<String, Long> coefficients = new TreeMap<>();
+        long constant;
+
+        static Linear constant(long c) {
+            Linear res = new Linear();
+            res.constant = c;
+            return res;
+        }
+
+        static Linear term(String t) {
+            Linear res = new Linear();
+            res.coefficients.put(t, 1L);
+            return res;
+        }
+
+        boolean isConstant() {
+            return coefficients.isEmpty();
+        }
+
+        Linear plus(Linear other) {
+            Linear res = constant(Math.addExact(constant, other.constant));
+            res.coefficients.putAll(coefficients);
+            other.coefficients.forEach((t, c) -> res.coefficients.merge(t, c, Math::addExact));
+            res.coefficients.values().removeIf(c -> c == 0);
+            return res;
+        }
+
+        Linear times(long k) {
+            Linear res = constant(Math.multiplyExact(constant, k));
+            if (k != 0) {
+                coefficients.forEach((t, c) -> res.coefficients.put(t, Math.multiplyExact(c, k)));
+            }
+            return res;
+        }
+
+        /** The greatest common divisor of the coefficients. */
+        long divisor() {
+            long g = 0;
+            for (long c : coefficients.values()) {
+                if (c == Long.MIN_VALUE) {
+                    throw new ArithmeticException("long overflow"); // no absolute value
+                }
+                g = gcd(g, Math.abs(c));
+            }
+            return g;
+        }
+
+        long leadingSign() {
+            return Long.signum(coefficients.firstEntry().getValue());
+        }
+
+        /** The terms divided by {@link #divisor()}, first coefficient positive, without the constant. */
+        Linear normalized() {
+            long d = divisor() * leadingSign();
+            Linear res = new Linear();
+            coefficients.forEach((t, c) -> res.coefficients.put(t, c / d));
+            return res;
+        }
+
+        private static long gcd(long a, long b) {
+            return b == 0 ? a : gcd(b, a % b);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            coefficients.forEach((t, c) -> {
+                if (sb.length() > 0) {
+                    sb.append('+');
+                }
+                sb.append(c == 1 ? "" : c + "*").append(t);
+            });
+            if (constant != 0 || sb.length() == 0) {
+                sb.append(sb.length() > 0 ? "+" : "").append(constant);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * {@code term <= bound}, or {@code term == bound}.
+     */
+    private static final class Atom {
+
+        final String term;
+        final boolean equality;
+        final long bound;
+        /** The position of the term in the table. */
+        int index;
+
+        Atom(String term, boolean equality, long bound) {
+            this.term = term;
+            this.equality = equality;
+            this.bound = bound;
+        }
+
+        @Override
+        public String toString() {
+            return term + (equality ? "==" : "<=") + bound;
+        }
+    }
+
+    /**
+     * A boolean combination of atoms.
+     */
+    private static final class Node {
+
+        static final int CONSTANT = 0;
+        static final int ATOM = 1;
+        static final int NOT = 2;
+        static final int AND = 3;
+        static final int OR = 4;
+
+        final int kind;
+        final boolean value;
+        final Atom atom;
+        final Node[] children;
+
+        private Node(int kind, boolean value, Atom atom, Node... children) {
+            this.kind = kind;
+            this.value = value;
+            this.atom = atom;
+            this.children = children;
+        }
+
+        static Node constant(boolean value) {
+            return new Node(CONSTANT, value, null);
+        }
+
+        static Node atom(Atom atom) {
+            return new Node(ATOM, false, atom);
+        }
+
+        static Node not(Node n) {
+            return n.kind == CONSTANT ? constant(!n.value) : new Node(NOT, false, null, n);
+        }
+
+        static Node of(int kind, Node l, Node r) {
+            return new Node(kind, false, null, l, r);
+        }
+
+        void atoms(List<Atom> res) {
+            if (atom != null) {
+                res.add(atom);
+            }
+            for (Node c : children) {
+                c.atoms(res);
+            }
+        }
+
+        boolean evaluate(long[] values) {
+            switch (kind) {
+                case CONSTANT:
+                    return value;
+                case ATOM:
+                    long v = values[atom.index];
+                    return atom.equality ? v == atom.bound : v <= atom.bound;
+                case NOT:
+                    return !children[0].evaluate(values);
+                case AND:
+                    return children[0].evaluate(values) && children[1].evaluate(values);
+                default:
+                    return children[0].evaluate(values) || children[1].evaluate(values);
+            }
+        }
+
+        /** Normalized text: the operands of a chain of and/or are sorted. */
+        @Override
+        public String toString() {
+            switch (kind) {
+                case CONSTANT:
+                    return String.valueOf(value);
+                case ATOM:
+                    return atom.toString();
+                case NOT:
+                    return "!(" + children[0] + ")";
+                default:
+                    TreeSet<String> operands = new TreeSet<>();
+                    flatten(kind, operands);
+                    return "(" + String.join(kind == AND ? " && " : " || ", operands) + ")";
+            }
+        }
+
+        private void flatten(int op, TreeSet<String> operands) {
+            if (kind == op) {
+                for (Node c : children) {
+                    c.flatten(op, operands);
+                }
+            } else {
+                operands.add(toString());
+            }
+        }
+    }
+
+}
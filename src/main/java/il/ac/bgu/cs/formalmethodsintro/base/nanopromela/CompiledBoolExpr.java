@@ -0,0 +1,17 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.Map;
+
+/**
+ * A NanoPromela {@code boolexpr}, compiled by {@link NanoPromelaCompiler}.
+ */
+@FunctionalInterface
+public interface CompiledBoolExpr {
+
+    /**
+     * @param eval The values of the variables.
+     * @return The value of the expression, as {@link Evaluator} computes it.
+     */
+    boolean evaluate(Map<String, Object> eval);
+
+}
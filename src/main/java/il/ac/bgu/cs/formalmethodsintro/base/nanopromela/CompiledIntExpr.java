@@ -0,0 +1,17 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.Map;
+
+/**
+ * A NanoPromela {@code intexpr}, compiled by {@link NanoPromelaCompiler}.
+ */
+@FunctionalInterface
+public interface CompiledIntExpr {
+
+    /**
+     * @param eval The values of the variables.
+     * @return The value of the expression, as {@link Evaluator} computes it.
+     */
+    int evaluate(Map<String, Object> eval);
+
+}
@@ -0,0 +1,20 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.Map;
+
+/**
+ * A NanoPromela statement, compiled by {@link NanoPromelaCompiler}.
+ */
+@FunctionalInterface
+public interface CompiledStmt {
+
+    /**
+     * Applies the statement. Never changes {@code eval}.
+     *
+     * @param eval The values of the variables before the statement.
+     * @return The values after the statement, or {@code null} if it cannot be
+     * executed (e.g. reading from an empty channel).
+     */
+    Map<String, Object> effect(Map<String, Object> eval);
+
+}
@@ -0,0 +1,368 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.AtomicstmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.BoolexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.IntexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.JoinedContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.StmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ThrowingErrorListener;
+
+/**
+ * Compiles NanoPromela conditions and actions (see NanoPromela.g4) into trees
+ * of lambdas, once per source string. Evaluating a compiled form does no
+ * parsing and no per-node dispatch on the parse tree.
+ *
+ * The compiled forms have exactly the semantics of {@link Evaluator}
+ * (including {@code ^} being a bitwise xor, unset variables reading as 0, and
+ * non-negative {@code %}). Compiled forms are cached by their source text; the
+ * caches are safe for concurrent use.
+ */
+public final class NanoPromelaCompiler {
+
+    /**
+     * Cached result for actions that do not parse.
+     */
+    private static final CompiledStmt INVALID = eval -> null;
+
+    private static final Map<String, CompiledBoolExpr> CONDITIONS = new ConcurrentHashMap<>();
+    private static final Map<String, CompiledStmt> ACTIONS = new ConcurrentHashMap<>();
+    private static final Map<String, CompiledStmt> JOINED = new ConcurrentHashMap<>();
+    private static final Map<String, Boolean> ONE_SIDED = new ConcurrentHashMap<>();
+
+    private NanoPromelaCompiler() {
+    }
+
+    /**
+     * @param condition A {@code boolexpr}. The empty string is {@code true}.
+     * @return The compiled condition.
+     * @throws org.antlr.v4.runtime.misc.ParseCancellationException if the
+     * condition cannot be parsed.
+     */
+    public static CompiledBoolExpr compileCondition(String condition) {
+        CompiledBoolExpr compiled = CONDITIONS.get(condition);
+        if (compiled == null) {
+            compiled = condition.equals("") ? eval -> true : compile(parser(condition).boolexpr());
+            CONDITIONS.putIfAbsent(condition, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * @param action A NanoPromela statement. The empty string does nothing.
+     * @return The compiled action, or {@code null} if {@code action} cannot be
+     * parsed.
+     */
+    public static CompiledStmt compileAction(String action) {
+        CompiledStmt compiled = ACTIONS.get(action);
+        if (compiled == null) {
+            if (action.equals("")) {
+                compiled = eval -> eval;
+            } else {
+                try {
+                    compiled = compile(parser(action).spec().stmt());
+                } catch (RuntimeException e) {
+                    compiled = INVALID;
+                }
+            }
+            ACTIONS.putIfAbsent(action, compiled);
+        }
+        return (compiled == INVALID) ? null : compiled;
+    }
+
+    /**
+     * @param action A joined handshake action, such as {@code _C!0|_C?x}.
+     * @return The compiled action, or {@code null} if {@code action} is not a
+     * joined action.
+     */
+    public static CompiledStmt compileJoined(String action) {
+        CompiledStmt compiled = JOINED.get(action);
+        if (compiled == null) {
+            if (action.equals("")) {
+                compiled = eval -> eval;
+            } else {
+                try {
+                    NanoPromelaParser p = parser(action);
+                    JoinedContext ctx = p.joined();
+                    compiled = p.isMatchedEOF() ? compile(ctx) : INVALID;
+                } catch (RuntimeException e) {
+                    compiled = INVALID;
+                }
+            }
+            JOINED.putIfAbsent(action, compiled);
+        }
+        return (compiled == INVALID) ? null : compiled;
+    }
+
+    /**
+     * @param action An action string.
+     * @return {@code true} iff {@code action} is one side of a handshake, such
+     * as {@code _C!0}.
+     */
+    public static boolean isOneSided(String action) {
+        return ONE_SIDED.computeIfAbsent(action, a -> {
+            try {
+                NanoPromelaParser p = parser(a);
+                p.onesided();
+                return p.isMatchedEOF();
+            } catch (RuntimeException e) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * @param condition A {@code boolexpr}.
+     * @return Its parse tree.
+     * @throws org.antlr.v4.runtime.misc.ParseCancellationException if the
+     * condition cannot be parsed.
+     */
+    public static BoolexprContext parseCondition(String condition) {
+        return parser(condition).boolexpr();
+    }
+
+    /**
+     * @param action A NanoPromela statement.
+     * @return Its parse tree.
+     * @throws org.antlr.v4.runtime.misc.ParseCancellationException if the
+     * statement cannot be parsed.
+     */
+    public static StmtContext parseStatement(String action) {
+        return parser(action).spec().stmt();
+    }
+
+    private static NanoPromelaParser parser(String source) {
+        NanoPromelaLexer lexer = new NanoPromelaLexer(new ANTLRInputStream(source));
+        NanoPromelaParser parser = new NanoPromelaParser(new CommonTokenStream(lexer));
+
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(new ThrowingErrorListener());
+
+        parser.removeErrorListeners();
+        parser.addErrorListener(new ThrowingErrorListener());
+
+        return parser;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Parse tree to lambda translation. Branch order follows Evaluator.
+    public static CompiledIntExpr compile(IntexprContext context) {
+        if (context.POW() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) ^ r.evaluate(eval);
+        }
+
+        if (context.MINUS() != null && context.intexpr().size() == 1) {
+            CompiledIntExpr e = compile(context.intexpr(0));
+            return eval -> -e.evaluate(eval);
+        }
+
+        if (context.MULT() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) * r.evaluate(eval);
+        }
+
+        if (context.DIV() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) / r.evaluate(eval);
+        }
+
+        if (context.MOD() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> {
+                int p = r.evaluate(eval);
+                return (l.evaluate(eval) + p) % p;
+            };
+        }
+
+        if (context.PLUS() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) + r.evaluate(eval);
+        }
+
+        if (context.MINUS() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) - r.evaluate(eval);
+        }
+
+        if (context.INT() != null) {
+            int value = Integer.parseInt(context.getText());
+            return eval -> value;
+        }
+
+        if (context.VARNAME() != null) {
+            String name = context.getText();
+            return eval -> {
+                Object object = eval.get(name);
+                return object == null ? 0 : (int) object;
+            };
+        }
+
+        if (context.CHANNAME() != null) {
+            String name = context.CHANNAME().getText();
+            return eval -> {
+                List<?> q = (List<?>) eval.get(name);
+                return q == null ? 0 : q.size();
+            };
+        }
+
+        return compile(context.intexpr(0));
+    }
+
+    public static CompiledBoolExpr compile(BoolexprContext context) {
+        if (context.NOT() != null) {
+            CompiledBoolExpr e = compile(context.boolexpr(0));
+            return eval -> !e.evaluate(eval);
+        }
+
+        if (context.AND() != null) {
+            CompiledBoolExpr l = compile(context.boolexpr(0)), r = compile(context.boolexpr(1));
+            return eval -> l.evaluate(eval) && r.evaluate(eval);
+        }
+
+        if (context.OR() != null) {
+            CompiledBoolExpr l = compile(context.boolexpr(0)), r = compile(context.boolexpr(1));
+            return eval -> l.evaluate(eval) || r.evaluate(eval);
+        }
+
+        if (context.LTEQ() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) <= r.evaluate(eval);
+        }
+
+        if (context.GTEQ() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) >= r.evaluate(eval);
+        }
+
+        if (context.LT() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) < r.evaluate(eval);
+        }
+
+        if (context.GT() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) > r.evaluate(eval);
+        }
+
+        if (context.EQ() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) == r.evaluate(eval);
+        }
+
+        if (context.NEQ() != null) {
+            CompiledIntExpr l = compile(context.intexpr(0)), r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) != r.evaluate(eval);
+        }
+
+        if (context.TRUE() != null) {
+            return eval -> true;
+        }
+
+        if (context.FALSE() != null) {
+            return eval -> false;
+        }
+
+        return compile(context.boolexpr(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static CompiledStmt compile(StmtContext context) {
+        if (context.skipstmt() != null) {
+            return eval -> eval;
+        }
+
+        if (context.assstmt() != null) {
+            String name = context.assstmt().VARNAME().getText();
+            CompiledIntExpr e = compile(context.assstmt().intexpr());
+            return eval -> {
+                Map<String, Object> neweval = new HashMap<>(eval);
+                neweval.put(name, e.evaluate(eval));
+                return neweval;
+            };
+        }
+
+        if (context.atomicstmt() != null) {
+            AtomicstmtContext atomic = context.atomicstmt();
+            int n = atomic.VARNAME().size();
+            String[] names = new String[n];
+            CompiledIntExpr[] exprs = new CompiledIntExpr[n];
+            for (int i = 0; i < n; i++) {
+                names[i] = atomic.VARNAME(i).getText();
+                exprs[i] = compile(atomic.intexpr(i));
+            }
+            return eval -> {
+                Map<String, Object> neweval = new HashMap<>(eval);
+                for (int i = 0; i < n; i++) {
+                    neweval.put(names[i], exprs[i].evaluate(eval));
+                }
+                return neweval;
+            };
+        }
+
+        if (context.chanwritestmt() != null) {
+            String channel = context.chanwritestmt().CHANNAME().getText();
+            CompiledIntExpr e = compile(context.chanwritestmt().intexpr());
+            return eval -> {
+                Map<String, Object> neweval = new HashMap<>(eval);
+                List<Integer> q = (List<Integer>) eval.get(channel);
+                q = (q == null) ? new Vector<>() : new Vector<>(q);
+                q.add(e.evaluate(eval));
+                neweval.put(channel, q);
+                return neweval;
+            };
+        }
+
+        if (context.chanreadstmt() != null) {
+            String channel = context.chanreadstmt().CHANNAME().getText();
+            String name = context.chanreadstmt().VARNAME().getText();
+            return eval -> {
+                List<Integer> q = (List<Integer>) eval.get(channel);
+                if (q == null || q.isEmpty()) {
+                    return null;
+                }
+                Map<String, Object> neweval = new HashMap<>(eval);
+                q = new Vector<>(q);
+                Integer val = q.remove(0);
+                neweval.put(channel, q);
+                neweval.put(name, val);
+                return neweval;
+            };
+        }
+
+        // if, do and sequences parse, but Evaluator has no effect for them:
+        // the action is matched and blocks, as with ParserBasedActDef.
+        return eval -> null;
+    }
+
+    public static CompiledStmt compile(JoinedContext context) {
+        if (context.hsreadstmt() == null
+                || !context.hsreadstmt().ZEROCAPACITYCHANNAME().getText()
+                        .equals(context.hswritestmt().ZEROCAPACITYCHANNAME().getText())
+                || (context.hsreadstmt().VARNAME() == null) != (context.hswritestmt().intexpr() == null)) {
+            // Parses, but Evaluator rejects it; the interleaving definition maps the rejection to null.
+            return eval -> null;
+        }
+
+        if (context.hsreadstmt().VARNAME() != null) {
+            String name = context.hsreadstmt().VARNAME().getText();
+            CompiledIntExpr e = compile(context.hswritestmt().intexpr());
+            return eval -> {
+                Map<String, Object> neweval = new HashMap<>();
+                neweval.put(name, e.evaluate(eval));
+                return neweval;
+            };
+        }
+
+        return eval -> eval;
+    }
+
+}
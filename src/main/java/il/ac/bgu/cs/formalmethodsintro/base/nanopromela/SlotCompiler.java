@@ -0,0 +1,477 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.AtomicstmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.BoolexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.IntexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.StmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ThrowingErrorListener;
+
+/**
+ * Compiles NanoPromela expressions and statements into {@link MethodHandle}
+ * chains over an {@code int[]} state vector laid out by a {@link SlotLayout}.
+ * The resulting handles contain no parse tree and no boxing, so the JIT can
+ * inline them into straight-line code.
+ *
+ * Only the channel-free part of the language is supported: expressions that
+ * use {@code size(C)}, and statements that read or write channels, assign a
+ * variable outside the layout, or use {@code if}/{@code do}/sequencing are not
+ * compiled, and the {@code compile*} methods return {@code null} for them.
+ * Callers fall back to {@link NanoPromelaCompiler} in that case.
+ *
+ * Semantics are those of {@link Evaluator}: {@code ^} is xor, {@code %} is
+ * non-negative, and variables outside the layout read as 0.
+ */
+public final class SlotCompiler {
+
+    private static final MethodHandle ADD, SUB, MUL, DIV, MOD, XOR, NEG,
+            LT, LE, GT, GE, EQ, NE, NOT, SET, CLONE;
+
+    static {
+        Lookup lookup = MethodHandles.lookup();
+        MethodType intOp = methodType(int.class, int.class, int.class);
+        MethodType cmpOp = methodType(boolean.class, int.class, int.class);
+        try {
+            ADD = lookup.findStatic(SlotCompiler.class, "add", intOp);
+            SUB = lookup.findStatic(SlotCompiler.class, "sub", intOp);
+            MUL = lookup.findStatic(SlotCompiler.class, "mul", intOp);
+            DIV = lookup.findStatic(SlotCompiler.class, "div", intOp);
+            MOD = lookup.findStatic(SlotCompiler.class, "mod", intOp);
+            XOR = lookup.findStatic(SlotCompiler.class, "xor", intOp);
+            NEG = lookup.findStatic(SlotCompiler.class, "neg", methodType(int.class, int.class));
+            LT = lookup.findStatic(SlotCompiler.class, "lt", cmpOp);
+            LE = lookup.findStatic(SlotCompiler.class, "le", cmpOp);
+            GT = lookup.findStatic(SlotCompiler.class, "gt", cmpOp);
+            GE = lookup.findStatic(SlotCompiler.class, "ge", cmpOp);
+            EQ = lookup.findStatic(SlotCompiler.class, "eq", cmpOp);
+            NE = lookup.findStatic(SlotCompiler.class, "ne", cmpOp);
+            NOT = lookup.findStatic(SlotCompiler.class, "not", methodType(boolean.class, boolean.class));
+            SET = lookup.findStatic(SlotCompiler.class, "set", methodType(int[].class, int[].class, int.class, int.class));
+            CLONE = lookup.findStatic(SlotCompiler.class, "copy", methodType(int[].class, int[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Compiled integer expression.
+     */
+    public static final class IntExpr {
+
+        private final MethodHandle handle;
+
+        private IntExpr(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        public int evaluate(int[] state) {
+            try {
+                return (int) handle.invokeExact(state);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        /**
+         * @return The underlying handle, of type {@code (int[])int}.
+         */
+        public MethodHandle getHandle() {
+            return handle;
+        }
+    }
+
+    /**
+     * Compiled boolean expression.
+     */
+    public static final class BoolExpr {
+
+        private final MethodHandle handle;
+
+        private BoolExpr(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        public boolean evaluate(int[] state) {
+            try {
+                return (boolean) handle.invokeExact(state);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        /**
+         * @return The underlying handle, of type {@code (int[])boolean}.
+         */
+        public MethodHandle getHandle() {
+            return handle;
+        }
+    }
+
+    /**
+     * Compiled statement. Never changes its input vector; returns it as is for
+     * {@code skip}, and a fresh vector otherwise.
+     */
+    public static final class Stmt {
+
+        private final MethodHandle handle;
+
+        private Stmt(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        public int[] effect(int[] state) {
+            try {
+                return (int[]) handle.invokeExact(state);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        /**
+         * @return The underlying handle, of type {@code (int[])int[]}.
+         */
+        public MethodHandle getHandle() {
+            return handle;
+        }
+    }
+
+    private final SlotLayout layout;
+    private final Map<String, IntExpr> intExprs = new ConcurrentHashMap<>();
+    private final Map<String, BoolExpr> conditions = new ConcurrentHashMap<>();
+    private final Map<String, Stmt> actions = new ConcurrentHashMap<>();
+
+    /**
+     * Marks cache entries of sources that cannot be compiled.
+     */
+    private static final IntExpr NO_INT = new IntExpr(null);
+    private static final BoolExpr NO_BOOL = new BoolExpr(null);
+    private static final Stmt NO_STMT = new Stmt(null);
+
+    public SlotCompiler(SlotLayout layout) {
+        this.layout = layout;
+    }
+
+    public SlotLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @param source An {@code intexpr}.
+     * @return The compiled expression, or {@code null} if it uses channels.
+     */
+    public IntExpr compileIntExpr(String source) {
+        IntExpr res = intExprs.computeIfAbsent(source, s -> {
+            MethodHandle h = intExpr(parser(s).intexpr());
+            return (h == null) ? NO_INT : new IntExpr(h);
+        });
+        return (res == NO_INT) ? null : res;
+    }
+
+    /**
+     * @param source A {@code boolexpr}. The empty string is {@code true}.
+     * @return The compiled condition, or {@code null} if it uses channels.
+     */
+    public BoolExpr compileCondition(String source) {
+        BoolExpr res = conditions.computeIfAbsent(source, s -> {
+            MethodHandle h = s.equals("")
+                    ? MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, int[].class)
+                    : boolExpr(parser(s).boolexpr());
+            return (h == null) ? NO_BOOL : new BoolExpr(h);
+        });
+        return (res == NO_BOOL) ? null : res;
+    }
+
+    /**
+     * @param source A statement. The empty string does nothing.
+     * @return The compiled statement, or {@code null} if it is not supported
+     * by this backend (see the class comment).
+     */
+    public Stmt compileAction(String source) {
+        Stmt res = actions.computeIfAbsent(source, s -> {
+            MethodHandle h;
+            if (s.equals("")) {
+                h = MethodHandles.identity(int[].class);
+            } else {
+                try {
+                    h = stmt(parser(s).spec().stmt());
+                } catch (RuntimeException e) {
+                    h = null;
+                }
+            }
+            return (h == null) ? NO_STMT : new Stmt(h);
+        });
+        return (res == NO_STMT) ? null : res;
+    }
+
+    private static NanoPromelaParser parser(String source) {
+        NanoPromelaLexer lexer = new NanoPromelaLexer(new ANTLRInputStream(source));
+        NanoPromelaParser parser = new NanoPromelaParser(new CommonTokenStream(lexer));
+
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(new ThrowingErrorListener());
+
+        parser.removeErrorListeners();
+        parser.addErrorListener(new ThrowingErrorListener());
+
+        return parser;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Handle construction. Every expression handle takes the state vector as
+    /// its single argument; null means "not supported".
+    private MethodHandle intExpr(IntexprContext context) {
+        if (context.POW() != null) {
+            return binary(XOR, intExpr(context.intexpr(0)), intExpr(context.intexpr(1)));
+        }
+
+        if (context.MINUS() != null && context.intexpr().size() == 1) {
+            MethodHandle e = intExpr(context.intexpr(0));
+            return (e == null) ? null : MethodHandles.filterReturnValue(e, NEG);
+        }
+
+        if (context.MULT() != null) {
+            return binary(MUL, intExpr(context.intexpr(0)), intExpr(context.intexpr(1)));
+        }
+
+        if (context.DIV() != null) {
+            return binary(DIV, intExpr(context.intexpr(0)), intExpr(context.intexpr(1)));
+        }
+
+        if (context.MOD() != null) {
+            return binary(MOD, intExpr(context.intexpr(0)), intExpr(context.intexpr(1)));
+        }
+
+        if (context.PLUS() != null) {
+            return binary(ADD, intExpr(context.intexpr(0)), intExpr(context.intexpr(1)));
+        }
+
+        if (context.MINUS() != null) {
+            return binary(SUB, intExpr(context.intexpr(0)), intExpr(context.intexpr(1)));
+        }
+
+        if (context.INT() != null) {
+            return constant(Integer.parseInt(context.getText()));
+        }
+
+        if (context.VARNAME() != null) {
+            int slot = layout.slotOf(context.getText());
+            if (slot < 0) {
+                return constant(0);
+            }
+            return MethodHandles.insertArguments(MethodHandles.arrayElementGetter(int[].class), 1, slot);
+        }
+
+        if (context.CHANNAME() != null) {
+            return null;
+        }
+
+        return intExpr(context.intexpr(0));
+    }
+
+    private MethodHandle boolExpr(BoolexprContext context) {
+        if (context.NOT() != null) {
+            MethodHandle e = boolExpr(context.boolexpr(0));
+            return (e == null) ? null : MethodHandles.filterReturnValue(e, NOT);
+        }
+
+        if (context.AND() != null) {
+            MethodHandle l = boolExpr(context.boolexpr(0)), r = boolExpr(context.boolexpr(1));
+            return (l == null || r == null) ? null
+                    : MethodHandles.guardWithTest(l, r, bool(false));
+        }
+
+        if (context.OR() != null) {
+            MethodHandle l = boolExpr(context.boolexpr(0)), r = boolExpr(context.boolexpr(1));
+            return (l == null || r == null) ? null
+                    : MethodHandles.guardWithTest(l, bool(true), r);
+        }
+
+        MethodHandle cmp = null;
+        if (context.LTEQ() != null) {
+            cmp = LE;
+        } else if (context.GTEQ() != null) {
+            cmp = GE;
+        } else if (context.LT() != null) {
+            cmp = LT;
+        } else if (context.GT() != null) {
+            cmp = GT;
+        } else if (context.EQ() != null) {
+            cmp = EQ;
+        } else if (context.NEQ() != null) {
+            cmp = NE;
+        }
+        if (cmp != null) {
+            return binary(cmp, intExpr(context.intexpr(0)), intExpr(context.intexpr(1)));
+        }
+
+        if (context.TRUE() != null) {
+            return bool(true);
+        }
+
+        if (context.FALSE() != null) {
+            return bool(false);
+        }
+
+        return boolExpr(context.boolexpr(0));
+    }
+
+    private MethodHandle stmt(StmtContext context) {
+        if (context.skipstmt() != null) {
+            return MethodHandles.identity(int[].class);
+        }
+
+        if (context.assstmt() != null) {
+            return assignments(new String[]{context.assstmt().VARNAME().getText()},
+                    new IntexprContext[]{context.assstmt().intexpr()});
+        }
+
+        if (context.atomicstmt() != null) {
+            AtomicstmtContext atomic = context.atomicstmt();
+            int n = atomic.VARNAME().size();
+            String[] names = new String[n];
+            IntexprContext[] exprs = new IntexprContext[n];
+            for (int i = 0; i < n; i++) {
+                names[i] = atomic.VARNAME(i).getText();
+                exprs[i] = atomic.intexpr(i);
+            }
+            return assignments(names, exprs);
+        }
+
+        return null;
+    }
+
+    /**
+     * Builds {@code old -> set(...set(copy(old), s0, e0(old))..., sn, en(old))},
+     * so that all right hand sides read the values before the statement.
+     */
+    private MethodHandle assignments(String[] names, IntexprContext[] exprs) {
+        // (int[] old, int[] cur) -> cur
+        MethodHandle body = MethodHandles.dropArguments(MethodHandles.identity(int[].class), 0, int[].class);
+        for (int i = names.length - 1; i >= 0; i--) {
+            int slot = layout.slotOf(names[i]);
+            MethodHandle e = intExpr(exprs[i]);
+            if (slot < 0 || e == null) {
+                return null;
+            }
+            // (int[] cur, int[] old) -> set(cur, slot, e(old))
+            MethodHandle step = MethodHandles.filterArguments(
+                    MethodHandles.insertArguments(SET, 1, slot), 1, e);
+            // (int[] old, int[] cur) -> step(cur, old)
+            step = MethodHandles.permuteArguments(step,
+                    methodType(int[].class, int[].class, int[].class), 1, 0);
+            // (int[] old, int[] cur) -> body(old, step(old, cur))
+            body = MethodHandles.permuteArguments(MethodHandles.collectArguments(body, 1, step),
+                    methodType(int[].class, int[].class, int[].class), 0, 0, 1);
+        }
+        // (int[] old) -> body(old, copy(old))
+        return MethodHandles.permuteArguments(MethodHandles.collectArguments(body, 1, CLONE),
+                methodType(int[].class, int[].class), 0, 0);
+    }
+
+    /**
+     * @param op A handle of type {@code (int,int)R}.
+     * @return {@code state -> op(l(state), r(state))}, or {@code null} if
+     * either operand is {@code null}.
+     */
+    private static MethodHandle binary(MethodHandle op, MethodHandle l, MethodHandle r) {
+        if (l == null || r == null) {
+            return null;
+        }
+        MethodHandle both = MethodHandles.filterArguments(op, 0, l, r);
+        return MethodHandles.permuteArguments(both,
+                methodType(op.type().returnType(), int[].class), 0, 0);
+    }
+
+    private static MethodHandle constant(int value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(int.class, value), 0, int[].class);
+    }
+
+    private static MethodHandle bool(boolean value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(boolean.class, value), 0, int[].class);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Primitive operations, bound by the handles above.
+    private static int add(int a, int b) {
+        return a + b;
+    }
+
+    private static int sub(int a, int b) {
+        return a - b;
+    }
+
+    private static int mul(int a, int b) {
+        return a * b;
+    }
+
+    private static int div(int a, int b) {
+        return a / b;
+    }
+
+    private static int mod(int a, int p) {
+        return (a + p) % p;
+    }
+
+    private static int xor(int a, int b) {
+        return a ^ b;
+    }
+
+    private static int neg(int a) {
+        return -a;
+    }
+
+    private static boolean lt(int a, int b) {
+        return a < b;
+    }
+
+    private static boolean le(int a, int b) {
+        return a <= b;
+    }
+
+    private static boolean gt(int a, int b) {
+        return a > b;
+    }
+
+    private static boolean ge(int a, int b) {
+        return a >= b;
+    }
+
+    private static boolean eq(int a, int b) {
+        return a == b;
+    }
+
+    private static boolean ne(int a, int b) {
+        return a != b;
+    }
+
+    private static boolean not(boolean a) {
+        return !a;
+    }
+
+    private static int[] set(int[] state, int slot, int value) {
+        state[slot] = value;
+        return state;
+    }
+
+    private static int[] copy(int[] state) {
+        return state.clone();
+    }
+
+}
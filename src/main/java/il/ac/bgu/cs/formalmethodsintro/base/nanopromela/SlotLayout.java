@@ -0,0 +1,86 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns each integer variable of a model a fixed slot in an {@code int[]}
+ * state vector, for use with {@link SlotCompiler}. A variable that has no
+ * value in a {@code Map} evaluation is stored as 0, which is also how
+ * {@link Evaluator} reads it.
+ */
+public final class SlotLayout {
+
+    private final String[] names;
+    private final Map<String, Integer> slots;
+
+    public SlotLayout(List<String> names) {
+        this.names = names.toArray(new String[0]);
+        Map<String, Integer> m = new HashMap<>();
+        for (int i = 0; i < this.names.length; i++) {
+            if (m.put(this.names[i], i) != null) {
+                throw new IllegalArgumentException("Variable " + this.names[i] + " appears twice");
+            }
+        }
+        slots = Collections.unmodifiableMap(m);
+    }
+
+    public static SlotLayout of(String... names) {
+        return new SlotLayout(Arrays.asList(names));
+    }
+
+    /**
+     * @param name A variable name.
+     * @return The slot of {@code name}, or -1 if it is not in this layout.
+     */
+    public int slotOf(String name) {
+        Integer slot = slots.get(name);
+        return (slot == null) ? -1 : slot;
+    }
+
+    public String nameOf(int slot) {
+        return names[slot];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * @param eval An evaluation whose variables are all integers.
+     * @return The state vector of {@code eval}.
+     */
+    public int[] encode(Map<String, Object> eval) {
+        int[] state = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Object value = eval.get(names[i]);
+            state[i] = (value == null) ? 0 : (int) value;
+        }
+        return state;
+    }
+
+    /**
+     * @param state A state vector of this layout.
+     * @return A fresh evaluation with every variable of the layout.
+     */
+    public Map<String, Object> decode(int[] state) {
+        Map<String, Object> eval = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            eval.put(names[i], state[i]);
+        }
+        return eval;
+    }
+
+    @Override
+    public String toString() {
+        return "SlotLayout" + Arrays.toString(names);
+    }
+
+}
@@ -0,0 +1,36 @@
+package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
+
+import java.util.Map;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.CompiledStmt;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaCompiler;
+
+/**
+ * An object that identifies and interprets the actions defined in the grammar
+ * nanopromela/NanoPromela.g4. Unlike {@link ParserBasedActDef}, each action
+ * string is parsed only once; later applications run the cached compiled form
+ * (see {@link NanoPromelaCompiler}).
+ */
+public class CompiledActDef implements ActionDef {
+
+    /**
+     * @see
+     * il.ac.bgu.cs.formalmethodsintro.base.programgraph.ActionDef#effect(java.util.Map,
+     * java.lang.String)
+     */
+    @Override
+    public Map<String, Object> effect(Map<String, Object> eval, Object action) {
+        CompiledStmt stmt = NanoPromelaCompiler.compileAction((String) action);
+        return (stmt == null) ? null : stmt.effect(eval);
+    }
+
+    /**
+     * @see
+     * il.ac.bgu.cs.formalmethodsintro.base.programgraph.ActionDef#isMatchingAction(java.lang.String)
+     */
+    @Override
+    public boolean isMatchingAction(Object action) {
+        return NanoPromelaCompiler.compileAction((String) action) != null;
+    }
+
+}
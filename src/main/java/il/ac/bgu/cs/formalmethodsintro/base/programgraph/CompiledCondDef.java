@@ -0,0 +1,25 @@
+package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
+
+import java.util.Map;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaCompiler;
+
+/**
+ * An object that identifies and interprets the conditions defined in the
+ * grammar nanopromela/NanoPromela.g4. Unlike {@link ParserBasedCondDef}, each
+ * condition string is parsed only once; later evaluations run the cached
+ * compiled form (see {@link NanoPromelaCompiler}).
+ */
+public class CompiledCondDef implements ConditionDef {
+
+    /**
+     * @see
+     * il.ac.bgu.cs.formalmethodsintro.base.programgraph.ConditionDef#evaluate(java.util.Map,
+     * java.lang.String)
+     */
+    @Override
+    public boolean evaluate(Map<String, Object> eval, String condition) {
+        return NanoPromelaCompiler.compileCondition(condition).evaluate(eval);
+    }
+
+}
@@ -0,0 +1,243 @@
+package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * The interleaving of two program graphs, generated on demand. Locations are
+ * pairs of component locations, and only those reachable (along transitions,
+ * regardless of conditions) from the initial locations exist.
+ * {@link #getOutgoingTransitions(Pair)} and {@link #getInitialLocations()}
+ * work location by location and never build the whole graph, so nested
+ * interleavings of many processes can be explored lazily, e.g. by
+ * {@link il.ac.bgu.cs.formalmethodsintro.base.statespace.ProgramGraphStateSpace}.
+ *
+ * The whole graph is built on the first call to {@link #getLocations()} or
+ * {@link #getTransitions()}, or to any method that changes the graph. From
+ * then on this object behaves like a plain {@link ProgramGraph}.
+ *
+ * @param <L1> Type of locations of the first graph.
+ * @param <L2> Type of locations of the second graph.
+ * @param <A> Type of actions.
+ */
+public class InterleavedProgramGraph<L1, L2, A> extends ProgramGraph<Pair<L1, L2>, A> {
+
+    private final ProgramGraph<L1, A> pg1;
+    private final ProgramGraph<L2, A> pg2;
+
+    private final Map<Pair<L1, L2>, Set<PGTransition<Pair<L1, L2>, A>>> outgoing = new ConcurrentHashMap<>();
+    private Set<Pair<L1, L2>> initial;
+    private Set<List<String>> initializations;
+    /** Set once the {@link ProgramGraph} fields are complete. */
+    private volatile boolean materialized = false;
+    /** Set while {@link #materialize()} fills the fields; guarded by {@code this}. */
+    private boolean filling = false;
+
+    public InterleavedProgramGraph(ProgramGraph<L1, A> pg1, ProgramGraph<L2, A> pg2) {
+        this.pg1 = pg1;
+        this.pg2 = pg2;
+        setName("Interleaved Program Graph");
+    }
+
+    public ProgramGraph<L1, A> getFirst() {
+        return pg1;
+    }
+
+    public ProgramGraph<L2, A> getSecond() {
+        return pg2;
+    }
+
+    /**
+     * @return Whether the whole graph has been built.
+     */
+    public boolean isMaterialized() {
+        return materialized;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Lazy parts
+    @Override
+    public Set<Pair<L1, L2>> getInitialLocations() {
+        if (materialized) {
+            return super.getInitialLocations();
+        }
+        synchronized (this) {
+            if (initial == null) {
+                Set<Pair<L1, L2>> res = new LinkedHashSet<>();
+                for (L1 l1 : pg1.getInitialLocations()) {
+                    for (L2 l2 : pg2.getInitialLocations()) {
+                        res.add(new Pair<>(l1, l2));
+                    }
+                }
+                initial = Collections.unmodifiableSet(res);
+            }
+            return initial;
+        }
+    }
+
+    /**
+     * The initializations of both graphs, concatenated pairwise. A graph
+     * without initializations contributes an empty one.
+     */
+    @Override
+    public Set<List<String>> getInitalizations() {
+        if (materialized) {
+            return super.getInitalizations();
+        }
+        synchronized (this) {
+            if (initializations == null) {
+                initializations = Collections.unmodifiableSet(combineInitializations());
+            }
+            return initializations;
+        }
+    }
+
+    private Set<List<String>> combineInitializations() {
+        Set<List<String>> in1 = pg1.getInitalizations();
+        Set<List<String>> in2 = pg2.getInitalizations();
+        if (in1.isEmpty()) {
+            return new HashSet<>(in2);
+        }
+        if (in2.isEmpty()) {
+            return new HashSet<>(in1);
+        }
+        Set<List<String>> res = new HashSet<>();
+        for (List<String> i1 : in1) {
+            for (List<String> i2 : in2) {
+                List<String> init = new ArrayList<>(i1);
+                init.addAll(i2);
+                res.add(init);
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public Set<PGTransition<Pair<L1, L2>, A>> getOutgoingTransitions(Pair<L1, L2> l) {
+        if (materialized) {
+            return super.getOutgoingTransitions(l);
+        }
+        return outgoing.computeIfAbsent(l, this::computeOutgoing);
+    }
+
+    private Set<PGTransition<Pair<L1, L2>, A>> computeOutgoing(Pair<L1, L2> l) {
+        Set<PGTransition<Pair<L1, L2>, A>> res = new HashSet<>();
+        for (PGTransition<L1, A> t : pg1.getOutgoingTransitions(l.getFirst())) {
+            res.add(new PGTransition<>(l, t.getCondition(), t.getAction(), new Pair<>(t.getTo(), l.getSecond())));
+        }
+        for (PGTransition<L2, A> t : pg2.getOutgoingTransitions(l.getSecond())) {
+            res.add(new PGTransition<>(l, t.getCondition(), t.getAction(), new Pair<>(l.getFirst(), t.getTo())));
+        }
+        return Collections.unmodifiableSet(res);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Materializing parts
+    /**
+     * Builds the reachable part of the graph into the {@link ProgramGraph}
+     * fields. Does nothing if already done.
+     */
+    public synchronized void materialize() {
+        if (materialized || filling) {
+            // the ProgramGraph mutators call each other while filling
+            return;
+        }
+        Set<Pair<L1, L2>> init = getInitialLocations();
+        Set<List<String>> inits = getInitalizations();
+
+        Set<Pair<L1, L2>> seen = new HashSet<>(init);
+        Deque<Pair<L1, L2>> q = new ArrayDeque<>(init);
+        List<PGTransition<Pair<L1, L2>, A>> transitions = new ArrayList<>();
+        while (!q.isEmpty()) {
+            Pair<L1, L2> l = q.remove();
+            for (PGTransition<Pair<L1, L2>, A> t : getOutgoingTransitions(l)) {
+                transitions.add(t);
+                if (seen.add(t.getTo())) {
+                    q.add(t.getTo());
+                }
+            }
+        }
+
+        filling = true;
+        try {
+            seen.forEach(super::addLocation);
+            init.forEach(l -> super.setInitial(l, true));
+            inits.forEach(super::addInitalization);
+            transitions.forEach(super::addTransition);
+        } finally {
+            filling = false;
+        }
+        // only now may the getters read the fields without the lock
+        materialized = true;
+        outgoing.clear();
+        initial = null;
+        initializations = null;
+    }
+
+    @Override
+    public Set<Pair<L1, L2>> getLocations() {
+        materialize();
+        return super.getLocations();
+    }
+
+    @Override
+    public Set<PGTransition<Pair<L1, L2>, A>> getTransitions() {
+        materialize();
+        return super.getTransitions();
+    }
+
+    @Override
+    public void addInitalization(List<String> init) {
+        materialize();
+        super.addInitalization(init);
+    }
+
+    @Override
+    public void setInitial(Pair<L1, L2> location, boolean isInitial) {
+        materialize();
+        super.setInitial(location, isInitial);
+    }
+
+    @Override
+    public void addLocation(Pair<L1, L2> l) {
+        materialize();
+        super.addLocation(l);
+    }
+
+    @Override
+    public void addTransition(PGTransition<Pair<L1, L2>, A> t) {
+        materialize();
+        super.addTransition(t);
+    }
+
+    @Override
+    public void removeLocation(Pair<L1, L2> l) {
+        materialize();
+        super.removeLocation(l);
+    }
+
+    @Override
+    public void removeTransition(PGTransition<Pair<L1, L2>, A> t) {
+        materialize();
+        super.removeTransition(t);
+    }
+
+    @Override
+    public String toString() {
+        if (!materialized) {
+            return String.format("[ProgamGraph name:%s (lazy interleaving of %s and %s)]", getName(), pg1, pg2);
+        }
+        return super.toString();
+    }
+
+}
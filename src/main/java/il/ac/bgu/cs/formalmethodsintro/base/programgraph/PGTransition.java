@@ -1,12 +1,16 @@
 package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.util.Objects;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.CanonicalCondition;
 
 /**
  * A transition in a {@link ProgramGraph}.
  *
+ * Transitions are equal when their conditions are equivalent, as decided by
+ * {@link CanonicalCondition}: e.g. {@code x >= 0 && x < 2} and
+ * {@code x == 0 || x == 1}.
+ *
  * @param <L> Type of locations
  * @param <A> Type of label
  */
@@ -16,6 +20,8 @@ public class PGTransition<L, A> {
     String condition;
     A action;
     L to;
+    /** Cached canonical form of {@link #condition}. */
+    private CanonicalCondition canonical;
 
     /**
      * Default constructor.
@@ -66,24 +72,6 @@ public class PGTransition<L, A> {
         } else if (!action.equals(other.action)) {
             return false;
         }
-        if (condition == null) {
-            if (other.condition != null) {
-                return false;
-            }
-        } else if (!condition.equals(other.condition)) {
-            ParserBasedCondDef pbc = new ParserBasedCondDef();
-
-            for (int i = 0; i < 1000; i++) {
-                RandomMap eval = new RandomMap();
-                boolean x1 = pbc.evaluate(eval, condition);
-                boolean x2 = pbc.evaluate(eval, other.condition);
-                if (x1 != x2) {
-                    return false;
-                }
-            }
-
-            return true;
-        }
         if (from == null) {
             if (other.from != null) {
                 return false;
@@ -98,7 +86,14 @@ public class PGTransition<L, A> {
         } else if (!to.equals(other.to)) {
             return false;
         }
-        return true;
+        return Objects.equals(canonical(), other.canonical());
+    }
+
+    private CanonicalCondition canonical() {
+        if (canonical == null && condition != null) {
+            canonical = CanonicalCondition.of(condition);
+        }
+        return canonical;
     }
 
     /**
@@ -147,8 +142,7 @@ public class PGTransition<L, A> {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((action == null) ? 0 : action.hashCode());
-        // result = prime * result + ((condition == null) ? 0 :
-        // condition.hashCode());
+        result = prime * result + Objects.hashCode(canonical());
         result = prime * result + ((from == null) ? 0 : from.hashCode());
         result = prime * result + ((to == null) ? 0 : to.hashCode());
         return result;
@@ -170,6 +164,7 @@ public class PGTransition<L, A> {
      */
     public void setCondition(String condition) {
         this.condition = condition;
+        this.canonical = null;
     }
 
     /**
@@ -196,18 +191,3 @@ public class PGTransition<L, A> {
     }
 
 }
-
-@SuppressWarnings("serial")
-class RandomMap extends HashMap<String, Object> implements Map<String, Object> {
-
-    public Object get(Object key) {
-        Object val = super.get(key);
-
-        if (val == null) {
-            val = new Random().nextInt(20) - 10;
-            put((String) key, val);
-        }
-
-        return val;
-    }
-}
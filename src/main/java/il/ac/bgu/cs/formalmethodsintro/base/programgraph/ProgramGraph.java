@@ -1,8 +1,10 @@
 package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -29,6 +31,11 @@ public class ProgramGraph<L, A> {
      */
     private final Set<PGTransition<L, A>> transitions = new HashSet<>();
 
+    /**
+     * The transitions, indexed by their source location.
+     */
+    private final Map<L, Set<PGTransition<L, A>>> outgoing = new HashMap<>();
+
     /**
      * Initializations for the program.
      */
@@ -96,7 +103,9 @@ public class ProgramGraph<L, A> {
     public void addTransition(PGTransition<L, A> t) {
         addLocation(t.getFrom());
         addLocation(t.getTo());
-        transitions.add(t);
+        if (transitions.add(t)) {
+            outgoing.computeIfAbsent(t.getFrom(), l -> new HashSet<>()).add(t);
+        }
     }
 
     /**
@@ -120,6 +129,15 @@ public class ProgramGraph<L, A> {
         return Collections.unmodifiableSet(transitions);
     }
 
+    /**
+     * @param l A location.
+     * @return The transitions leaving {@code l} (an unmodifiable view).
+     */
+    public Set<PGTransition<L, A>> getOutgoingTransitions(L l) {
+        Set<PGTransition<L, A>> out = outgoing.get(l);
+        return (out == null) ? Collections.emptySet() : Collections.unmodifiableSet(out);
+    }
+
     /**
      * Removes a location from the program graph.
      *
@@ -135,7 +153,13 @@ public class ProgramGraph<L, A> {
      * @param t A transition to remove.
      */
     public void removeTransition(PGTransition<L, A> t) {
-        transitions.remove(t);
+        if (transitions.remove(t)) {
+            Set<PGTransition<L, A>> out = outgoing.get(t.getFrom());
+            out.remove(t);
+            if (out.isEmpty()) {
+                outgoing.remove(t.getFrom());
+            }
+        }
     }
 
     /**
@@ -157,9 +181,9 @@ public class ProgramGraph<L, A> {
     @Override
     public int hashCode() {
         int hash = 7;
-        hash = 61 * hash + Objects.hashCode(this.locations);
-        hash = 61 * hash + Objects.hashCode(this.transitions);
-        hash = 61 * hash + Objects.hashCode(this.name);
+        hash = 61 * hash + Objects.hashCode(getLocations());
+        hash = 61 * hash + Objects.hashCode(getTransitions());
+        hash = 61 * hash + Objects.hashCode(getName());
         return hash;
     }
 
@@ -175,19 +199,19 @@ public class ProgramGraph<L, A> {
             return false;
         }
         final ProgramGraph<?, ?> other = (ProgramGraph<?, ?>) obj;
-        if (!Objects.equals(this.name, other.name)) {
+        if (!Objects.equals(getName(), other.getName())) {
             return false;
         }
-        if (!Objects.equals(this.initLocations, other.initLocations)) {
+        if (!Objects.equals(getInitialLocations(), other.getInitialLocations())) {
             return false;
         }
-        if (!Objects.equals(this.locations, other.locations)) {
+        if (!Objects.equals(getLocations(), other.getLocations())) {
             return false;
         }
-        if (!Objects.equals(this.transitions, other.transitions)) {
+        if (!Objects.equals(getTransitions(), other.getTransitions())) {
             return false;
         }
-        return Objects.equals(this.initializations, other.initializations);
+        return Objects.equals(getInitalizations(), other.getInitalizations());
     }
 
     @Override
@@ -0,0 +1,464 @@
+package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.Token;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.CompiledStmt;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaCompiler;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaLexer;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.AtomicstmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.BoolexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.IntexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.StmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.sat.SatSolver;
+import il.ac.bgu.cs.formalmethodsintro.base.sat.Tseitin;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.AlternatingSequence;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.BmcResult;
+
+/**
+ * Bounded model checking of a program graph whose conditions and actions are
+ * NanoPromela strings, over the transition system that
+ * {@link il.ac.bgu.cs.formalmethodsintro.base.FvmFacade#transitionSystemFromProgramGraph(ProgramGraph, java.util.Set, java.util.Set)}
+ * would build with the parser-based definitions.
+ *
+ * Variables are 32-bit words with Java {@code int} semantics, so results are
+ * exact, not approximated. Each step has one selector variable per transition,
+ * at most one of which holds; a selected transition must start at the current
+ * location and have a true condition, and determines the next location and
+ * variable values. Each variable also carries a "defined" bit, so the states
+ * of a counterexample are exactly those of the transition system (a variable
+ * appears in the map once it has been assigned).
+ *
+ * One checker answers any number of queries: the clauses of a query, and the
+ * requirement that a path takes every unrolled step, are guarded by
+ * activation literals that each {@code solve} call assumes.
+ *
+ * Supported actions are {@code skip}, assignments and {@code atomic} blocks;
+ * expressions may use everything but {@code /}, {@code %} and channel sizes.
+ * Anything else is rejected with an {@link IllegalArgumentException} when the
+ * checker is created.
+ *
+ * @param <L> Type of locations.
+ */
+public class ProgramGraphBmc<L> {
+
+    private final List<L> locations;
+    private final Map<L, Integer> locationIndex = new HashMap<>();
+    private final List<PGTransition<L, String>> transitions;
+    private final List<Effect> effects = new ArrayList<>();
+    private final List<BoolexprContext> conditions = new ArrayList<>();
+    private final String[] variables;
+    private final Map<String, Integer> variableIndex = new HashMap<>();
+
+    private final SatSolver solver = new SatSolver();
+    private final Tseitin enc = new Tseitin(solver);
+
+    /** Per step: location literals, value words, defined bits. */
+    private final List<int[]> at = new ArrayList<>();
+    private final List<int[][]> values = new ArrayList<>();
+    private final List<int[]> defined = new ArrayList<>();
+    /** Per step {@code t}: the selectors of the transitions from step {@code t}. */
+    private final List<int[]> selectors = new ArrayList<>();
+    /** Per step {@code t}: assumed when the path must go on past step {@code t}. */
+    private final List<Integer> steps = new ArrayList<>();
+
+    /**
+     * @param pg A program graph with NanoPromela conditions and actions.
+     * @throws IllegalArgumentException if a condition or action uses a
+     * construct this encoding does not support.
+     */
+    public ProgramGraphBmc(ProgramGraph<L, String> pg) {
+        locations = new ArrayList<>(pg.getLocations());
+        for (int i = 0; i < locations.size(); i++) {
+            locationIndex.put(locations.get(i), i);
+        }
+        transitions = new ArrayList<>(pg.getTransitions());
+
+        TreeSet<String> names = new TreeSet<>();
+        for (PGTransition<L, String> t : transitions) {
+            collectNames(t.getCondition(), names);
+            collectNames(t.getAction(), names);
+        }
+        for (List<String> init : pg.getInitalizations()) {
+            for (String action : init) {
+                collectNames(action, names);
+            }
+        }
+        variables = names.toArray(new String[0]);
+        for (int i = 0; i < variables.length; i++) {
+            variableIndex.put(variables[i], i);
+        }
+
+        for (PGTransition<L, String> t : transitions) {
+            conditions.add(t.getCondition().isEmpty() ? null : checked(NanoPromelaCompiler.parseCondition(t.getCondition())));
+            effects.add(new Effect(t.getAction()));
+        }
+        encodeInitialStates(pg);
+    }
+
+    /**
+     * Adds the names lexed as {@code VARNAME}s in {@code source} to
+     * {@code names}.
+     */
+    private static void collectNames(String source, TreeSet<String> names) {
+        NanoPromelaLexer lexer = new NanoPromelaLexer(new ANTLRInputStream(source));
+        lexer.removeErrorListeners();
+        for (Token t = lexer.nextToken(); t.getType() != Token.EOF; t = lexer.nextToken()) {
+            if (t.getType() == NanoPromelaLexer.VARNAME) {
+                names.add(t.getText());
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Unrolling
+    /**
+     * Step 0: one of (initial location, initialization) is chosen, and the
+     * variables get that initialization's values.
+     */
+    private void encodeInitialStates(ProgramGraph<L, String> pg) {
+        List<Map<String, Object>> inits = new ArrayList<>();
+        if (pg.getInitalizations().isEmpty()) {
+            inits.add(new HashMap<>());
+        }
+        for (List<String> init : pg.getInitalizations()) {
+            Map<String, Object> eval = new HashMap<>();
+            for (String action : init) {
+                CompiledStmt effect = NanoPromelaCompiler.compileAction(action);
+                if (effect == null) {
+                    throw new IllegalArgumentException("Cannot parse initialization " + action);
+                }
+                eval = effect.effect(eval);
+            }
+            inits.add(eval);
+        }
+
+        int[] loc = new int[locations.size()];
+        int[][] vals = new int[variables.length][];
+        int[] defs = new int[variables.length];
+        for (int v = 0; v < variables.length; v++) {
+            vals[v] = enc.newWord();
+            defs[v] = enc.newVar();
+        }
+        List<Integer> choices = new ArrayList<>();
+        List<List<Integer>> choicesAt = new ArrayList<>();
+        for (int l = 0; l < locations.size(); l++) {
+            choicesAt.add(new ArrayList<>());
+        }
+        for (L l0 : pg.getInitialLocations()) {
+            for (Map<String, Object> init : inits) {
+                int choice = enc.newVar();
+                choices.add(choice);
+                choicesAt.get(locationIndex.get(l0)).add(choice);
+                for (int v = 0; v < variables.length; v++) {
+                    Object value = init.get(variables[v]);
+                    enc.equalWhen(choice, vals[v], enc.constant(value == null ? 0 : (Integer) value));
+                    solver.addClause(-choice, value == null ? -defs[v] : defs[v]);
+                }
+            }
+        }
+        int[] all = toArray(choices);
+        solver.addClause(all); // no initial state makes the problem unsatisfiable, as it should
+        enc.atMostOne(all);
+        for (int l = 0; l < locations.size(); l++) {
+            loc[l] = enc.or(toArray(choicesAt.get(l)));
+        }
+        at.add(loc);
+        values.add(vals);
+        defined.add(defs);
+    }
+
+    /**
+     * Adds step {@code t -> t + 1}, where {@code t} is the current depth. The
+     * path is required to take it when its activation literal is assumed.
+     */
+    private void unroll() {
+        int t = at.size() - 1;
+        int[] sel = new int[transitions.size()];
+        int[] loc = new int[locations.size()];
+        int[][] vals = new int[variables.length][];
+        int[] defs = new int[variables.length];
+        for (int v = 0; v < variables.length; v++) {
+            vals[v] = enc.newWord();
+            defs[v] = enc.newVar();
+        }
+        List<List<Integer>> into = new ArrayList<>();
+        for (int l = 0; l < locations.size(); l++) {
+            into.add(new ArrayList<>());
+        }
+        for (int i = 0; i < transitions.size(); i++) {
+            PGTransition<L, String> tr = transitions.get(i);
+            int s = sel[i] = enc.newVar();
+            solver.addClause(-s, at.get(t)[locationIndex.get(tr.getFrom())]);
+            if (conditions.get(i) != null) {
+                solver.addClause(-s, encode(conditions.get(i), t));
+            }
+            into.get(locationIndex.get(tr.getTo())).add(s);
+            Effect effect = effects.get(i);
+            for (int v = 0; v < variables.length; v++) {
+                IntexprContext rhs = effect.assigned.get(variables[v]);
+                if (rhs == null) {
+                    enc.equalWhen(s, vals[v], values.get(t)[v]);
+                    solver.addClause(-s, -defs[v], defined.get(t)[v]);
+                    solver.addClause(-s, defs[v], -defined.get(t)[v]);
+                } else {
+                    enc.equalWhen(s, vals[v], encode(rhs, t));
+                    solver.addClause(-s, defs[v]);
+                }
+            }
+        }
+        int step = solver.newVar();
+        int[] taken = new int[sel.length + 1];
+        taken[0] = -step;
+        System.arraycopy(sel, 0, taken, 1, sel.length);
+        solver.addClause(taken);
+        enc.atMostOne(sel);
+        for (int l = 0; l < locations.size(); l++) {
+            loc[l] = enc.or(toArray(into.get(l)));
+        }
+        selectors.add(sel);
+        steps.add(step);
+        at.add(loc);
+        values.add(vals);
+        defined.add(defs);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] res = new int[list.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = list.get(i);
+        }
+        return res;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Checking
+    /**
+     * @param condition A NanoPromela {@code boolexpr} over the variables; the
+     * empty string is {@code true}.
+     * @param bound The largest number of steps to consider.
+     * @return The result; a counterexample is a shortest one.
+     * @see #check(Predicate, String, int)
+     */
+    public BmcResult<Pair<L, Map<String, Object>>, String> check(String condition, int bound) {
+        return check(l -> true, condition, bound);
+    }
+
+    /**
+     * Looks for a reachable state whose location fails {@code locations} or
+     * whose variables fail {@code condition}, within {@code bound} steps,
+     * trying shorter paths first.
+     *
+     * @param locations The allowed locations.
+     * @param condition A NanoPromela {@code boolexpr} over the variables; the
+     * empty string is {@code true}.
+     * @param bound The largest number of steps to consider.
+     * @return The result; a counterexample is a shortest one.
+     * @throws IllegalArgumentException if {@code condition} uses a construct
+     * this encoding does not support.
+     */
+    public BmcResult<Pair<L, Map<String, Object>>, String> check(Predicate<? super L> locations, String condition,
+            int bound) {
+        BoolexprContext cond = condition.isEmpty() ? null : checked(NanoPromelaCompiler.parseCondition(condition));
+        // guards what this query learns, that shallower states satisfy it
+        int query = solver.newVar();
+        try {
+            return check(locations, cond, bound, query);
+        } finally {
+            solver.addClause(-query); // retires the query's clauses
+        }
+    }
+
+    private BmcResult<Pair<L, Map<String, Object>>, String> check(Predicate<? super L> locations, BoolexprContext cond,
+            int bound, int query) {
+        for (int k = 0; k <= bound; k++) {
+            while (at.size() <= k) {
+                unroll();
+            }
+            int holds = cond == null ? enc.constant(true) : encode(cond, k);
+            for (int l = 0; l < this.locations.size(); l++) {
+                if (!locations.test(this.locations.get(l))) {
+                    holds = enc.and(holds, -at.get(k)[l]);
+                }
+            }
+            int[] assumptions = new int[k + 2];
+            assumptions[0] = query;
+            assumptions[1] = -holds;
+            for (int t = 0; t < k; t++) {
+                assumptions[t + 2] = steps.get(t);
+            }
+            if (solver.solve(assumptions)) {
+                return new BmcResult<>(counterexample(k), k);
+            }
+            solver.addClause(-query, holds);
+        }
+        return new BmcResult<>(null, bound);
+    }
+
+    private AlternatingSequence<Pair<L, Map<String, Object>>, String> counterexample(int k) {
+        List<Pair<L, Map<String, Object>>> states = new ArrayList<>();
+        List<String> actions = new ArrayList<>();
+        for (int t = 0; t <= k; t++) {
+            L loc = null;
+            for (int l = 0; l < locations.size(); l++) {
+                if (solver.modelValue(at.get(t)[l])) {
+                    loc = locations.get(l);
+                }
+            }
+            Map<String, Object> eval = new HashMap<>();
+            for (int v = 0; v < variables.length; v++) {
+                if (solver.modelValue(defined.get(t)[v])) {
+                    eval.put(variables[v], enc.modelValue(values.get(t)[v]));
+                }
+            }
+            states.add(new Pair<>(loc, eval));
+            if (t < k) {
+                for (int i = 0; i < transitions.size(); i++) {
+                    if (solver.modelValue(selectors.get(t)[i])) {
+                        actions.add(transitions.get(i).getAction());
+                    }
+                }
+            }
+        }
+        return new AlternatingSequence<>(states, actions);
+    }
+
+    /**
+     * @return The SAT solver, for statistics.
+     */
+    public SatSolver getSolver() {
+        return solver;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Expression encoding, following Evaluator
+    private int encode(BoolexprContext context, int t) {
+        if (context.NOT() != null) {
+            return -encode(context.boolexpr(0), t);
+        }
+        if (context.AND() != null) {
+            return enc.and(encode(context.boolexpr(0), t), encode(context.boolexpr(1), t));
+        }
+        if (context.OR() != null) {
+            return enc.or(encode(context.boolexpr(0), t), encode(context.boolexpr(1), t));
+        }
+        if (context.LTEQ() != null) {
+            return -enc.lessThan(encode(context.intexpr(1), t), encode(context.intexpr(0), t));
+        }
+        if (context.GTEQ() != null) {
+            return -enc.lessThan(encode(context.intexpr(0), t), encode(context.intexpr(1), t));
+        }
+        if (context.LT() != null) {
+            return enc.lessThan(encode(context.intexpr(0), t), encode(context.intexpr(1), t));
+        }
+        if (context.GT() != null) {
+            return enc.lessThan(encode(context.intexpr(1), t), encode(context.intexpr(0), t));
+        }
+        if (context.EQ() != null) {
+            return enc.equal(encode(context.intexpr(0), t), encode(context.intexpr(1), t));
+        }
+        if (context.NEQ() != null) {
+            return -enc.equal(encode(context.intexpr(0), t), encode(context.intexpr(1), t));
+        }
+        if (context.TRUE() != null) {
+            return enc.constant(true);
+        }
+        if (context.FALSE() != null) {
+            return enc.constant(false);
+        }
+        return encode(context.boolexpr(0), t);
+    }
+
+    private int[] encode(IntexprContext context, int t) {
+        if (context.POW() != null) {
+            return enc.xor(encode(context.intexpr(0), t), encode(context.intexpr(1), t));
+        }
+        if (context.MINUS() != null && context.intexpr().size() == 1) {
+            return enc.negate(encode(context.intexpr(0), t));
+        }
+        if (context.MULT() != null) {
+            return enc.multiply(encode(context.intexpr(0), t), encode(context.intexpr(1), t));
+        }
+        if (context.DIV() != null || context.MOD() != null || context.CHANNAME() != null) {
+            throw new IllegalArgumentException("Bounded model checking does not support " + context.getText());
+        }
+        if (context.PLUS() != null) {
+            return enc.add(encode(context.intexpr(0), t), encode(context.intexpr(1), t));
+        }
+        if (context.MINUS() != null) {
+            return enc.subtract(encode(context.intexpr(0), t), encode(context.intexpr(1), t));
+        }
+        if (context.INT() != null) {
+            return enc.constant(Integer.parseInt(context.getText()));
+        }
+        if (context.VARNAME() != null) {
+            Integer v = variableIndex.get(context.getText());
+            // a name the program never mentions is never set, so it reads as 0
+            return v == null ? enc.constant(0) : values.get(t)[v];
+        }
+        return encode(context.intexpr(0), t);
+    }
+
+    private static BoolexprContext checked(BoolexprContext context) {
+        for (IntexprContext sub : context.intexpr()) {
+            Effect.check(sub);
+        }
+        for (BoolexprContext sub : context.boolexpr()) {
+            checked(sub);
+        }
+        return context;
+    }
+
+    /**
+     * The assignments an action makes, all evaluated over the state before
+     * it (as {@code atomic} blocks are in Evaluator).
+     */
+    private static final class Effect {
+
+        final Map<String, IntexprContext> assigned = new HashMap<>();
+
+        Effect(String action) {
+            if (action.isEmpty()) {
+                return;
+            }
+            StmtContext stmt = NanoPromelaCompiler.parseStatement(action);
+            if (stmt.skipstmt() != null) {
+                return;
+            }
+            if (stmt.assstmt() != null) {
+                assigned.put(stmt.assstmt().VARNAME().getText(), check(stmt.assstmt().intexpr()));
+                return;
+            }
+            if (stmt.atomicstmt() != null) {
+                AtomicstmtContext atomic = stmt.atomicstmt();
+                for (int i = 0; i < atomic.VARNAME().size(); i++) {
+                    assigned.put(atomic.VARNAME(i).getText(), check(atomic.intexpr(i)));
+                }
+                return;
+            }
+            throw new IllegalArgumentException("Bounded model checking does not support action " + action);
+        }
+
+        /**
+         * Rejects unsupported operators early, rather than at some depth.
+         */
+        private static IntexprContext check(IntexprContext context) {
+            if (context.DIV() != null || context.MOD() != null || context.CHANNAME() != null) {
+                throw new IllegalArgumentException("Bounded model checking does not support " + context.getText());
+            }
+            for (IntexprContext sub : context.intexpr()) {
+                check(sub);
+            }
+            return context;
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package il.ac.bgu.cs.formalmethodsintro.base.reachability;
+
+/**
+ * Bitstate hashing (a.k.a. supertrace): each state sets {@code k} bits in a
+ * fixed-size bit array. A state is considered visited if all its bits are set.
+ * Memory use is constant; the probability of omitting states grows as the
+ * array fills up.
+ *
+ * @param <S> Type of the stored states.
+ */
+public class BitstateStateStore<S> implements VisitedStateStore<S> {
+
+    private final long[] bits;
+    private final long bitMask;
+    private final int hashCount;
+    private int size;
+    private long setBits;
+    private long collisions;
+
+    /**
+     * A store of 2^27 bits (16MB) with 3 hash functions.
+     */
+    public BitstateStateStore() {
+        this(27, 3);
+    }
+
+    /**
+     * @param log2Bits Base-2 logarithm of the number of bits in the array
+     * (between 6 and 36).
+     * @param aHashCount Number of bits set per state.
+     */
+    public BitstateStateStore(int log2Bits, int aHashCount) {
+        if (log2Bits < 6 || log2Bits > 36) {
+            throw new IllegalArgumentException("Bit array size must be 2^6..2^36 (got 2^" + log2Bits + ")");
+        }
+        if (aHashCount < 1) {
+            throw new IllegalArgumentException("At least one hash function is needed");
+        }
+        bits = new long[1 << (log2Bits - 6)];
+        bitMask = (1L << log2Bits) - 1;
+        hashCount = aHashCount;
+    }
+
+    @Override
+    public boolean add(S s) {
+        long h = VisitedStateStore.mix64(s.hashCode());
+        long h1 = h;
+        long h2 = (h >>> 29) | 1;
+        boolean isNew = false;
+        for (int k = 0; k < hashCount; k++) {
+            long bit = (h1 + k * h2) & bitMask;
+            int word = (int) (bit >>> 6);
+            long m = 1L << (bit & 63);
+            if ((bits[word] & m) == 0) {
+                bits[word] |= m;
+                setBits++;
+                isNew = true;
+            } else {
+                collisions++;
+            }
+        }
+        if (isNew) {
+            size++;
+        }
+        return isNew;
+    }
+
+    @Override
+    public boolean contains(S s) {
+        long h = VisitedStateStore.mix64(s.hashCode());
+        long h2 = (h >>> 29) | 1;
+        for (int k = 0; k < hashCount; k++) {
+            long bit = (h + k * h2) & bitMask;
+            if ((bits[(int) (bit >>> 6)] & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isExact() {
+        return false;
+    }
+
+    /**
+     * Note: for this store, the load factor is the fraction of set bits.
+     */
+    @Override
+    public StateStoreStatistics getStatistics() {
+        return new StateStoreStatistics(size, setBits, bitMask + 1, collisions, 0);
+    }
+
+}
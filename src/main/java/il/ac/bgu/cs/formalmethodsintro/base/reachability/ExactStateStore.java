@@ -0,0 +1,103 @@
+package il.ac.bgu.cs.formalmethodsintro.base.reachability;
+
+/**
+ * An open-addressing hash set of states with linear probing. The (mixed) hash
+ * of each stored state is cached next to it, so probing compares ints and
+ * calls {@code equals()} only on a full hash match, and growing the table
+ * never recomputes a hash.
+ *
+ * @param <S> Type of the stored states.
+ */
+public class ExactStateStore<S> implements VisitedStateStore<S> {
+
+    private static final float MAX_LOAD = 0.6f;
+
+    private Object[] keys;
+    private int[] hashes;
+    private int mask;
+    private int size;
+    private long collisions;
+    private int resizes;
+
+    public ExactStateStore() {
+        this(1 << 10);
+    }
+
+    /**
+     * @param expectedSize Number of states the store should hold without
+     * growing.
+     */
+    public ExactStateStore(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    @Override
+    public boolean add(S s) {
+        int h = VisitedStateStore.mix(s.hashCode());
+        int i = h & mask;
+        while (keys[i] != null) {
+            if (hashes[i] == h && keys[i].equals(s)) {
+                return false;
+            }
+            collisions++;
+            i = (i + 1) & mask;
+        }
+        keys[i] = s;
+        hashes[i] = h;
+        if (++size > keys.length * MAX_LOAD) {
+            grow();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(S s) {
+        int h = VisitedStateStore.mix(s.hashCode());
+        for (int i = h & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && keys[i].equals(s)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void grow() {
+        Object[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        allocate(oldKeys.length << 1);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+        resizes++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+
+    @Override
+    public StateStoreStatistics getStatistics() {
+        return new StateStoreStatistics(size, size, keys.length, collisions, resizes);
+    }
+
+}
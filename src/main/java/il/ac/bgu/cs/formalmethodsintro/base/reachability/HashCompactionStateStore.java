@@ -0,0 +1,108 @@
+package il.ac.bgu.cs.formalmethodsintro.base.reachability;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Hash compaction: an open-addressing table storing only a 64 bit fingerprint
+ * per state (8 bytes, regardless of the state's size). States with equal
+ * fingerprints are confused, so the store is not exact.
+ *
+ * The default fingerprint is derived from {@code hashCode()}, so its quality
+ * is bounded by the 32 bits of the state's hash. Pass a dedicated fingerprint
+ * function for better coverage.
+ *
+ * @param <S> Type of the stored states.
+ */
+public class HashCompactionStateStore<S> implements VisitedStateStore<S> {
+
+    private static final float MAX_LOAD = 0.7f;
+
+    private final ToLongFunction<? super S> fingerprint;
+    private long[] table;
+    private int mask;
+    private int size;
+    private long collisions;
+    private int resizes;
+
+    public HashCompactionStateStore() {
+        this(s -> VisitedStateStore.mix64(s.hashCode()), 1 << 10);
+    }
+
+    /**
+     * @param aFingerprint Computes the 64 bit fingerprint of a state.
+     * @param expectedSize Number of states the store should hold without
+     * growing.
+     */
+    public HashCompactionStateStore(ToLongFunction<? super S> aFingerprint, int expectedSize) {
+        fingerprint = aFingerprint;
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        table = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private long fingerprintOf(S s) {
+        long fp = fingerprint.applyAsLong(s);
+        return (fp == 0) ? 1 : fp; // 0 marks an empty slot
+    }
+
+    @Override
+    public boolean add(S s) {
+        long fp = fingerprintOf(s);
+        int i = ((int) (fp ^ (fp >>> 32))) & mask;
+        while (table[i] != 0) {
+            if (table[i] == fp) {
+                return false;
+            }
+            collisions++;
+            i = (i + 1) & mask;
+        }
+        table[i] = fp;
+        if (++size > table.length * MAX_LOAD) {
+            grow();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(S s) {
+        long fp = fingerprintOf(s);
+        for (int i = ((int) (fp ^ (fp >>> 32))) & mask; table[i] != 0; i = (i + 1) & mask) {
+            if (table[i] == fp) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length << 1];
+        mask = table.length - 1;
+        for (long fp : old) {
+            if (fp != 0) {
+                int i = ((int) (fp ^ (fp >>> 32))) & mask;
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = fp;
+            }
+        }
+        resizes++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isExact() {
+        return false;
+    }
+
+    @Override
+    public StateStoreStatistics getStatistics() {
+        return new StateStoreStatistics(size, size, table.length, collisions, resizes);
+    }
+
+}
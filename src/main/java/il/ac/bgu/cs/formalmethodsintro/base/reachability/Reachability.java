@@ -0,0 +1,170 @@
+package il.ac.bgu.cs.formalmethodsintro.base.reachability;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A worklist-based reachability engine. Explores the graph induced by a
+ * successor function from a set of initial states, without recursion, so it
+ * can handle arbitrarily long paths.
+ *
+ * Usage: {@code new Reachability<S>(ts::getSuccessors).order(SearchOrder.BFS).explore(ts.getInitialStates())}
+ *
+ * @param <S> Type of the states.
+ */
+public class Reachability<S> {
+
+    private final Function<? super S, ? extends Iterable<? extends S>> successors;
+    private SearchOrder order = SearchOrder.BFS;
+    private int maxDepth = Integer.MAX_VALUE;
+    private Predicate<? super S> stopCondition = null;
+    private boolean trackPaths = true;
+
+    /**
+     * @param successors Maps a state to its direct successors. May return
+     * duplicates; they are ignored.
+     */
+    public Reachability(Function<? super S, ? extends Iterable<? extends S>> successors) {
+        this.successors = successors;
+    }
+
+    /**
+     * @param anOrder The frontier discipline. Default is {@link SearchOrder#BFS}.
+     * @return {@code this}, for chaining.
+     */
+    public Reachability<S> order(SearchOrder anOrder) {
+        order = anOrder;
+        return this;
+    }
+
+    /**
+     * Do not expand states whose depth is {@code depth} or more. Initial
+     * states have depth 0.
+     *
+     * With {@link SearchOrder#DFS}, a state is expanded again when a path
+     * shorter than the one it was found by reaches it, so that every state
+     * within the bound is found.
+     *
+     * @param depth The maximal depth of an expanded state.
+     * @return {@code this}, for chaining.
+     */
+    public Reachability<S> maxDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth limit cannot be negative (" + depth + ")");
+        }
+        maxDepth = depth;
+        return this;
+    }
+
+    /**
+     * Stop the exploration as soon as a state satisfying {@code condition} is
+     * discovered. That state is available via
+     * {@link ReachabilityResult#getHit()}.
+     *
+     * @param condition The early-exit predicate.
+     * @return {@code this}, for chaining.
+     */
+    public Reachability<S> stopWhen(Predicate<? super S> condition) {
+        stopCondition = condition;
+        return this;
+    }
+
+    /**
+     * Whether to record depths and parents of discovered states. Turning this
+     * off halves the memory footprint when only the reachable set is needed.
+     * Default is {@code true}.
+     *
+     * @param track Whether to record depths and parents.
+     * @return {@code this}, for chaining.
+     */
+    public Reachability<S> trackPaths(boolean track) {
+        trackPaths = track;
+        return this;
+    }
+
+    /**
+     * Runs the exploration.
+     *
+     * @param initialStates The states to start from.
+     * @return The states discovered, and (if tracked) their depths and parents.
+     */
+    public ReachabilityResult<S> explore(Iterable<? extends S> initialStates) {
+        Set<S> visited = new HashSet<>();
+        Map<S, S> parents = trackPaths ? new HashMap<>() : null;
+        Map<S, Integer> depths = trackPaths ? new HashMap<>() : null;
+
+        // Frontier entries are states; when depth is needed but paths are not
+        // tracked, depths are kept in a parallel deque.
+        boolean bounded = maxDepth != Integer.MAX_VALUE;
+        boolean needDepth = bounded && !trackPaths;
+        ArrayDeque<S> frontier = new ArrayDeque<>();
+        ArrayDeque<Integer> frontierDepths = needDepth ? new ArrayDeque<>() : null;
+        // A bounded DFS may first reach a state by a path longer than its
+        // shortest one; it then expands it again when a shorter path arrives,
+        // so no state within the bound is missed.
+        boolean reexpand = bounded && order == SearchOrder.DFS;
+        Map<S, Integer> best = trackPaths ? depths : (reexpand ? new HashMap<>() : null);
+
+        for (S s : initialStates) {
+            if (visited.add(s)) {
+                if (best != null) {
+                    best.put(s, 0);
+                }
+                if (stopCondition != null && stopCondition.test(s)) {
+                    return new ReachabilityResult<>(visited, parents, depths, s);
+                }
+                frontier.addLast(s);
+                if (needDepth) {
+                    frontierDepths.addLast(0);
+                }
+            }
+        }
+
+        while (!frontier.isEmpty()) {
+            S state;
+            int depth;
+            if (order == SearchOrder.BFS) {
+                state = frontier.pollFirst();
+                depth = needDepth ? frontierDepths.pollFirst() : 0;
+            } else {
+                state = frontier.pollLast();
+                depth = needDepth ? frontierDepths.pollLast() : 0;
+            }
+            if (trackPaths) {
+                depth = depths.get(state);
+            } else if (reexpand && depth > best.get(state)) {
+                continue; // superseded by a shorter path, pushed later
+            }
+            if (depth >= maxDepth) {
+                continue;
+            }
+
+            for (S next : successors.apply(state)) {
+                boolean discovered = visited.add(next);
+                if (discovered || (reexpand && best.get(next) > depth + 1)) {
+                    if (best != null) {
+                        best.put(next, depth + 1);
+                    }
+                    if (trackPaths) {
+                        parents.put(next, state);
+                    }
+                    if (discovered && stopCondition != null && stopCondition.test(next)) {
+                        return new ReachabilityResult<>(visited, parents, depths, next);
+                    }
+                    frontier.addLast(next);
+                    if (needDepth) {
+                        frontierDepths.addLast(depth + 1);
+                    }
+                }
+            }
+        }
+
+        return new ReachabilityResult<>(visited, parents, depths, null);
+    }
+
+}
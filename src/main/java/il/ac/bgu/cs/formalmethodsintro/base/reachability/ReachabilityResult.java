@@ -0,0 +1,126 @@
+package il.ac.bgu.cs.formalmethodsintro.base.reachability;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The outcome of a {@link Reachability} exploration.
+ *
+ * @param <S> Type of the states.
+ */
+public class ReachabilityResult<S> {
+
+    private final Set<S> reachable;
+    private final Map<S, S> parents;
+    private final Map<S, Integer> depths;
+    private final S hit;
+
+    ReachabilityResult(Set<S> reachable, Map<S, S> parents, Map<S, Integer> depths, S hit) {
+        this.reachable = reachable;
+        this.parents = parents;
+        this.depths = depths;
+        this.hit = hit;
+    }
+
+    /**
+     * Note: the returned set is owned by the caller; the engine no longer
+     * references it.
+     *
+     * @return All discovered states. If the exploration stopped early, this
+     * is only a part of the reachable states.
+     */
+    public Set<S> getReachable() {
+        return reachable;
+    }
+
+    /**
+     * @return {@code true} iff the exploration stopped because a state
+     * satisfying the stop condition was found.
+     */
+    public boolean isStoppedEarly() {
+        return hit != null;
+    }
+
+    /**
+     * @return The state that satisfied the stop condition, or {@code null}.
+     */
+    public S getHit() {
+        return hit;
+    }
+
+    /**
+     * @return {@code true} iff depths and parents were recorded.
+     */
+    public boolean hasPaths() {
+        return parents != null;
+    }
+
+    /**
+     * @param s A discovered state.
+     * @return The depth at which {@code s} was discovered (0 for initial
+     * states). Under BFS, this is the length of a shortest path to it.
+     */
+    public int getDepth(S s) {
+        requirePaths();
+        Integer d = depths.get(s);
+        if (d == null) {
+            throw new IllegalArgumentException("State " + s + " was not discovered");
+        }
+        return d;
+    }
+
+    /**
+     * @param s A discovered state.
+     * @return The state from which {@code s} was discovered, or {@code null}
+     * if {@code s} is an initial state.
+     */
+    public S getParent(S s) {
+        requirePaths();
+        return parents.get(s);
+    }
+
+    /**
+     * @return An unmodifiable view of the depth map.
+     */
+    public Map<S, Integer> getDepths() {
+        requirePaths();
+        return Collections.unmodifiableMap(depths);
+    }
+
+    /**
+     * @return An unmodifiable view of the parent map. Initial states have no
+     * entry.
+     */
+    public Map<S, S> getParents() {
+        requirePaths();
+        return Collections.unmodifiableMap(parents);
+    }
+
+    /**
+     * Reconstructs the path from an initial state to {@code s}, following the
+     * parent map. Under BFS this is a shortest witness path.
+     *
+     * @param s A discovered state.
+     * @return The states on the path, starting at an initial state and ending
+     * at {@code s}.
+     */
+    public List<S> pathTo(S s) {
+        int d = getDepth(s);
+        List<S> path = new ArrayList<>(d + 1);
+        for (S cur = s; cur != null; cur = parents.get(cur)) {
+            path.add(cur);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private void requirePaths() {
+        if (parents == null) {
+            throw new IllegalStateException("Exploration did not track paths");
+        }
+    }
+
+}
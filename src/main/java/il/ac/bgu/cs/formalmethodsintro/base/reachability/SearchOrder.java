@@ -0,0 +1,19 @@
+package il.ac.bgu.cs.formalmethodsintro.base.reachability;
+
+/**
+ * The order in which a {@link Reachability} engine expands its frontier.
+ */
+public enum SearchOrder {
+
+    /**
+     * Breadth-first: the frontier is a FIFO queue. Depths and parents recorded
+     * in the result describe shortest paths from the initial states.
+     */
+    BFS,
+
+    /**
+     * Depth-first: the frontier is a LIFO stack. Uses less memory on wide
+     * graphs, but the recorded depths are those of the DFS tree.
+     */
+    DFS
+}
@@ -0,0 +1,46 @@
+package il.ac.bgu.cs.formalmethodsintro.base.reachability;
+
+/**
+ * The available {@link VisitedStateStore} implementations.
+ */
+public enum StateStoreKind {
+
+    /**
+     * Stores the states themselves. Never loses a state.
+     */
+    EXACT {
+        @Override
+        public <S> VisitedStateStore<S> create() {
+            return new ExactStateStore<>();
+        }
+    },
+
+    /**
+     * Stores a 64 bit fingerprint per state. Two states with the same
+     * fingerprint are confused, so a few states may be omitted.
+     */
+    HASH_COMPACTION {
+        @Override
+        public <S> VisitedStateStore<S> create() {
+            return new HashCompactionStateStore<>();
+        }
+    },
+
+    /**
+     * Holzmann's bitstate hashing: a few bits per state in a fixed bit array.
+     * Uses constant memory, at the price of omissions once the array fills up.
+     */
+    BITSTATE {
+        @Override
+        public <S> VisitedStateStore<S> create() {
+            return new BitstateStateStore<>();
+        }
+    };
+
+    /**
+     * @param <S> Type of the stored states.
+     * @return A new, empty store of this kind, with default parameters.
+     */
+    public abstract <S> VisitedStateStore<S> create();
+
+}
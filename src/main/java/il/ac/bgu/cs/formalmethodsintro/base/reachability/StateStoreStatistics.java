@@ -0,0 +1,72 @@
+package il.ac.bgu.cs.formalmethodsintro.base.reachability;
+
+/**
+ * Occupancy statistics of a {@link VisitedStateStore}.
+ */
+public class StateStoreStatistics {
+
+    private final int size;
+    private final long occupied;
+    private final long capacity;
+    private final long collisions;
+    private final int resizes;
+
+    /**
+     * @param size Number of stored states.
+     * @param occupied Number of occupied slots.
+     * @param capacity Number of slots.
+     * @param collisions Number of collisions (see {@link #getCollisions()}).
+     * @param resizes Number of times the table was grown.
+     */
+    public StateStoreStatistics(int size, long occupied, long capacity, long collisions, int resizes) {
+        this.size = size;
+        this.occupied = occupied;
+        this.capacity = capacity;
+        this.collisions = collisions;
+        this.resizes = resizes;
+    }
+
+    /**
+     * @return Number of stored states.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Number of slots (bits, for bitstate stores) in the table.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Fraction of occupied slots.
+     */
+    public double getLoadFactor() {
+        return (capacity == 0) ? 0 : ((double) occupied) / capacity;
+    }
+
+    /**
+     * @return Number of occupied slots probed before finding the right one.
+     * For bitstate stores, number of bits found already set when adding a new
+     * state.
+     */
+    public long getCollisions() {
+        return collisions;
+    }
+
+    /**
+     * @return Number of times the table was grown.
+     */
+    public int getResizes() {
+        return resizes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[StateStoreStatistics size=%d capacity=%d load=%.3f collisions=%d resizes=%d]",
+                size, capacity, getLoadFactor(), collisions, resizes);
+    }
+
+}
@@ -0,0 +1,66 @@
+package il.ac.bgu.cs.formalmethodsintro.base.reachability;
+
+/**
+ * A set of states already explored by a state-space generator. Implementations
+ * trade exactness for memory: see {@link StateStoreKind}.
+ *
+ * @param <S> Type of the stored states.
+ */
+public interface VisitedStateStore<S> {
+
+    /**
+     * Marks {@code s} as visited.
+     *
+     * @param s A state.
+     * @return {@code true} iff {@code s} was not considered visited before this
+     * call. Non-exact stores may return {@code false} for a new state (an
+     * omission).
+     */
+    boolean add(S s);
+
+    /**
+     * @param s A state.
+     * @return {@code true} iff {@code s} is considered visited. Non-exact
+     * stores may return {@code true} for a state that was never added.
+     */
+    boolean contains(S s);
+
+    /**
+     * @return Number of states for which {@link #add(java.lang.Object)}
+     * returned {@code true}.
+     */
+    int size();
+
+    /**
+     * @return {@code true} iff this store never reports a false positive.
+     */
+    boolean isExact();
+
+    /**
+     * @return A snapshot of this store's occupancy statistics.
+     */
+    StateStoreStatistics getStatistics();
+
+    /**
+     * Spreads the bits of a {@code hashCode()} value, so that clustered hash
+     * codes (e.g. small integers) do not form long probe sequences.
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Extends a 32 bit hash to a 64 bit fingerprint.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+}
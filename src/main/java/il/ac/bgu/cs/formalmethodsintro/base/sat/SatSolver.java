@@ -0,0 +1,689 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An incremental CDCL SAT solver.
+ *
+ * Variables are numbered from 1 and literals are DIMACS-style: {@code v} or
+ * {@code -v}. Clauses may be added between calls to {@link #solve(int...)},
+ * and each call may pass assumptions (literals that must hold for that call
+ * only). Clauses learnt in one call stay valid for the next, since
+ * assumptions are treated as decisions.
+ *
+ * The search is the usual one: two watched literals per clause, first-UIP
+ * conflict analysis with learnt-clause minimization, VSIDS branching with
+ * phase saving, Luby restarts, and periodic removal of learnt clauses with a
+ * high literal block distance.
+ */
+public class SatSolver {
+
+    private static final int UNDEF = -1;
+    private static final double VAR_DECAY = 0.95;
+    private static final int RESTART_BASE = 100;
+
+    private int varCount = 0;
+
+    // Per variable (index 0 unused)
+    private byte[] value = new byte[16]; // 0 false, 1 true, -1 unassigned
+    private int[] level = new int[16];
+    private int[] reason = new int[16];
+    private double[] activity = new double[16];
+    private boolean[] phase = new boolean[16];
+    private boolean[] seen = new boolean[16];
+
+    // Per literal (2v for v, 2v+1 for -v): indices of clauses watching it
+    private IntList[] watches = new IntList[32];
+
+    private final List<int[]> clauses = new ArrayList<>();
+    private final IntList learnts = new IntList();
+    private boolean[] deleted = new boolean[64];
+    private int[] lbd = new int[64];
+
+    private int[] trail = new int[16];
+    private int trailSize = 0;
+    private int propagated = 0;
+    private final IntList trailLim = new IntList();
+
+    private final VarHeap heap = new VarHeap();
+    private double varInc = 1;
+
+    private boolean ok = true;
+    private boolean[] model;
+    private long conflicts = 0;
+    private long decisions = 0;
+    private long propagations = 0;
+    private long nextReduce = 2000;
+
+    public SatSolver() {
+        for (int i = 0; i < watches.length; i++) {
+            watches[i] = new IntList();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Building the problem
+    /**
+     * @return A fresh variable.
+     */
+    public int newVar() {
+        int v = ++varCount;
+        if (v >= value.length) {
+            int cap = value.length * 2;
+            value = Arrays.copyOf(value, cap);
+            level = Arrays.copyOf(level, cap);
+            reason = Arrays.copyOf(reason, cap);
+            activity = Arrays.copyOf(activity, cap);
+            phase = Arrays.copyOf(phase, cap);
+            seen = Arrays.copyOf(seen, cap);
+            trail = Arrays.copyOf(trail, cap);
+            int old = watches.length;
+            watches = Arrays.copyOf(watches, cap * 2);
+            for (int i = old; i < watches.length; i++) {
+                watches[i] = new IntList();
+            }
+        }
+        value[v] = UNDEF;
+        reason[v] = UNDEF;
+        heap.insert(v);
+        return v;
+    }
+
+    public int getVarCount() {
+        return varCount;
+    }
+
+    /**
+     * Adds a clause (a disjunction of literals).
+     *
+     * @return {@code false} iff the problem is now known to be unsatisfiable.
+     * @throws IllegalArgumentException if a literal names an unknown variable.
+     */
+    public boolean addClause(int... literals) {
+        if (!ok) {
+            return false;
+        }
+        cancelUntil(0);
+        int[] lits = new int[literals.length];
+        int n = 0;
+        for (int l : literals) {
+            int v = Math.abs(l);
+            if (l == 0 || v > varCount) {
+                throw new IllegalArgumentException("No such variable: " + l);
+            }
+            int lit = toLit(l);
+            int val = litValue(lit);
+            if (val == 1) {
+                return true; // already satisfied at level 0
+            }
+            if (val == 0) {
+                continue;
+            }
+            boolean dup = false;
+            for (int i = 0; i < n; i++) {
+                if (lits[i] == lit) {
+                    dup = true;
+                } else if (lits[i] == (lit ^ 1)) {
+                    return true; // tautology
+                }
+            }
+            if (!dup) {
+                lits[n++] = lit;
+            }
+        }
+        if (n == 0) {
+            ok = false;
+            return false;
+        }
+        if (n == 1) {
+            assign(lits[0], UNDEF);
+            ok = propagate() == UNDEF;
+            return ok;
+        }
+        attach(Arrays.copyOf(lits, n));
+        return true;
+    }
+
+    private int attach(int[] clause) {
+        int idx = clauses.size();
+        clauses.add(clause);
+        if (idx >= deleted.length) {
+            deleted = Arrays.copyOf(deleted, idx * 2);
+            lbd = Arrays.copyOf(lbd, idx * 2);
+        }
+        watches[clause[0] ^ 1].add(idx);
+        watches[clause[1] ^ 1].add(idx);
+        return idx;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Solving
+    /**
+     * @param assumptions Literals assumed true for this call only.
+     * @return {@code true} iff the clauses and assumptions are satisfiable; the
+     * model is then available through {@link #modelValue(int)}.
+     */
+    public boolean solve(int... assumptions) {
+        model = null;
+        if (!ok) {
+            return false;
+        }
+        cancelUntil(0);
+        int[] assumed = new int[assumptions.length];
+        for (int i = 0; i < assumptions.length; i++) {
+            if (assumptions[i] == 0 || Math.abs(assumptions[i]) > varCount) {
+                throw new IllegalArgumentException("No such variable: " + assumptions[i]);
+            }
+            assumed[i] = toLit(assumptions[i]);
+        }
+        for (int restart = 0;; restart++) {
+            int status = search(RESTART_BASE * luby(restart), assumed);
+            if (status != 0) {
+                cancelUntil(0);
+                return status > 0;
+            }
+        }
+    }
+
+    /**
+     * @return 1 for SAT, -1 for UNSAT, 0 if the conflict budget ran out.
+     */
+    private int search(long budget, int[] assumed) {
+        long conflictsHere = 0;
+        IntList learnt = new IntList();
+        while (true) {
+            int conflict = propagate();
+            if (conflict != UNDEF) {
+                conflicts++;
+                conflictsHere++;
+                if (decisionLevel() == 0) {
+                    ok = false;
+                    return -1;
+                }
+                int backjump = analyze(conflict, learnt);
+                cancelUntil(backjump);
+                if (learnt.size() == 1) {
+                    assign(learnt.get(0), UNDEF);
+                } else {
+                    int idx = attach(learnt.toArray());
+                    learnts.add(idx);
+                    lbd[idx] = computeLbd(clauses.get(idx));
+                    assign(learnt.get(0), idx);
+                }
+                varInc /= VAR_DECAY;
+                continue;
+            }
+            if (conflictsHere >= budget) {
+                cancelUntil(0);
+                return 0;
+            }
+            if (conflicts >= nextReduce) {
+                reduceLearnts();
+                nextReduce = conflicts + 2000 + learnts.size() / 2;
+            }
+
+            int next = UNDEF;
+            while (decisionLevel() < assumed.length) {
+                int a = assumed[decisionLevel()];
+                int val = litValue(a);
+                if (val == 1) {
+                    trailLim.add(trailSize); // dummy level, keeps levels aligned with assumptions
+                } else if (val == 0) {
+                    return -1; // the assumptions are contradictory with the clauses
+                } else {
+                    next = a;
+                    break;
+                }
+            }
+            if (next == UNDEF) {
+                int v = pickBranchVar();
+                if (v == UNDEF) {
+                    model = new boolean[varCount + 1];
+                    for (int i = 1; i <= varCount; i++) {
+                        model[i] = value[i] == 1;
+                    }
+                    return 1;
+                }
+                next = 2 * v + (phase[v] ? 0 : 1);
+            }
+            decisions++;
+            trailLim.add(trailSize);
+            assign(next, UNDEF);
+        }
+    }
+
+    /**
+     * @return The value of literal {@code lit} in the last model found.
+     * @throws IllegalStateException if the last {@link #solve(int...)} did not
+     * find one.
+     */
+    public boolean modelValue(int lit) {
+        if (model == null) {
+            throw new IllegalStateException("No model");
+        }
+        int v = Math.abs(lit);
+        if (v >= model.length) {
+            return lit < 0; // variables created after the model are don't-cares
+        }
+        return model[v] == (lit > 0);
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Assignment and propagation
+    private static int toLit(int dimacs) {
+        return dimacs > 0 ? 2 * dimacs : 2 * -dimacs + 1;
+    }
+
+    /**
+     * @return 1 true, 0 false, -1 unassigned.
+     */
+    private int litValue(int lit) {
+        int v = value[lit >> 1];
+        return v < 0 ? -1 : v ^ (lit & 1);
+    }
+
+    private int decisionLevel() {
+        return trailLim.size();
+    }
+
+    private void assign(int lit, int why) {
+        int v = lit >> 1;
+        value[v] = (byte) ((lit & 1) ^ 1);
+        level[v] = decisionLevel();
+        reason[v] = why;
+        trail[trailSize++] = lit;
+    }
+
+    private void cancelUntil(int lvl) {
+        if (decisionLevel() > lvl) {
+            int stop = trailLim.get(lvl);
+            for (int i = trailSize - 1; i >= stop; i--) {
+                int v = trail[i] >> 1;
+                phase[v] = value[v] == 1;
+                value[v] = UNDEF;
+                reason[v] = UNDEF;
+                if (!heap.contains(v)) {
+                    heap.insert(v);
+                }
+            }
+            trailSize = stop;
+            propagated = Math.min(propagated, stop);
+            trailLim.shrink(lvl);
+        }
+    }
+
+    /**
+     * @return The index of a conflicting clause, or {@link #UNDEF}.
+     */
+    private int propagate() {
+        while (propagated < trailSize) {
+            int lit = trail[propagated++];
+            int falseLit = lit ^ 1;
+            propagations++;
+            IntList ws = watches[lit];
+            int i = 0, j = 0;
+            int conflict = UNDEF;
+            while (i < ws.size()) {
+                int ci = ws.get(i++);
+                if (deleted[ci]) {
+                    continue; // dropped lazily
+                }
+                int[] c = clauses.get(ci);
+                if (c[0] == falseLit) {
+                    c[0] = c[1];
+                    c[1] = falseLit;
+                }
+                if (litValue(c[0]) == 1) {
+                    ws.set(j++, ci);
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < c.length; k++) {
+                    if (litValue(c[k]) != 0) {
+                        c[1] = c[k];
+                        c[k] = falseLit;
+                        watches[c[1] ^ 1].add(ci);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                ws.set(j++, ci);
+                if (litValue(c[0]) == 0) {
+                    conflict = ci;
+                    while (i < ws.size()) {
+                        ws.set(j++, ws.get(i++));
+                    }
+                } else {
+                    assign(c[0], ci);
+                }
+            }
+            ws.shrink(j);
+            if (conflict != UNDEF) {
+                propagated = trailSize;
+                return conflict;
+            }
+        }
+        return UNDEF;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Conflict analysis
+    /**
+     * Derives the first-UIP clause of {@code conflict} into {@code out}, with
+     * the asserting literal first and a literal of the backjump level second.
+     *
+     * @return The backjump level.
+     */
+    private int analyze(int conflict, IntList out) {
+        out.clear();
+        out.add(-1); // room for the asserting literal
+        int pathCount = 0;
+        int p = UNDEF;
+        int index = trailSize - 1;
+        int ci = conflict;
+        do {
+            int[] c = clauses.get(ci);
+            if (learntIndex(ci)) {
+                bumpLbd(ci, c);
+            }
+            for (int k = (p == UNDEF) ? 0 : 1; k < c.length; k++) {
+                int q = c[k];
+                int v = q >> 1;
+                if (!seen[v] && level[v] > 0) {
+                    bumpVar(v);
+                    seen[v] = true;
+                    if (level[v] >= decisionLevel()) {
+                        pathCount++;
+                    } else {
+                        out.add(q);
+                    }
+                }
+            }
+            while (!seen[trail[index] >> 1]) {
+                index--;
+            }
+            p = trail[index--];
+            ci = reason[p >> 1];
+            seen[p >> 1] = false;
+            pathCount--;
+        } while (pathCount > 0);
+        out.set(0, p ^ 1);
+
+        // drop literals implied by the others (local minimization)
+        int[] marked = out.toArray();
+        int j = 1;
+        for (int i = 1; i < out.size(); i++) {
+            int v = out.get(i) >> 1;
+            if (reason[v] == UNDEF || !impliedBySeen(reason[v], v)) {
+                out.set(j++, out.get(i));
+            }
+        }
+        out.shrink(j);
+        for (int q : marked) {
+            seen[q >> 1] = false;
+        }
+
+        if (out.size() == 1) {
+            return 0;
+        }
+        int maxI = 1;
+        for (int i = 2; i < out.size(); i++) {
+            if (level[out.get(i) >> 1] > level[out.get(maxI) >> 1]) {
+                maxI = i;
+            }
+        }
+        int t = out.get(1);
+        out.set(1, out.get(maxI));
+        out.set(maxI, t);
+        return level[out.get(1) >> 1];
+    }
+
+    private boolean impliedBySeen(int ci, int v) {
+        for (int q : clauses.get(ci)) {
+            int u = q >> 1;
+            if (u != v && !seen[u] && level[u] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean learntIndex(int ci) {
+        return lbd[ci] > 0;
+    }
+
+    private void bumpLbd(int ci, int[] c) {
+        int now = computeLbd(c);
+        if (now < lbd[ci]) {
+            lbd[ci] = now;
+        }
+    }
+
+    private int computeLbd(int[] c) {
+        int[] levels = new int[c.length];
+        for (int i = 0; i < c.length; i++) {
+            levels[i] = level[c[i] >> 1];
+        }
+        Arrays.sort(levels);
+        int distinct = 0;
+        for (int i = 0; i < levels.length; i++) {
+            if (i == 0 || levels[i] != levels[i - 1]) {
+                distinct++;
+            }
+        }
+        return Math.max(1, distinct);
+    }
+
+    /**
+     * Deletes the worse half of the learnt clauses (by LBD), sparing "glue"
+     * clauses (LBD 2) and clauses that are currently reasons.
+     */
+    private void reduceLearnts() {
+        int[] idx = learnts.toArray();
+        Integer[] order = new Integer[idx.length];
+        for (int i = 0; i < idx.length; i++) {
+            order[i] = idx[i];
+        }
+        Arrays.sort(order, (a, b) -> lbd[b] - lbd[a]);
+        learnts.clear();
+        for (int i = 0; i < order.length; i++) {
+            int ci = order[i];
+            int[] c = clauses.get(ci);
+            boolean locked = reason[c[0] >> 1] == ci && litValue(c[0]) == 1;
+            if (i < order.length / 2 && lbd[ci] > 2 && !locked) {
+                deleted[ci] = true;
+                clauses.set(ci, c.length > 0 ? new int[]{c[0], c[1]} : c); // free the literals
+            } else {
+                learnts.add(ci);
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Branching
+    private void bumpVar(int v) {
+        activity[v] += varInc;
+        if (activity[v] > 1e100) {
+            for (int i = 1; i <= varCount; i++) {
+                activity[i] *= 1e-100;
+            }
+            varInc *= 1e-100;
+        }
+        if (heap.contains(v)) {
+            heap.increased(v);
+        }
+    }
+
+    private int pickBranchVar() {
+        while (!heap.isEmpty()) {
+            int v = heap.removeMax();
+            if (value[v] == UNDEF) {
+                return v;
+            }
+        }
+        return UNDEF;
+    }
+
+    /**
+     * @return The {@code i}-th element (from 0) of the Luby sequence 1, 1, 2,
+     * 1, 1, 2, 4, ...
+     */
+    private static long luby(int i) {
+        int size = 1, seq = 0;
+        while (size < i + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        int x = i;
+        while (size - 1 != x) {
+            size = (size - 1) >> 1;
+            seq--;
+            x = x % size;
+        }
+        return 1L << seq;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Helpers
+    /**
+     * A growable int array.
+     */
+    private static final class IntList {
+
+        private int[] data = new int[4];
+        private int size = 0;
+
+        void add(int v) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = v;
+        }
+
+        int get(int i) {
+            return data[i];
+        }
+
+        void set(int i, int v) {
+            data[i] = v;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void shrink(int newSize) {
+            size = newSize;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * A binary max-heap of variables, ordered by activity.
+     */
+    private final class VarHeap {
+
+        private int[] heap = new int[16];
+        private int[] pos = new int[16]; // -1 if absent
+        private int size = 0;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean contains(int v) {
+            return v < pos.length && pos[v] >= 0;
+        }
+
+        void insert(int v) {
+            if (v >= pos.length) {
+                int old = pos.length;
+                pos = Arrays.copyOf(pos, Math.max(v + 1, old * 2));
+                Arrays.fill(pos, old, pos.length, -1);
+            }
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            heap[size] = v;
+            pos[v] = size++;
+            up(pos[v]);
+        }
+
+        void increased(int v) {
+            up(pos[v]);
+        }
+
+        int removeMax() {
+            int top = heap[0];
+            pos[top] = -1;
+            size--;
+            if (size > 0) {
+                heap[0] = heap[size];
+                pos[heap[0]] = 0;
+                down(0);
+            }
+            return top;
+        }
+
+        private void up(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (activity[heap[parent]] >= activity[v]) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                pos[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+
+        private void down(int i) {
+            int v = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && activity[heap[child + 1]] > activity[heap[child]]) {
+                    child++;
+                }
+                if (activity[heap[child]] <= activity[v]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                pos[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tseitin encoding of gates into a {@link SatSolver}: each gate gets a fresh
+ * variable constrained to equal the gate's function of its inputs. Gates are
+ * folded when an input is constant and shared when identical, so encoding the
+ * same subexpression twice costs nothing.
+ *
+ * Also encodes 32-bit two's-complement words (as {@code int[32]} of literals,
+ * least significant bit first) with Java {@code int} semantics, including
+ * wrap-around.
+ */
+public class Tseitin {
+
+    public static final int WIDTH = 32;
+
+    private final SatSolver solver;
+    private final int trueLit;
+    private final Map<Long, Integer> andGates = new HashMap<>();
+    private final Map<Long, Integer> xorGates = new HashMap<>();
+
+    public Tseitin(SatSolver solver) {
+        this.solver = solver;
+        this.trueLit = solver.newVar();
+        solver.addClause(trueLit);
+    }
+
+    public SatSolver getSolver() {
+        return solver;
+    }
+
+    /**
+     * @return A literal that always has the given value.
+     */
+    public int constant(boolean value) {
+        return value ? trueLit : -trueLit;
+    }
+
+    public int newVar() {
+        return solver.newVar();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Gates
+    public int and(int a, int b) {
+        if (a == -trueLit || b == -trueLit || a == -b) {
+            return -trueLit;
+        }
+        if (a == trueLit || a == b) {
+            return b;
+        }
+        if (b == trueLit) {
+            return a;
+        }
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        long key = key(a, b);
+        Integer g = andGates.get(key);
+        if (g == null) {
+            g = solver.newVar();
+            solver.addClause(-g, a);
+            solver.addClause(-g, b);
+            solver.addClause(g, -a, -b);
+            andGates.put(key, g);
+        }
+        return g;
+    }
+
+    public int or(int a, int b) {
+        return -and(-a, -b);
+    }
+
+    public int xor(int a, int b) {
+        if (Math.abs(a) == trueLit) {
+            return a == trueLit ? -b : b;
+        }
+        if (Math.abs(b) == trueLit) {
+            return b == trueLit ? -a : a;
+        }
+        if (a == b) {
+            return -trueLit;
+        }
+        if (a == -b) {
+            return trueLit;
+        }
+        // normalize signs: xor(-a, b) = -xor(a, b)
+        boolean negate = (a < 0) != (b < 0);
+        a = Math.abs(a);
+        b = Math.abs(b);
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        long key = key(a, b);
+        Integer g = xorGates.get(key);
+        if (g == null) {
+            g = solver.newVar();
+            solver.addClause(-g, a, b);
+            solver.addClause(-g, -a, -b);
+            solver.addClause(g, -a, b);
+            solver.addClause(g, a, -b);
+            xorGates.put(key, g);
+        }
+        return negate ? -g : g;
+    }
+
+    public int iff(int a, int b) {
+        return -xor(a, b);
+    }
+
+    public int implies(int a, int b) {
+        return or(-a, b);
+    }
+
+    /**
+     * @return If {@code c} then {@code t} else {@code e}.
+     */
+    public int ite(int c, int t, int e) {
+        if (t == e) {
+            return t;
+        }
+        return or(and(c, t), and(-c, e));
+    }
+
+    public int and(int... lits) {
+        int res = trueLit;
+        for (int l : lits) {
+            res = and(res, l);
+        }
+        return res;
+    }
+
+    public int or(int... lits) {
+        int res = -trueLit;
+        for (int l : lits) {
+            res = or(res, l);
+        }
+        return res;
+    }
+
+    /**
+     * Adds clauses making at most one of {@code lits} true, with the
+     * sequential counter encoding (linear in the number of literals).
+     */
+    public void atMostOne(int... lits) {
+        if (lits.length <= 4) {
+            for (int i = 0; i < lits.length; i++) {
+                for (int j = i + 1; j < lits.length; j++) {
+                    solver.addClause(-lits[i], -lits[j]);
+                }
+            }
+            return;
+        }
+        int prev = lits[0]; // "some of lits[0..i] is true"
+        for (int i = 1; i < lits.length; i++) {
+            solver.addClause(-prev, -lits[i]);
+            if (i < lits.length - 1) {
+                int s = solver.newVar();
+                solver.addClause(-prev, s);
+                solver.addClause(-lits[i], s);
+                prev = s;
+            }
+        }
+    }
+
+    private static long key(int a, int b) {
+        return ((long) a << 32) | (b & 0xffffffffL);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Words
+    public int[] constant(int value) {
+        int[] res = new int[WIDTH];
+        for (int i = 0; i < WIDTH; i++) {
+            res[i] = constant(((value >>> i) & 1) != 0);
+        }
+        return res;
+    }
+
+    /**
+     * @return A word of fresh variables.
+     */
+    public int[] newWord() {
+        int[] res = new int[WIDTH];
+        for (int i = 0; i < WIDTH; i++) {
+            res[i] = solver.newVar();
+        }
+        return res;
+    }
+
+    public int[] add(int[] a, int[] b) {
+        int[] res = new int[WIDTH];
+        int carry = -trueLit;
+        for (int i = 0; i < WIDTH; i++) {
+            int ab = xor(a[i], b[i]);
+            res[i] = xor(ab, carry);
+            carry = or(and(a[i], b[i]), and(ab, carry));
+        }
+        return res;
+    }
+
+    public int[] negate(int[] a) {
+        return add(not(a), constant(1));
+    }
+
+    public int[] subtract(int[] a, int[] b) {
+        // a - b = a + ~b + 1
+        int[] res = new int[WIDTH];
+        int carry = trueLit;
+        for (int i = 0; i < WIDTH; i++) {
+            int nb = -b[i];
+            int ab = xor(a[i], nb);
+            res[i] = xor(ab, carry);
+            carry = or(and(a[i], nb), and(ab, carry));
+        }
+        return res;
+    }
+
+    /**
+     * @return The low 32 bits of {@code a * b}, by shift-and-add.
+     */
+    public int[] multiply(int[] a, int[] b) {
+        int[] acc = constant(0);
+        for (int i = 0; i < WIDTH; i++) {
+            if (b[i] == -trueLit) {
+                continue;
+            }
+            int[] partial = new int[WIDTH];
+            for (int j = 0; j < WIDTH; j++) {
+                partial[j] = j < i ? -trueLit : and(a[j - i], b[i]);
+            }
+            acc = add(acc, partial);
+        }
+        return acc;
+    }
+
+    public int[] not(int[] a) {
+        int[] res = new int[WIDTH];
+        for (int i = 0; i < WIDTH; i++) {
+            res[i] = -a[i];
+        }
+        return res;
+    }
+
+    public int[] xor(int[] a, int[] b) {
+        int[] res = new int[WIDTH];
+        for (int i = 0; i < WIDTH; i++) {
+            res[i] = xor(a[i], b[i]);
+        }
+        return res;
+    }
+
+    /**
+     * @return If {@code c} then {@code t} else {@code e}, bitwise.
+     */
+    public int[] ite(int c, int[] t, int[] e) {
+        int[] res = new int[WIDTH];
+        for (int i = 0; i < WIDTH; i++) {
+            res[i] = ite(c, t[i], e[i]);
+        }
+        return res;
+    }
+
+    public int equal(int[] a, int[] b) {
+        int res = trueLit;
+        for (int i = 0; i < WIDTH; i++) {
+            res = and(res, iff(a[i], b[i]));
+        }
+        return res;
+    }
+
+    /**
+     * @return Signed {@code a < b}.
+     */
+    public int lessThan(int[] a, int[] b) {
+        // compare from the most significant bit down, with the sign bit inverted
+        int lt = -trueLit;
+        for (int i = 0; i < WIDTH; i++) {
+            int x = i == WIDTH - 1 ? -a[i] : a[i];
+            int y = i == WIDTH - 1 ? -b[i] : b[i];
+            // lt over bits [0..i] = (x < y at bit i) or (x == y at bit i and lt over [0..i-1])
+            lt = or(and(-x, y), and(iff(x, y), lt));
+        }
+        return lt;
+    }
+
+    /**
+     * Adds clauses making {@code a} and {@code b} equal when {@code guard}
+     * holds.
+     */
+    public void equalWhen(int guard, int[] a, int[] b) {
+        for (int i = 0; i < WIDTH; i++) {
+            solver.addClause(-guard, -a[i], b[i]);
+            solver.addClause(-guard, a[i], -b[i]);
+        }
+    }
+
+    /**
+     * @return The value of {@code word} in the solver's model.
+     */
+    public int modelValue(int[] word) {
+        int res = 0;
+        for (int i = 0; i < WIDTH; i++) {
+            if (solver.modelValue(word[i])) {
+                res |= 1 << i;
+            }
+        }
+        return res;
+    }
+
+}
@@ -0,0 +1,325 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
+
+/**
+ * Searches a {@link StateSpace} for a reachable cycle through an accepting
+ * state (the emptiness check of a Büchi product), generating states only
+ * until the first such cycle is found.
+ *
+ * Both searches are iterative, so deep state spaces do not overflow the call
+ * stack. A counterexample is a lasso: a {@link VerificationFailed} whose
+ * prefix is a path from an initial state, and whose cycle starts at a
+ * successor of the last prefix state (or at an initial state, if the prefix is
+ * empty), contains an accepting state, and ends at a predecessor of its first
+ * state.
+ */
+public final class AcceptingCycles {
+
+    private AcceptingCycles() {
+    }
+
+    /**
+     * @param space     The state space.
+     * @param accepting The accepting states.
+     * @param algorithm The search to use.
+     * @return A {@link VerificationSucceeded} if no accepting cycle is
+     * reachable, or a {@link VerificationFailed} with a lasso.
+     */
+    public static <S> VerificationResult<S> find(StateSpace<S, ?, ?> space, Predicate<? super S> accepting,
+            EmptinessCheck algorithm) {
+        switch (algorithm) {
+            case COUVREUR:
+                return new Couvreur<>(space, accepting).run();
+            default:
+                return new NestedDfs<>(space, accepting).run();
+        }
+    }
+
+    private static <S> VerificationFailed<S> lasso(List<S> prefix, List<S> cycle) {
+        VerificationFailed<S> res = new VerificationFailed<>();
+        res.setPrefix(prefix);
+        res.setCycle(cycle);
+        return res;
+    }
+
+    /**
+     * A state on a depth-first stack, with its successors left to explore.
+     */
+    private static final class Frame<S> {
+
+        final S state;
+        final Iterator<S> successors;
+
+        Frame(S state, Iterator<S> successors) {
+            this.state = state;
+            this.successors = successors;
+        }
+    }
+
+    private static <S> List<S> states(List<Frame<S>> stack, int from, int to) {
+        List<S> res = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            res.add(stack.get(i).state);
+        }
+        return res;
+    }
+
+    /**
+     * Nested DFS with cyan/blue/red colors: a state is cyan while on the outer
+     * stack, blue once the outer search leaves it, and red once an inner
+     * search has visited it. Inner searches start from accepting states in
+     * post-order and succeed when they reach a cyan state.
+     */
+    private static final class NestedDfs<S> {
+
+        private final StateSpace<S, ?, ?> space;
+        private final Predicate<? super S> accepting;
+
+        /** Cyan states, with their position on the outer stack. */
+        private final Map<S, Integer> cyan = new HashMap<>();
+        private final Set<S> blue = new HashSet<>();
+        private final Set<S> red = new HashSet<>();
+        private final List<Frame<S>> outer = new ArrayList<>();
+
+        NestedDfs(StateSpace<S, ?, ?> space, Predicate<? super S> accepting) {
+            this.space = space;
+            this.accepting = accepting;
+        }
+
+        private void push(S s) {
+            cyan.put(s, outer.size());
+            outer.add(new Frame<>(s, space.successorStates(s).iterator()));
+        }
+
+        VerificationResult<S> run() {
+            for (S init : space.initialStates()) {
+                if (cyan.containsKey(init) || blue.contains(init)) {
+                    continue;
+                }
+                push(init);
+                while (!outer.isEmpty()) {
+                    Frame<S> top = outer.get(outer.size() - 1);
+                    if (top.successors.hasNext()) {
+                        S t = top.successors.next();
+                        Integer pos = cyan.get(t);
+                        if (pos != null) {
+                            // a back edge closes a cycle through every state from t to top
+                            if (accepting.test(top.state) || accepting.test(t)) {
+                                return lasso(states(outer, 0, pos), states(outer, pos, outer.size()));
+                            }
+                        } else if (!blue.contains(t)) {
+                            push(t);
+                        }
+                    } else {
+                        S s = top.state;
+                        if (accepting.test(s)) {
+                            List<S> path = innerSearch(s);
+                            if (path != null) {
+                                int pos = cyan.get(path.get(path.size() - 1));
+                                List<S> cycle = states(outer, pos, outer.size());
+                                cycle.addAll(path.subList(1, path.size() - 1));
+                                return lasso(states(outer, 0, pos), cycle);
+                            }
+                            red.add(s);
+                        }
+                        outer.remove(outer.size() - 1);
+                        cyan.remove(s);
+                        blue.add(s);
+                    }
+                }
+            }
+            return new VerificationSucceeded<>();
+        }
+
+        /**
+         * @return A path from {@code seed} to a cyan state, or {@code null}.
+         */
+        private List<S> innerSearch(S seed) {
+            List<Frame<S>> stack = new ArrayList<>();
+            stack.add(new Frame<>(seed, space.successorStates(seed).iterator()));
+            while (!stack.isEmpty()) {
+                Frame<S> top = stack.get(stack.size() - 1);
+                if (top.successors.hasNext()) {
+                    S t = top.successors.next();
+                    if (cyan.containsKey(t)) {
+                        List<S> path = states(stack, 0, stack.size());
+                        path.add(t);
+                        return path;
+                    }
+                    if (red.add(t)) {
+                        stack.add(new Frame<>(t, space.successorStates(t).iterator()));
+                    }
+                } else {
+                    stack.remove(stack.size() - 1);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Couvreur's algorithm: Tarjan-style DFS numbering, with a stack of the
+     * roots of the partial components on the DFS path, each carrying whether
+     * its component has an accepting state. A back edge merges every
+     * component above its target into one.
+     */
+    private static final class Couvreur<S> {
+
+        /** DFS number of a state whose component is finished. */
+        private static final int DEAD = 0;
+
+        private final StateSpace<S, ?, ?> space;
+        private final Predicate<? super S> accepting;
+
+        private final Map<S, Integer> num = new HashMap<>();
+        private int count;
+        private final List<Frame<S>> dfs = new ArrayList<>();
+        /** States of unfinished components, in increasing DFS number. */
+        private final List<S> active = new ArrayList<>();
+        private int[] rootNum = new int[16];
+        private boolean[] rootAcc = new boolean[16];
+        private int roots;
+
+        Couvreur(StateSpace<S, ?, ?> space, Predicate<? super S> accepting) {
+            this.space = space;
+            this.accepting = accepting;
+        }
+
+        private void pushRoot(int n, boolean acc) {
+            if (roots == rootNum.length) {
+                rootNum = Arrays.copyOf(rootNum, roots * 2);
+                rootAcc = Arrays.copyOf(rootAcc, roots * 2);
+            }
+            rootNum[roots] = n;
+            rootAcc[roots] = acc;
+            roots++;
+        }
+
+        private void visit(S s) {
+            num.put(s, ++count);
+            pushRoot(count, accepting.test(s));
+            active.add(s);
+            dfs.add(new Frame<>(s, space.successorStates(s).iterator()));
+        }
+
+        VerificationResult<S> run() {
+            for (S init : space.initialStates()) {
+                if (num.containsKey(init)) {
+                    continue;
+                }
+                visit(init);
+                while (!dfs.isEmpty()) {
+                    Frame<S> top = dfs.get(dfs.size() - 1);
+                    if (top.successors.hasNext()) {
+                        S t = top.successors.next();
+                        Integer n = num.get(t);
+                        if (n == null) {
+                            visit(t);
+                        } else if (n != DEAD) {
+                            boolean acc = false;
+                            int r;
+                            do {
+                                roots--;
+                                r = rootNum[roots];
+                                acc |= rootAcc[roots];
+                            } while (n < r);
+                            pushRoot(r, acc);
+                            if (acc) {
+                                return counterexample(r);
+                            }
+                        }
+                    } else {
+                        int n = num.get(top.state);
+                        if (rootNum[roots - 1] == n) {
+                            roots--;
+                            while (!active.isEmpty() && num.get(active.get(active.size() - 1)) >= n) {
+                                num.put(active.remove(active.size() - 1), DEAD);
+                            }
+                        }
+                        dfs.remove(dfs.size() - 1);
+                    }
+                }
+            }
+            return new VerificationSucceeded<>();
+        }
+
+        /**
+         * Builds a lasso through the component rooted at DFS number
+         * {@code r}, which holds an accepting state: the DFS path to the root,
+         * then paths inside the component to an accepting state and back.
+         */
+        private VerificationFailed<S> counterexample(int r) {
+            Set<S> component = new HashSet<>();
+            S acc = null;
+            for (int i = active.size() - 1; i >= 0 && num.get(active.get(i)) >= r; i--) {
+                S s = active.get(i);
+                component.add(s);
+                if (acc == null && accepting.test(s)) {
+                    acc = s;
+                }
+            }
+            int rootPos = 0;
+            while (num.get(dfs.get(rootPos).state) != r) {
+                rootPos++;
+            }
+            S root = dfs.get(rootPos).state;
+            List<S> prefix = states(dfs, 0, rootPos);
+            if (!root.equals(acc)) {
+                List<S> toAcc = pathWithin(root, acc, component);
+                prefix.addAll(toAcc.subList(0, toAcc.size() - 1));
+            }
+            List<S> cycle = pathWithin(acc, acc, component);
+            return lasso(prefix, cycle.subList(0, cycle.size() - 1));
+        }
+
+        /**
+         * @return A shortest path of at least one step from {@code from} to
+         * {@code to}, through states of {@code within}, inclusive.
+         */
+        private List<S> pathWithin(S from, S to, Set<S> within) {
+            Map<S, S> parent = new HashMap<>();
+            Deque<S> q = new ArrayDeque<>();
+            q.add(from);
+            while (!q.isEmpty()) {
+                S s = q.remove();
+                for (S t : space.successorStates(s)) {
+                    if (!within.contains(t) || parent.containsKey(t)) {
+                        continue;
+                    }
+                    parent.put(t, s);
+                    if (t.equals(to)) {
+                        List<S> path = new ArrayList<>();
+                        path.add(t);
+                        S p = s;
+                        while (!p.equals(from)) {
+                            path.add(p);
+                            p = parent.get(p);
+                        }
+                        path.add(from);
+                        Collections.reverse(path);
+                        return path;
+                    }
+                    q.add(t);
+                }
+            }
+            throw new IllegalStateException("No path from " + from + " to " + to + " in its component");
+        }
+    }
+
+}
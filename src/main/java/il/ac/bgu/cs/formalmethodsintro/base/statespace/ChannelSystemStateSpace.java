@@ -0,0 +1,144 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ActionDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ConditionDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraph;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * The states of a {@link ChannelSystem}, generated on demand. States, actions
+ * and labels are those of
+ * {@link FvmFacade#transitionSystemFromChannelSystem}: actions on channels
+ * whose name starts with {@code _} are only taken as joined handshakes with a
+ * matching action of another program graph, and the joined action is the
+ * string {@code "<first>|<second>"}.
+ *
+ * @param <L> Type of locations.
+ * @param <A> Type of actions. Joined actions are strings, so clients that use
+ * handshakes should use {@code String} or {@code Object} here.
+ */
+public class ChannelSystemStateSpace<L, A> implements StateSpace<Pair<List<L>, Map<String, Object>>, A, String> {
+
+    private final ChannelSystem<L, A> cs;
+    private final Set<ActionDef> actionDefs;
+    private final Set<ConditionDef> conditionDefs;
+    private final Set<ActionDef> interleaveDefs;
+
+    public ChannelSystemStateSpace(ChannelSystem<L, A> cs, Set<ActionDef> actionDefs, Set<ConditionDef> conditionDefs,
+            Set<ActionDef> interleaveDefs) {
+        this.cs = cs;
+        this.actionDefs = actionDefs;
+        this.conditionDefs = conditionDefs;
+        this.interleaveDefs = interleaveDefs;
+    }
+
+    @Override
+    public Set<Pair<List<L>, Map<String, Object>>> initialStates() {
+        return new LinkedHashSet<>(FvmFacade.get().initial_helper(cs.getProgramGraphs(), actionDefs));
+    }
+
+    @Override
+    public List<TSTransition<Pair<List<L>, Map<String, Object>>, A>> successors(Pair<List<L>, Map<String, Object>> s) {
+        List<TSTransition<Pair<List<L>, Map<String, Object>>, A>> res = new ArrayList<>();
+        List<L> locs = s.getFirst();
+        Map<String, Object> eval = s.getSecond();
+        List<Pair<PGTransition<L, A>, Integer>> reads = new ArrayList<>();
+        List<Pair<PGTransition<L, A>, Integer>> writes = new ArrayList<>();
+
+        List<ProgramGraph<L, A>> pgs = cs.getProgramGraphs();
+        for (int i = 0; i < pgs.size(); i++) {
+            for (PGTransition<L, A> t : pgs.get(i).getOutgoingTransitions(locs.get(i))) {
+                if (!ConditionDef.evaluate(conditionDefs, eval, t.getCondition())) {
+                    continue;
+                }
+                String action = t.getAction().toString();
+                if (!action.startsWith("_")) {
+                    Map<String, Object> next = ActionDef.effect(actionDefs, eval, t.getAction());
+                    if (next != null) {
+                        List<L> nextLocs = new ArrayList<>(locs);
+                        nextLocs.set(i, t.getTo());
+                        res.add(new TSTransition<>(s, t.getAction(), new Pair<>(nextLocs, next)));
+                    }
+                } else if (action.contains("?")) {
+                    handshake(s, writes, t, i, res);
+                    reads.add(new Pair<>(t, i));
+                } else {
+                    handshake(s, reads, t, i, res);
+                    writes.add(new Pair<>(t, i));
+                }
+            }
+        }
+        return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handshake(Pair<List<L>, Map<String, Object>> s, List<Pair<PGTransition<L, A>, Integer>> counterparts,
+            PGTransition<L, A> t, int index, List<TSTransition<Pair<List<L>, Map<String, Object>>, A>> res) {
+        for (Pair<PGTransition<L, A>, Integer> other : counterparts) {
+            if (other.getSecond() == index) {
+                continue;
+            }
+            String joined = other.getFirst().getAction() + "|" + t.getAction();
+            Map<String, Object> next = ActionDef.effect(interleaveDefs, s.getSecond(), joined);
+            if (next != null) {
+                List<L> nextLocs = new ArrayList<>(s.getFirst());
+                nextLocs.set(index, t.getTo());
+                nextLocs.set(other.getSecond(), other.getFirst().getTo());
+                res.add(new TSTransition<>(s, (A) joined, new Pair<>(nextLocs, next)));
+            }
+        }
+    }
+
+    @Override
+    public Set<String> label(Pair<List<L>, Map<String, Object>> s) {
+        Set<String> res = new HashSet<>();
+        s.getSecond().forEach((k, v) -> res.add(k + " = " + v));
+        s.getFirst().forEach(l -> res.add(l.toString()));
+        return res;
+    }
+
+    /**
+     * @param layout A layout of {@code cs}, see
+     * {@link StateLayout#forChannelSystem(ChannelSystem)}.
+     * @return The same state space, over {@link PackedState}s. States are
+     * unpacked only while their successors or label are computed, so the
+     * explored states take a fraction of the memory.
+     */
+    public StateSpace<PackedState, A, String> packed(StateLayout<L> layout) {
+        return new StateSpace<PackedState, A, String>() {
+            @Override
+            public Set<PackedState> initialStates() {
+                Set<PackedState> res = new LinkedHashSet<>();
+                ChannelSystemStateSpace.this.initialStates().forEach(s -> res.add(layout.packChannelSystemState(s)));
+                return res;
+            }
+
+            @Override
+            public List<TSTransition<PackedState, A>> successors(PackedState s) {
+                List<TSTransition<PackedState, A>> res = new ArrayList<>();
+                for (TSTransition<Pair<List<L>, Map<String, Object>>, A> t
+                        : ChannelSystemStateSpace.this.successors(layout.toChannelSystemState(s))) {
+                    res.add(new TSTransition<>(s, t.getAction(), layout.packChannelSystemState(t.getTo())));
+                }
+                return res;
+            }
+
+            @Override
+            public Set<String> label(PackedState s) {
+                return ChannelSystemStateSpace.this.label(layout.toChannelSystemState(s));
+            }
+        };
+    }
+
+}
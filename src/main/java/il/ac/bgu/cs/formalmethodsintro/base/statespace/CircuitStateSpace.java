@@ -0,0 +1,74 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.Circuit;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CircuitExplorer;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * The states of a {@link Circuit}, generated on demand. As in
+ * {@link il.ac.bgu.cs.formalmethodsintro.base.FvmFacade#transitionSystemFromCircuit},
+ * a state is a pair of (inputs, registers), the actions are the input
+ * valuations, registers start at {@code false}, and a state is labeled by the
+ * names of the inputs, registers and outputs that are {@code true} in it.
+ */
+public class CircuitStateSpace
+        implements StateSpace<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> {
+
+    private final Circuit c;
+    private final List<Map<String, Boolean>> inputs;
+
+    public CircuitStateSpace(Circuit c) {
+        this.c = c;
+        this.inputs = new CircuitExplorer(c).inputValuations();
+    }
+
+    @Override
+    public Set<Pair<Map<String, Boolean>, Map<String, Boolean>>> initialStates() {
+        Map<String, Boolean> registers = new HashMap<>();
+        c.getRegisterNames().forEach(r -> registers.put(r, false));
+        Set<Pair<Map<String, Boolean>, Map<String, Boolean>>> res = new LinkedHashSet<>();
+        inputs.forEach(in -> res.add(new Pair<>(in, registers)));
+        return res;
+    }
+
+    @Override
+    public List<TSTransition<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>>> successors(
+            Pair<Map<String, Boolean>, Map<String, Boolean>> s) {
+        Map<String, Boolean> registers = c.updateRegisters(s.getFirst(), s.getSecond());
+        List<TSTransition<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>>> res
+                = new ArrayList<>(inputs.size());
+        inputs.forEach(in -> res.add(new TSTransition<>(s, in, new Pair<>(in, registers))));
+        return res;
+    }
+
+    @Override
+    public Set<Object> label(Pair<Map<String, Boolean>, Map<String, Boolean>> s) {
+        Set<Object> res = new HashSet<>();
+        s.getFirst().forEach((k, v) -> {
+            if (v) {
+                res.add(k);
+            }
+        });
+        s.getSecond().forEach((k, v) -> {
+            if (v) {
+                res.add(k);
+            }
+        });
+        c.computeOutputs(s.getFirst(), s.getSecond()).forEach((k, v) -> {
+            if (v) {
+                res.add(k);
+            }
+        });
+        return res;
+    }
+
+}
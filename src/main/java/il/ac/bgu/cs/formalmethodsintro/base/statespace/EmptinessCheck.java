@@ -0,0 +1,24 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+/**
+ * The algorithm {@link AcceptingCycles} uses to look for a reachable cycle
+ * through an accepting state.
+ */
+public enum EmptinessCheck {
+
+    /**
+     * Nested depth-first search (Courcoubetis, Vardi, Wolper and Yannakakis),
+     * with the early cycle detection of Schwoon and Esparza: the inner search
+     * stops at any state on the outer stack. Uses two bits per state beyond the
+     * visited set.
+     */
+    NESTED_DFS,
+
+    /**
+     * Couvreur's on-the-fly strongly connected component search. Reports a
+     * cycle as soon as a component with an accepting state closes, which is
+     * often earlier than the nested search, at the cost of an integer per
+     * state.
+     */
+    COUVREUR
+}
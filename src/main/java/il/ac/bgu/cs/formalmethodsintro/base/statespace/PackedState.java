@@ -0,0 +1,64 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.Arrays;
+
+/**
+ * An immutable state packed into a flat {@code int[]} by a
+ * {@link StateLayout}. Hashing and equality are over the words only, and the
+ * hash is computed once.
+ */
+public final class PackedState {
+
+    private final int[] words;
+    private final int hash;
+
+    PackedState(int[] words) {
+        this.words = words;
+        this.hash = Arrays.hashCode(words);
+    }
+
+    /**
+     * @return The number of words in this state.
+     */
+    public int length() {
+        return words.length;
+    }
+
+    public int word(int index) {
+        return words[index];
+    }
+
+    /**
+     * @return A copy of the words of this state.
+     */
+    public int[] toArray() {
+        return words.clone();
+    }
+
+    int[] words() {
+        return words;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PackedState)) {
+            return false;
+        }
+        PackedState other = (PackedState) obj;
+        return hash == other.hash && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public String toString() {
+        return "PackedState" + Arrays.toString(words);
+    }
+
+}
@@ -0,0 +1,311 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
+
+/**
+ * Searches a {@link StateSpace} for a reachable cycle through an accepting
+ * state with several threads, using the CNDFS algorithm of Evangelista,
+ * Laarman, Petrucci and van de Pol ("Improved multi-core nested depth-first
+ * search", ATVA 2012).
+ *
+ * Every worker runs its own nested DFS over the whole state space, visiting
+ * successors in a different random order (swarming). The blue and red colors
+ * are shared between the workers in a concurrent map, so a worker skips the
+ * parts of the state space that others have already finished; the cyan color
+ * (on the outer stack) and the states of the current inner search are local to
+ * each worker. A worker that finishes an inner search waits for the other
+ * accepting states it met there to be colored red before coloring its own
+ * states red, which keeps the search sound. The first worker to find a cycle
+ * stops all the others.
+ *
+ * The state space must be safe to query from several threads at once.
+ * Counterexamples have the same form as those of {@link AcceptingCycles}.
+ *
+ * Usage: {@code new ParallelCycleSearch<>(space, accepting).parallelism(8).search()}
+ *
+ * @param <S> Type of states.
+ */
+public class ParallelCycleSearch<S> {
+
+    private static final byte BLUE = 1;
+    private static final byte RED = 2;
+
+    private final StateSpace<S, ?, ?> space;
+    private final Predicate<? super S> accepting;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long seed = 0;
+
+    public ParallelCycleSearch(StateSpace<S, ?, ?> space, Predicate<? super S> accepting) {
+        this.space = space;
+        this.accepting = accepting;
+    }
+
+    /**
+     * @param threads Number of worker threads. Default is the number of
+     * available processors.
+     * @return {@code this}, for chaining.
+     */
+    public ParallelCycleSearch<S> parallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive (" + threads + ")");
+        }
+        parallelism = threads;
+        return this;
+    }
+
+    /**
+     * @param seed Seed for the successor orders of the workers. The first
+     * worker always uses the order of the state space.
+     * @return {@code this}, for chaining.
+     */
+    public ParallelCycleSearch<S> seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Runs the search until a worker finds an accepting cycle, or all the
+     * workers finish.
+     *
+     * @return The result, with per-worker throughput.
+     */
+    public ParallelCycleSearchResult<S> search() {
+        Map<S, Byte> colors = new ConcurrentHashMap<>();
+        AtomicReference<VerificationFailed<S>> found = new AtomicReference<>();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<Worker> workers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            Worker w = new Worker(i, colors, found);
+            workers.add(w);
+            Thread t = new Thread(() -> {
+                try {
+                    w.run();
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    found.compareAndSet(null, new VerificationFailed<>()); // stops the others
+                }
+            }, "cndfs-" + i);
+            threads.add(t);
+        }
+
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        try {
+            for (Thread t : threads) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            found.compareAndSet(null, new VerificationFailed<>());
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the workers", e);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        List<ParallelExplorationResult.WorkerReport> reports = new ArrayList<>();
+        for (Worker w : workers) {
+            reports.add(new ParallelExplorationResult.WorkerReport(w.name, w.states, w.transitions, w.busyNanos));
+        }
+        VerificationResult<S> res = found.get() == null ? new VerificationSucceeded<>() : found.get();
+        return new ParallelCycleSearchResult<>(res, colors.size(), elapsed, parallelism, reports);
+    }
+
+    /**
+     * A state on a depth-first stack, with its successors left to explore.
+     */
+    private static final class Frame<S> {
+
+        final S state;
+        final Iterator<S> successors;
+
+        Frame(S state, Iterator<S> successors) {
+            this.state = state;
+            this.successors = successors;
+        }
+    }
+
+    private final class Worker {
+
+        final String name;
+        private final Random rnd;
+        private final Map<S, Byte> colors;
+        private final AtomicReference<VerificationFailed<S>> found;
+
+        /** Cyan states, with their position on the outer stack. */
+        private final Map<S, Integer> cyan = new HashMap<>();
+        private final List<Frame<S>> outer = new ArrayList<>();
+        /** The states of the current inner search ("pink"). */
+        private final Set<S> pink = new HashSet<>();
+        private final List<Frame<S>> inner = new ArrayList<>();
+
+        long states;
+        long transitions;
+        long busyNanos;
+
+        Worker(int index, Map<S, Byte> colors, AtomicReference<VerificationFailed<S>> found) {
+            this.name = "cndfs-" + index;
+            this.rnd = index == 0 ? null : new Random(seed * 31 + index);
+            this.colors = colors;
+            this.found = found;
+        }
+
+        private boolean has(S s, byte color) {
+            Byte c = colors.get(s);
+            return c != null && (c & color) != 0;
+        }
+
+        private void color(S s, byte color) {
+            colors.merge(s, color, (a, b) -> (byte) (a | b));
+        }
+
+        private Iterator<S> successors(S s) {
+            List<S> succ = new ArrayList<>(space.successorStates(s));
+            states++;
+            transitions += succ.size();
+            if (rnd != null) {
+                Collections.shuffle(succ, rnd);
+            }
+            return succ.iterator();
+        }
+
+        private boolean stopped() {
+            return found.get() != null;
+        }
+
+        private void report(List<S> prefix, List<S> cycle) {
+            VerificationFailed<S> res = new VerificationFailed<>();
+            res.setPrefix(prefix);
+            res.setCycle(cycle);
+            found.compareAndSet(null, res);
+        }
+
+        private List<S> states(List<Frame<S>> stack, int from, int to) {
+            List<S> res = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                res.add(stack.get(i).state);
+            }
+            return res;
+        }
+
+        private void push(S s) {
+            cyan.put(s, outer.size());
+            outer.add(new Frame<>(s, successors(s)));
+        }
+
+        void run() {
+            long start = System.nanoTime();
+            try {
+                List<S> initial = new ArrayList<>(space.initialStates());
+                if (rnd != null) {
+                    Collections.shuffle(initial, rnd);
+                }
+                for (S init : initial) {
+                    if (stopped()) {
+                        return;
+                    }
+                    if (!has(init, BLUE)) {
+                        blueSearch(init);
+                    }
+                }
+            } finally {
+                busyNanos = System.nanoTime() - start;
+            }
+        }
+
+        private void blueSearch(S init) {
+            push(init);
+            while (!outer.isEmpty()) {
+                if (stopped()) {
+                    return;
+                }
+                Frame<S> top = outer.get(outer.size() - 1);
+                if (top.successors.hasNext()) {
+                    S t = top.successors.next();
+                    Integer pos = cyan.get(t);
+                    if (pos != null) {
+                        if (accepting.test(top.state) || accepting.test(t)) {
+                            report(states(outer, 0, pos), states(outer, pos, outer.size()));
+                            return;
+                        }
+                    } else if (!has(t, BLUE)) {
+                        push(t);
+                    }
+                } else {
+                    S s = top.state;
+                    color(s, BLUE);
+                    if (accepting.test(s) && !redSearch(s)) {
+                        return;
+                    }
+                    outer.remove(outer.size() - 1);
+                    cyan.remove(s);
+                }
+            }
+        }
+
+        /**
+         * Runs the inner search from {@code seed}, then colors its states red.
+         *
+         * @return Whether the search should go on.
+         */
+        private boolean redSearch(S seed) {
+            pink.clear();
+            inner.clear();
+            pink.add(seed);
+            inner.add(new Frame<>(seed, successors(seed)));
+            while (!inner.isEmpty()) {
+                if (stopped()) {
+                    return false;
+                }
+                Frame<S> top = inner.get(inner.size() - 1);
+                if (top.successors.hasNext()) {
+                    S t = top.successors.next();
+                    Integer pos = cyan.get(t);
+                    if (pos != null) {
+                        List<S> cycle = states(outer, pos, outer.size());
+                        cycle.addAll(states(inner, 1, inner.size()));
+                        report(states(outer, 0, pos), cycle);
+                        return false;
+                    }
+                    if (!has(t, RED) && pink.add(t)) {
+                        inner.add(new Frame<>(t, successors(t)));
+                    }
+                } else {
+                    inner.remove(inner.size() - 1);
+                }
+            }
+            for (S r : pink) {
+                if (!r.equals(seed) && accepting.test(r)) {
+                    while (!has(r, RED)) {
+                        if (stopped()) {
+                            return false;
+                        }
+                        Thread.onSpinWait();
+                    }
+                }
+            }
+            for (S r : pink) {
+                color(r, RED);
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.Collections;
+import java.util.List;
+
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+
+/**
+ * The outcome of a {@link ParallelCycleSearch} run: the verification result
+ * and a throughput report.
+ *
+ * @param <S> Type of states.
+ */
+public class ParallelCycleSearchResult<S> {
+
+    private final VerificationResult<S> result;
+    private final long finishedStates;
+    private final long elapsedNanos;
+    private final int parallelism;
+    private final List<ParallelExplorationResult.WorkerReport> workers;
+
+    public ParallelCycleSearchResult(VerificationResult<S> result, long finishedStates, long elapsedNanos,
+            int parallelism, List<ParallelExplorationResult.WorkerReport> workers) {
+        this.result = result;
+        this.finishedStates = finishedStates;
+        this.elapsedNanos = elapsedNanos;
+        this.parallelism = parallelism;
+        this.workers = Collections.unmodifiableList(workers);
+    }
+
+    /**
+     * @return A VerificationSucceeded, or a VerificationFailed with the lasso
+     * of the first worker that found an accepting cycle.
+     */
+    public VerificationResult<S> getResult() {
+        return result;
+    }
+
+    /**
+     * @return A copy of this result with a different verification result, for
+     * mapping the states of a counterexample.
+     */
+    public <T> ParallelCycleSearchResult<T> withResult(VerificationResult<T> other) {
+        return new ParallelCycleSearchResult<>(other, finishedStates, elapsedNanos, parallelism, workers);
+    }
+
+    /**
+     * @return Number of distinct states that some worker's outer search
+     * finished.
+     */
+    public long getFinishedStates() {
+        return finishedStates;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return What each worker did. A worker's states count every expansion,
+     * by its outer or inner search, so states shared between workers are
+     * counted once per worker.
+     */
+    public List<ParallelExplorationResult.WorkerReport> getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return Expanded states per second of wall-clock time, over all the
+     * workers.
+     */
+    public double getStatesPerSecond() {
+        long states = 0;
+        for (ParallelExplorationResult.WorkerReport w : workers) {
+            states += w.getStates();
+        }
+        return elapsedNanos == 0 ? 0 : states * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s: %d states finished in %.3f sec, %.0f expansions/sec (%d threads)%n",
+                result.getClass().getSimpleName(), finishedStates, elapsedNanos / 1e9, getStatesPerSecond(),
+                parallelism));
+        for (ParallelExplorationResult.WorkerReport w : workers) {
+            sb.append('\t').append(w).append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,141 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+
+/**
+ * The outcome of a {@link ParallelExplorer} run: the reachable states, the
+ * transition system (if requested), and a throughput report.
+ *
+ * @param <S> Type of states.
+ * @param <A> Type of actions.
+ * @param <P> Type of atomic propositions.
+ */
+public class ParallelExplorationResult<S, A, P> {
+
+    /**
+     * What a single worker thread did.
+     */
+    public static class WorkerReport {
+
+        private final String threadName;
+        private final long states;
+        private final long transitions;
+        private final long busyNanos;
+
+        public WorkerReport(String threadName, long states, long transitions, long busyNanos) {
+            this.threadName = threadName;
+            this.states = states;
+            this.transitions = transitions;
+            this.busyNanos = busyNanos;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        /**
+         * @return Number of states this worker expanded.
+         */
+        public long getStates() {
+            return states;
+        }
+
+        public long getTransitions() {
+            return transitions;
+        }
+
+        /**
+         * @return Time this worker spent expanding states, in nanoseconds.
+         */
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        /**
+         * @return Expanded states per second of busy time.
+         */
+        public double getStatesPerSecond() {
+            return busyNanos == 0 ? 0 : states * 1e9 / busyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d states, %d transitions, %.0f states/sec", threadName, states, transitions,
+                    getStatesPerSecond());
+        }
+    }
+
+    private final Set<S> reachable;
+    private final TransitionSystem<S, A, P> transitionSystem;
+    private final long elapsedNanos;
+    private final int parallelism;
+    private final List<WorkerReport> workers;
+
+    public ParallelExplorationResult(Set<S> reachable, TransitionSystem<S, A, P> transitionSystem, long elapsedNanos,
+            int parallelism, List<WorkerReport> workers) {
+        this.reachable = Collections.unmodifiableSet(reachable);
+        this.transitionSystem = transitionSystem;
+        this.elapsedNanos = elapsedNanos;
+        this.parallelism = parallelism;
+        this.workers = Collections.unmodifiableList(workers);
+    }
+
+    public Set<S> getReachable() {
+        return reachable;
+    }
+
+    /**
+     * @return The explored transition system, or {@code null} if the explorer
+     * was told not to build it.
+     */
+    public TransitionSystem<S, A, P> getTransitionSystem() {
+        return transitionSystem;
+    }
+
+    /**
+     * @return Wall-clock time of the exploration, excluding building the
+     * transition system.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public List<WorkerReport> getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return Reachable states per second of wall-clock time.
+     */
+    public double getStatesPerSecond() {
+        return elapsedNanos == 0 ? 0 : reachable.size() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return Reachable states per second of wall-clock time, divided by the
+     * parallelism.
+     */
+    public double getStatesPerSecondPerCore() {
+        return getStatesPerSecond() / parallelism;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d states in %.3f sec, %.0f states/sec (%.0f per core, %d threads)%n",
+                reachable.size(), elapsedNanos / 1e9, getStatesPerSecond(), getStatesPerSecondPerCore(), parallelism));
+        for (WorkerReport w : workers) {
+            sb.append('\t').append(w).append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,193 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+
+/**
+ * Explores a {@link StateSpace} with several threads. Work is split into
+ * batches of newly discovered states that are forked as tasks on a
+ * work-stealing {@link ForkJoinPool}; each worker runs its own batches
+ * depth-first and steals from the others when idle. Discovered states are
+ * kept in a concurrent hash set, and transitions and labels are gathered in
+ * per-worker buffers, so workers never contend on the transition system.
+ *
+ * The state space must be safe to query from several threads at once. The
+ * facade's state spaces are, as long as the underlying models are not changed
+ * during the exploration.
+ *
+ * Usage: {@code new ParallelExplorer<>(space).parallelism(16).explore().getTransitionSystem()}
+ *
+ * @param <S> Type of states.
+ * @param <A> Type of actions.
+ * @param <P> Type of atomic propositions.
+ */
+public class ParallelExplorer<S, A, P> {
+
+    private final StateSpace<S, A, P> space;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 32;
+    private boolean buildTransitionSystem = true;
+
+    public ParallelExplorer(StateSpace<S, A, P> space) {
+        this.space = space;
+    }
+
+    /**
+     * @param threads Number of worker threads. Default is the number of
+     * available processors.
+     * @return {@code this}, for chaining.
+     */
+    public ParallelExplorer<S, A, P> parallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive (" + threads + ")");
+        }
+        parallelism = threads;
+        return this;
+    }
+
+    /**
+     * @param size Number of new states a worker collects before handing them
+     * off as a task that other workers can steal. Default is 32.
+     * @return {@code this}, for chaining.
+     */
+    public ParallelExplorer<S, A, P> batchSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Batch size must be positive (" + size + ")");
+        }
+        batchSize = size;
+        return this;
+    }
+
+    /**
+     * @param build Whether to collect transitions and labels into a
+     * {@link TransitionSystem}. When {@code false}, only the reachable states
+     * are kept. Default is {@code true}.
+     * @return {@code this}, for chaining.
+     */
+    public ParallelExplorer<S, A, P> buildTransitionSystem(boolean build) {
+        buildTransitionSystem = build;
+        return this;
+    }
+
+    /**
+     * Explores all states reachable from the initial states.
+     *
+     * @return The result, with per-worker throughput.
+     */
+    public ParallelExplorationResult<S, A, P> explore() {
+        Set<S> visited = ConcurrentHashMap.newKeySet();
+        Map<Thread, Worker<S, A, P>> workers = new ConcurrentHashMap<>();
+
+        List<S> initial = new ArrayList<>();
+        for (S s : space.initialStates()) {
+            if (visited.add(s)) {
+                initial.add(s);
+            }
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new Expand(null, initial, visited, workers));
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        TransitionSystem<S, A, P> ts = null;
+        if (buildTransitionSystem) {
+            ts = new TransitionSystem<>();
+            for (S s : space.initialStates()) {
+                ts.addInitialState(s);
+            }
+            for (Worker<S, A, P> w : workers.values()) {
+                w.labels.forEach(ts::addToLabel);
+                w.transitions.forEach(ts::addTransition);
+            }
+        }
+
+        List<ParallelExplorationResult.WorkerReport> reports = new ArrayList<>();
+        for (Worker<S, A, P> w : workers.values()) {
+            reports.add(new ParallelExplorationResult.WorkerReport(w.name, w.states, w.transitionCount, w.busyNanos));
+        }
+        return new ParallelExplorationResult<>(visited, ts, elapsed, parallelism, reports);
+    }
+
+    /**
+     * Per-thread buffers and counters. Only touched by its own thread while
+     * the pool runs.
+     */
+    private static final class Worker<S, A, P> {
+
+        final String name;
+        final List<TSTransition<S, A>> transitions = new ArrayList<>();
+        final Map<S, Set<P>> labels = new HashMap<>();
+        long states;
+        long transitionCount;
+        long busyNanos;
+
+        Worker(String name) {
+            this.name = name;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class Expand extends CountedCompleter<Void> {
+
+        private final List<S> batch;
+        private final Set<S> visited;
+        private final Map<Thread, Worker<S, A, P>> workers;
+
+        Expand(CountedCompleter<?> parent, List<S> batch, Set<S> visited, Map<Thread, Worker<S, A, P>> workers) {
+            super(parent);
+            this.batch = batch;
+            this.visited = visited;
+            this.workers = workers;
+        }
+
+        @Override
+        public void compute() {
+            long start = System.nanoTime();
+            Worker<S, A, P> w = workers.computeIfAbsent(Thread.currentThread(), t -> new Worker<>(t.getName()));
+            List<S> pending = new ArrayList<>(batchSize);
+            for (S s : batch) {
+                List<TSTransition<S, A>> succ = space.successors(s);
+                w.states++;
+                w.transitionCount += succ.size();
+                if (buildTransitionSystem) {
+                    w.labels.put(s, space.label(s));
+                    w.transitions.addAll(succ);
+                }
+                for (TSTransition<S, A> t : succ) {
+                    if (visited.add(t.getTo())) {
+                        pending.add(t.getTo());
+                        if (pending.size() == batchSize) {
+                            fork(pending);
+                            pending = new ArrayList<>(batchSize);
+                        }
+                    }
+                }
+            }
+            if (!pending.isEmpty()) {
+                fork(pending);
+            }
+            w.busyNanos += System.nanoTime() - start;
+            tryComplete();
+        }
+
+        private void fork(List<S> states) {
+            addToPendingCount(1);
+            new Expand(this, states, visited, workers).fork();
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * The product of a state space with an automaton over its labels, generated
+ * on demand.
+ *
+ * The automaton reads the label of each state it enters: the initial states
+ * are {@code <s0, q>} for an initial {@code s0} and {@code q} in
+ * {@code δ(q0, L(s0))}, and {@code <s, q> -a-> <s', q'>} whenever
+ * {@code s -a-> s'} and {@code q'} is in {@code δ(q, L(s'))}. A product state
+ * is labeled by its automaton state.
+ *
+ * @param <S> Type of states in the state space.
+ * @param <A> Type of actions.
+ * @param <P> Type of atomic propositions, which is also the automaton alphabet.
+ * @param <Q> Type of automaton states.
+ */
+public class ProductStateSpace<S, A, P, Q> implements StateSpace<Pair<S, Q>, A, Q> {
+
+    private final StateSpace<S, A, P> space;
+    private final MultiColorAutomaton<Q, P> aut;
+
+    public ProductStateSpace(StateSpace<S, A, P> space, MultiColorAutomaton<Q, P> aut) {
+        this.space = space;
+        this.aut = aut;
+    }
+
+    /**
+     * Unlike {@link MultiColorAutomaton#nextStates(Object, Set)}, never throws
+     * or returns {@code null}. Looks the label up as a letter, so guards with
+     * free propositions cost one test each rather than a transition per
+     * letter.
+     */
+    private Set<Q> next(Q q, Set<P> symbol) {
+        if (!aut.getGuardedTransitions().containsKey(q)) {
+            return Collections.emptySet();
+        }
+        return aut.nextStates(q, aut.toLetter(symbol));
+    }
+
+    @Override
+    public Set<Pair<S, Q>> initialStates() {
+        Set<Pair<S, Q>> res = new LinkedHashSet<>();
+        for (S s : space.initialStates()) {
+            Set<P> l = space.label(s);
+            for (Q q0 : aut.getInitialStates()) {
+                for (Q q : next(q0, l)) {
+                    res.add(new Pair<>(s, q));
+                }
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public List<TSTransition<Pair<S, Q>, A>> successors(Pair<S, Q> s) {
+        List<TSTransition<Pair<S, Q>, A>> res = new ArrayList<>();
+        for (TSTransition<S, A> t : space.successors(s.first)) {
+            for (Q q : next(s.second, space.label(t.getTo()))) {
+                res.add(new TSTransition<>(s, t.getAction(), new Pair<>(t.getTo(), q)));
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public Set<Pair<S, Q>> successorStates(Pair<S, Q> s) {
+        Set<Pair<S, Q>> res = new LinkedHashSet<>();
+        for (S to : space.successorStates(s.first)) {
+            for (Q q : next(s.second, space.label(to))) {
+                res.add(new Pair<>(to, q));
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public Set<Q> label(Pair<S, Q> s) {
+        return Collections.singleton(s.second);
+    }
+
+}
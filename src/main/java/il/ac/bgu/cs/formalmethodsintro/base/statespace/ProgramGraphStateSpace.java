@@ -0,0 +1,78 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ActionDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ConditionDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraph;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * The states of a {@link ProgramGraph}, generated on demand. States, actions
+ * and labels are those of
+ * {@link il.ac.bgu.cs.formalmethodsintro.base.FvmFacade#transitionSystemFromProgramGraph}:
+ * a state is labeled by its location and by {@code "x = v"} for each
+ * variable. Actions whose effect is {@code null} are not enabled.
+ */
+public class ProgramGraphStateSpace<L, A> implements StateSpace<Pair<L, Map<String, Object>>, A, String> {
+
+    private final ProgramGraph<L, A> pg;
+    private final Set<ActionDef> actionDefs;
+    private final Set<ConditionDef> conditionDefs;
+
+    public ProgramGraphStateSpace(ProgramGraph<L, A> pg, Set<ActionDef> actionDefs, Set<ConditionDef> conditionDefs) {
+        this.pg = pg;
+        this.actionDefs = actionDefs;
+        this.conditionDefs = conditionDefs;
+    }
+
+    @Override
+    public Set<Pair<L, Map<String, Object>>> initialStates() {
+        Set<Pair<L, Map<String, Object>>> res = new LinkedHashSet<>();
+        for (L loc : pg.getInitialLocations()) {
+            if (pg.getInitalizations().isEmpty()) {
+                res.add(new Pair<>(loc, new HashMap<>()));
+            }
+            for (List<String> init : pg.getInitalizations()) {
+                Map<String, Object> eval = new HashMap<>();
+                for (String act : init) {
+                    eval = ActionDef.effect(actionDefs, eval, act);
+                }
+                res.add(new Pair<>(loc, eval));
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public List<TSTransition<Pair<L, Map<String, Object>>, A>> successors(Pair<L, Map<String, Object>> s) {
+        List<TSTransition<Pair<L, Map<String, Object>>, A>> res = new ArrayList<>();
+        Map<String, Object> eval = s.getSecond();
+        for (PGTransition<L, A> t : pg.getOutgoingTransitions(s.getFirst())) {
+            if (ConditionDef.evaluate(conditionDefs, eval, t.getCondition())) {
+                Map<String, Object> next = ActionDef.effect(actionDefs, eval, t.getAction());
+                if (next != null) {
+                    res.add(new TSTransition<>(s, t.getAction(), new Pair<>(t.getTo(), next)));
+                }
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public Set<String> label(Pair<L, Map<String, Object>> s) {
+        Set<String> res = new HashSet<>();
+        res.add(s.getFirst().toString());
+        s.getSecond().forEach((k, v) -> res.add(k + " = " + v));
+        return res;
+    }
+
+}
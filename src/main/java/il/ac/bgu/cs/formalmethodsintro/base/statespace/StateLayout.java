@@ -0,0 +1,308 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.Token;
+
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaLexer;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.SlotLayout;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraph;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Assigns every location, variable and channel of a {@link ProgramGraph} or a
+ * {@link ChannelSystem} a fixed offset in a packed {@code int[]}, and converts
+ * between {@link PackedState}s and the {@code Pair}/{@code Map} states the
+ * facade builds.
+ *
+ * A packed state is laid out as
+ * <pre>
+ * [ location index per program graph ]
+ * [ presence bits, variables first, then channels ]
+ * [ variable values ]
+ * [ channel lengths ]
+ * [ channel contents, channel after channel ]
+ * </pre>
+ * The presence bits keep an unset variable (or channel) distinct from one set
+ * to 0 (or to an empty channel), so a state round-trips exactly.
+ *
+ * Variables and channels are found by lexing the conditions, actions and
+ * initializations of the program graphs, so the layout covers every name a
+ * NanoPromela definition can write. Variable values must be integers and
+ * channel contents lists of integers.
+ *
+ * @param <L> Type of locations.
+ */
+public final class StateLayout<L> {
+
+    private final List<Map<L, Integer>> locationIndices;
+    private final List<List<L>> locations;
+    private final String[] variables;
+    private final String[] channels;
+    private final Map<String, Integer> variableSlots = new HashMap<>();
+    private final Map<String, Integer> channelSlots = new HashMap<>();
+
+    private final int presenceOffset;
+    private final int valuesOffset;
+    private final int lengthsOffset;
+    private final int headerSize;
+
+    private StateLayout(List<? extends ProgramGraph<L, ?>> pgs) {
+        locationIndices = new ArrayList<>(pgs.size());
+        locations = new ArrayList<>(pgs.size());
+        Set<String> vars = new TreeSet<>();
+        Set<String> chans = new TreeSet<>();
+        for (ProgramGraph<L, ?> pg : pgs) {
+            List<L> locs = new ArrayList<>(pg.getLocations());
+            Map<L, Integer> index = new HashMap<>();
+            for (int i = 0; i < locs.size(); i++) {
+                index.put(locs.get(i), i);
+            }
+            locations.add(Collections.unmodifiableList(locs));
+            locationIndices.add(index);
+
+            for (PGTransition<L, ?> t : pg.getTransitions()) {
+                collectNames(t.getCondition(), vars, chans);
+                collectNames(String.valueOf(t.getAction()), vars, chans);
+            }
+            for (List<String> init : pg.getInitalizations()) {
+                for (String act : init) {
+                    collectNames(act, vars, chans);
+                }
+            }
+        }
+        variables = vars.toArray(new String[0]);
+        channels = chans.toArray(new String[0]);
+        for (int i = 0; i < variables.length; i++) {
+            variableSlots.put(variables[i], i);
+        }
+        for (int i = 0; i < channels.length; i++) {
+            channelSlots.put(channels[i], i);
+        }
+
+        presenceOffset = pgs.size();
+        valuesOffset = presenceOffset + (variables.length + channels.length + 31) / 32;
+        lengthsOffset = valuesOffset + variables.length;
+        headerSize = lengthsOffset + channels.length;
+    }
+
+    public static <L, A> StateLayout<L> forProgramGraph(ProgramGraph<L, A> pg) {
+        return new StateLayout<>(Collections.singletonList(pg));
+    }
+
+    public static <L, A> StateLayout<L> forChannelSystem(ChannelSystem<L, A> cs) {
+        return new StateLayout<>(cs.getProgramGraphs());
+    }
+
+    private static void collectNames(String source, Set<String> vars, Set<String> chans) {
+        if (source == null || source.isEmpty()) {
+            return;
+        }
+        NanoPromelaLexer lexer = new NanoPromelaLexer(new ANTLRInputStream(source));
+        lexer.removeErrorListeners();
+        for (Token t = lexer.nextToken(); t.getType() != Token.EOF; t = lexer.nextToken()) {
+            if (t.getType() == NanoPromelaLexer.VARNAME) {
+                vars.add(t.getText());
+            } else if (t.getType() == NanoPromelaLexer.CHANNAME) {
+                chans.add(t.getText());
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Packing
+    /**
+     * @param locs One location per program graph.
+     * @param eval Values of variables and channels.
+     * @return The packed state.
+     * @throws IllegalArgumentException if a location, variable or channel is
+     * not part of this layout, or a value has the wrong type.
+     */
+    public PackedState pack(List<L> locs, Map<String, Object> eval) {
+        if (locs.size() != locations.size()) {
+            throw new IllegalArgumentException("Expected " + locations.size() + " locations, got " + locs.size());
+        }
+
+        int[] values = new int[variables.length];
+        List<?>[] contents = new List<?>[channels.length];
+        int[] presence = new int[valuesOffset - presenceOffset];
+        int tail = 0;
+        for (Map.Entry<String, Object> e : eval.entrySet()) {
+            Integer slot = variableSlots.get(e.getKey());
+            if (slot != null) {
+                if (!(e.getValue() instanceof Integer)) {
+                    throw new IllegalArgumentException("Variable " + e.getKey() + " is not an integer: " + e.getValue());
+                }
+                values[slot] = (Integer) e.getValue();
+                presence[slot >>> 5] |= 1 << slot;
+                continue;
+            }
+            slot = channelSlots.get(e.getKey());
+            if (slot != null) {
+                if (!(e.getValue() instanceof List)) {
+                    throw new IllegalArgumentException("Channel " + e.getKey() + " is not a list: " + e.getValue());
+                }
+                contents[slot] = (List<?>) e.getValue();
+                tail += contents[slot].size();
+                int bit = variables.length + slot;
+                presence[bit >>> 5] |= 1 << bit;
+                continue;
+            }
+            throw new IllegalArgumentException("Name " + e.getKey() + " is not part of the layout");
+        }
+
+        int[] words = new int[headerSize + tail];
+        for (int i = 0; i < locs.size(); i++) {
+            Integer index = locationIndices.get(i).get(locs.get(i));
+            if (index == null) {
+                throw new IllegalArgumentException("Location " + locs.get(i) + " is not part of program graph " + i);
+            }
+            words[i] = index;
+        }
+        System.arraycopy(presence, 0, words, presenceOffset, presence.length);
+        System.arraycopy(values, 0, words, valuesOffset, values.length);
+        int pos = headerSize;
+        for (int c = 0; c < channels.length; c++) {
+            if (contents[c] == null) {
+                continue;
+            }
+            words[lengthsOffset + c] = contents[c].size();
+            for (Object o : contents[c]) {
+                if (!(o instanceof Integer)) {
+                    throw new IllegalArgumentException("Channel " + channels[c] + " holds a non-integer: " + o);
+                }
+                words[pos++] = (Integer) o;
+            }
+        }
+        return new PackedState(words);
+    }
+
+    public PackedState packChannelSystemState(Pair<List<L>, Map<String, Object>> state) {
+        return pack(state.getFirst(), state.getSecond());
+    }
+
+    public PackedState packProgramGraphState(Pair<L, Map<String, Object>> state) {
+        return pack(Collections.singletonList(state.getFirst()), state.getSecond());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Unpacking
+    public List<L> unpackLocations(PackedState state) {
+        List<L> res = new ArrayList<>(locations.size());
+        for (int i = 0; i < locations.size(); i++) {
+            res.add(getLocation(state, i));
+        }
+        return res;
+    }
+
+    /**
+     * @return A fresh evaluation of the variables and channels of
+     * {@code state}. Channels are {@link Vector}s, as written by the
+     * NanoPromela evaluator.
+     */
+    public Map<String, Object> unpackEval(PackedState state) {
+        int[] words = state.words();
+        Map<String, Object> eval = new HashMap<>();
+        for (int v = 0; v < variables.length; v++) {
+            if (isPresent(words, v)) {
+                eval.put(variables[v], words[valuesOffset + v]);
+            }
+        }
+        int pos = headerSize;
+        for (int c = 0; c < channels.length; c++) {
+            int length = words[lengthsOffset + c];
+            if (isPresent(words, variables.length + c)) {
+                Vector<Integer> q = new Vector<>(length);
+                for (int i = 0; i < length; i++) {
+                    q.add(words[pos + i]);
+                }
+                eval.put(channels[c], q);
+            }
+            pos += length;
+        }
+        return eval;
+    }
+
+    public Pair<List<L>, Map<String, Object>> toChannelSystemState(PackedState state) {
+        return new Pair<>(unpackLocations(state), unpackEval(state));
+    }
+
+    public Pair<L, Map<String, Object>> toProgramGraphState(PackedState state) {
+        return new Pair<>(getLocation(state, 0), unpackEval(state));
+    }
+
+    /**
+     * @param state A packed state.
+     * @param pg The index of a program graph.
+     * @return The location of that program graph in {@code state}.
+     */
+    public L getLocation(PackedState state, int pg) {
+        return locations.get(pg).get(state.word(pg));
+    }
+
+    /**
+     * @return The value of {@code variable} in {@code state}, or {@code null}
+     * if it is unset.
+     * @throws IllegalArgumentException if {@code variable} is not part of this
+     * layout.
+     */
+    public Integer getValue(PackedState state, String variable) {
+        Integer slot = variableSlots.get(variable);
+        if (slot == null) {
+            throw new IllegalArgumentException("Variable " + variable + " is not part of the layout");
+        }
+        return isPresent(state.words(), slot) ? state.word(valuesOffset + slot) : null;
+    }
+
+    private boolean isPresent(int[] words, int bit) {
+        return (words[presenceOffset + (bit >>> 5)] & (1 << bit)) != 0;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Accessors
+    public int getComponentCount() {
+        return locations.size();
+    }
+
+    public List<String> getVariables() {
+        return Collections.unmodifiableList(Arrays.asList(variables));
+    }
+
+    public List<String> getChannels() {
+        return Collections.unmodifiableList(Arrays.asList(channels));
+    }
+
+    /**
+     * @return A {@link SlotLayout} with the variables of this layout in the
+     * same order, for compiling guards with
+     * {@link il.ac.bgu.cs.formalmethodsintro.base.nanopromela.SlotCompiler}.
+     */
+    public SlotLayout toSlotLayout() {
+        return new SlotLayout(getVariables());
+    }
+
+    /**
+     * @return The number of words of a state whose channels are all empty.
+     */
+    public int getHeaderSize() {
+        return headerSize;
+    }
+
+    @Override
+    public String toString() {
+        return "StateLayout[components=" + locations.size() + ", variables=" + getVariables()
+                + ", channels=" + getChannels() + "]";
+    }
+
+}
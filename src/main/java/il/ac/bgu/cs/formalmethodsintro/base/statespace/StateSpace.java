@@ -0,0 +1,55 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+
+/**
+ * A transition system whose states are generated on demand, rather than
+ * stored up front like in {@link TransitionSystem}. Algorithms that only need
+ * the reachable part (or part of it) can run directly on a state space and
+ * stop as soon as they have their answer; see {@link StateSpaces}.
+ *
+ * Implementations must be deterministic: asking twice for the successors or
+ * label of equal states gives equal answers.
+ *
+ * @param <S> Type of states.
+ * @param <A> Type of actions.
+ * @param <P> Type of atomic propositions.
+ */
+public interface StateSpace<S, A, P> {
+
+    /**
+     * @return The initial states.
+     */
+    Set<S> initialStates();
+
+    /**
+     * @param s A state.
+     * @return The transitions leaving {@code s}.
+     */
+    List<TSTransition<S, A>> successors(S s);
+
+    /**
+     * @param s A state.
+     * @return The atomic propositions that hold in {@code s}.
+     */
+    Set<P> label(S s);
+
+    /**
+     * @param s A state.
+     * @return The targets of {@link #successors(java.lang.Object)}, without
+     * duplicates.
+     */
+    default Set<S> successorStates(S s) {
+        Set<S> res = new LinkedHashSet<>();
+        for (TSTransition<S, A> t : successors(s)) {
+            res.add(t.getTo());
+        }
+        return res;
+    }
+
+}
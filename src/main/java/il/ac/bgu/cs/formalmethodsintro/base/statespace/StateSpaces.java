@@ -0,0 +1,184 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Automaton;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.Reachability;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.ReachabilityResult;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.StateStoreStatistics;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.VisitedStateStore;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
+
+/**
+ * Algorithms that explore a {@link StateSpace} on the fly.
+ */
+public final class StateSpaces {
+
+    private StateSpaces() {
+    }
+
+    /**
+     * @return The states reachable from the initial states of {@code space}.
+     */
+    public static <S> Set<S> reach(StateSpace<S, ?, ?> space) {
+        return new Reachability<S>(space::successorStates)
+                .trackPaths(false)
+                .explore(space.initialStates())
+                .getReachable();
+    }
+
+    /**
+     * Counts the states reachable from the initial states of {@code space},
+     * keeping only {@code store} and the frontier in memory: no transition
+     * system is built. With a non-exact store this uses far less memory than
+     * {@link #reach(StateSpace)}, but may undercount (see
+     * {@link VisitedStateStore#add(Object)}).
+     *
+     * @param space The state space.
+     * @param store An empty store for the visited states.
+     * @return The statistics of {@code store} after the search; their size is
+     * the number of states found.
+     */
+    public static <S> StateStoreStatistics count(StateSpace<S, ?, ?> space, VisitedStateStore<S> store) {
+        Deque<S> stack = new ArrayDeque<>();
+        for (S s : space.initialStates()) {
+            if (store.add(s)) {
+                stack.push(s);
+            }
+        }
+        while (!stack.isEmpty()) {
+            for (S next : space.successorStates(stack.pop())) {
+                if (store.add(next)) {
+                    stack.push(next);
+                }
+            }
+        }
+        return store.getStatistics();
+    }
+
+    /**
+     * Checks that every reachable state satisfies {@code invariant}, stopping
+     * at the first state that does not. States past that one are never
+     * generated.
+     *
+     * @param space The state space.
+     * @param invariant A predicate over state labels.
+     * @return A {@link VerificationSucceeded}, or a {@link VerificationFailed}
+     * whose prefix is a shortest path from an initial state to a violating
+     * state (inclusive) and whose cycle is empty.
+     */
+    public static <S, P> VerificationResult<S> checkInvariant(StateSpace<S, ?, P> space,
+            Predicate<? super Set<P>> invariant) {
+        ReachabilityResult<S> res = new Reachability<S>(space::successorStates)
+                .stopWhen(s -> !invariant.test(space.label(s)))
+                .explore(space.initialStates());
+        if (!res.isStoppedEarly()) {
+            return new VerificationSucceeded<>();
+        }
+        VerificationFailed<S> failed = new VerificationFailed<>();
+        failed.setPrefix(res.pathTo(res.getHit()));
+        failed.setCycle(Collections.emptyList());
+        return failed;
+    }
+
+    /**
+     * Checks that no path of {@code space} is accepted by {@code aut}, by
+     * searching the product {@link ProductStateSpace} for an accepting cycle.
+     * The product is never built in full: the search stops at the first
+     * accepting cycle.
+     *
+     * @param space The state space.
+     * @param aut A Büchi automaton for the bad behaviours.
+     * @param algorithm The accepting cycle search to use.
+     * @return A {@link VerificationSucceeded}, or a {@link VerificationFailed}
+     * whose prefix and cycle are the states of {@code space} along an accepted
+     * lasso, as described in {@link AcceptingCycles}.
+     */
+    public static <S, A, P, Q> VerificationResult<S> verifyOmegaRegularProperty(StateSpace<S, A, P> space,
+            Automaton<Q, P> aut, EmptinessCheck algorithm) {
+        Set<Q> accepting = aut.getAcceptingStates();
+        VerificationResult<Pair<S, Q>> res = AcceptingCycles.find(new ProductStateSpace<>(space, aut),
+                s -> accepting.contains(s.second), algorithm);
+        return firstComponents(res);
+    }
+
+    /**
+     * Like {@link #verifyOmegaRegularProperty(StateSpace, Automaton, EmptinessCheck)},
+     * but searches the product with a {@link ParallelCycleSearch}.
+     *
+     * @param space The state space, safe to query from several threads.
+     * @param aut A Büchi automaton for the bad behaviours.
+     * @param parallelism Number of worker threads.
+     * @return The result of the search, with the states of {@code space} in
+     * its counterexample.
+     */
+    public static <S, A, P, Q> ParallelCycleSearchResult<S> verifyOmegaRegularProperty(StateSpace<S, A, P> space,
+            Automaton<Q, P> aut, int parallelism) {
+        Set<Q> accepting = aut.getAcceptingStates();
+        ParallelCycleSearchResult<Pair<S, Q>> res = new ParallelCycleSearch<>(new ProductStateSpace<>(space, aut),
+                (Pair<S, Q> s) -> accepting.contains(s.second))
+                .parallelism(parallelism)
+                .search();
+        return res.withResult(firstComponents(res.getResult()));
+    }
+
+    private static <S, Q> VerificationResult<S> firstComponents(VerificationResult<Pair<S, Q>> res) {
+        if (!(res instanceof VerificationFailed)) {
+            return new VerificationSucceeded<>();
+        }
+        VerificationFailed<Pair<S, Q>> lasso = (VerificationFailed<Pair<S, Q>>) res;
+        VerificationFailed<S> failed = new VerificationFailed<>();
+        failed.setPrefix(firsts(lasso.getPrefix()));
+        failed.setCycle(firsts(lasso.getCycle()));
+        return failed;
+    }
+
+    private static <S> List<S> firsts(List<? extends Pair<S, ?>> pairs) {
+        List<S> res = new ArrayList<>(pairs.size());
+        for (Pair<S, ?> p : pairs) {
+            res.add(p.first);
+        }
+        return res;
+    }
+
+    /**
+     * Builds the reachable part of {@code space} as a {@link TransitionSystem}.
+     *
+     * @return A transition system with the reachable states, their outgoing
+     * transitions and labels.
+     */
+    public static <S, A, P> TransitionSystem<S, A, P> materialize(StateSpace<S, A, P> space) {
+        TransitionSystem<S, A, P> ts = new TransitionSystem<>();
+        Deque<S> q = new ArrayDeque<>();
+        for (S s : space.initialStates()) {
+            if (!ts.getStates().contains(s)) {
+                q.add(s);
+            }
+            ts.addInitialState(s);
+        }
+        while (!q.isEmpty()) {
+            S s = q.remove();
+            ts.addToLabel(s, space.label(s));
+            for (TSTransition<S, A> t : space.successors(s)) {
+                if (!ts.getStates().contains(t.getTo())) {
+                    ts.addState(t.getTo());
+                    q.add(t.getTo());
+                }
+                ts.addTransition(t);
+            }
+        }
+        return ts;
+    }
+
+}
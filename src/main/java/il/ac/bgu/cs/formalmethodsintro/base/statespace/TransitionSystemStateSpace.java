@@ -0,0 +1,47 @@
+package il.ac.bgu.cs.formalmethodsintro.base.statespace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+
+/**
+ * A {@link StateSpace} view of an existing {@link TransitionSystem}.
+ */
+public class TransitionSystemStateSpace<S, A, P> implements StateSpace<S, A, P> {
+
+    private final TransitionSystem<S, A, P> ts;
+
+    public TransitionSystemStateSpace(TransitionSystem<S, A, P> ts) {
+        this.ts = ts;
+    }
+
+    @Override
+    public Set<S> initialStates() {
+        return ts.getInitialStates();
+    }
+
+    @Override
+    public List<TSTransition<S, A>> successors(S s) {
+        List<TSTransition<S, A>> res = new ArrayList<>();
+        for (A a : ts.getOutgoingActions(s)) {
+            for (S to : ts.getSuccessors(s, a)) {
+                res.add(new TSTransition<>(s, a, to));
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public Set<S> successorStates(S s) {
+        return ts.getSuccessors(s);
+    }
+
+    @Override
+    public Set<P> label(S s) {
+        return ts.getLabel(s);
+    }
+
+}
@@ -1,16 +1,22 @@
 package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
 
-import java.util.ArrayList;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 
 /**
  * A finite, alternating sequence of states and actions. When creating instances
  * of this class, consider using the static methods {@code of(...)}, such as {@link #of(java.lang.Object, java.lang.Object, java.lang.Object, java.lang.Object, java.lang.Object).
+ *
+ * The states and actions are kept in two arrays, shared by {@link #tail()}:
+ * a tail is the same arrays with an offset, so taking it is O(1) and deep
+ * traces do not nest views. To walk a sequence step by step, prefer
+ * {@link #cursor()}, or {@link #state(int)} and {@link #action(int)}; to
+ * build a long one, {@link #builder(Object)} or {@link #read(Reader)}.
+ *
  * @author michael
  *
  * @param <S> Type of states.
@@ -19,80 +25,180 @@ import java.util.Objects;
 public class AlternatingSequence<S, A> {
 
     public static <S, A> AlternatingSequence<S, A> of(S s) {
-        return new AlternatingSequence<>(Collections.singletonList(s));
+        return new AlternatingSequence<>(new Object[]{s}, new Object[0], 0);
     }
 
     public static <S, A> AlternatingSequence<S, A> of(S s1, A a1, S s2) {
-        return new AlternatingSequence<>(Arrays.asList(s1, s2), Collections.singletonList(a1));
+        return new AlternatingSequence<>(new Object[]{s1, s2}, new Object[]{a1}, 0);
     }
 
     public static <S, A> AlternatingSequence<S, A> of(S s1, A a1, S s2, A a2, S s3) {
-        return new AlternatingSequence<>(Arrays.asList(s1, s2, s3), Arrays.asList(a1, a2));
+        return new AlternatingSequence<>(new Object[]{s1, s2, s3}, new Object[]{a1, a2}, 0);
     }
 
     public static <S, A> AlternatingSequence<S, A> of(S s1, A a1, S s2, A a2, S s3, A a3, S s4) {
-        return new AlternatingSequence<>(Arrays.asList(s1, s2, s3, s4), Arrays.asList(a1, a2, a3));
+        return new AlternatingSequence<>(new Object[]{s1, s2, s3, s4}, new Object[]{a1, a2, a3}, 0);
     }
 
     public static <S, A> AlternatingSequence<S, A> of(S s1, A a1, S s2, A a2, S s3, A a3, S s4, A a4, S s5) {
-        return new AlternatingSequence<>(Arrays.asList(s1, s2, s3, s4, s5), Arrays.asList(a1, a2, a3, a4));
+        return new AlternatingSequence<>(new Object[]{s1, s2, s3, s4, s5}, new Object[]{a1, a2, a3, a4}, 0);
     }
 
     @SuppressWarnings("unchecked")
     public static <S, A> AlternatingSequence<S, A> of(S s1, A a1, Object... tail) {
-        List<S> states = new LinkedList<>();
-        List<A> actions = new LinkedList<>();
-
         if (tail.length % 2 == 0) {
             throw new IllegalArgumentException("Length of tail cannot describe an execution fragment");
         }
 
-        states.add(s1);
-        actions.add(a1);
-        for (int i = 0; i < tail.length - 1; i += 2) {
-            states.add((S) tail[i]);
-            actions.add((A) tail[i + 1]);
+        Builder<S, A> builder = new Builder<>(s1, tail.length / 2 + 2);
+        builder.add(a1, (S) tail[0]);
+        for (int i = 1; i < tail.length; i += 2) {
+            builder.add((A) tail[i], (S) tail[i + 1]);
         }
-        states.add((S) tail[tail.length - 1]);
-        return new AlternatingSequence<>(states, actions);
+        return builder.build();
     }
 
-    private final List<Object> items;
+    /**
+     * @param <S> Type of states.
+     * @param <A> Type of actions.
+     * @param first The first state.
+     * @return A builder of a sequence that starts at {@code first}.
+     */
+    public static <S, A> Builder<S, A> builder(S first) {
+        return new Builder<>(first, 16);
+    }
+
+    /**
+     * Reads a trace: one item per line, alternating states and actions and
+     * ending with a state. Blank lines are skipped. The reader is consumed a
+     * line at a time, so only the sequence itself is held in memory.
+     *
+     * @param reader The source of the trace; not closed.
+     * @return The trace.
+     * @throws IOException If reading fails.
+     * @throws IllegalArgumentException If the trace is empty or ends with an
+     * action.
+     */
+    public static AlternatingSequence<String, String> read(Reader reader) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        Builder<String, String> builder = null;
+        String action = null;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (builder == null) {
+                builder = builder(line);
+            } else if (action == null) {
+                action = line;
+            } else {
+                builder.add(action, line);
+                action = null;
+            }
+        }
+        if (builder == null) {
+            throw new IllegalArgumentException("Empty trace");
+        }
+        if (action != null) {
+            throw new IllegalArgumentException("Trace ends with action " + action);
+        }
+        return builder.build();
+    }
+
+    /** The states, of the whole sequence this one is a tail of. */
+    private final Object[] states;
+    /** {@code actions[i]} leads from {@code states[i]} to {@code states[i+1]}. */
+    private final Object[] actions;
+    /** The position of the head in the alternating order; odd if an action. */
+    private final int offset;
 
     public AlternatingSequence(List<S> states, List<A> actions) {
         if (states.size() != actions.size() + 1) {
             throw new IllegalArgumentException("List sizes do not match");
         }
-        List<Object> itemsBuilder = new ArrayList<>(states.size() + actions.size());
-        Iterator<?> sts = states.iterator();
-        for (Iterator<?> acts = actions.iterator(); acts.hasNext();) {
-            itemsBuilder.add(sts.next());
-            itemsBuilder.add(acts.next());
-        }
-        itemsBuilder.add(sts.next());
-        items = Collections.unmodifiableList(itemsBuilder);
+        this.states = states.toArray();
+        this.actions = actions.toArray();
+        this.offset = 0;
     }
 
-    private AlternatingSequence(List<Object> items) {
-        this.items = items;
+    private AlternatingSequence(Object[] states, Object[] actions, int offset) {
+        this.states = states;
+        this.actions = actions;
+        this.offset = offset;
+    }
+
+    private Object item(int i) {
+        int at = offset + i;
+        return (at & 1) == 0 ? states[at >> 1] : actions[at >> 1];
     }
 
     @SuppressWarnings("unchecked")
     public S head() {
-        return (S) items.get(0);
+        if (isEmpty()) {
+            throw new IndexOutOfBoundsException("Empty sequence");
+        }
+        return (S) item(0);
     }
 
     public AlternatingSequence<A, S> tail() {
-        return new AlternatingSequence<>(items.subList(1, items.size()));
+        if (isEmpty()) {
+            throw new IndexOutOfBoundsException("Empty sequence");
+        }
+        return new AlternatingSequence<>(states, actions, offset + 1);
     }
 
     @SuppressWarnings("unchecked")
     public S last() {
-        return (S) items.get(items.size() - 1);
+        if (isEmpty()) {
+            throw new IndexOutOfBoundsException("Empty sequence");
+        }
+        return (S) item(size() - 1);
+    }
+
+    /**
+     * @param i An index, from 0.
+     * @return The {@code i}-th item of type {@code S}, i.e. item {@code 2i}.
+     */
+    @SuppressWarnings("unchecked")
+    public S state(int i) {
+        if (i < 0 || 2 * i >= size()) {
+            throw new IndexOutOfBoundsException("No state " + i + " in a sequence of size " + size());
+        }
+        return (S) item(2 * i);
+    }
+
+    /**
+     * @param i An index, from 0.
+     * @return The {@code i}-th item of type {@code A}, i.e. item
+     * {@code 2i + 1}, which lies between {@code state(i)} and
+     * {@code state(i + 1)}.
+     */
+    @SuppressWarnings("unchecked")
+    public A action(int i) {
+        if (i < 0 || 2 * i + 1 >= size()) {
+            throw new IndexOutOfBoundsException("No action " + i + " in a sequence of size " + size());
+        }
+        return (A) item(2 * i + 1);
+    }
+
+    /**
+     * @return The number of steps (the number of actions, for a sequence that
+     * starts and ends with a state).
+     */
+    public int steps() {
+        return size() / 2;
+    }
+
+    /**
+     * @return A cursor before the first step of this sequence.
+     */
+    public Cursor<S, A> cursor() {
+        return new Cursor<>(this);
     }
 
     public int size() {
-        return items.size();
+        return 2 * states.length - 1 - offset;
     }
 
     public boolean isEmpty() {
@@ -101,8 +207,12 @@ public class AlternatingSequence<S, A> {
 
     @Override
     public int hashCode() {
+        int itemsHash = 1;
+        for (int i = 0; i < size(); i++) {
+            itemsHash = 31 * itemsHash + Objects.hashCode(item(i));
+        }
         int hash = 5;
-        hash = 67 * hash + Objects.hashCode(this.items);
+        hash = 67 * hash + itemsHash;
         return hash;
     }
 
@@ -118,12 +228,118 @@ public class AlternatingSequence<S, A> {
             return false;
         }
         final AlternatingSequence<?, ?> other = (AlternatingSequence<?, ?>) obj;
-        return Objects.equals(this.items, other.items);
+        if (size() != other.size()) {
+            return false;
+        }
+        for (int i = 0; i < size(); i++) {
+            if (!Objects.equals(item(i), other.item(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public String toString() {
-        return "[AlternatingSequence " + items + ']';
+        StringBuilder sb = new StringBuilder("[AlternatingSequence [");
+        for (int i = 0; i < size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(item(i));
+        }
+        return sb.append("]]").toString();
+    }
+
+    /**
+     * A position in a sequence, moving a step at a time without allocating.
+     * After a successful {@link #next()}, the current step goes from
+     * {@link #from()} by {@link #action()} to {@link #to()}.
+     *
+     * @param <S> Type of states.
+     * @param <A> Type of actions.
+     */
+    public static final class Cursor<S, A> {
+
+        private final AlternatingSequence<S, A> seq;
+        private int step = -1;
+
+        private Cursor(AlternatingSequence<S, A> seq) {
+            this.seq = seq;
+        }
+
+        /**
+         * Moves to the next step.
+         *
+         * @return Whether there was one.
+         */
+        public boolean next() {
+            if (step + 1 >= seq.steps()) {
+                step = seq.steps();
+                return false;
+            }
+            step++;
+            return true;
+        }
+
+        /**
+         * @return The index of the current step, from 0.
+         */
+        public int index() {
+            return step;
+        }
+
+        public S from() {
+            return seq.state(step);
+        }
+
+        public A action() {
+            return seq.action(step);
+        }
+
+        public S to() {
+            return seq.state(step + 1);
+        }
+    }
+
+    /**
+     * Builds a sequence a step at a time, in amortized O(1) per step.
+     *
+     * @param <S> Type of states.
+     * @param <A> Type of actions.
+     */
+    public static final class Builder<S, A> {
+
+        private Object[] states;
+        private Object[] actions;
+        private int steps;
+
+        private Builder(S first, int capacity) {
+            states = new Object[capacity];
+            actions = new Object[capacity];
+            states[0] = first;
+        }
+
+        /**
+         * Appends a step.
+         *
+         * @param action The action from the current last state.
+         * @param state The new last state.
+         * @return This builder.
+         */
+        public Builder<S, A> add(A action, S state) {
+            if (steps + 1 == states.length) {
+                states = Arrays.copyOf(states, states.length * 2);
+                actions = Arrays.copyOf(actions, actions.length * 2);
+            }
+            actions[steps] = action;
+            states[++steps] = state;
+            return this;
+        }
+
+        /**
+         * @return The sequence built so far. The builder can go on being used.
+         */
+        public AlternatingSequence<S, A> build() {
+            return new AlternatingSequence<>(Arrays.copyOf(states, steps + 1), Arrays.copyOf(actions, steps), 0);
+        }
     }
 
 }
@@ -0,0 +1,206 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Interleaving of N transition systems with handshaking, restricted to the
+ * reachable states. A handshaking action is taken by all components
+ * together, and only when each of them can take it; any other action is taken
+ * by one component while the others stay put. With two components this is
+ * {@code TS1 ||H TS2}, and composing more components at once equals composing
+ * them one after the other with the same {@code H}.
+ *
+ * The components' per-state, per-action indexes are used to find enabled
+ * transitions, and product states are kept in a hash map, so the work is
+ * linear in the size of the reachable product.
+ */
+public final class Interleaving {
+
+    private Interleaving() {
+    }
+
+    /**
+     * Interleaves {@code systems}, with states being lists of component
+     * states.
+     *
+     * @param systems The components.
+     * @param handShakingActions Actions that all components take together.
+     * @return The reachable part of the interleaving.
+     */
+    public static <S, A, P> TransitionSystem<List<S>, A, P> interleave(
+            List<? extends TransitionSystem<? extends S, A, P>> systems, Set<A> handShakingActions) {
+        @SuppressWarnings("unchecked")
+        Function<Object[], List<S>> toList = states -> Collections.unmodifiableList(Arrays.asList((S[]) states));
+        TransitionSystem<List<S>, A, P> res = interleave(systems, handShakingActions, toList);
+        res.setName("Interleaved Transition System");
+        return res;
+    }
+
+    /**
+     * Interleaves {@code systems}, building product states with
+     * {@code stateFactory}.
+     *
+     * @param systems The components.
+     * @param handShakingActions Actions that all components take together.
+     * @param stateFactory Builds a product state from the component states
+     * (one per component, in order). Called once per reachable product state;
+     * must not keep the array.
+     * @return The reachable part of the interleaving.
+     */
+    public static <T, A, P> TransitionSystem<T, A, P> interleave(
+            List<? extends TransitionSystem<?, A, P>> systems, Set<A> handShakingActions,
+            Function<Object[], T> stateFactory) {
+        int n = systems.size();
+        if (n == 0) {
+            throw new IllegalArgumentException("Cannot interleave zero transition systems");
+        }
+        List<TransitionSystem<Object, A, P>> ts = components(systems);
+
+        TransitionSystem<T, A, P> output = new TransitionSystem<>();
+        for (TransitionSystem<?, A, P> c : systems) {
+            output.addAllActions(c.getActions());
+            output.addAllAtomicPropositions(c.getAtomicPropositions());
+        }
+
+        Map<Tuple, T> known = new HashMap<>();
+        Deque<Tuple> frontier = new ArrayDeque<>();
+
+        // Initial states: the cartesian product of the components' initial states.
+        List<Object[]> initials = new ArrayList<>();
+        initials.add(new Object[n]);
+        for (int i = 0; i < n; i++) {
+            List<Object[]> next = new ArrayList<>();
+            for (Object[] partial : initials) {
+                for (Object s : ts.get(i).getInitialStates()) {
+                    Object[] copy = partial.clone();
+                    copy[i] = s;
+                    next.add(copy);
+                }
+            }
+            initials = next;
+        }
+        for (Object[] init : initials) {
+            Tuple t = new Tuple(init);
+            T state = discover(t, known, frontier, ts, output, stateFactory);
+            output.addInitialState(state);
+        }
+
+        while (!frontier.isEmpty()) {
+            Tuple tuple = frontier.remove();
+            T from = known.get(tuple);
+            Object[] locs = tuple.states;
+
+            // Independent moves.
+            for (int i = 0; i < n; i++) {
+                for (A a : ts.get(i).getOutgoingActions(locs[i])) {
+                    if (handShakingActions.contains(a)) {
+                        continue;
+                    }
+                    for (Object to : ts.get(i).getSuccessors(locs[i], a)) {
+                        Object[] next = locs.clone();
+                        next[i] = to;
+                        T target = discover(new Tuple(next), known, frontier, ts, output, stateFactory);
+                        output.addTransition(new TSTransition<>(from, a, target));
+                    }
+                }
+            }
+
+            // Joint moves: a handshaking action enabled in every component.
+            for (A a : ts.get(0).getOutgoingActions(locs[0])) {
+                if (!handShakingActions.contains(a)) {
+                    continue;
+                }
+                List<Set<Object>> targets = new ArrayList<>(n);
+                boolean enabled = true;
+                for (int i = 0; i < n && enabled; i++) {
+                    targets.add(ts.get(i).getSuccessors(locs[i], a));
+                    enabled = !targets.get(i).isEmpty();
+                }
+                if (enabled) {
+                    jointMoves(0, locs.clone(), targets, a, from, known, frontier, ts, output, stateFactory);
+                }
+            }
+        }
+        return output;
+    }
+
+    private static <T, A, P> void jointMoves(int i, Object[] next, List<Set<Object>> targets, A a, T from,
+            Map<Tuple, T> known, Deque<Tuple> frontier, List<TransitionSystem<Object, A, P>> ts,
+            TransitionSystem<T, A, P> output,
+            Function<Object[], T> stateFactory) {
+        if (i == next.length) {
+            T target = discover(new Tuple(next.clone()), known, frontier, ts, output, stateFactory);
+            output.addTransition(new TSTransition<>(from, a, target));
+            return;
+        }
+        for (Object to : targets.get(i)) {
+            next[i] = to;
+            jointMoves(i + 1, next, targets, a, from, known, frontier, ts, output, stateFactory);
+        }
+    }
+
+    /**
+     * @return The product state of {@code tuple}, creating and labeling it
+     * (and queueing it for expansion) on first sight.
+     */
+    private static <T, A, P> T discover(Tuple tuple, Map<Tuple, T> known, Deque<Tuple> frontier,
+            List<TransitionSystem<Object, A, P>> ts, TransitionSystem<T, A, P> output,
+            Function<Object[], T> stateFactory) {
+        T state = known.get(tuple);
+        if (state == null) {
+            state = stateFactory.apply(tuple.states.clone());
+            known.put(tuple, state);
+            frontier.add(tuple);
+            output.addState(state);
+            for (int i = 0; i < ts.size(); i++) {
+                output.addToLabel(state, ts.get(i).getLabel(tuple.states[i]));
+            }
+        }
+        return state;
+    }
+
+    /**
+     * The components, with their states seen as plain objects: the product
+     * only passes back to each component the states it got from it.
+     */
+    @SuppressWarnings("unchecked")
+    private static <A, P> List<TransitionSystem<Object, A, P>> components(
+            List<? extends TransitionSystem<?, A, P>> systems) {
+        return new ArrayList<>((List<TransitionSystem<Object, A, P>>) (List<?>) systems);
+    }
+
+    /**
+     * A product state under construction.
+     */
+    private static final class Tuple {
+
+        final Object[] states;
+        final int hash;
+
+        Tuple(Object[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Tuple && hash == ((Tuple) obj).hash
+                    && Arrays.equals(states, ((Tuple) obj).states);
+        }
+    }
+
+}
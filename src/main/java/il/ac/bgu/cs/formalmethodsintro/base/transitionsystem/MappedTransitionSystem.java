@@ -0,0 +1,608 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import il.ac.bgu.cs.formalmethodsintro.base.exceptions.StateNotFoundException;
+
+/**
+ * A read-only {@link TransitionSystem} over a buffer in the format of
+ * {@link TransitionSystemBinaryFormat}. Nothing is copied out of the buffer:
+ * the collections are views that decode strings as they are read, and lookups
+ * are binary searches in the string tables and transition rows.
+ */
+final class MappedTransitionSystem extends TransitionSystem<String, String, String> {
+
+    private final ByteBuffer buf;
+    private final String name;
+    private final Table states;
+    private final Table actions;
+    private final Table aps;
+    private final Ids initial;
+    private final int labelWords;
+    private final int labelsAt;
+    private final Rows post;
+    private final Rows pre;
+    private int labeledStates = -1;
+
+    /**
+     * Checks the layout of the sections, in constant time: that each lies
+     * within the buffer, that the counts and the first and last offsets of
+     * the tables and rows are consistent, and that the last section ends
+     * the buffer. This rejects truncated files and corrupt headers; the
+     * entries inside the sections are read as they are queried.
+     *
+     * @throws IOException If the layout is inconsistent.
+     */
+    MappedTransitionSystem(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        int at = 8;
+        int nameLength = count(at, 1);
+        at += 4;
+        if (nameLength < 0) {
+            name = null;
+        } else {
+            name = decode(at, nameLength);
+            at += nameLength;
+        }
+        states = new Table(at);
+        actions = new Table(states.end);
+        aps = new Table(actions.end);
+        at = aps.end;
+        int initialCount = count(at, 4);
+        initial = new Ids(states, at + 4, initialCount, 4);
+        at += 4 + 4 * initialCount;
+        labelWords = count(at, 8L * states.n);
+        labelsAt = at + 4;
+        post = new Rows(labelsAt + 8 * labelWords * states.n);
+        pre = new Rows(post.end);
+        check(pre.end == buf.limit(), "the transitions end at " + pre.end + " of " + buf.limit() + " bytes");
+    }
+
+    /**
+     * @return The count at {@code at}, of items of {@code size} bytes that
+     * follow it; a negative count is only allowed for the name, of size 1.
+     * @throws IOException If they do not fit in the buffer.
+     */
+    private int count(int at, long size) throws IOException {
+        check(at >= 0 && at <= buf.limit() - 4L, "a count at " + at + " is past the end");
+        int n = buf.getInt(at);
+        check(n >= 0 || (size == 1 && n == -1), "a negative count at " + at);
+        check(at + 4L + Math.max(n, 0) * size <= buf.limit(), n + " items at " + at + " go past the end");
+        return n;
+    }
+
+    private static void check(boolean ok, String problem) throws IOException {
+        if (!ok) {
+            throw new IOException("Corrupt binary transition system: " + problem);
+        }
+    }
+
+    private String decode(int at, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buf.get(at + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Queries
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Set<String> getStates() {
+        return states;
+    }
+
+    @Override
+    public Set<String> getInitialStates() {
+        return initial;
+    }
+
+    @Override
+    public Set<String> getActions() {
+        return actions;
+    }
+
+    @Override
+    public Set<String> getAtomicPropositions() {
+        return aps;
+    }
+
+    @Override
+    public Set<TSTransition<String, String>> getTransitions() {
+        return new AbstractSet<TSTransition<String, String>>() {
+            @Override
+            public int size() {
+                return post.edges;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof TSTransition)) {
+                    return false;
+                }
+                TSTransition<?, ?> t = (TSTransition<?, ?>) o;
+                return post.lookup(states.indexOf(t.getFrom()), actions.indexOf(t.getAction())).contains(t.getTo());
+            }
+
+            @Override
+            public Iterator<TSTransition<String, String>> iterator() {
+                return new Iterator<TSTransition<String, String>>() {
+                    int s = 0;
+                    int e = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return e < post.edges;
+                    }
+
+                    @Override
+                    public TSTransition<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        while (post.end(s) <= e) {
+                            s++;
+                        }
+                        TSTransition<String, String> t = new TSTransition<>(states.get(s),
+                                actions.get(post.action(e)), states.get(post.other(e)));
+                        e++;
+                        return t;
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Set<String> getSuccessors(String s) {
+        return post.all(states.indexOf(s));
+    }
+
+    @Override
+    public Set<String> getSuccessors(String s, String a) {
+        return post.lookup(states.indexOf(s), actions.indexOf(a));
+    }
+
+    @Override
+    public Set<String> getPredecessors(String s) {
+        return pre.all(states.indexOf(s));
+    }
+
+    @Override
+    public Set<String> getPredecessors(String s, String a) {
+        return pre.lookup(states.indexOf(s), actions.indexOf(a));
+    }
+
+    @Override
+    public Set<String> getOutgoingActions(String s) {
+        int id = states.indexOf(s);
+        if (id < 0) {
+            return Collections.emptySet();
+        }
+        Set<String> res = new HashSet<>();
+        for (int e = post.start(id); e < post.end(id); e++) {
+            res.add(actions.get(post.action(e)));
+        }
+        return Collections.unmodifiableSet(res);
+    }
+
+    @Override
+    public boolean hasNoOutgoingTransitions(String s) {
+        int id = states.indexOf(s);
+        return id < 0 || post.start(id) == post.end(id);
+    }
+
+    @Override
+    public Set<String> getLabel(String s) {
+        int id = states.indexOf(s);
+        if (id < 0) {
+            throw new StateNotFoundException("State " + s + " not found");
+        }
+        return label(id);
+    }
+
+    private Set<String> label(int id) {
+        Set<String> res = new HashSet<>();
+        for (int w = 0; w < labelWords; w++) {
+            long word = buf.getLong(labelsAt + 8 * (id * labelWords + w));
+            for (; word != 0; word &= word - 1) {
+                res.add(aps.get(w * 64 + Long.numberOfTrailingZeros(word)));
+            }
+        }
+        return Collections.unmodifiableSet(res);
+    }
+
+    private boolean isLabeled(int id) {
+        for (int w = 0; w < labelWords; w++) {
+            if (buf.getLong(labelsAt + 8 * (id * labelWords + w)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return A view of the labels of the states with non-empty labels.
+     */
+    @Override
+    public Map<String, Set<String>> getLabelingFunction() {
+        return new AbstractMap<String, Set<String>>() {
+            @Override
+            public Set<String> get(Object key) {
+                int id = states.indexOf(key);
+                return id >= 0 && isLabeled(id) ? label(id) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public Set<Entry<String, Set<String>>> entrySet() {
+                return new AbstractSet<Entry<String, Set<String>>>() {
+                    @Override
+                    public int size() {
+                        if (labeledStates < 0) {
+                            int count = 0;
+                            for (int id = 0; id < states.n; id++) {
+                                count += isLabeled(id) ? 1 : 0;
+                            }
+                            labeledStates = count;
+                        }
+                        return labeledStates;
+                    }
+
+                    @Override
+                    public Iterator<Entry<String, Set<String>>> iterator() {
+                        return new Iterator<Entry<String, Set<String>>>() {
+                            int id = advance(0);
+
+                            private int advance(int from) {
+                                while (from < states.n && !isLabeled(from)) {
+                                    from++;
+                                }
+                                return from;
+                            }
+
+                            @Override
+                            public boolean hasNext() {
+                                return id < states.n;
+                            }
+
+                            @Override
+                            public Entry<String, Set<String>> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                Entry<String, Set<String>> res = new SimpleImmutableEntry<>(states.get(id), label(id));
+                                id = advance(id + 1);
+                                return res;
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Changes are not supported
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("A memory-mapped transition system is read-only");
+    }
+
+    @Override
+    public void setName(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addAction(String anAction) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeAction(String action) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addState(String state) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addInitialState(String aState) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeInitialState(String aState) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeState(String state) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addTransition(TSTransition<String, String> t) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeTransition(TSTransition<String, String> t) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addAtomicProposition(String p) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeAtomicProposition(String p) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addToLabel(String s, String l) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addToLabel(String s, Set<String> p) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeLabel(String s, String l) {
+        throw readOnly();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /// Views of the buffer
+    /**
+     * A string table: a string's number is its position in UTF-8 byte order.
+     */
+    private final class Table extends AbstractSet<String> {
+
+        final int n;
+        final int offsetsAt;
+        final int bytesAt;
+        final int end;
+
+        Table(int at) throws IOException {
+            n = count(at, 4);
+            offsetsAt = at + 4;
+            check(offsetsAt + 4L * (n + 1) <= buf.limit(), "the offsets of the table at " + at + " go past the end");
+            bytesAt = offsetsAt + 4 * (n + 1);
+            int length = buf.getInt(offsetsAt + 4 * n);
+            check(buf.getInt(offsetsAt) == 0 && length >= 0 && bytesAt + (long) length <= buf.limit(),
+                    "the strings of the table at " + at + " go past the end");
+            end = bytesAt + length;
+        }
+
+        String get(int id) {
+            int from = buf.getInt(offsetsAt + 4 * id);
+            return decode(bytesAt + from, buf.getInt(offsetsAt + 4 * id + 4) - from);
+        }
+
+        /**
+         * @return The number of {@code o}, or -1 if it is not in the table.
+         */
+        int indexOf(Object o) {
+            if (!(o instanceof String)) {
+                return -1;
+            }
+            byte[] key = ((String) o).getBytes(UTF_8);
+            int lo = 0, hi = n - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compare(mid, key);
+                if (c < 0) {
+                    lo = mid + 1;
+                } else if (c > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        private int compare(int id, byte[] key) {
+            int from = buf.getInt(offsetsAt + 4 * id);
+            int length = buf.getInt(offsetsAt + 4 * id + 4) - from;
+            for (int i = 0; i < Math.min(length, key.length); i++) {
+                int c = Byte.compareUnsigned(buf.get(bytesAt + from + i), key[i]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return length - key.length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return n;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new IdIterator(n, this::get);
+        }
+    }
+
+    /**
+     * Numbers of strings of a table, sorted, every {@code stride} bytes from
+     * {@code at}.
+     */
+    private final class Ids extends AbstractSet<String> {
+
+        final Table table;
+        final int at;
+        final int count;
+        final int stride;
+
+        Ids(Table table, int at, int count, int stride) {
+            this.table = table;
+            this.at = at;
+            this.count = count;
+            this.stride = stride;
+        }
+
+        int id(int i) {
+            return buf.getInt(at + i * stride);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            int key = table.indexOf(o);
+            int lo = 0, hi = count - 1;
+            while (key >= 0 && lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int id = id(mid);
+                if (id < key) {
+                    lo = mid + 1;
+                } else if (id > key) {
+                    hi = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new IdIterator(count, i -> table.get(id(i)));
+        }
+    }
+
+    /**
+     * Transitions in compressed rows: per state, (action, other state) pairs
+     * sorted by action and then state.
+     */
+    private final class Rows {
+
+        final int rowsAt;
+        final int edgesAt;
+        final int edges;
+        final int end;
+
+        Rows(int at) throws IOException {
+            check(at <= buf.limit() - 4L * (states.n + 1), "the rows at " + at + " go past the end");
+            rowsAt = at;
+            edges = buf.getInt(at + 4 * states.n);
+            edgesAt = at + 4 * (states.n + 1);
+            check(buf.getInt(at) == 0 && edges >= 0 && edgesAt + 8L * edges <= buf.limit(),
+                    "the transitions at " + at + " go past the end");
+            end = edgesAt + 8 * edges;
+        }
+
+        int start(int s) {
+            return buf.getInt(rowsAt + 4 * s);
+        }
+
+        int end(int s) {
+            return buf.getInt(rowsAt + 4 * s + 4);
+        }
+
+        int action(int e) {
+            return buf.getInt(edgesAt + 8 * e);
+        }
+
+        int other(int e) {
+            return buf.getInt(edgesAt + 8 * e + 4);
+        }
+
+        /** @return A view of the {@code a}-neighbors of {@code s}. */
+        Set<String> lookup(int s, int a) {
+            if (s < 0 || a < 0) {
+                return Collections.emptySet();
+            }
+            int lo = firstAtLeast(start(s), end(s), a);
+            int hi = firstAtLeast(lo, end(s), a + 1);
+            return lo == hi ? Collections.emptySet() : new Ids(states, edgesAt + 8 * lo + 4, hi - lo, 8);
+        }
+
+        /** @return A fresh set of the neighbors of {@code s}. */
+        Set<String> all(int s) {
+            Set<String> res = new HashSet<>();
+            if (s >= 0) {
+                for (int e = start(s); e < end(s); e++) {
+                    res.add(states.get(other(e)));
+                }
+            }
+            return res;
+        }
+
+        private int firstAtLeast(int lo, int hi, int action) {
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (action(mid) < action) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private static final class IdIterator implements Iterator<String> {
+
+        private final int count;
+        private final IntFunction<String> get;
+        private int next;
+
+        IdIterator(int count, IntFunction<String> get) {
+            this.count = count;
+            this.get = get;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return get.apply(next++);
+        }
+    }
+
+}
@@ -3,34 +3,27 @@ package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Set;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
-import org.xml.sax.Attributes;
-import org.xml.sax.ContentHandler;
-import org.xml.sax.InputSource;
-import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
 
 import il.ac.bgu.cs.formalmethodsintro.base.exceptions.FVMException;
 import il.ac.bgu.cs.formalmethodsintro.base.exceptions.InvalidTSDescriptionException;
-import il.ac.bgu.cs.formalmethodsintro.base.exceptions.InvalidXmlException;
-import il.ac.bgu.cs.formalmethodsintro.base.exceptions.TransitionSystemPart;
 
 /**
  * Converts {@link TransitionSystem} objects to XML format and vice versa.
  *
+ * Both directions stream through {@link TransitionSystemXmlReader} and
+ * {@link TransitionSystemXmlWriter}, which can also be used directly to
+ * process systems too large to build in memory.
  */
 public class StAXTransitionSystemXmlFormat implements TransitionSystemXmlFormat {
 
@@ -65,241 +58,94 @@ public class StAXTransitionSystemXmlFormat implements TransitionSystemXmlFormat
     }
 
     protected void write(TransitionSystem<String, String, String> ts, XMLStreamWriter out) throws XMLStreamException {
-        Map<String, String> apIdMap = new HashMap<>();
-
-        out.writeStartDocument();
-        out.writeStartElement(kTransitionSystem);
-
+        TransitionSystemXmlWriter xml = new TransitionSystemXmlWriter(out);
         if (ts.getName() != null) {
-            out.writeStartElement(kName);
-            out.writeCharacters(ts.getName());
-            out.writeEndElement();
+            xml.name(ts.getName());
         }
-
-        out.writeStartElement(kStates);
-        ts.getStates().forEach(s -> wrapExceptions(() -> {
-            out.writeEmptyElement(kState);
-            out.writeAttribute(attSId, s);
-        }));
-        out.writeEndElement();
-
-        out.writeStartElement(kActions);
-        ts.getActions().forEach(act -> wrapExceptions(() -> {
-            out.writeEmptyElement(kAction);
-            out.writeAttribute(attAId, act);
-        }));
-        out.writeEndElement();
-
-        out.writeStartElement(kAtomicPropositions);
-        ts.getAtomicPropositions().forEach(ap -> wrapExceptions(() -> {
-            apIdMap.put(ap, "ap" + (apIdMap.size() + 1));
-
-            out.writeStartElement(kAtomicProposition);
-            out.writeAttribute(attApId, apIdMap.get(ap));
-            out.writeCharacters(ap);
-            out.writeEndElement();
-        }));
-        out.writeEndElement();
-
-        out.writeStartElement(kInitialStates);
-        ts.getInitialStates().forEach(istt -> wrapExceptions(() -> {
-            out.writeEmptyElement(kInitialState);
-            out.writeAttribute(attState, istt);
-        }));
-        out.writeEndElement();
-
-        out.writeStartElement(kLabelingFunction);
-        ts.getLabelingFunction().entrySet().forEach(ent -> wrapExceptions(() -> {
-            out.writeStartElement(kEntry);
-            out.writeAttribute(attState, ent.getKey());
-            ent.getValue().forEach(lbl -> wrapExceptions(() -> {
-                out.writeEmptyElement(kLabel);
-                out.writeAttribute(attAP, apIdMap.get(lbl));
-            }));
-            out.writeEndElement();
-        }));
-        out.writeEndElement();
-
-        out.writeStartElement(kTransitions);
-        ts.getTransitions().forEach(t -> wrapExceptions(() -> {
-            out.writeEmptyElement(kTransition);
-            out.writeAttribute(attFrom, t.getFrom());
-            out.writeAttribute(attAction, t.getAction());
-            out.writeAttribute(attTo, t.getTo());
-        }));
-
-        out.writeEndElement();
-
-        out.writeEndDocument();
+        for (String s : ts.getStates()) {
+            xml.state(s);
+        }
+        for (String act : ts.getActions()) {
+            xml.action(act);
+        }
+        for (String ap : ts.getAtomicPropositions()) {
+            xml.atomicProposition(ap);
+        }
+        for (String istt : ts.getInitialStates()) {
+            xml.initialState(istt);
+        }
+        for (Map.Entry<String, Set<String>> ent : ts.getLabelingFunction().entrySet()) {
+            xml.label(ent.getKey(), ent.getValue());
+        }
+        for (TSTransition<String, String> t : ts.getTransitions()) {
+            xml.transition(t.getFrom(), t.getAction(), t.getTo());
+        }
+        xml.close();
     }
 
+    /**
+     * Reads a transition system. Malformed XML is reported as a
+     * {@link SAXException} wrapping the {@link XMLStreamException}, as when
+     * this class read through SAX.
+     */
     @Override
     public TransitionSystem<String, String, String> read(Reader characterReader) throws InvalidTSDescriptionException, SAXException, ParserConfigurationException, IOException {
-        SAXParserFactory fact = SAXParserFactory.newInstance();
-        SAXParser parser = fact.newSAXParser();
-        XMLReader xmlReader = parser.getXMLReader();
-
-        final AtomicReference<TransitionSystem<String, String, String>> tsRef = new AtomicReference<>();
-        final List<FVMException> errors = new LinkedList<>();
-
-        xmlReader.setContentHandler(new ContentHandler() {
-
-            TransitionSystem<String, String, String> ts;
-            private Locator docLoc;
-            private StringBuilder sb;
-            private String apId;
-            private String labeledState;
+        TransitionSystem<String, String, String> ts = new TransitionSystem<>();
+        List<FVMException> errors = new LinkedList<>();
+        TransitionSystemXmlReader.Handler builder = new TransitionSystemXmlReader.Handler() {
 
             @Override
-            public void setDocumentLocator(Locator locator) {
-                docLoc = locator;
+            public void name(String name) {
+                ts.setName(name);
             }
 
             @Override
-            public void startDocument() throws SAXException {
-                sb = new StringBuilder();
+            public void state(String state) {
+                ts.addState(state);
             }
 
             @Override
-            public void endDocument() throws SAXException {
+            public void action(String action) {
+                ts.addAction(action);
             }
 
             @Override
-            public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            public void atomicProposition(String ap) {
+                ts.addAtomicProposition(ap);
             }
 
             @Override
-            public void endPrefixMapping(String prefix) throws SAXException {
+            public void initialState(String state) {
+                ts.addInitialState(state);
             }
 
             @Override
-            public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-                switch (qName) {
-                    case kTransitionSystem:
-                        ts = new TransitionSystem<>();
-                        break;
-
-                    case kAction:
-                        String actionId = atts.getValue(attAId);
-                        if (actionId != null) {
-                            ts.addAction(actionId);
-                        } else {
-                            errors.add(new InvalidXmlException(loc() + " missing " + attAId + " attribute", TransitionSystemPart.ACTIONS));
-                        }
-                        break;
-
-                    case kState:
-                        String stateId = atts.getValue(attSId);
-                        if (stateId != null) {
-                            ts.addState(stateId);
-                        } else {
-                            errors.add(new InvalidXmlException(loc() + " missing " + attSId + " attribute", TransitionSystemPart.STATES));
-                        }
-                        break;
-
-                    case kAtomicProposition:
-                        apId = atts.getValue(attApId);
-                        if (apId == null) {
-                            errors.add(new InvalidXmlException(loc() + " missing " + attApId + " attribute", TransitionSystemPart.ATOMIC_PROPOSITIONS));
-                        }
-                        break;
-
-                    case kInitialState:
-                        try {
-                            ts.addInitialState(atts.getValue(attState));
-                        } catch (FVMException e) {
-                            errors.add(e);
-                        }
-                        break;
-
-                    case kEntry:
-                        labeledState = atts.getValue(attState);
-                        if (labeledState == null) {
-                            errors.add(new InvalidXmlException(loc() + " missing " + attState + " attribute", TransitionSystemPart.ATOMIC_PROPOSITIONS));
-                        }
-                        break;
-
-                    case kLabel:
-                        String propId = atts.getValue(attAP);
-                        if (propId == null) {
-                            errors.add(new InvalidXmlException(loc() + " missing " + attAP + " attribute", TransitionSystemPart.LABELING_FUNCTION));
-                        } else {
-                            try {
-                                ts.addToLabel(labeledState, propId);
-                            } catch (FVMException fe) {
-                                errors.add(fe);
-                            }
-                        }
-                        break;
-
-                    case kTransition:
-                        String from = atts.getValue(attFrom);
-                        String action = atts.getValue(attAction);
-                        String to = atts.getValue(attTo);
-
-                        if (from == null || action == null || to == null) {
-                            errors.add(new InvalidXmlException(loc() + " transition node should have attributes " + attFrom + ", " + attAction + ", and " + attTo, TransitionSystemPart.TRANSITIONS));
-                        } else {
-                            try {
-                                ts.addTransition(new TSTransition<>(from, action, to));
-                            } catch (FVMException fe) {
-                                errors.add(fe);
-                            }
-                        }
-                }
-            }
-
-            @Override
-            public void endElement(String uri, String localName, String qName) throws SAXException {
-                switch (qName) {
-                    case kTransitionSystem:
-                        tsRef.set(ts);
-                        break;
-
-                    case kName:
-                        ts.setName(sb.toString().trim());
-                        sb.setLength(0);
-                        break;
-
-                    case kAtomicProposition:
-                        String proposition = sb.toString().trim();
-                        ts.addAtomicProposition(proposition);
-                        sb.setLength(0);
-                        apId = null;
-                        break;
-
-                    case kEntry:
-                        labeledState = null;
-                        break;
-                }
-            }
-
-            @Override
-            public void characters(char[] ch, int start, int length) throws SAXException {
-                sb.append(ch, start, length);
-            }
-
-            @Override
-            public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
-            }
-
-            @Override
-            public void processingInstruction(String target, String data) throws SAXException {
+            public void label(String state, String ap) {
+                ts.addToLabel(state, ap);
             }
 
             @Override
-            public void skippedEntity(String name) throws SAXException {
+            public void transition(String from, String action, String to) {
+                ts.addTransition(new TSTransition<>(from, action, to));
             }
-
-            private String loc() {
-                return "[" + docLoc.getLineNumber() + ": " + docLoc.getColumnNumber() + "]";
+        };
+
+        try (TransitionSystemXmlReader in = new TransitionSystemXmlReader(characterReader)) {
+            boolean done = false;
+            while (!done) {
+                try {
+                    in.readAll(builder);
+                    done = true;
+                } catch (FVMException e) {
+                    errors.add(e);
+                }
             }
-        });
-
-        xmlReader.parse(new InputSource(characterReader));
+        } catch (XMLStreamException e) {
+            throw new SAXException(e.getMessage(), e);
+        }
 
         if (errors.isEmpty()) {
-            return tsRef.get();
+            return ts;
         } else {
             throw new InvalidTSDescriptionException(errors);
         }
@@ -0,0 +1,172 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Checks many recorded traces against one {@link TransitionSystem}. The
+ * system is indexed once, by state and action, into a snapshot that is only
+ * read afterwards, so traces are validated in a single pass each and in
+ * parallel.
+ *
+ * A validator checks one kind of trace: execution fragments, possibly also
+ * required to be initial (start at an initial state) and/or maximal (end at a
+ * terminal state). Later changes to the system are not seen.
+ *
+ * @param <S> Type of states.
+ * @param <A> Type of actions.
+ */
+public final class TraceValidator<S, A> {
+
+    /**
+     * Why a trace was rejected.
+     */
+    public enum Reason {
+        /** The first state is not initial. */
+        NOT_INITIAL,
+        /** There is no transition for the step. */
+        MISSING_TRANSITION,
+        /** The last state is not a terminal state of the system. */
+        NOT_TERMINAL
+    }
+
+    /**
+     * The outcome of validating a trace.
+     */
+    public static final class Result {
+
+        /** The result of a valid trace. */
+        public static final Result VALID = new Result(-1, null);
+
+        private final int step;
+        private final Reason reason;
+
+        private Result(int step, Reason reason) {
+            this.step = step;
+            this.reason = reason;
+        }
+
+        public boolean isValid() {
+            return reason == null;
+        }
+
+        /**
+         * @return The index of the first failing step: 0 for
+         * {@link Reason#NOT_INITIAL}, the index of the step (from state
+         * {@code i} to state {@code i + 1}) for
+         * {@link Reason#MISSING_TRANSITION}, and the index of the last state
+         * for {@link Reason#NOT_TERMINAL}. -1 if the trace is valid.
+         */
+        public int getStep() {
+            return step;
+        }
+
+        /**
+         * @return Why the trace was rejected, or {@code null} if it is valid.
+         */
+        public Reason getReason() {
+            return reason;
+        }
+
+        @Override
+        public int hashCode() {
+            return step * 31 + (reason == null ? 0 : reason.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Result)) {
+                return false;
+            }
+            Result other = (Result) obj;
+            return step == other.step && reason == other.reason;
+        }
+
+        @Override
+        public String toString() {
+            return isValid() ? "[Result valid]" : "[Result " + reason + " at step " + step + "]";
+        }
+    }
+
+    private final Map<S, Map<A, Set<S>>> successors;
+    private final Set<S> states;
+    private final Set<S> initial;
+    private final boolean requireInitial;
+    private final boolean requireMaximal;
+
+    private TraceValidator(TransitionSystem<S, A, ?> ts, boolean requireInitial, boolean requireMaximal) {
+        successors = new HashMap<>();
+        for (TSTransition<S, A> t : ts.getTransitions()) {
+            successors.computeIfAbsent(t.getFrom(), s -> new HashMap<>())
+                    .computeIfAbsent(t.getAction(), a -> new HashSet<>()).add(t.getTo());
+        }
+        states = new HashSet<>(ts.getStates());
+        initial = new HashSet<>(ts.getInitialStates());
+        this.requireInitial = requireInitial;
+        this.requireMaximal = requireMaximal;
+    }
+
+    /**
+     * @return A validator of executions: initial, maximal execution fragments.
+     */
+    public static <S, A> TraceValidator<S, A> forExecutions(TransitionSystem<S, A, ?> ts) {
+        return new TraceValidator<>(ts, true, true);
+    }
+
+    public static <S, A> TraceValidator<S, A> forExecutionFragments(TransitionSystem<S, A, ?> ts) {
+        return new TraceValidator<>(ts, false, false);
+    }
+
+    public static <S, A> TraceValidator<S, A> forInitialExecutionFragments(TransitionSystem<S, A, ?> ts) {
+        return new TraceValidator<>(ts, true, false);
+    }
+
+    public static <S, A> TraceValidator<S, A> forMaximalExecutionFragments(TransitionSystem<S, A, ?> ts) {
+        return new TraceValidator<>(ts, false, true);
+    }
+
+    /**
+     * @param trace A trace, starting and ending with a state.
+     * @return Whether the trace is valid, and if not, where it first fails.
+     */
+    public Result validate(AlternatingSequence<S, A> trace) {
+        if (requireInitial && !initial.contains(trace.head())) {
+            return new Result(0, Reason.NOT_INITIAL);
+        }
+        for (AlternatingSequence.Cursor<S, A> step = trace.cursor(); step.next();) {
+            Map<A, Set<S>> byAction = successors.get(step.from());
+            Set<S> targets = byAction == null ? null : byAction.get(step.action());
+            if (targets == null || !targets.contains(step.to())) {
+                return new Result(step.index(), Reason.MISSING_TRANSITION);
+            }
+        }
+        S last = trace.last();
+        if (requireMaximal && (!states.contains(last) || successors.containsKey(last))) {
+            return new Result(trace.steps(), Reason.NOT_TERMINAL);
+        }
+        return Result.VALID;
+    }
+
+    /**
+     * Validates traces in parallel.
+     *
+     * @param traces The traces.
+     * @return The result of each trace, in the order of {@code traces}.
+     */
+    public List<Result> validateAll(Collection<? extends AlternatingSequence<S, A>> traces) {
+        if (traces.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return traces.parallelStream().map(this::validate).collect(Collectors.toList());
+    }
+
+}
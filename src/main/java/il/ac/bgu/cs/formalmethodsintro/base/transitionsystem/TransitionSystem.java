@@ -40,6 +40,21 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
     private final Set<ATOMIC_PROPOSITION> atomicPropositions = new HashSet<>();
     private final HashMap<STATE, Set<ATOMIC_PROPOSITION>> labelingFunction = new HashMap<>();
 
+    /**
+     * Adjacency indexes over {@link #transitions}, kept in sync by
+     * {@link #addTransition(TSTransition)} and
+     * {@link #removeTransition(TSTransition)}. Maps a state to its
+     * successors (resp. predecessors), grouped by action. States with no
+     * outgoing (resp. incoming) transitions have no entry.
+     */
+    private final Map<STATE, Map<ACTION, Set<STATE>>> postIndex = new HashMap<>();
+    private final Map<STATE, Map<ACTION, Set<STATE>>> preIndex = new HashMap<>();
+
+    /**
+     * Number of transitions using each action.
+     */
+    private final Map<ACTION, Integer> actionUsage = new HashMap<>();
+
     /**
      * Get the name of the transitions system.
      *
@@ -74,10 +89,8 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
      * @throws FVMException If the action in use by a transition.
      */
     public void removeAction(ACTION action) throws FVMException {
-        for (TSTransition<STATE, ACTION> t : transitions) {
-            if (t.getAction().equals(action)) {
-                throw new DeletionOfAttachedActionException(action, TransitionSystemPart.TRANSITIONS);
-            }
+        if (actionUsage.containsKey(action)) {
+            throw new DeletionOfAttachedActionException(action, TransitionSystemPart.TRANSITIONS);
         }
 
         actions.remove(action);
@@ -150,11 +163,9 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
      * @throws FVMException If the state is in use by a transition.
      */
     public void removeState(STATE state) throws FVMException {
-        transitions.stream()
-                .filter((t) -> (t.getFrom().equals(state) || t.getTo().equals(state)))
-                .findFirst().map(t -> {
-                    throw new DeletionOfAttachedStateException(state, TransitionSystemPart.TRANSITIONS);
-                });
+        if (postIndex.containsKey(state) || preIndex.containsKey(state)) {
+            throw new DeletionOfAttachedStateException(state, TransitionSystemPart.TRANSITIONS);
+        }
 
         states.remove(state);
         initialStates.remove(state);
@@ -173,7 +184,11 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
         addState(t.getTo());
         addAction(t.getAction());
 
-        transitions.add(t);
+        if (transitions.add(t)) {
+            index(postIndex, t.getFrom(), t.getAction(), t.getTo());
+            index(preIndex, t.getTo(), t.getAction(), t.getFrom());
+            actionUsage.merge(t.getAction(), 1, Integer::sum);
+        }
     }
 
     /**
@@ -182,7 +197,117 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
      * @param t The transition to remove.
      */
     public void removeTransition(TSTransition<STATE, ACTION> t) {
-        transitions.remove(t);
+        if (transitions.remove(t)) {
+            unindex(postIndex, t.getFrom(), t.getAction(), t.getTo());
+            unindex(preIndex, t.getTo(), t.getAction(), t.getFrom());
+            actionUsage.computeIfPresent(t.getAction(), (a, n) -> (n == 1) ? null : n - 1);
+        }
+    }
+
+    private void index(Map<STATE, Map<ACTION, Set<STATE>>> idx, STATE key, ACTION action, STATE value) {
+        idx.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(action, a -> new HashSet<>())
+                .add(value);
+    }
+
+    private void unindex(Map<STATE, Map<ACTION, Set<STATE>>> idx, STATE key, ACTION action, STATE value) {
+        Map<ACTION, Set<STATE>> byAction = idx.get(key);
+        Set<STATE> targets = byAction.get(action);
+        targets.remove(value);
+        if (targets.isEmpty()) {
+            byAction.remove(action);
+            if (byAction.isEmpty()) {
+                idx.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Get the states reachable from {@code s} by a single transition. Runs in
+     * time proportional to the out-degree of {@code s}.
+     *
+     * @param s A state.
+     * @return A fresh set of the successors of {@code s}. Empty if {@code s}
+     * has no outgoing transitions (or is not a state of {@code this}).
+     */
+    public Set<STATE> getSuccessors(STATE s) {
+        return union(postIndex.get(s));
+    }
+
+    /**
+     * Get the states reachable from {@code s} by a single {@code a}
+     * transition.
+     *
+     * @param s A state.
+     * @param a An action.
+     * @return An unmodifiable view of the {@code a}-successors of {@code s}.
+     */
+    public Set<STATE> getSuccessors(STATE s, ACTION a) {
+        return lookup(postIndex, s, a);
+    }
+
+    /**
+     * Get the states from which {@code s} is reachable by a single transition.
+     * Runs in time proportional to the in-degree of {@code s}.
+     *
+     * @param s A state.
+     * @return A fresh set of the predecessors of {@code s}.
+     */
+    public Set<STATE> getPredecessors(STATE s) {
+        return union(preIndex.get(s));
+    }
+
+    /**
+     * Get the states from which {@code s} is reachable by a single {@code a}
+     * transition.
+     *
+     * @param s A state.
+     * @param a An action.
+     * @return An unmodifiable view of the {@code a}-predecessors of {@code s}.
+     */
+    public Set<STATE> getPredecessors(STATE s, ACTION a) {
+        return lookup(preIndex, s, a);
+    }
+
+    /**
+     * @param s A state.
+     * @return An unmodifiable view of the actions labeling transitions leaving
+     * {@code s}.
+     */
+    public Set<ACTION> getOutgoingActions(STATE s) {
+        Map<ACTION, Set<STATE>> byAction = postIndex.get(s);
+        return (byAction == null) ? Collections.emptySet() : Collections.unmodifiableSet(byAction.keySet());
+    }
+
+    /**
+     * @param s A state.
+     * @return {@code true} iff there are no transitions leaving {@code s}.
+     */
+    public boolean hasNoOutgoingTransitions(STATE s) {
+        return !postIndex.containsKey(s);
+    }
+
+    private Set<STATE> union(Map<ACTION, Set<STATE>> byAction) {
+        if (byAction == null) {
+            return new HashSet<>();
+        }
+        if (byAction.size() == 1) {
+            return new HashSet<>(byAction.values().iterator().next());
+        }
+        Set<STATE> result = new HashSet<>();
+        for (Set<STATE> targets : byAction.values()) {
+            result.addAll(targets);
+        }
+        return result;
+    }
+
+    private Set<STATE> lookup(Map<STATE, Map<ACTION, Set<STATE>>> idx, STATE s, ACTION a) {
+        Map<ACTION, Set<STATE>> byAction = idx.get(s);
+        if (byAction == null) {
+            return Collections.emptySet();
+        }
+        Set<STATE> targets = byAction.get(a);
+        return (targets == null) ? Collections.emptySet() : Collections.unmodifiableSet(targets);
     }
 
     /**
@@ -337,8 +462,8 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
     @Override
     public int hashCode() {
         int hash = 7;
-        hash = 41 * hash + Objects.hashCode(this.name);
-        hash = 41 * hash + Objects.hashCode(this.initialStates);
+        hash = 41 * hash + Objects.hashCode(getName());
+        hash = 41 * hash + Objects.hashCode(getInitialStates());
         return hash;
     }
 
@@ -379,8 +504,9 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
     @Override
     public String toString() {
         return String.format(
-                "[TransitionSystem name=" + name + " %d states (%d initial), %d actions, %d transitions, %d atomicPropositions]",
-                states.size(), initialStates.size(), actions.size(), transitions.size(), atomicPropositions.size()
+                "[TransitionSystem name=" + getName() + " %d states (%d initial), %d actions, %d transitions, %d atomicPropositions]",
+                getStates().size(), getInitialStates().size(), getActions().size(), getTransitions().size(),
+                getAtomicPropositions().size()
         );
     }
 
@@ -0,0 +1,196 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores {@link TransitionSystem} objects in a compact binary file, and loads
+ * them as read-only views of the memory-mapped file.
+ *
+ * The file (big-endian) holds:
+ * <ul>
+ * <li>a header: magic number, version, and the name (or length -1);</li>
+ * <li>string tables of the states, actions and atomic propositions, each
+ * sorted by its UTF-8 bytes, so that the number of a string is its position
+ * and lookups are binary searches: count, offsets, bytes;</li>
+ * <li>the initial states, by number;</li>
+ * <li>the labels: a bitset over the propositions for each state;</li>
+ * <li>the transitions by source and by destination, in compressed sparse rows:
+ * row offsets per state, then (action, other state) pairs sorted within each
+ * row.</li>
+ * </ul>
+ * {@link #read(Path)} only maps the file, parses the header and checks that
+ * the sections fit the file, so loading takes the same time whatever the
+ * size; the view reads the file as it is queried. A mapping is limited to 2GB, and so is the file.
+ */
+public class TransitionSystemBinaryFormat {
+
+    static final int MAGIC = 0x46564d54; // "FVMT"
+    static final int VERSION = 1;
+
+    /**
+     * Writes {@code ts} to {@code file}, replacing it.
+     *
+     * @param ts The transition system.
+     * @param file The destination.
+     * @throws IOException If writing fails.
+     */
+    public void write(TransitionSystem<String, String, String> ts, Path file) throws IOException {
+        byte[][] states = sorted(ts.getStates());
+        byte[][] actions = sorted(ts.getActions());
+        byte[][] aps = sorted(ts.getAtomicPropositions());
+        Map<String, Integer> stateIds = ids(states);
+        Map<String, Integer> actionIds = ids(actions);
+        Map<String, Integer> apIds = ids(aps);
+        int n = states.length;
+
+        // compressed rows, one long (action, other state) per edge
+        Set<TSTransition<String, String>> transitions = ts.getTransitions();
+        int[] postRows = new int[n + 1];
+        int[] preRows = new int[n + 1];
+        for (TSTransition<String, String> t : transitions) {
+            postRows[stateIds.get(t.getFrom()) + 1]++;
+            preRows[stateIds.get(t.getTo()) + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            postRows[i + 1] += postRows[i];
+            preRows[i + 1] += preRows[i];
+        }
+        long[] post = new long[transitions.size()];
+        long[] pre = new long[transitions.size()];
+        int[] postFill = Arrays.copyOf(postRows, n);
+        int[] preFill = Arrays.copyOf(preRows, n);
+        for (TSTransition<String, String> t : transitions) {
+            long action = (long) actionIds.get(t.getAction()) << 32;
+            int from = stateIds.get(t.getFrom()), to = stateIds.get(t.getTo());
+            post[postFill[from]++] = action | to;
+            pre[preFill[to]++] = action | from;
+        }
+        for (int i = 0; i < n; i++) {
+            Arrays.sort(post, postRows[i], postRows[i + 1]);
+            Arrays.sort(pre, preRows[i], preRows[i + 1]);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            if (ts.getName() == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] name = ts.getName().getBytes(UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+            }
+            writeTable(out, states);
+            writeTable(out, actions);
+            writeTable(out, aps);
+
+            int[] initial = ts.getInitialStates().stream().mapToInt(stateIds::get).sorted().toArray();
+            out.writeInt(initial.length);
+            for (int s : initial) {
+                out.writeInt(s);
+            }
+
+            int words = (aps.length + 63) / 64;
+            long[] labels = new long[n * words];
+            for (Map.Entry<String, Set<String>> ent : ts.getLabelingFunction().entrySet()) {
+                int s = stateIds.get(ent.getKey());
+                for (String ap : ent.getValue()) {
+                    int p = apIds.get(ap);
+                    labels[s * words + p / 64] |= 1L << (p % 64);
+                }
+            }
+            out.writeInt(words);
+            for (long w : labels) {
+                out.writeLong(w);
+            }
+
+            writeRows(out, postRows, post);
+            writeRows(out, preRows, pre);
+        }
+    }
+
+    /**
+     * Maps {@code file} into memory.
+     *
+     * @param file A file written by {@link #write(TransitionSystem, Path)}.
+     * @return A read-only view of the transition system in the file; changing
+     * it throws {@link UnsupportedOperationException}.
+     * @throws IOException If the file cannot be read, is not in this format,
+     * or is truncated or corrupt (as far as the layout of its sections shows).
+     */
+    public TransitionSystem<String, String, String> read(Path file) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2GB");
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buf.limit() < 8 || buf.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a binary transition system");
+        }
+        if (buf.getInt(4) != VERSION) {
+            throw new IOException(file + " has unsupported version " + buf.getInt(4));
+        }
+        try {
+            return new MappedTransitionSystem(buf);
+        } catch (IOException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[][] sorted(Collection<String> strings) {
+        byte[][] res = new byte[strings.size()][];
+        int i = 0;
+        for (String s : strings) {
+            res[i++] = s.getBytes(UTF_8);
+        }
+        Arrays.sort(res, Arrays::compareUnsigned);
+        return res;
+    }
+
+    private static Map<String, Integer> ids(byte[][] strings) {
+        Map<String, Integer> res = new HashMap<>(strings.length * 2);
+        for (int i = 0; i < strings.length; i++) {
+            res.put(new String(strings[i], UTF_8), i);
+        }
+        return res;
+    }
+
+    private static void writeTable(DataOutputStream out, byte[][] strings) throws IOException {
+        out.writeInt(strings.length);
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] s : strings) {
+            offset += s.length;
+            out.writeInt(offset);
+        }
+        for (byte[] s : strings) {
+            out.write(s);
+        }
+    }
+
+    private static void writeRows(DataOutputStream out, int[] rows, long[] edges) throws IOException {
+        for (int r : rows) {
+            out.writeInt(r);
+        }
+        for (long e : edges) {
+            out.writeLong(e); // the action, then the other state
+        }
+    }
+
+}
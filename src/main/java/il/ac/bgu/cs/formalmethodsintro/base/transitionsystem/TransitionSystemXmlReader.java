@@ -0,0 +1,255 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.StAXTransitionSystemXmlFormat.*;
+
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import il.ac.bgu.cs.formalmethodsintro.base.exceptions.InvalidXmlException;
+import il.ac.bgu.cs.formalmethodsintro.base.exceptions.TransitionSystemPart;
+
+/**
+ * A pull reader of the XML format of {@link StAXTransitionSystemXmlFormat}: it
+ * goes through the file one element at a time, and never builds a
+ * {@link TransitionSystem}, so it reads files of any size in constant memory
+ * (besides the atomic propositions, whose ids labels refer to).
+ *
+ * {@link #next()} moves to the next element and tells its {@link Kind}; the
+ * getters then give its contents. Alternatively, {@link #readAll(Handler)}
+ * passes every element to callbacks.
+ *
+ * <pre>
+ * for (Kind k = in.next(); k != Kind.END; k = in.next()) {
+ *     if (k == Kind.TRANSITION) {
+ *         ... in.getFrom(), in.getAction(), in.getTo() ...
+ *     }
+ * }
+ * </pre>
+ */
+public class TransitionSystemXmlReader implements AutoCloseable {
+
+    /**
+     * The kinds of elements.
+     */
+    public enum Kind {
+        /** {@link #getName()} */
+        NAME,
+        /** {@link #getState()} */
+        STATE,
+        /** {@link #getAction()} */
+        ACTION,
+        /** {@link #getAtomicProposition()} */
+        ATOMIC_PROPOSITION,
+        /** {@link #getState()} */
+        INITIAL_STATE,
+        /** {@link #getState()} is labeled by {@link #getAtomicProposition()} */
+        LABEL,
+        /** {@link #getFrom()}, {@link #getAction()}, {@link #getTo()} */
+        TRANSITION,
+        /** The end of the file. */
+        END
+    }
+
+    /**
+     * Callbacks for {@link #readAll(Handler)}; they all do nothing by default.
+     */
+    public interface Handler {
+
+        default void name(String name) {
+        }
+
+        default void state(String state) {
+        }
+
+        default void action(String action) {
+        }
+
+        default void atomicProposition(String ap) {
+        }
+
+        default void initialState(String state) {
+        }
+
+        default void label(String state, String ap) {
+        }
+
+        default void transition(String from, String action, String to) {
+        }
+    }
+
+    private final XMLStreamReader in;
+    /** The atomic propositions by id. */
+    private final Map<String, String> propositions = new HashMap<>();
+    private String labeledState;
+
+    private String name;
+    private String state;
+    private String action;
+    private String ap;
+    private String from;
+    private String to;
+
+    public TransitionSystemXmlReader(Reader reader) throws XMLStreamException {
+        in = XMLInputFactory.newFactory().createXMLStreamReader(reader);
+    }
+
+    /**
+     * Moves to the next element.
+     *
+     * @return Its kind.
+     * @throws XMLStreamException If the file is not well-formed XML.
+     * @throws InvalidXmlException If the element lacks attributes. The reader
+     * is then past the element, so reading can go on.
+     */
+    public Kind next() throws XMLStreamException {
+        name = state = action = ap = from = to = null;
+        while (in.hasNext()) {
+            int event = in.next();
+            if (event == XMLStreamConstants.END_ELEMENT && in.getLocalName().equals(kEntry)) {
+                labeledState = null;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (in.getLocalName()) {
+                case kName:
+                    name = in.getElementText().trim();
+                    return Kind.NAME;
+
+                case kState:
+                    state = required(attSId, TransitionSystemPart.STATES);
+                    return Kind.STATE;
+
+                case kAction:
+                    action = required(attAId, TransitionSystemPart.ACTIONS);
+                    return Kind.ACTION;
+
+                case kAtomicProposition:
+                    String apId = in.getAttributeValue(null, attApId);
+                    ap = in.getElementText().trim();
+                    if (apId == null) {
+                        throw invalid(" missing " + attApId + " attribute", TransitionSystemPart.ATOMIC_PROPOSITIONS);
+                    }
+                    propositions.put(apId, ap);
+                    return Kind.ATOMIC_PROPOSITION;
+
+                case kInitialState:
+                    state = required(attState, TransitionSystemPart.INITIAL_STATES);
+                    return Kind.INITIAL_STATE;
+
+                case kEntry:
+                    labeledState = required(attState, TransitionSystemPart.ATOMIC_PROPOSITIONS);
+                    break;
+
+                case kLabel:
+                    String propId = required(attAP, TransitionSystemPart.LABELING_FUNCTION);
+                    if (labeledState == null) {
+                        throw invalid(" label outside of an entry", TransitionSystemPart.LABELING_FUNCTION);
+                    }
+                    state = labeledState;
+                    // files may also name the proposition itself
+                    ap = propositions.getOrDefault(propId, propId);
+                    return Kind.LABEL;
+
+                case kTransition:
+                    from = in.getAttributeValue(null, attFrom);
+                    action = in.getAttributeValue(null, attAction);
+                    to = in.getAttributeValue(null, attTo);
+                    if (from == null || action == null || to == null) {
+                        throw invalid(" transition node should have attributes " + attFrom + ", " + attAction
+                                + ", and " + attTo, TransitionSystemPart.TRANSITIONS);
+                    }
+                    return Kind.TRANSITION;
+
+                default:
+                    break;
+            }
+        }
+        return Kind.END;
+    }
+
+    /**
+     * Reads the rest of the file, passing each element to {@code handler}.
+     *
+     * @param handler The callbacks.
+     * @throws XMLStreamException If the file is not well-formed XML.
+     * @throws InvalidXmlException If an element lacks attributes.
+     */
+    public void readAll(Handler handler) throws XMLStreamException {
+        for (Kind k = next(); k != Kind.END; k = next()) {
+            switch (k) {
+                case NAME:
+                    handler.name(name);
+                    break;
+                case STATE:
+                    handler.state(state);
+                    break;
+                case ACTION:
+                    handler.action(action);
+                    break;
+                case ATOMIC_PROPOSITION:
+                    handler.atomicProposition(ap);
+                    break;
+                case INITIAL_STATE:
+                    handler.initialState(state);
+                    break;
+                case LABEL:
+                    handler.label(state, ap);
+                    break;
+                default:
+                    handler.transition(from, action, to);
+                    break;
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getAtomicProposition() {
+        return ap;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        in.close();
+    }
+
+    private String required(String attribute, TransitionSystemPart part) {
+        String value = in.getAttributeValue(null, attribute);
+        if (value == null) {
+            throw invalid(" missing " + attribute + " attribute", part);
+        }
+        return value;
+    }
+
+    private InvalidXmlException invalid(String message, TransitionSystemPart part) {
+        Location loc = in.getLocation();
+        return new InvalidXmlException("[" + loc.getLineNumber() + ": " + loc.getColumnNumber() + "]" + message, part);
+    }
+
+}
@@ -0,0 +1,163 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.StAXTransitionSystemXmlFormat.*;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes the XML format of {@link StAXTransitionSystemXmlFormat} one element
+ * at a time, e.g. as a state-space generator finds states and transitions, so
+ * systems of any size are written in constant memory (besides the atomic
+ * propositions, which labels refer to by id).
+ *
+ * Elements can be added in any order: consecutive elements of a kind share a
+ * section (such as {@code <states>}), and a new section is opened when the
+ * kind changes. {@link TransitionSystemXmlReader} and
+ * {@link StAXTransitionSystemXmlFormat#read(java.io.Reader)} accept files
+ * with repeated sections. Nothing is buffered to merge sections, so a
+ * generator that alternates kinds, e.g. a state and then its transitions,
+ * gets a section per run of one kind; grouping the calls by kind, say per
+ * batch of states, keeps the file smaller. Atomic propositions used in labels
+ * are declared when first used. {@link #close()} ends the document.
+ */
+public class TransitionSystemXmlWriter implements AutoCloseable {
+
+    private final XMLStreamWriter out;
+    /** The ids of the atomic propositions. */
+    private final Map<String, String> apIds = new HashMap<>();
+    /** The open section, or {@code null}. */
+    private String section;
+
+    public TransitionSystemXmlWriter(Writer output) throws XMLStreamException {
+        this(XMLOutputFactory.newFactory().createXMLStreamWriter(output));
+    }
+
+    public TransitionSystemXmlWriter(XMLStreamWriter output) throws XMLStreamException {
+        out = output;
+        out.writeStartDocument();
+        out.writeStartElement(kTransitionSystem);
+    }
+
+    public TransitionSystemXmlWriter name(String name) throws XMLStreamException {
+        section(null);
+        out.writeStartElement(kName);
+        out.writeCharacters(name);
+        out.writeEndElement();
+        return this;
+    }
+
+    public TransitionSystemXmlWriter state(String state) throws XMLStreamException {
+        section(kStates);
+        out.writeEmptyElement(kState);
+        out.writeAttribute(attSId, state);
+        return this;
+    }
+
+    public TransitionSystemXmlWriter action(String action) throws XMLStreamException {
+        section(kActions);
+        out.writeEmptyElement(kAction);
+        out.writeAttribute(attAId, action);
+        return this;
+    }
+
+    /**
+     * Declares an atomic proposition, unless it already was.
+     *
+     * @param ap The proposition.
+     * @return This writer.
+     * @throws XMLStreamException If writing fails.
+     */
+    public TransitionSystemXmlWriter atomicProposition(String ap) throws XMLStreamException {
+        if (!apIds.containsKey(ap)) {
+            apIds.put(ap, "ap" + (apIds.size() + 1));
+            section(kAtomicPropositions);
+            out.writeStartElement(kAtomicProposition);
+            out.writeAttribute(attApId, apIds.get(ap));
+            out.writeCharacters(ap);
+            out.writeEndElement();
+        }
+        return this;
+    }
+
+    public TransitionSystemXmlWriter initialState(String state) throws XMLStreamException {
+        section(kInitialStates);
+        out.writeEmptyElement(kInitialState);
+        out.writeAttribute(attState, state);
+        return this;
+    }
+
+    /**
+     * Writes the labels of a state.
+     *
+     * @param state The state.
+     * @param aps Its atomic propositions, iterated once, so they may come
+     * from a stream.
+     * @return This writer.
+     * @throws XMLStreamException If writing fails.
+     */
+    public TransitionSystemXmlWriter label(String state, Iterable<String> aps) throws XMLStreamException {
+        // new propositions must be declared before the entry opens
+        List<String> labels = new ArrayList<>();
+        for (String ap : aps) {
+            atomicProposition(ap);
+            labels.add(ap);
+        }
+        section(kLabelingFunction);
+        out.writeStartElement(kEntry);
+        out.writeAttribute(attState, state);
+        for (String ap : labels) {
+            out.writeEmptyElement(kLabel);
+            out.writeAttribute(attAP, apIds.get(ap));
+        }
+        out.writeEndElement();
+        return this;
+    }
+
+    public TransitionSystemXmlWriter transition(String from, String action, String to) throws XMLStreamException {
+        section(kTransitions);
+        out.writeEmptyElement(kTransition);
+        out.writeAttribute(attFrom, from);
+        out.writeAttribute(attAction, action);
+        out.writeAttribute(attTo, to);
+        return this;
+    }
+
+    /**
+     * Ends the document and flushes it. The underlying writer is not closed.
+     *
+     * @throws XMLStreamException If writing fails.
+     */
+    @Override
+    public void close() throws XMLStreamException {
+        section(null);
+        out.writeEndElement();
+        out.writeEndDocument();
+        out.flush();
+    }
+
+    /**
+     * Closes the open section unless it is of {@code kind}, and opens one of
+     * {@code kind} (none if {@code null}).
+     */
+    private void section(String kind) throws XMLStreamException {
+        if (kind != null && kind.equals(section)) {
+            return;
+        }
+        if (section != null) {
+            out.writeEndElement();
+        }
+        section = kind;
+        if (kind != null) {
+            out.writeStartElement(kind);
+        }
+    }
+
+}
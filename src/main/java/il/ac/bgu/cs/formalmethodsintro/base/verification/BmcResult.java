@@ -0,0 +1,52 @@
+package il.ac.bgu.cs.formalmethodsintro.base.verification;
+
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.AlternatingSequence;
+
+/**
+ * The outcome of bounded model checking: either a counterexample, or the
+ * bound up to which none exists.
+ *
+ * @param <S> Type of states.
+ * @param <A> Type of actions.
+ */
+public class BmcResult<S, A> {
+
+    private final AlternatingSequence<S, A> counterexample;
+    private final int depth;
+
+    public BmcResult(AlternatingSequence<S, A> counterexample, int depth) {
+        this.counterexample = counterexample;
+        this.depth = depth;
+    }
+
+    /**
+     * @return {@code true} iff a violation was found.
+     */
+    public boolean isViolated() {
+        return counterexample != null;
+    }
+
+    /**
+     * @return A shortest path from an initial state to a violating state, or
+     * {@code null} if there is none within the bound.
+     */
+    public AlternatingSequence<S, A> getCounterexample() {
+        return counterexample;
+    }
+
+    /**
+     * @return The number of steps of the counterexample, or the bound up to
+     * which all paths were checked.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        return isViolated()
+                ? "Violated after " + depth + " steps:\n" + counterexample
+                : "No violation within " + depth + " steps";
+    }
+
+}
@@ -12,9 +12,13 @@ import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.States.b;
 import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.States.c;
 import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.States.d;
 
+import java.util.List;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraph;
 import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
 
 /**
@@ -228,4 +232,30 @@ public class TSTestUtils {
         return retVal;
     }
 
+    /**
+     * Creates a channel system where a producer writes {@code 0..max-1} into
+     * channel {@code C}, and a consumer reads them into {@code y} and sums
+     * them into {@code sum}.
+     *
+     * @param max Number of values the producer writes.
+     * @return The channel system.
+     */
+    public static ChannelSystem<String, String> makeProducerConsumer(int max) {
+        ProgramGraph<String, String> producer = new ProgramGraph<>();
+        producer.setName("producer");
+        producer.setInitial("p", true);
+        producer.addInitalization(List.of("x := 0"));
+        producer.addTransition(new PGTransition<>("p", "x < " + max, "C!x", "q"));
+        producer.addTransition(new PGTransition<>("q", "", "x := x + 1", "p"));
+
+        ProgramGraph<String, String> consumer = new ProgramGraph<>();
+        consumer.setName("consumer");
+        consumer.setInitial("r", true);
+        consumer.addInitalization(List.of("sum := 0"));
+        consumer.addTransition(new PGTransition<>("r", "size(C) > 0", "C?y", "s"));
+        consumer.addTransition(new PGTransition<>("s", "", "sum := sum + y", "r"));
+
+        return new ChannelSystem<>(List.of(producer, consumer));
+    }
+
 }
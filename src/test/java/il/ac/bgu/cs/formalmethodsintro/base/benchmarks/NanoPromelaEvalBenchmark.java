@@ -0,0 +1,114 @@
+package il.ac.bgu.cs.formalmethodsintro.base.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.CompiledBoolExpr;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.CompiledStmt;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaCompiler;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.SlotCompiler;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.SlotLayout;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedCondDef;
+
+/**
+ * Compares the three ways of evaluating a NanoPromela guard and action: the
+ * parse-per-call {@code Evaluator} path, the cached lambda trees of
+ * {@link NanoPromelaCompiler}, and the {@code int[]} method handles of
+ * {@link SlotCompiler}.
+ *
+ * Not part of the test suite; after {@code mvn test-compile}, run
+ * {@link #main(String[])} (or {@code org.openjdk.jmh.Main}) on the test
+ * classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NanoPromelaEvalBenchmark {
+
+    static final String GUARD = "x < 100 && (y % 7 != 3 || x + 2 * y >= z) && !(z ^ x == 5)";
+    static final String ACTION = "atomic{x := x + 1 ; y := (y * 3 + x) % 11 ; z := z - y}";
+
+    ParserBasedCondDef parsedCond;
+    ParserBasedActDef parsedAct;
+    CompiledBoolExpr lambdaGuard;
+    CompiledStmt lambdaAction;
+    SlotCompiler.BoolExpr slotGuard;
+    SlotCompiler.Stmt slotAction;
+
+    Map<String, Object> eval;
+    int[] state;
+
+    @Setup
+    public void setup() {
+        parsedCond = new ParserBasedCondDef();
+        parsedAct = new ParserBasedActDef();
+        lambdaGuard = NanoPromelaCompiler.compileCondition(GUARD);
+        lambdaAction = NanoPromelaCompiler.compileAction(ACTION);
+
+        SlotCompiler slots = new SlotCompiler(SlotLayout.of("x", "y", "z"));
+        slotGuard = slots.compileCondition(GUARD);
+        slotAction = slots.compileAction(ACTION);
+
+        eval = new HashMap<>();
+        eval.put("x", 17);
+        eval.put("y", 4);
+        eval.put("z", 40);
+        state = slots.getLayout().encode(eval);
+    }
+
+    @Benchmark
+    public boolean guardEvaluator() {
+        return parsedCond.evaluate(eval, GUARD);
+    }
+
+    @Benchmark
+    public boolean guardLambda() {
+        return lambdaGuard.evaluate(eval);
+    }
+
+    @Benchmark
+    public boolean guardMethodHandle() {
+        return slotGuard.evaluate(state);
+    }
+
+    @Benchmark
+    public Map<String, Object> actionEvaluator() {
+        return parsedAct.effect(eval, ACTION);
+    }
+
+    @Benchmark
+    public Map<String, Object> actionLambda() {
+        return lambdaAction.effect(eval);
+    }
+
+    @Benchmark
+    public int[] actionMethodHandle() {
+        return slotAction.effect(state);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NanoPromelaEvalBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,83 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.AlternatingSequence;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+
+public class AlternatingSequenceTest {
+
+    private static TransitionSystem<Integer, String, String> counter(int n) {
+        TransitionSystem<Integer, String, String> ts = new TransitionSystem<>();
+        for (int i = 0; i <= n; i++) {
+            ts.addState(i);
+        }
+        ts.addInitialState(0);
+        for (int i = 0; i < n; i++) {
+            ts.addTransition(new TSTransition<>(i, "inc", i + 1));
+        }
+        return ts;
+    }
+
+    @Test
+    public void tailsShareTheItems() {
+        AlternatingSequence<String, Integer> seq = AlternatingSequence.of("a", 1, "b", 2, "c");
+        assertEquals(5, seq.size());
+        assertEquals(2, seq.steps());
+        assertEquals(Integer.valueOf(1), seq.tail().head());
+        assertEquals("b", seq.tail().tail().head());
+        assertEquals("c", seq.tail().tail().tail().tail().last());
+        assertTrue(seq.tail().tail().tail().tail().tail().isEmpty());
+        assertEquals(AlternatingSequence.of("b", 2, "c"), seq.tail().tail());
+        assertEquals(AlternatingSequence.of("b", 2, "c").hashCode(), seq.tail().tail().hashCode());
+        assertEquals(new AlternatingSequence<>(Arrays.asList("a", "b", "c"), Arrays.asList(1, 2)), seq);
+        assertEquals("[AlternatingSequence [a, 1, b, 2, c]]", seq.toString());
+        assertEquals(AlternatingSequence.of("a", 1, "b", 2, "c", 3, "d", 4, "e", 5, "f"),
+                AlternatingSequence.builder("a").add(1, "b").add(2, "c").add(3, "d").add(4, "e").add(5, "f").build());
+    }
+
+    @Test
+    public void tracesAreReadAStepAtATime() throws IOException {
+        AlternatingSequence<String, String> seq = AlternatingSequence.read(new StringReader("s0\ngo\n\ns1\nstop\ns2\n"));
+        assertEquals(AlternatingSequence.of("s0", "go", "s1", "stop", "s2"), seq);
+        AlternatingSequence.Cursor<String, String> step = seq.cursor();
+        assertTrue(step.next());
+        assertEquals("s0", step.from());
+        assertEquals("go", step.action());
+        assertTrue(step.next());
+        assertEquals("s2", step.to());
+        assertFalse(step.next());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tracesEndWithAState() throws IOException {
+        AlternatingSequence.read(new StringReader("s0\ngo\n"));
+    }
+
+    @Test(timeout = 10000)
+    public void longExecutionsAreCheckedInLinearTime() {
+        int n = 100_000;
+        TransitionSystem<Integer, String, String> ts = counter(n);
+        AlternatingSequence.Builder<Integer, String> builder = AlternatingSequence.builder(0);
+        for (int i = 1; i <= n; i++) {
+            builder.add("inc", i);
+        }
+        FvmFacade fvm = FvmFacade.get();
+        AlternatingSequence<Integer, String> run = builder.build();
+        assertTrue(fvm.isExecution(ts, run));
+        assertFalse(fvm.isExecution(ts, run.tail().tail()));
+        assertFalse(fvm.isExecutionFragment(ts, AlternatingSequence.of(0, "inc", 2)));
+        assertFalse(fvm.isExecutionFragment(ts, AlternatingSequence.of(-1, "inc", 0)));
+    }
+
+}
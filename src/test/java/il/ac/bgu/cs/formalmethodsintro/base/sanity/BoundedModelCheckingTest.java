@@ -0,0 +1,283 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.AtomicLogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CircuitImp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CompoundLogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp.LogicalOp;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ActionDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ConditionDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedCondDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraph;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraphBmc;
+import il.ac.bgu.cs.formalmethodsintro.base.sat.SatSolver;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.AlternatingSequence;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.BmcResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+
+/**
+ * Tests for the SAT solver and bounded model checking, against brute force
+ * and explicit-state exploration.
+ */
+public class BoundedModelCheckingTest {
+
+    private final FvmFacade fvm = FvmFacade.get();
+
+    @Test
+    public void solverAgreesWithBruteForce() {
+        Random rnd = new Random(5);
+        int n = 12;
+        for (int round = 0; round < 60; round++) {
+            List<int[]> clauses = new ArrayList<>();
+            for (int c = 0; c < 52; c++) {
+                int[] clause = new int[3];
+                for (int i = 0; i < 3; i++) {
+                    clause[i] = (rnd.nextInt(n) + 1) * (rnd.nextBoolean() ? 1 : -1);
+                }
+                clauses.add(clause);
+            }
+            SatSolver solver = new SatSolver();
+            for (int v = 0; v < n; v++) {
+                solver.newVar();
+            }
+            clauses.forEach(solver::addClause);
+            int assumption = rnd.nextInt(n) + 1;
+
+            boolean expected = false, expectedAssuming = false;
+            for (int a = 0; a < (1 << n); a++) {
+                if (satisfies(clauses, a)) {
+                    expected = true;
+                    expectedAssuming |= (a & (1 << (assumption - 1))) == 0;
+                }
+            }
+            assertEquals(expectedAssuming, solver.solve(-assumption));
+            if (expectedAssuming) {
+                assertFalse(solver.modelValue(assumption));
+            }
+            assertEquals(expected, solver.solve());
+            if (expected) {
+                int a = 0;
+                for (int v = 1; v <= n; v++) {
+                    a |= solver.modelValue(v) ? 1 << (v - 1) : 0;
+                }
+                assertTrue(satisfies(clauses, a));
+            }
+        }
+    }
+
+    private static boolean satisfies(List<int[]> clauses, int assignment) {
+        for (int[] clause : clauses) {
+            boolean sat = false;
+            for (int l : clause) {
+                sat |= ((assignment >> (Math.abs(l) - 1)) & 1) == (l > 0 ? 1 : 0);
+            }
+            if (!sat) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void pigeonholeIsUnsatisfiable() {
+        // 6 pigeons, 5 holes
+        int pigeons = 6, holes = 5;
+        SatSolver solver = new SatSolver();
+        int[][] x = new int[pigeons][holes];
+        for (int p = 0; p < pigeons; p++) {
+            for (int h = 0; h < holes; h++) {
+                x[p][h] = solver.newVar();
+            }
+            solver.addClause(x[p]);
+        }
+        for (int h = 0; h < holes; h++) {
+            for (int p = 0; p < pigeons; p++) {
+                for (int q = p + 1; q < pigeons; q++) {
+                    solver.addClause(-x[p][h], -x[q][h]);
+                }
+            }
+        }
+        assertFalse(solver.solve());
+    }
+
+    private static <S, A> List<S> states(AlternatingSequence<S, A> seq) {
+        List<S> res = new ArrayList<>();
+        res.add(seq.head());
+        while (seq.size() > 1) {
+            seq = seq.tail().tail();
+            res.add(seq.head());
+        }
+        return res;
+    }
+
+    private static <S, A> void assertPathOf(TransitionSystem<S, A, ?> ts, AlternatingSequence<S, A> seq) {
+        assertTrue(ts.getInitialStates().contains(seq.head()));
+        while (seq.size() > 1) {
+            S from = seq.head();
+            A action = seq.tail().head();
+            seq = seq.tail().tail();
+            assertTrue(from + " -" + action + "-> " + seq.head(),
+                    ts.getTransitions().contains(new TSTransition<>(from, action, seq.head())));
+        }
+    }
+
+    private static LogicalExp randomExp(Random rnd, String[] names, int depth) {
+        LogicalOp op = LogicalOp.values()[rnd.nextInt(4)];
+        if (depth == 0) {
+            return new AtomicLogicalExp(names[rnd.nextInt(names.length)], op, names[rnd.nextInt(names.length)]);
+        }
+        return new CompoundLogicalExp(randomExp(rnd, names, depth - 1), op, randomExp(rnd, names, depth - 1));
+    }
+
+    @Test
+    public void circuitCounterexamplesAreShortestPaths() {
+        Random rnd = new Random(9);
+        String[] names = {"x", "y", "r0", "r1", "r2", "r3"};
+        LogicalExp inv = new CompoundLogicalExp(new AtomicLogicalExp("r1", LogicalOp.and, "o"), LogicalOp.not, null);
+        for (int round = 0; round < 30; round++) {
+            CircuitImp c = new CircuitImp(Set.of("r0", "r1", "r2", "r3"), Set.of("x", "y"), Set.of("o"));
+            for (String r : List.of("r0", "r1", "r2", "r3")) {
+                c.addRule(new Pair<>(r, randomExp(rnd, names, 1)));
+            }
+            c.addRule(new Pair<>("o", randomExp(rnd, names, 1)));
+            TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> ts
+                    = fvm.transitionSystemFromCircuit(c);
+            VerificationResult<Pair<Map<String, Boolean>, Map<String, Boolean>>> explicit = fvm.checkInvariant(
+                    fvm.stateSpaceOf(ts), l -> !(l.contains("r1") && l.contains("o")));
+
+            BmcResult<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>> bmc
+                    = fvm.boundedModelCheck(c, inv, 16);
+            assertEquals(explicit instanceof VerificationFailed, bmc.isViolated());
+            if (bmc.isViolated()) {
+                assertEquals(((VerificationFailed<?>) explicit).getPrefix().size(), bmc.getDepth() + 1);
+                assertPathOf(ts, bmc.getCounterexample());
+                Set<Object> last = ts.getLabel(bmc.getCounterexample().last());
+                assertTrue(last.contains("r1") && last.contains("o"));
+            }
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void deepBugInWideCircuit() {
+        // 80 registers in a shift chain fed by x; o = r78 and r79 first holds after 80 steps
+        int n = 80;
+        Set<String> regs = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            regs.add("r" + i);
+        }
+        CircuitImp c = new CircuitImp(regs, Set.of("x"), Set.of("o"));
+        c.addRule(new Pair<>("r0", new AtomicLogicalExp("x", LogicalOp.or, "x")));
+        for (int i = 1; i < n; i++) {
+            c.addRule(new Pair<>("r" + i, new AtomicLogicalExp("r" + (i - 1), LogicalOp.or, "r" + (i - 1))));
+        }
+        c.addRule(new Pair<>("o", new AtomicLogicalExp("r" + (n - 2), LogicalOp.and, "r" + (n - 1))));
+
+        LogicalExp inv = new AtomicLogicalExp("o", LogicalOp.not, null);
+        assertFalse(fvm.boundedModelCheck(c, inv, n - 1).isViolated());
+        BmcResult<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>> res
+                = fvm.boundedModelCheck(c, inv, n + 5);
+        assertTrue(res.isViolated());
+        assertEquals(n, res.getDepth());
+        assertTrue(res.getCounterexample().last().second.get("r" + (n - 1)));
+    }
+
+    /**
+     * Two loops over x and y, with arithmetic that needs actual values to
+     * follow.
+     */
+    private static ProgramGraph<String, String> arithmetic() {
+        ProgramGraph<String, String> pg = new ProgramGraph<>();
+        pg.setInitial("a", true);
+        pg.addInitalization(List.of("x := 1"));
+        pg.addInitalization(List.of("x := 2", "y := 0 - 3"));
+        pg.addTransition(new PGTransition<>("a", "x < 20", "x := x * 3 - y", "b"));
+        pg.addTransition(new PGTransition<>("b", "", "atomic{y := x ; x := y + 1}", "a"));
+        pg.addTransition(new PGTransition<>("b", "x != 5", "y := -x ^ 6", "a"));
+        pg.addTransition(new PGTransition<>("a", "x >= 20 && y <= 40", "skip", "c"));
+        pg.addLocation("unreached");
+        return pg;
+    }
+
+    @Test
+    public void programGraphCounterexamplesMatchTheTransitionSystem() {
+        ProgramGraph<String, String> pg = arithmetic();
+        Set<ActionDef> ad = Set.of(new ParserBasedActDef());
+        Set<ConditionDef> cd = Set.of(new ParserBasedCondDef());
+        TransitionSystem<Pair<String, Map<String, Object>>, String, String> ts
+                = fvm.transitionSystemFromProgramGraph(pg, ad, cd);
+
+        int violated = 0;
+        for (int target : new int[]{9, 10, 12, 15, 16, 18, 21, 1000}) {
+            VerificationResult<Pair<String, Map<String, Object>>> explicit = fvm.checkInvariant(
+                    fvm.stateSpaceOf(ts), l -> !l.contains("y = " + target));
+            BmcResult<Pair<String, Map<String, Object>>, String> bmc = fvm.boundedModelCheck(pg, "y != " + target, 12);
+            if (explicit instanceof VerificationFailed
+                    && ((VerificationFailed<?>) explicit).getPrefix().size() <= 13) {
+                assertTrue("y = " + target, bmc.isViolated());
+                violated++;
+                assertEquals(((VerificationFailed<?>) explicit).getPrefix().size(), bmc.getDepth() + 1);
+                assertPathOf(ts, bmc.getCounterexample());
+                assertEquals(target, bmc.getCounterexample().last().second.get("y"));
+            } else {
+                assertFalse("y = " + target, bmc.isViolated());
+            }
+        }
+        assertTrue(violated >= 2);
+
+        BmcResult<Pair<String, Map<String, Object>>, String> toC
+                = new ProgramGraphBmc<>(pg)
+                        .check(l -> !l.equals("c"), "", 20);
+        assertTrue(toC.isViolated());
+        assertEquals("c", states(toC.getCounterexample()).get(toC.getDepth()).first);
+        assertPathOf(ts, toC.getCounterexample());
+    }
+
+    @Test
+    public void oneCheckerAnswersSeveralQueries() {
+        ProgramGraph<String, String> pg = new ProgramGraph<>();
+        pg.setInitial("a", true);
+        pg.addTransition(new PGTransition<>("a", "x < 50", "x := x + 1", "a"));
+        pg.addTransition(new PGTransition<>("a", "", "skip", "stuck"));
+        ProgramGraphBmc<String> bmc = new ProgramGraphBmc<>(pg);
+
+        assertFalse(bmc.check("x < 100", 10).isViolated());
+        BmcResult<Pair<String, Map<String, Object>>, String> small = bmc.check("x < 3", 10);
+        assertTrue(small.isViolated());
+        assertEquals(3, small.getDepth());
+        assertEquals(3, small.getCounterexample().last().second.get("x"));
+        // a path stopping before the depth unrolled so far is still found
+        BmcResult<Pair<String, Map<String, Object>>, String> stuck = bmc.check(l -> !l.equals("stuck"), "", 10);
+        assertTrue(stuck.isViolated());
+        assertEquals(1, stuck.getDepth());
+        assertFalse(bmc.check("x < 3", 2).isViolated());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void divisionIsRejected() {
+        ProgramGraph<String, String> pg = new ProgramGraph<>();
+        pg.setInitial("a", true);
+        pg.addTransition(new PGTransition<>("a", "", "x := x / 2", "a"));
+        fvm.boundedModelCheck(pg, "x < 3", 3);
+    }
+
+}
@@ -0,0 +1,72 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.CanonicalCondition;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
+
+public class CanonicalConditionTest {
+
+    private static void assertEquivalent(String a, String b) {
+        assertEquals(CanonicalCondition.of(a), CanonicalCondition.of(b));
+        assertEquals(CanonicalCondition.of(a).hashCode(), CanonicalCondition.of(b).hashCode());
+    }
+
+    private static void assertDifferent(String a, String b) {
+        assertNotEquals(CanonicalCondition.of(a), CanonicalCondition.of(b));
+    }
+
+    @Test
+    public void equivalentConditionsAreEqual() {
+        assertEquivalent("x < 3 && x >= 0", "x == 0 || x == 1 || x == 2");
+        assertEquivalent("2*x == 4", "x == 2");
+        assertEquivalent("!(x != 1) && y > 0", "0 < y && 1 == x");
+        assertEquivalent("x + 1 <= y", "y - x > 0");
+        assertEquivalent("", "true");
+        assertEquivalent("true", "x <= 1 || x > 1");
+        assertEquivalent("2*x == 3", "false");
+        assertEquivalent("x*y > 2 && z/2 == 1", "z/2 == 1 && 2 < y*x");
+        assertTrue(CanonicalCondition.of("x < 3 && x >= 0").isSemantic());
+
+        assertDifferent("x < 3", "x <= 3");
+        assertDifferent("x == 1", "y == 1");
+        assertDifferent("x == 1 && y == 1", "x == 1 || y == 1");
+    }
+
+    @Test
+    public void overflowingArithmeticFallsBackToText() {
+        // 2^62 * 4 wraps to 0 in a long, which would make this "0 < 0"
+        CanonicalCondition huge = CanonicalCondition.of("x * 4611686018427387904 * 4 < 0");
+        assertFalse(huge.isSemantic());
+        assertDifferent("x * 4611686018427387904 * 4 < 0", "false");
+        assertEquals(huge, CanonicalCondition.of("x * 4611686018427387904 * 4 < 0"));
+        assertFalse(CanonicalCondition.of("x == 9223372036854775807 + 1").isSemantic());
+        assertTrue(CanonicalCondition.of("x < 4611686018427387904").isSemantic());
+    }
+
+    @Test
+    public void transitionsCompareConditionsAndEndpoints() {
+        PGTransition<String, String> t1 = new PGTransition<>("a", "x >= 0 && x < 2", "x := x + 1", "b");
+        PGTransition<String, String> t2 = new PGTransition<>("a", "x == 1 || x == 0", "x := x + 1", "b");
+        PGTransition<String, String> t3 = new PGTransition<>("a", "x == 1 || x == 0", "x := x + 1", "c");
+        assertEquals(t1, t2);
+        assertEquals(t1.hashCode(), t2.hashCode());
+        assertNotEquals(t1, t3);
+
+        Set<PGTransition<String, String>> set = new HashSet<>();
+        set.add(t1);
+        assertTrue(set.contains(t2));
+        t2.setCondition("x == 2");
+        assertFalse(set.contains(t2));
+        assertNotEquals(t1, t2);
+    }
+
+}
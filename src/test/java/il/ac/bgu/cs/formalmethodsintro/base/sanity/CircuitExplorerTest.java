@@ -0,0 +1,69 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.AtomicLogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CircuitImp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp.LogicalOp;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Tests for the bit-encoded circuit explorer.
+ */
+public class CircuitExplorerTest {
+
+    private static Map<String, Boolean> map(String name, boolean value) {
+        Map<String, Boolean> m = new HashMap<>();
+        m.put(name, value);
+        return m;
+    }
+
+    @Test
+    public void xorRegister() {
+        // r' = x xor r, y = x and r
+        CircuitImp c = new CircuitImp(Set.of("r"), Set.of("x"), Set.of("y"));
+        c.addRule(new Pair<>("r", new AtomicLogicalExp("x", LogicalOp.xor, "r")));
+        c.addRule(new Pair<>("y", new AtomicLogicalExp("x", LogicalOp.and, "r")));
+
+        TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> ts
+                = FvmFacade.get().transitionSystemFromCircuit(c);
+
+        assertEquals(4, ts.getStates().size());
+        assertEquals(8, ts.getTransitions().size());
+        assertEquals(Set.of(map("x", false), map("x", true)), ts.getActions());
+        assertEquals(Set.of("x", "r", "y"), ts.getAtomicPropositions());
+        assertEquals(Set.of(new Pair<>(map("x", false), map("r", false)), new Pair<>(map("x", true), map("r", false))),
+                ts.getInitialStates());
+        assertEquals(Set.of("x", "r", "y"), ts.getLabel(new Pair<>(map("x", true), map("r", true))));
+        assertTrue(ts.getSuccessors(new Pair<>(map("x", true), map("r", false)))
+                .contains(new Pair<>(map("x", false), map("r", true))));
+    }
+
+    @Test(timeout = 5000)
+    public void wideCircuitOnlyReachableStates() {
+        // 40 registers that all copy input x: only all-false and all-true are reachable.
+        Set<String> regs = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            regs.add("r" + i);
+        }
+        CircuitImp c = new CircuitImp(regs, Set.of("x"), Set.of());
+        for (String r : regs) {
+            c.addRule(new Pair<>(r, new AtomicLogicalExp("x", LogicalOp.or, "x")));
+        }
+
+        TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> ts
+                = FvmFacade.get().transitionSystemFromCircuit(c);
+        assertEquals(2 * 2, ts.getStates().size());
+    }
+
+}
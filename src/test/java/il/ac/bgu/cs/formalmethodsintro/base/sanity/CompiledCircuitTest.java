@@ -0,0 +1,104 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.AtomicLogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CompiledCircuit;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CompoundLogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CircuitImp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp.LogicalOp;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Tests that compiled circuit rules agree with the {@code getResult}
+ * interpretation, in scalar and bit-parallel mode.
+ */
+public class CompiledCircuitTest {
+
+    private static CircuitImp circuit() {
+        // inputs a, b; registers p, q; outputs y, z (z has no rule)
+        CircuitImp c = new CircuitImp(Set.of("p", "q"), Set.of("a", "b"), Set.of("y", "z"));
+        LogicalExp aXorP = new AtomicLogicalExp("a", LogicalOp.xor, "p");
+        c.addRule(new Pair<>("p", aXorP));
+        c.addRule(new Pair<>("q", new CompoundLogicalExp(
+                new AtomicLogicalExp("b", LogicalOp.not, null), LogicalOp.or,
+                new CompoundLogicalExp(aXorP, LogicalOp.and, new AtomicLogicalExp("q", LogicalOp.or, "q")))));
+        c.addRule(new Pair<>("y", new CompoundLogicalExp(
+                new AtomicLogicalExp("p", LogicalOp.xor, "a"), LogicalOp.not, null)));
+        return c;
+    }
+
+    private static HashMap<String, Boolean> values(String[] names, long bits) {
+        HashMap<String, Boolean> m = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            m.put(names[i], (bits & (1L << i)) != 0);
+        }
+        return m;
+    }
+
+    /** Evaluates a rule set the old way, by interpretation over a map. */
+    private static long interpret(Set<Pair<String, LogicalExp>> rules, String[] targets, HashMap<String, Boolean> values) {
+        long res = 0;
+        for (Pair<String, LogicalExp> rule : rules) {
+            for (int i = 0; i < targets.length; i++) {
+                if (targets[i].equals(rule.first) && rule.second.getResult(values)) {
+                    res |= 1L << i;
+                }
+            }
+        }
+        return res;
+    }
+
+    @Test
+    public void agreesWithInterpretation() {
+        CircuitImp c = circuit();
+        CompiledCircuit cc = c.compile();
+        assertEquals(4, cc.getInputNames().length + cc.getRegisterNames().length);
+
+        long[] states = new long[16];
+        for (int s = 0; s < 16; s++) {
+            states[s] = s;
+            HashMap<String, Boolean> values = values(cc.getInputNames(), s & 3);
+            values.putAll(values(cc.getRegisterNames(), s >>> 2));
+            assertEquals(interpret(c.getRegisterRules(), cc.getRegisterNames(), values), cc.nextRegisters(s));
+            assertEquals(interpret(c.getOutputRules(), cc.getOutputNames(), values), cc.outputs(s));
+        }
+
+        long[] regs = CompiledCircuit.fromLanes(cc.nextRegisters(cc.toLanes(states, 0, 16)), 16);
+        long[] outs = CompiledCircuit.fromLanes(cc.outputs(cc.toLanes(states, 0, 16)), 16);
+        for (int s = 0; s < 16; s++) {
+            assertEquals(cc.nextRegisters(s), regs[s]);
+            assertEquals(cc.outputs(s), outs[s]);
+        }
+    }
+
+    @Test
+    public void mapInterfaceKeepsRuleKeys() {
+        CircuitImp c = circuit();
+        Map<String, Boolean> in = Map.of("a", true, "b", true);
+        Map<String, Boolean> regs = Map.of("p", false, "q", true);
+        assertEquals(Map.of("p", true, "q", true), c.updateRegisters(in, regs));
+        assertEquals(Map.of("y", false), c.computeOutputs(in, regs));
+    }
+
+    @Test
+    public void sharesCommonSubexpressions() {
+        // a xor p appears three times (once as p xor a) but is compiled once
+        assertEquals(6, circuit().compile().getGateCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownNameFailsCompilation() {
+        CircuitImp c = new CircuitImp(Set.of("r"), Set.of("x"), Set.of());
+        c.addRule(new Pair<>("r", new AtomicLogicalExp("x", LogicalOp.and, "nope")));
+        c.compile();
+    }
+
+}
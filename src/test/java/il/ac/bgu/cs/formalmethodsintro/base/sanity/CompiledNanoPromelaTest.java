@@ -0,0 +1,80 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.CompiledInterleavingActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ParserBasedInterleavingActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.CompiledActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.CompiledCondDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedCondDef;
+
+/**
+ * The compiled NanoPromela definitions must agree with the parser based ones.
+ */
+public class CompiledNanoPromelaTest {
+
+    private static Map<String, Object> eval() {
+        Map<String, Object> eval = new HashMap<>();
+        eval.put("x", 7);
+        eval.put("y", -3);
+        eval.put("C", List.of(4, 5));
+        return eval;
+    }
+
+    @Test
+    public void conditions() {
+        CompiledCondDef compiled = new CompiledCondDef();
+        ParserBasedCondDef parsed = new ParserBasedCondDef();
+        for (String cond : List.of("", "x > y", "x % 3 == 1 && !(y >= 0)", "(x ^ 2) == 5 || z != 0",
+                "size(C) == 2", "-x + 2 * y / 3 <= x - y", "true && false")) {
+            assertEquals(cond, parsed.evaluate(eval(), cond), compiled.evaluate(eval(), cond));
+        }
+    }
+
+    @Test
+    public void actions() {
+        CompiledActDef compiled = new CompiledActDef();
+        ParserBasedActDef parsed = new ParserBasedActDef();
+        for (String act : List.of("", "skip", "x := x + 1", "atomic{x := y ; y := x}", "C!x*2", "C?z", "D?z",
+                "z := y % 5")) {
+            assertTrue(act, compiled.isMatchingAction(act));
+            assertEquals(act, parsed.effect(eval(), act), compiled.effect(eval(), act));
+        }
+        assertFalse(compiled.isMatchingAction("x := := 1"));
+    }
+
+    @Test
+    public void compoundStatementsBlockLikeTheParserBasedDefinition() {
+        CompiledActDef compiled = new CompiledActDef();
+        ParserBasedActDef parsed = new ParserBasedActDef();
+        for (String act : List.of("x := 1; x := 2", "if :: x > 0 -> y := 1 fi", "do :: x > 0 -> x := x - 1 od")) {
+            assertTrue(act, parsed.isMatchingAction(act));
+            assertTrue(act, compiled.isMatchingAction(act));
+            assertEquals(act, parsed.effect(eval(), act), compiled.effect(eval(), act));
+            assertEquals(act, null, compiled.effect(eval(), act));
+        }
+    }
+
+    @Test
+    public void joinedActions() {
+        CompiledInterleavingActDef compiled = new CompiledInterleavingActDef();
+        ParserBasedInterleavingActDef parsed = new ParserBasedInterleavingActDef();
+        for (String act : List.of("_C!x+1|_C?y", "_C!|_C?", "_C!x|_D?y", "_C!|_C?y")) {
+            assertTrue(act, compiled.isMatchingAction(act));
+            assertEquals(act, parsed.effect(eval(), act), compiled.effect(eval(), act));
+        }
+        assertFalse(compiled.isMatchingAction("x := 1"));
+        assertTrue(compiled.isOneSidedAction("_C?y"));
+        assertFalse(compiled.isOneSidedAction("x := 1"));
+    }
+
+}
@@ -0,0 +1,73 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ActionDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.CompiledActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.CompiledCondDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ConditionDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.InterleavedProgramGraph;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraph;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Tests for lazily interleaved program graphs.
+ */
+public class InterleavedProgramGraphTest {
+
+    private final FvmFacade fvm = FvmFacade.get();
+
+    /**
+     * A counter that increments its variable {@code length} times.
+     */
+    private static ProgramGraph<Integer, String> counter(String var, int length) {
+        ProgramGraph<Integer, String> pg = new ProgramGraph<>();
+        pg.setInitial(0, true);
+        pg.addInitalization(List.of(var + " := 0"));
+        for (int i = 0; i < length; i++) {
+            pg.addTransition(new PGTransition<>(i, "", var + " := " + var + " + 1", i + 1));
+        }
+        pg.addLocation(-1); // never reached
+        return pg;
+    }
+
+    @Test
+    public void lazyUntilLocationsAreRequested() {
+        ProgramGraph<Pair<Integer, Integer>, String> pg = fvm.interleave(counter("x", 3), counter("y", 2));
+        InterleavedProgramGraph<?, ?, ?> lazy = (InterleavedProgramGraph<?, ?, ?>) pg;
+
+        assertEquals(Set.of(new Pair<>(0, 0)), pg.getInitialLocations());
+        assertEquals(Set.of(List.of("x := 0", "y := 0")), pg.getInitalizations());
+        assertEquals(2, pg.getOutgoingTransitions(new Pair<>(0, 0)).size());
+        assertFalse(lazy.isMaterialized());
+
+        assertEquals(4 * 3, pg.getLocations().size());
+        assertTrue(lazy.isMaterialized());
+        assertFalse(pg.getLocations().contains(new Pair<>(-1, 0)));
+        assertEquals(3 * 3 + 4 * 2, pg.getTransitions().size());
+    }
+
+    @Test
+    public void transitionSystemOfNestedInterleaving() {
+        ProgramGraph<Pair<Pair<Integer, Integer>, Integer>, String> pg
+                = fvm.interleave(fvm.interleave(counter("x", 3), counter("y", 3)), counter("z", 3));
+        Set<ActionDef> ad = Set.of(new CompiledActDef());
+        Set<ConditionDef> cd = Set.of(new CompiledCondDef());
+
+        Set<Pair<Pair<Pair<Integer, Integer>, Integer>, Map<String, Object>>> lazy = fvm.reach(fvm.stateSpaceOf(pg, ad, cd));
+        assertEquals(4 * 4 * 4, lazy.size());
+        assertFalse(((InterleavedProgramGraph<?, ?, ?>) pg).isMaterialized());
+        assertEquals(lazy, fvm.transitionSystemFromProgramGraph(pg, ad, cd).getStates());
+    }
+
+}
@@ -0,0 +1,68 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Tests for interleaving transition systems with and without handshaking.
+ */
+public class InterleavingTest {
+
+    private final FvmFacade fvm = FvmFacade.get();
+
+    /**
+     * A process that alternates between {@code name_out} and
+     * {@code name_in}, entering via {@code enter} and leaving via
+     * {@code leave}.
+     */
+    private static TransitionSystem<String, String, String> process(String name) {
+        TransitionSystem<String, String, String> ts = new TransitionSystem<>();
+        ts.addInitialState(name + "_out");
+        ts.addState(name + "_in");
+        ts.addTransitionFrom(name + "_out").action("enter").to(name + "_in");
+        ts.addTransitionFrom(name + "_in").action("leave").to(name + "_out");
+        ts.addToLabel(name + "_in", "crit_" + name);
+        return ts;
+    }
+
+    @Test
+    public void freeInterleavingOfTwo() {
+        TransitionSystem<Pair<String, String>, String, String> ts = fvm.interleave(process("a"), process("b"));
+        assertEquals(4, ts.getStates().size());
+        assertEquals(8, ts.getTransitions().size());
+        assertEquals(Set.of("crit_a", "crit_b"), ts.getLabel(new Pair<>("a_in", "b_in")));
+        assertEquals(Set.of("crit_a", "crit_b"), ts.getAtomicPropositions());
+    }
+
+    @Test
+    public void handshakeKeepsComponentsInStep() {
+        TransitionSystem<Pair<String, String>, String, String> ts
+                = fvm.interleave(process("a"), process("b"), Set.of("enter", "leave"));
+        assertEquals(Set.of(new Pair<>("a_out", "b_out"), new Pair<>("a_in", "b_in")), ts.getStates());
+        assertEquals(2, ts.getTransitions().size());
+    }
+
+    @Test
+    public void nAryEqualsNestedBinary() {
+        TransitionSystem<List<String>, String, String> flat
+                = fvm.interleave(List.of(process("a"), process("b"), process("c")), Set.of("leave"));
+        TransitionSystem<Pair<Pair<String, String>, String>, String, String> nested
+                = fvm.interleave(fvm.interleave(process("a"), process("b"), Set.of("leave")), process("c"), Set.of("leave"));
+
+        assertEquals(nested.getStates().size(), flat.getStates().size());
+        assertEquals(nested.getTransitions().size(), flat.getTransitions().size());
+        assertTrue(flat.getStates().contains(List.of("a_in", "b_in", "c_in")));
+        assertTrue(flat.getStates().contains(List.of("a_in", "b_out", "c_in")));
+        assertEquals(1, flat.getTransitions().stream().filter(t -> t.getAction().equals("leave")).count());
+    }
+
+}
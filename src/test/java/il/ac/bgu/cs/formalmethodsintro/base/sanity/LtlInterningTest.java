@@ -0,0 +1,80 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.and;
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.ap;
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.next;
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.not;
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.true_;
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.until;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.AP;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.And;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.Not;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.Until;
+
+public class LtlInterningTest {
+
+    @Test
+    public void factoriesShareNodes() {
+        LTL<String> f = until(and(ap("a"), not(ap("b"))), next(true_()));
+        LTL<String> g = until(and(ap("a"), not(ap("b"))), next(true_()));
+        assertSame(f, g);
+        assertTrue(f.isInterned());
+        assertSame(((Until<String>) f).getLeft(), ((Until<String>) g).getLeft());
+        assertNotEquals(f.getId(), ((Until<String>) f).getLeft().getId());
+    }
+
+    @Test
+    public void constructedFormulasAreEqualToInternedOnes() {
+        LTL<String> built = new Until<>(new And<>(new AP<>("a"), new Not<>(new AP<>("b"))), true_());
+        LTL<String> interned = until(and(ap("a"), not(ap("b"))), true_());
+        assertFalse(built.isInterned());
+        assertEquals(-1, built.getId());
+        assertEquals(built, interned);
+        assertEquals(interned, built);
+        assertEquals(built.hashCode(), interned.hashCode());
+        assertSame(interned, LTL.intern(built));
+
+        assertNotEquals(and(ap("a"), ap("b")), until(ap("a"), ap("b")));
+        assertNotEquals(and(ap("a"), ap("b")), and(ap("b"), ap("a")));
+        assertNotEquals(ap("a"), not(ap("a")));
+    }
+
+    @Test(timeout = 10000)
+    public void deepFormulasHashInConstantTime() {
+        LTL<String> f = ap("p");
+        Set<LTL<String>> all = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            f = i % 2 == 0 ? next(f) : until(ap("q"), f);
+            assertTrue(all.add(f));
+        }
+        Until<String> top = (Until<String>) f;
+        assertSame(f, until(ap("q"), top.getRight()));
+        assertTrue(all.contains(new Until<>(new AP<>("q"), top.getRight())));
+    }
+
+    @Test(timeout = 10000)
+    public void unusedFormulasLeaveThePool() throws InterruptedException {
+        WeakReference<LTL<String>> ref = new WeakReference<>(until(ap("dropped"), next(ap("soon"))));
+        while (ref.get() != null) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        LTL<String> again = until(ap("dropped"), next(ap("soon")));
+        assertTrue(again.isInterned());
+        assertSame(again, until(ap("dropped"), next(ap("soon"))));
+    }
+
+}
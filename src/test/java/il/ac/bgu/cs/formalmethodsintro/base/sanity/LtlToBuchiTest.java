@@ -0,0 +1,351 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.and;
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.next;
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.not;
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.true_;
+import static il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL.until;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Automaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.BuchiInclusion;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.BuchiReductions;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.AP;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.And;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LtlToBuchi;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.Next;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.Not;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.TRUE;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.Until;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
+
+/**
+ * Checks the LTL translation against the semantics of LTL on random
+ * ultimately periodic words.
+ */
+public class LtlToBuchiTest {
+
+    private final FvmFacade fvm = FvmFacade.get();
+
+    private static final List<String> APS = List.of("a", "b", "c");
+
+    private static LTL<String> randomFormula(Random rnd, int depth) {
+        if (depth == 0 || rnd.nextInt(5) == 0) {
+            return rnd.nextInt(8) == 0 ? true_() : new AP<>(APS.get(rnd.nextInt(APS.size())));
+        }
+        switch (rnd.nextInt(7)) {
+            case 0:
+            case 1:
+                return and(randomFormula(rnd, depth - 1), randomFormula(rnd, depth - 1));
+            case 2:
+                return not(randomFormula(rnd, depth - 1));
+            case 3:
+                return next(randomFormula(rnd, depth - 1));
+            case 4:
+                return until(randomFormula(rnd, depth - 1), randomFormula(rnd, depth - 1));
+            case 5:
+                return until(true_(), randomFormula(rnd, depth - 1)); // eventually
+            default:
+                return not(until(true_(), not(randomFormula(rnd, depth - 1)))); // always
+        }
+    }
+
+    private static void apsOf(LTL<String> f, Set<String> res) {
+        if (f instanceof AP) {
+            res.add(((AP<String>) f).getName());
+        } else if (f instanceof Not) {
+            apsOf(((Not<String>) f).getInner(), res);
+        } else if (f instanceof Next) {
+            apsOf(((Next<String>) f).getInner(), res);
+        } else if (f instanceof And) {
+            apsOf(((And<String>) f).getLeft(), res);
+            apsOf(((And<String>) f).getRight(), res);
+        } else if (f instanceof Until) {
+            apsOf(((Until<String>) f).getLeft(), res);
+            apsOf(((Until<String>) f).getRight(), res);
+        }
+    }
+
+    /**
+     * @return The truth of {@code f} at each position of the word
+     * {@code word[0..loop) word[loop..]^ω}.
+     */
+    private static boolean[] eval(LTL<String> f, List<Set<String>> word, int loop) {
+        int n = word.size();
+        boolean[] res = new boolean[n];
+        if (f instanceof TRUE) {
+            Arrays.fill(res, true);
+        } else if (f instanceof AP) {
+            for (int i = 0; i < n; i++) {
+                res[i] = word.get(i).contains(((AP<String>) f).getName());
+            }
+        } else if (f instanceof Not) {
+            boolean[] inner = eval(((Not<String>) f).getInner(), word, loop);
+            for (int i = 0; i < n; i++) {
+                res[i] = !inner[i];
+            }
+        } else if (f instanceof And) {
+            boolean[] l = eval(((And<String>) f).getLeft(), word, loop);
+            boolean[] r = eval(((And<String>) f).getRight(), word, loop);
+            for (int i = 0; i < n; i++) {
+                res[i] = l[i] && r[i];
+            }
+        } else if (f instanceof Next) {
+            boolean[] inner = eval(((Next<String>) f).getInner(), word, loop);
+            for (int i = 0; i < n; i++) {
+                res[i] = inner[i + 1 < n ? i + 1 : loop];
+            }
+        } else {
+            boolean[] l = eval(((Until<String>) f).getLeft(), word, loop);
+            boolean[] r = eval(((Until<String>) f).getRight(), word, loop);
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int i = n - 1; i >= 0; i--) {
+                    boolean v = r[i] || (l[i] && res[i + 1 < n ? i + 1 : loop]);
+                    changed |= v != res[i];
+                    res[i] = v;
+                }
+            }
+        }
+        return res;
+    }
+
+    private boolean accepts(Automaton<?, String> nba, List<Set<String>> word, int loop) {
+        TransitionSystem<Integer, String, String> ts = new TransitionSystem<>();
+        ts.addInitialState(0);
+        ts.addAction("step");
+        for (int i = 0; i < word.size(); i++) {
+            ts.addState(i);
+            ts.addToLabel(i, word.get(i));
+            ts.addTransition(new TSTransition<>(i, "step", i + 1 < word.size() ? i + 1 : loop));
+        }
+        return fvm.verifyAnOmegaRegularProperty(ts, nba) instanceof VerificationFailed;
+    }
+
+    @Test
+    public void translationsAgreeWithTheSemantics() {
+        Random rnd = new Random(23);
+        int satisfied = 0, violated = 0;
+        for (int round = 0; round < 400; round++) {
+            LTL<String> f = randomFormula(rnd, 4);
+            Set<String> aps = new HashSet<>();
+            apsOf(f, aps);
+            Automaton<?, String> gnba = fvm.GNBA2NBA(LtlToBuchi.translateToGnba(f));
+            Automaton<?, String> nba = fvm.LTL2NBA(f);
+
+            for (int w = 0; w < 12; w++) {
+                int n = 1 + rnd.nextInt(6);
+                int loop = rnd.nextInt(n);
+                List<Set<String>> word = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    Set<String> letter = new HashSet<>();
+                    for (String p : aps) {
+                        if (rnd.nextBoolean()) {
+                            letter.add(p);
+                        }
+                    }
+                    word.add(letter);
+                }
+                boolean expected = eval(f, word, loop)[0];
+                if (expected) {
+                    satisfied++;
+                } else {
+                    violated++;
+                }
+                String msg = f + " on " + word + " looping at " + loop;
+                assertEquals(msg, expected, accepts(gnba, word, loop));
+                assertEquals(msg, expected, accepts(nba, word, loop));
+            }
+        }
+        assertTrue(satisfied > 1000 && violated > 1000);
+    }
+
+    @Test
+    public void reductionsKeepAutomataSmall() {
+        AP<String> a = new AP<>("a");
+        LTL<String> infinitelyOften = not(until(true_(), not(until(true_(), a))));
+        assertTrue(fvm.LTL2NBA(infinitelyOften).getTransitions().size() <= 2);
+
+        // F G F a is G F a
+        assertEquals(fvm.LTL2NBA(infinitelyOften).getTransitions().size(),
+                fvm.LTL2NBA(until(true_(), infinitelyOften)).getTransitions().size());
+
+        // a contradiction has an empty automaton
+        assertTrue(fvm.LTL2NBA(and(until(true_(), a), not(until(true_(), a)))).getInitialStates().isEmpty());
+
+        // a U b needs two states at most
+        assertTrue(fvm.LTL2NBA(until(a, new AP<>("b"))).getTransitions().size() <= 2);
+    }
+
+    @Test
+    public void degeneralizationWithoutColorsAcceptsEverything() {
+        MultiColorAutomaton<String, String> aut = new MultiColorAutomaton<>();
+        aut.setInitial("q");
+        aut.addTransition("q", Set.of(), "q");
+        Automaton<?, String> nba = BuchiReductions.degeneralize(aut);
+        assertEquals(1, nba.getAcceptingStates().size());
+        assertTrue(accepts(nba, List.of(Set.of()), 0));
+    }
+
+    @Test
+    public void guardsMatchLettersAsCubes() {
+        MultiColorAutomaton<String, String> aut = new MultiColorAutomaton<>();
+        aut.setInitial("q");
+        aut.addTransition("q", aut.guardOf(Set.of("a"), Set.of("b")), "r");
+        aut.addTransition("q", Set.of("a"), "s");
+
+        assertEquals(Set.of("r", "s"), aut.nextStates("q", Set.of("a")));
+        assertEquals(Set.of("r"), aut.nextStates("q", aut.toLetter(Set.of("a", "c"))));
+        assertTrue(aut.nextStates("q", aut.toLetter(Set.of("a", "b"))).isEmpty());
+        assertEquals(null, aut.nextStates("q", Set.of("b")));
+
+        assertEquals(2, aut.getGuardedTransitions().get("q").size());
+        assertEquals(Set.of(Set.of("a")), aut.getTransitions().get("q").keySet());
+    }
+
+    @Test
+    public void equalityComparesLettersNotGuards() {
+        // a cube over [a, b]
+        MultiColorAutomaton<String, String> cube = new MultiColorAutomaton<>();
+        cube.addProposition("a");
+        cube.addProposition("b");
+        cube.setInitial("q");
+        cube.addTransition("q", cube.guardOf(Set.of("a"), Set.of()), "q");
+        // the letters it covers, over [a, b] and over [b, a]
+        MultiColorAutomaton<String, String> exact = new MultiColorAutomaton<>();
+        MultiColorAutomaton<String, String> reordered = new MultiColorAutomaton<>();
+        reordered.addProposition("b");
+        for (MultiColorAutomaton<String, String> aut : List.of(exact, reordered)) {
+            aut.setInitial("q");
+            aut.addTransition("q", Set.of("a"), "q");
+            aut.addTransition("q", Set.of("a", "b"), "q");
+        }
+
+        assertEquals(cube.getTransitions(), exact.getTransitions());
+        assertEquals(cube, exact);
+        assertEquals(exact, cube);
+        assertEquals(cube, reordered);
+        assertEquals(exact, reordered);
+        assertEquals(cube.hashCode(), exact.hashCode());
+
+        exact.addTransition("q", Set.of("b"), "q");
+        assertFalse(cube.equals(exact));
+        assertFalse(exact.equals(reordered));
+    }
+
+    @Test
+    public void manyPropositionsNeedFewTransitions() {
+        int n = 40;
+        LTL<String> all = true_();
+        Set<String> props = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            all = and(all, new AP<>("p" + i));
+            props.add("p" + i);
+        }
+        LTL<String> infinitelyOften = not(until(true_(), not(until(true_(), all))));
+        Automaton<?, String> nba = fvm.LTL2NBA(infinitelyOften);
+        int transitions = nba.getGuardedTransitions().values().stream().mapToInt(Map::size).sum();
+        assertTrue(transitions <= 4);
+
+        Set<String> missing = new HashSet<>(props);
+        missing.remove("p7");
+        missing.add("other");
+        assertTrue(accepts(nba, List.of(Set.of(), props), 0));
+        assertFalse(accepts(nba, List.of(props, missing), 1));
+    }
+
+    private List<Set<String>> randomWord(Random rnd, Set<String> aps, int n) {
+        List<Set<String>> word = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Set<String> letter = new HashSet<>();
+            for (String p : aps) {
+                if (rnd.nextBoolean()) {
+                    letter.add(p);
+                }
+            }
+            word.add(letter);
+        }
+        return word;
+    }
+
+    @Test
+    public void inclusionAgreesWithTheSemantics() {
+        Random rnd = new Random(5);
+        int included = 0, notIncluded = 0;
+        for (int round = 0; round < 150; round++) {
+            LTL<String> f = randomFormula(rnd, 3);
+            LTL<String> g = rnd.nextBoolean() ? randomFormula(rnd, 3) : until(true_(), f);
+            Set<String> aps = new HashSet<>();
+            apsOf(f, aps);
+            apsOf(g, aps);
+            Automaton<?, String> a = fvm.LTL2NBA(f);
+            Automaton<?, String> b = fvm.LTL2NBA(g);
+            VerificationResult<Set<String>> res = BuchiInclusion.checkInclusion(a, b);
+            if (res instanceof VerificationFailed) {
+                notIncluded++;
+                VerificationFailed<Set<String>> cex = (VerificationFailed<Set<String>>) res;
+                List<Set<String>> word = new ArrayList<>(cex.getPrefix());
+                word.addAll(cex.getCycle());
+                int loop = cex.getPrefix().size();
+                String msg = f + " in " + g + ", counterexample " + word + " looping at " + loop;
+                assertTrue(msg, eval(f, word, loop)[0]);
+                assertFalse(msg, eval(g, word, loop)[0]);
+            } else {
+                included++;
+                for (int w = 0; w < 10; w++) {
+                    int n = 1 + rnd.nextInt(5);
+                    int loop = rnd.nextInt(n);
+                    List<Set<String>> word = randomWord(rnd, aps, n);
+                    assertTrue(f + " in " + g + " on " + word, !eval(f, word, loop)[0] || eval(g, word, loop)[0]);
+                }
+            }
+        }
+        assertTrue(included > 20 && notIncluded > 20);
+    }
+
+    @Test
+    public void equivalentAutomataAreRecognized() throws Exception {
+        AP<String> a = new AP<>("a");
+        AP<String> b = new AP<>("b");
+        LTL<String> f = until(a, next(b));
+        assertTrue(fvm.LTL2NBA(f).isEquivalentTo(fvm.GNBA2NBA(LtlToBuchi.translateToGnba(f))));
+        assertTrue(fvm.LTL2NBA(f).isEquivalentTo(fvm.LTL2NBA(not(not(and(f, f))))));
+        assertFalse(fvm.LTL2NBA(f).isEquivalentTo(fvm.LTL2NBA(until(a, b))));
+
+        // explicit letters against a guard that leaves b free
+        Automaton<String, String> explicit = new Automaton<>();
+        explicit.addProposition("b");
+        explicit.setInitial("q");
+        explicit.setAccepting("q");
+        explicit.addTransition("q", Set.of("a"), "q");
+        LTL<String> alwaysA = not(until(true_(), not(a)));
+        assertFalse(explicit.isEquivalentTo(fvm.LTL2NBA(alwaysA)));
+        assertTrue(BuchiInclusion.checkInclusion(explicit, fvm.LTL2NBA(alwaysA)) instanceof VerificationSucceeded);
+        VerificationResult<Set<String>> res = BuchiInclusion.checkInclusion(fvm.LTL2NBA(alwaysA), explicit);
+        assertTrue(res instanceof VerificationFailed);
+        List<Set<String>> cex = new ArrayList<>(((VerificationFailed<Set<String>>) res).getPrefix());
+        cex.addAll(((VerificationFailed<Set<String>>) res).getCycle());
+        assertTrue(cex.contains(Set.of("a", "b")));
+    }
+
+}
@@ -0,0 +1,282 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Automaton;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.AcceptingCycles;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.EmptinessCheck;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ParallelCycleSearch;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ParallelCycleSearchResult;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ProductStateSpace;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.StateSpace;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
+
+/**
+ * Tests for the product with an automaton and the accepting cycle searches,
+ * against a brute-force check on the materialized product.
+ */
+public class OmegaRegularTest {
+
+    private final FvmFacade fvm = FvmFacade.get();
+
+    private static final List<Set<String>> LETTERS = List.of(Set.of(), Set.of("a"), Set.of("b"), Set.of("a", "b"));
+
+    private static TransitionSystem<Integer, String, String> randomTs(Random rnd, int n) {
+        TransitionSystem<Integer, String, String> ts = new TransitionSystem<>();
+        for (int s = 0; s < n; s++) {
+            ts.addState(s);
+            ts.addToLabel(s, LETTERS.get(rnd.nextInt(LETTERS.size())));
+        }
+        ts.addAtomicPropositions("a", "b");
+        ts.addInitialState(0);
+        if (rnd.nextBoolean()) {
+            ts.addInitialState(1);
+        }
+        ts.addAction("go");
+        for (int i = 0; i < n * 3 / 2; i++) {
+            ts.addTransition(new TSTransition<>(rnd.nextInt(n), "go", rnd.nextInt(n)));
+        }
+        return ts;
+    }
+
+    private static Automaton<Integer, String> randomAut(Random rnd, int n) {
+        Automaton<Integer, String> aut = new Automaton<>();
+        aut.setInitial(0);
+        for (int i = 0; i < n * 3; i++) {
+            aut.addTransition(rnd.nextInt(n), LETTERS.get(rnd.nextInt(LETTERS.size())), rnd.nextInt(n));
+        }
+        aut.setAccepting(rnd.nextInt(n));
+        return aut;
+    }
+
+    /**
+     * @return Whether some reachable accepting state of {@code ts} can reach
+     * itself in one or more steps.
+     */
+    private static <S> boolean hasAcceptingCycle(TransitionSystem<S, ?, ?> ts, Set<S> accepting) {
+        for (S s : ts.getStates()) {
+            if (!accepting.contains(s)) {
+                continue;
+            }
+            Set<S> seen = new HashSet<>();
+            List<S> todo = new ArrayList<>(ts.getSuccessors(s));
+            while (!todo.isEmpty()) {
+                S t = todo.remove(todo.size() - 1);
+                if (t.equals(s)) {
+                    return true;
+                }
+                if (seen.add(t)) {
+                    todo.addAll(ts.getSuccessors(t));
+                }
+            }
+        }
+        return false;
+    }
+
+    private static <S> void assertLasso(StateSpace<S, ?, ?> space, Set<S> accepting, VerificationFailed<S> lasso) {
+        List<S> path = new ArrayList<>(lasso.getPrefix());
+        path.addAll(lasso.getCycle());
+        path.add(lasso.getCycle().get(0));
+        assertTrue(space.initialStates().contains(path.get(0)));
+        for (int i = 0; i + 1 < path.size(); i++) {
+            assertTrue(path.get(i) + " -> " + path.get(i + 1), space.successorStates(path.get(i)).contains(path.get(i + 1)));
+        }
+        assertFalse(Collections.disjoint(lasso.getCycle(), accepting));
+    }
+
+    @Test
+    public void searchesAgreeWithBruteForce() {
+        Random rnd = new Random(17);
+        int violated = 0;
+        for (int round = 0; round < 300; round++) {
+            TransitionSystem<Integer, String, String> ts = randomTs(rnd, 2 + rnd.nextInt(12));
+            Automaton<Integer, String> aut = randomAut(rnd, 1 + rnd.nextInt(4));
+            TransitionSystem<Pair<Integer, Integer>, String, Integer> product = fvm.product(ts, aut);
+            Set<Pair<Integer, Integer>> accepting = new HashSet<>();
+            for (Pair<Integer, Integer> s : product.getStates()) {
+                if (aut.getAcceptingStates().contains(s.second)) {
+                    accepting.add(s);
+                }
+            }
+            boolean expected = hasAcceptingCycle(product, accepting);
+            violated += expected ? 1 : 0;
+
+            StateSpace<Pair<Integer, Integer>, String, Integer> lazy = new ProductStateSpace<>(fvm.stateSpaceOf(ts), aut);
+            for (EmptinessCheck algorithm : EmptinessCheck.values()) {
+                VerificationResult<Pair<Integer, Integer>> res = AcceptingCycles.find(lazy, accepting::contains, algorithm);
+                assertEquals(algorithm + " on round " + round, expected, res instanceof VerificationFailed);
+                if (expected) {
+                    assertLasso(lazy, accepting, (VerificationFailed<Pair<Integer, Integer>>) res);
+                }
+
+                VerificationResult<Integer> onTs = fvm.verifyAnOmegaRegularProperty(fvm.stateSpaceOf(ts), aut, algorithm);
+                assertEquals(expected, onTs instanceof VerificationFailed);
+                if (expected) {
+                    assertLasso(fvm.stateSpaceOf(ts), new HashSet<>(ts.getStates()), (VerificationFailed<Integer>) onTs);
+                }
+            }
+
+            ParallelCycleSearchResult<Pair<Integer, Integer>> parallel
+                    = new ParallelCycleSearch<>(lazy, accepting::contains).parallelism(4).seed(round).search();
+            assertEquals("parallel on round " + round, expected, parallel.getResult() instanceof VerificationFailed);
+            if (expected) {
+                assertLasso(lazy, accepting, (VerificationFailed<Pair<Integer, Integer>>) parallel.getResult());
+            }
+        }
+        assertTrue(violated > 30 && violated < 270);
+    }
+
+    /**
+     * A state space counting up to a bound and then looping back to zero, too
+     * deep for a recursive search.
+     */
+    private static final class Ring implements StateSpace<Integer, String, String> {
+
+        private final int size;
+
+        Ring(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Set<Integer> initialStates() {
+            return Set.of(0);
+        }
+
+        @Override
+        public List<TSTransition<Integer, String>> successors(Integer s) {
+            return List.of(new TSTransition<>(s, "inc", (s + 1) % size));
+        }
+
+        @Override
+        public Set<String> label(Integer s) {
+            return s == size / 2 ? Set.of("half") : Set.of();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void deepCyclesAreFoundWithoutRecursion() {
+        // "half" holds infinitely often
+        Automaton<String, String> aut = new Automaton<>();
+        aut.setInitial("wait");
+        aut.addTransition("wait", Set.of(), "wait");
+        aut.addTransition("wait", Set.of("half"), "seen");
+        aut.addTransition("seen", Set.of(), "wait");
+        aut.setAccepting("seen");
+
+        int size = 200_000;
+        for (EmptinessCheck algorithm : EmptinessCheck.values()) {
+            VerificationResult<Integer> res = fvm.verifyAnOmegaRegularProperty(new Ring(size), aut, algorithm);
+            assertTrue(res instanceof VerificationFailed);
+            VerificationFailed<Integer> lasso = (VerificationFailed<Integer>) res;
+            assertEquals(size, lasso.getCycle().size());
+            assertTrue(lasso.getPrefix().size() < size);
+        }
+
+        ParallelCycleSearchResult<Integer> parallel = fvm.verifyAnOmegaRegularProperty(new Ring(size), aut, 4);
+        assertTrue(parallel.getResult() instanceof VerificationFailed);
+        assertEquals(size, ((VerificationFailed<Integer>) parallel.getResult()).getCycle().size());
+        assertEquals(4, parallel.getWorkers().size());
+    }
+
+    @Test
+    public void safeSystemsSucceed() {
+        // "a" never holds, but the automaton needs one "a" to accept
+        TransitionSystem<Integer, String, String> ts = new TransitionSystem<>();
+        ts.addInitialState(0);
+        ts.addAction("go");
+        ts.addTransition(new TSTransition<>(0, "go", 1));
+        ts.addTransition(new TSTransition<>(1, "go", 0));
+        ts.addAtomicProposition("a");
+        Automaton<String, String> aut = new Automaton<>();
+        aut.setInitial("q0");
+        aut.addTransition("q0", Set.of(), "q0");
+        aut.addTransition("q0", Set.of("a"), "q1");
+        aut.addTransition("q1", Set.of(), "q1");
+        aut.addTransition("q1", Set.of("a"), "q1");
+        aut.setAccepting("q1");
+
+        assertTrue(fvm.verifyAnOmegaRegularProperty(ts, aut) instanceof VerificationSucceeded);
+        ts.addToLabel(1, "a");
+        VerificationResult<Integer> res = fvm.verifyAnOmegaRegularProperty(ts, aut);
+        assertTrue(res instanceof VerificationFailed);
+    }
+
+    /**
+     * A grid of counters that only go up, from (0, 0); "goal" holds only at
+     * the far corner. When {@code cyclic}, the counters wrap around.
+     */
+    private static final class Grid implements StateSpace<Integer, String, String> {
+
+        private final int n;
+        private final boolean cyclic;
+
+        Grid(int n, boolean cyclic) {
+            this.n = n;
+            this.cyclic = cyclic;
+        }
+
+        @Override
+        public Set<Integer> initialStates() {
+            return Set.of(0);
+        }
+
+        @Override
+        public List<TSTransition<Integer, String>> successors(Integer s) {
+            int x = s / n, y = s % n;
+            List<TSTransition<Integer, String>> res = new ArrayList<>();
+            if (x + 1 < n || cyclic) {
+                res.add(new TSTransition<>(s, "x", (x + 1) % n * n + y));
+            }
+            if (y + 1 < n || cyclic) {
+                res.add(new TSTransition<>(s, "y", x * n + (y + 1) % n));
+            }
+            return res;
+        }
+
+        @Override
+        public Set<String> label(Integer s) {
+            return s == n * n - 1 ? Set.of("goal") : Set.of();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void parallelSearchReportsEveryWorker() {
+        // "goal" holds infinitely often
+        Automaton<String, String> aut = new Automaton<>();
+        aut.setInitial("wait");
+        aut.addTransition("wait", Set.of(), "wait");
+        aut.addTransition("wait", Set.of("goal"), "seen");
+        aut.addTransition("seen", Set.of(), "wait");
+        aut.addTransition("seen", Set.of("goal"), "seen");
+        aut.setAccepting("seen");
+
+        ParallelCycleSearchResult<Integer> safe = fvm.verifyAnOmegaRegularProperty(new Grid(300, false), aut, 4);
+        assertTrue(safe.toString(), safe.getResult() instanceof VerificationSucceeded);
+        assertEquals(4, safe.getWorkers().size());
+        assertTrue(safe.getWorkers().stream().allMatch(w -> w.getStates() > 0));
+        assertTrue(safe.getFinishedStates() >= 300 * 300);
+
+        ParallelCycleSearchResult<Integer> unsafe = fvm.verifyAnOmegaRegularProperty(new Grid(300, true), aut, 4);
+        assertTrue(unsafe.getResult() instanceof VerificationFailed);
+        assertLasso(new Grid(300, true), Set.of(300 * 300 - 1), (VerificationFailed<Integer>) unsafe.getResult());
+    }
+
+}
@@ -0,0 +1,55 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.makeLinearTs;
+import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.makeProducerConsumer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ParallelExplorationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ParallelExplorer;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * The parallel explorer must build what the sequential builders build.
+ */
+public class ParallelExplorerTest {
+
+    private final FvmFacade fvm = FvmFacade.get();
+
+    @Test(timeout = 20000)
+    public void channelSystemMatchesSequential() {
+        ChannelSystem<String, String> cs = makeProducerConsumer(40);
+        TransitionSystem<Pair<List<String>, Map<String, Object>>, String, String> expected
+                = fvm.transitionSystemFromChannelSystem(cs);
+        TransitionSystem<Pair<List<String>, Map<String, Object>>, String, String> actual
+                = fvm.transitionSystemFromChannelSystem(cs, 4);
+
+        assertEquals(expected.getInitialStates(), actual.getInitialStates());
+        assertEquals(expected.getStates(), actual.getStates());
+        assertEquals(expected.getTransitions(), actual.getTransitions());
+        assertEquals(expected.getLabelingFunction(), actual.getLabelingFunction());
+    }
+
+    @Test(timeout = 20000)
+    public void longChainAndReport() {
+        ParallelExplorationResult<Integer, String, String> res
+                = new ParallelExplorer<>(fvm.stateSpaceOf(makeLinearTs(100_000)))
+                        .parallelism(3)
+                        .batchSize(1)
+                        .buildTransitionSystem(false)
+                        .explore();
+
+        assertEquals(100_000, res.getReachable().size());
+        assertNull(res.getTransitionSystem());
+        assertEquals(100_000, res.getWorkers().stream().mapToLong(w -> w.getStates()).sum());
+    }
+
+}
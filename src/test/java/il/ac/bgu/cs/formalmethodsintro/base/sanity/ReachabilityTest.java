@@ -0,0 +1,147 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.makeBranchingTs;
+import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.makeLinearTs;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.BitstateStateStore;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.ExactStateStore;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.HashCompactionStateStore;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.Reachability;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.ReachabilityResult;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.SearchOrder;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.StateStoreKind;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.StateStoreStatistics;
+import il.ac.bgu.cs.formalmethodsintro.base.reachability.VisitedStateStore;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.StateSpace;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.StateSpaces;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+
+/**
+ * Tests for the worklist {@link Reachability} engine.
+ */
+public class ReachabilityTest {
+
+    @Test(timeout = 10000)
+    public void longLinearSystem() {
+        TransitionSystem<Integer, String, String> ts = makeLinearTs(100_000);
+        assertEquals(100_000, FvmFacade.get().reach(ts).size());
+    }
+
+    @Test(timeout = 2000)
+    public void shortestWitnessAndEarlyExit() {
+        TransitionSystem<String, String, String> ts = makeBranchingTs(8, 3);
+        ReachabilityResult<String> res = new Reachability<String>(ts::getSuccessors)
+                .stopWhen(s -> s.equals("s_2_7"))
+                .explore(ts.getInitialStates());
+
+        assertTrue(res.isStoppedEarly());
+        assertEquals(List.of("s1", "s2", "s3", "s4", "s5", "s_2_6", "s_2_7"), res.pathTo("s_2_7"));
+        assertFalse(res.getReachable().contains("s_2_8"));
+    }
+
+    @Test(timeout = 2000)
+    public void depthLimit() {
+        TransitionSystem<Integer, String, String> ts = makeLinearTs(10);
+        for (SearchOrder order : SearchOrder.values()) {
+            assertEquals(Set.of(1, 2, 3), new Reachability<Integer>(ts::getSuccessors)
+                    .order(order).maxDepth(2).trackPaths(false)
+                    .explore(ts.getInitialStates()).getReachable());
+        }
+    }
+
+    @Test(timeout = 2000)
+    public void depthLimitWithLongBranchExploredFirst() {
+        // a -> s -> t -> u is within depth 3, but DFS first reaches t by a -> l1 -> l2 -> t
+        Map<String, List<String>> succ = Map.of("a", List.of("s", "l1"), "l1", List.of("l2"),
+                "l2", List.of("t"), "s", List.of("t"), "t", List.of("u"), "u", List.of());
+        for (SearchOrder order : SearchOrder.values()) {
+            for (boolean track : new boolean[]{true, false}) {
+                ReachabilityResult<String> res = new Reachability<String>(succ::get)
+                        .order(order).maxDepth(3).trackPaths(track).explore(List.of("a"));
+                assertEquals(order + "/" + track, Set.of("a", "s", "l1", "l2", "t", "u"), res.getReachable());
+                if (track) {
+                    assertEquals(List.of("a", "s", "t", "u"), res.pathTo("u"));
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 2000)
+    public void visitedStores() {
+        for (StateStoreKind kind : StateStoreKind.values()) {
+            VisitedStateStore<String> store = kind.create();
+            for (int i = 0; i < 5000; i++) {
+                assertTrue(kind.name(), store.add("s" + i));
+            }
+            assertFalse(kind.name(), store.add("s17"));
+            assertTrue(kind.name(), store.contains("s4999"));
+            assertEquals(kind.name(), 5000, store.size());
+        }
+    }
+
+    /** States 0..n-1, each leading to i+1 and 2i+1 (when below n). */
+    private static StateSpace<Integer, String, String> counterSpace(int n) {
+        return new StateSpace<Integer, String, String>() {
+            @Override
+            public Set<Integer> initialStates() {
+                return Set.of(0);
+            }
+
+            @Override
+            public List<TSTransition<Integer, String>> successors(Integer s) {
+                List<TSTransition<Integer, String>> res = new ArrayList<>();
+                if (s + 1 < n) {
+                    res.add(new TSTransition<>(s, "inc", s + 1));
+                }
+                if (2 * s + 1 < n) {
+                    res.add(new TSTransition<>(s, "dbl", 2 * s + 1));
+                }
+                return res;
+            }
+
+            @Override
+            public Set<String> label(Integer s) {
+                return Set.of();
+            }
+        };
+    }
+
+    @Test(timeout = 10000)
+    public void lossyStoresTradeStatesForMemory() {
+        int n = 50_000;
+        StateSpace<Integer, String, String> space = counterSpace(n);
+        FvmFacade fvm = FvmFacade.get();
+
+        StateStoreStatistics exact = StateSpaces.count(space, new ExactStateStore<>());
+        StateStoreStatistics compacted = StateSpaces.count(space, new HashCompactionStateStore<>());
+        // 2^12 bits (512 bytes) cannot tell 50000 states apart
+        StateStoreStatistics bitstate = StateSpaces.count(space, new BitstateStateStore<>(12, 3));
+
+        assertEquals(n, exact.getSize());
+        assertEquals(n, compacted.getSize());
+        assertEquals(4096, bitstate.getCapacity());
+        assertTrue(bitstate.toString(), bitstate.getSize() < n);
+        assertTrue(bitstate.toString(), bitstate.getSize() > 0);
+
+        StateStoreKind saved = fvm.getStateStoreKind();
+        try {
+            fvm.setStateStoreKind(StateStoreKind.HASH_COMPACTION);
+            assertEquals(n, fvm.countStates(space).getSize());
+        } finally {
+            fvm.setStateStoreKind(saved);
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.SlotCompiler;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.SlotLayout;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedCondDef;
+
+/**
+ * The method handle backend must agree with the parser based definitions.
+ */
+public class SlotCompilerTest {
+
+    private final SlotLayout layout = SlotLayout.of("x", "y", "z");
+    private final SlotCompiler sut = new SlotCompiler(layout);
+
+    private static Map<String, Object> eval() {
+        Map<String, Object> eval = new HashMap<>();
+        eval.put("x", 7);
+        eval.put("y", -3);
+        eval.put("z", 0);
+        return eval;
+    }
+
+    @Test
+    public void conditions() {
+        ParserBasedCondDef parsed = new ParserBasedCondDef();
+        for (String cond : List.of("", "x > y", "x % 3 == 1 && !(y >= 0)", "(x ^ 2) == 5 || w != 0",
+                "-x + 2 * y / 3 <= x - y", "false || x == 7")) {
+            assertEquals(cond, parsed.evaluate(eval(), cond),
+                    sut.compileCondition(cond).evaluate(layout.encode(eval())));
+        }
+        assertNull(sut.compileCondition("size(C) > 0"));
+    }
+
+    @Test
+    public void actions() {
+        ParserBasedActDef parsed = new ParserBasedActDef();
+        for (String act : List.of("", "skip", "x := x + 1", "atomic{x := y ; y := x ; z := x - y}",
+                "z := y % 5")) {
+            int[] before = layout.encode(eval());
+            assertArrayEquals(act, layout.encode(parsed.effect(eval(), act)),
+                    sut.compileAction(act).effect(before));
+            assertArrayEquals(layout.encode(eval()), before);
+        }
+        assertNull(sut.compileAction("C!x"));
+        assertNull(sut.compileAction("w := 1"));
+    }
+
+}
@@ -0,0 +1,65 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.makeProducerConsumer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.PackedState;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.StateLayout;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Packed states must round-trip to the facade's {@code Pair}/{@code Map}
+ * states, and keep distinct states distinct.
+ */
+public class StateLayoutTest {
+
+    @Test
+    public void channelSystemRoundTrip() {
+        ChannelSystem<String, String> cs = makeProducerConsumer(4);
+        StateLayout<String> layout = StateLayout.forChannelSystem(cs);
+        assertEquals(List.of("sum", "x", "y"), layout.getVariables());
+        assertEquals(List.of("C"), layout.getChannels());
+
+        Set<Pair<List<String>, Map<String, Object>>> states
+                = FvmFacade.get().transitionSystemFromChannelSystem(cs).getStates();
+        assertTrue(states.size() > 10);
+        Set<PackedState> packed = new HashSet<>();
+        for (Pair<List<String>, Map<String, Object>> s : states) {
+            PackedState p = layout.packChannelSystemState(s);
+            packed.add(p);
+            assertEquals(s, layout.toChannelSystemState(p));
+        }
+        assertEquals(states.size(), packed.size());
+    }
+
+    @Test
+    public void unsetIsNotZero() {
+        StateLayout<String> layout = StateLayout.forChannelSystem(makeProducerConsumer(1));
+        Map<String, Object> eval = new HashMap<>();
+        PackedState unset = layout.pack(List.of("p", "r"), eval);
+        eval.put("y", 0);
+        PackedState zero = layout.pack(List.of("p", "r"), eval);
+        assertNotEquals(unset, zero);
+        assertEquals(null, layout.getValue(unset, "y"));
+        assertEquals(Integer.valueOf(0), layout.getValue(zero, "y"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownVariable() {
+        StateLayout<String> layout = StateLayout.forChannelSystem(makeProducerConsumer(1));
+        layout.pack(List.of("p", "r"), Map.of("nope", 1));
+    }
+
+}
@@ -0,0 +1,121 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.makeProducerConsumer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.Circuit;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.ChannelSystemStateSpace;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.StateLayout;
+import il.ac.bgu.cs.formalmethodsintro.base.statespace.StateSpaces;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
+
+/**
+ * Lazy state spaces must generate what the facade builders build.
+ */
+public class StateSpaceTest {
+
+    private final FvmFacade fvm = FvmFacade.get();
+
+    @Test
+    public void channelSystemMatchesBuilder() {
+        ChannelSystem<String, String> cs = makeProducerConsumer(3);
+        TransitionSystem<Pair<List<String>, Map<String, Object>>, String, String> expected
+                = fvm.transitionSystemFromChannelSystem(cs);
+        TransitionSystem<Pair<List<String>, Map<String, Object>>, String, String> actual
+                = StateSpaces.materialize(fvm.stateSpaceOf(cs));
+
+        assertEquals(expected.getInitialStates(), actual.getInitialStates());
+        assertEquals(expected.getStates(), actual.getStates());
+        assertEquals(expected.getTransitions(), actual.getTransitions());
+        assertEquals(expected.getLabelingFunction(), actual.getLabelingFunction());
+    }
+
+    @Test
+    public void packedChannelSystem() {
+        ChannelSystem<String, String> cs = makeProducerConsumer(5);
+        ChannelSystemStateSpace<String, String> space = fvm.stateSpaceOf(cs);
+        assertEquals(fvm.reach(space).size(),
+                fvm.reach(space.packed(StateLayout.forChannelSystem(cs))).size());
+    }
+
+    @Test(timeout = 2000)
+    public void invariantStopsAtFirstViolation() {
+        ChannelSystem<String, String> cs = makeProducerConsumer(Integer.MAX_VALUE);
+        VerificationResult<Pair<List<String>, Map<String, Object>>> res
+                = fvm.checkInvariant(fvm.stateSpaceOf(cs), l -> !l.contains("sum = 3"));
+
+        assertTrue(res instanceof VerificationFailed);
+        List<Pair<List<String>, Map<String, Object>>> prefix
+                = ((VerificationFailed<Pair<List<String>, Map<String, Object>>>) res).getPrefix();
+        assertEquals(Integer.valueOf(0), prefix.get(0).getSecond().get("sum"));
+        assertEquals(Integer.valueOf(3), prefix.get(prefix.size() - 1).getSecond().get("sum"));
+    }
+
+    @Test
+    public void invariantHolds() {
+        ChannelSystem<String, String> cs = makeProducerConsumer(3);
+        assertTrue(fvm.checkInvariant(fvm.stateSpaceOf(cs), l -> !l.contains("x = 4"))
+                instanceof VerificationSucceeded);
+    }
+
+    @Test
+    public void circuitMatchesBuilder() {
+        // r' = x || r, y = x && r
+        Circuit c = new Circuit() {
+            @Override
+            public Set<String> getInputPortNames() {
+                return Set.of("x");
+            }
+
+            @Override
+            public Set<String> getRegisterNames() {
+                return Set.of("r");
+            }
+
+            @Override
+            public Set<String> getOutputPortNames() {
+                return Set.of("y");
+            }
+
+            @Override
+            public Map<String, Boolean> updateRegisters(Map<String, Boolean> inputs, Map<String, Boolean> registers) {
+                Map<String, Boolean> res = new HashMap<>();
+                res.put("r", inputs.get("x") || registers.get("r"));
+                return res;
+            }
+
+            @Override
+            public Map<String, Boolean> computeOutputs(Map<String, Boolean> inputs, Map<String, Boolean> registers) {
+                Map<String, Boolean> res = new HashMap<>();
+                res.put("y", inputs.get("x") && registers.get("r"));
+                return res;
+            }
+        };
+
+        TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> expected
+                = fvm.transitionSystemFromCircuit(c);
+        TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> actual
+                = StateSpaces.materialize(fvm.stateSpaceOf(c));
+
+        assertEquals(expected.getStates(), actual.getStates());
+        assertEquals(expected.getTransitions(), actual.getTransitions());
+        for (Pair<Map<String, Boolean>, Map<String, Boolean>> s : expected.getStates()) {
+            assertEquals(expected.getLabel(s), actual.getLabel(s));
+        }
+    }
+
+}
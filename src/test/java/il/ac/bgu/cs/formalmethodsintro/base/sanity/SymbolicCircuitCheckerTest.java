@@ -0,0 +1,215 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.bdd.Bdd;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.AtomicLogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CircuitExplorer;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CircuitImp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.CompoundLogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.LogicalExp.LogicalOp;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.SymbolicCircuitChecker;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
+
+/**
+ * Tests for the BDD package and symbolic circuit checking, against the
+ * explicit-state circuit transition system.
+ */
+public class SymbolicCircuitCheckerTest {
+
+    private static boolean eval(Bdd bdd, int f, int assignment) {
+        while (f > Bdd.TRUE) {
+            f = (assignment & (1 << bdd.var(f))) != 0 ? bdd.high(f) : bdd.low(f);
+        }
+        return f == Bdd.TRUE;
+    }
+
+    private static int randomFunction(Bdd bdd, Random rnd, int depth) {
+        if (depth == 0) {
+            int v = bdd.ithVar(rnd.nextInt(bdd.getVarCount()));
+            return rnd.nextBoolean() ? v : bdd.not(v);
+        }
+        int l = bdd.ref(randomFunction(bdd, rnd, depth - 1));
+        int r = bdd.ref(randomFunction(bdd, rnd, depth - 1));
+        int res = rnd.nextBoolean() ? bdd.and(l, r) : rnd.nextBoolean() ? bdd.or(l, r) : bdd.xor(l, r);
+        bdd.deref(l);
+        bdd.deref(r);
+        return res;
+    }
+
+    @Test
+    public void bddOperationsMatchTruthTables() {
+        Random rnd = new Random(7);
+        Bdd bdd = new Bdd(6);
+        for (int round = 0; round < 50; round++) {
+            int f = bdd.ref(randomFunction(bdd, rnd, 3));
+            int g = bdd.ref(randomFunction(bdd, rnd, 3));
+            int h = bdd.ref(randomFunction(bdd, rnd, 3));
+            int ite = bdd.ref(bdd.ite(f, g, h));
+            int ex = bdd.ref(bdd.exists(f, bdd.cube(1, 4)));
+            int rp = bdd.ref(bdd.relProd(f, g, bdd.cube(0, 2, 5)));
+            int[] swap = {1, 0, -1, -1, -1, -1};
+            int ren = bdd.ref(bdd.replace(f, swap));
+            for (int a = 0; a < 64; a++) {
+                assertEquals(eval(bdd, f, a) ? eval(bdd, g, a) : eval(bdd, h, a), eval(bdd, ite, a));
+                boolean e = false, p = false;
+                for (int q = 0; q < 64; q++) {
+                    if ((q & ~((1 << 1) | (1 << 4))) == (a & ~((1 << 1) | (1 << 4)))) {
+                        e |= eval(bdd, f, q);
+                    }
+                    if ((q & ~((1 << 0) | (1 << 2) | (1 << 5))) == (a & ~((1 << 0) | (1 << 2) | (1 << 5)))) {
+                        p |= eval(bdd, f, q) && eval(bdd, g, q);
+                    }
+                }
+                assertEquals(e, eval(bdd, ex, a));
+                assertEquals(p, eval(bdd, rp, a));
+                int swapped = (a & ~3) | ((a & 1) << 1) | ((a >> 1) & 1);
+                assertEquals(eval(bdd, f, swapped), eval(bdd, ren, a));
+            }
+            bdd.gc();
+            for (int a = 0; a < 64; a++) {
+                assertEquals(eval(bdd, f, a) ? eval(bdd, g, a) : eval(bdd, h, a), eval(bdd, ite, a));
+            }
+            for (int n : new int[]{f, g, h, ite, ex, rp, ren}) {
+                bdd.deref(n);
+            }
+        }
+    }
+
+    @Test
+    public void reorderingKeepsFunctions() {
+        Random rnd = new Random(11);
+        Bdd bdd = new Bdd(6);
+        int f = bdd.ref(randomFunction(bdd, rnd, 4));
+        boolean[] table = new boolean[64];
+        for (int a = 0; a < 64; a++) {
+            table[a] = eval(bdd, f, a);
+        }
+        f = bdd.reorder(new int[]{5, 3, 1, 0, 2, 4}, f)[0];
+        f = bdd.sift(new int[][]{{0, 1}}, f)[0];
+        for (int a = 0; a < 64; a++) {
+            assertEquals(table[a], eval(bdd, f, a));
+        }
+        assertTrue(bdd.getReorderCount() >= 1);
+    }
+
+    private static LogicalExp randomExp(Random rnd, String[] names, int depth) {
+        LogicalOp op = LogicalOp.values()[rnd.nextInt(4)];
+        if (depth == 0) {
+            return new AtomicLogicalExp(names[rnd.nextInt(names.length)], op, names[rnd.nextInt(names.length)]);
+        }
+        return new CompoundLogicalExp(randomExp(rnd, names, depth - 1), op, randomExp(rnd, names, depth - 1));
+    }
+
+    private static CircuitImp randomCircuit(Random rnd) {
+        Set<String> in = Set.of("x", "y");
+        Set<String> regs = Set.of("r0", "r1", "r2", "r3");
+        Set<String> outs = Set.of("o");
+        String[] names = {"x", "y", "r0", "r1", "r2", "r3"};
+        CircuitImp c = new CircuitImp(regs, in, outs);
+        for (String r : regs) {
+            if (!r.equals("r3") || rnd.nextBoolean()) {
+                c.addRule(new Pair<>(r, randomExp(rnd, names, 1)));
+            }
+        }
+        c.addRule(new Pair<>("o", randomExp(rnd, names, 1)));
+        return c;
+    }
+
+    @Test
+    public void agreesWithExplicitExploration() {
+        Random rnd = new Random(3);
+        LogicalExp inv = new CompoundLogicalExp(new AtomicLogicalExp("r1", LogicalOp.and, "r2"), LogicalOp.not, null);
+        for (int round = 0; round < 30; round++) {
+            CircuitImp c = randomCircuit(rnd);
+            TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> ts
+                    = FvmFacade.get().transitionSystemFromCircuit(c);
+            SymbolicCircuitChecker checker = new SymbolicCircuitChecker(c);
+            assertEquals(new CircuitExplorer(c).reachableStates().length, checker.reachableStateCount(), 0);
+            assertEquals(ts.getStates().size(), checker.reachableStateCount(), 0);
+
+            VerificationResult<Pair<Map<String, Boolean>, Map<String, Boolean>>> explicit = FvmFacade.get()
+                    .checkInvariant(FvmFacade.get().stateSpaceOf(ts), l -> !(l.contains("r1") && l.contains("r2")));
+            VerificationResult<Pair<Map<String, Boolean>, Map<String, Boolean>>> symbolic = checker.checkInvariant(inv);
+            assertEquals(explicit.getClass(), symbolic.getClass());
+            if (symbolic instanceof VerificationFailed) {
+                List<Pair<Map<String, Boolean>, Map<String, Boolean>>> prefix
+                        = ((VerificationFailed<Pair<Map<String, Boolean>, Map<String, Boolean>>>) symbolic).getPrefix();
+                assertEquals(((VerificationFailed<?>) explicit).getPrefix().size(), prefix.size());
+                assertTrue(ts.getInitialStates().contains(prefix.get(0)));
+                for (int i = 0; i + 1 < prefix.size(); i++) {
+                    assertTrue(ts.getSuccessors(prefix.get(i)).contains(prefix.get(i + 1)));
+                }
+                Set<Object> last = ts.getLabel(prefix.get(prefix.size() - 1));
+                assertTrue(last.contains("r1") && last.contains("r2"));
+            }
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void wideShiftRegister() {
+        // 48 registers: r0' = x, r(i+1)' = r(i). Every register valuation is
+        // reachable, r47 first becomes true after 48 steps.
+        int n = 48;
+        Set<String> regs = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            regs.add("r" + i);
+        }
+        CircuitImp c = new CircuitImp(regs, Set.of("x"), Set.of("o"));
+        c.addRule(new Pair<>("r0", new AtomicLogicalExp("x", LogicalOp.or, "x")));
+        for (int i = 1; i < n; i++) {
+            c.addRule(new Pair<>("r" + i, new AtomicLogicalExp("r" + (i - 1), LogicalOp.and, "r" + (i - 1))));
+        }
+        c.addRule(new Pair<>("o", new AtomicLogicalExp("r" + (n - 2), LogicalOp.and, "r" + (n - 1))));
+
+        SymbolicCircuitChecker checker = new SymbolicCircuitChecker(c);
+        assertEquals(Math.pow(2, n + 1), checker.reachableStateCount(), 0);
+        assertEquals(n, checker.getDiameter());
+        Map<String, Boolean> all = new HashMap<>();
+        for (String r : regs) {
+            all.put(r, true);
+        }
+        assertTrue(checker.isReachable(all));
+
+        VerificationResult<Pair<Map<String, Boolean>, Map<String, Boolean>>> res = FvmFacade.get()
+                .verifyCircuitInvariant(c, new AtomicLogicalExp("o", LogicalOp.not, null));
+        assertTrue(res instanceof VerificationFailed);
+        List<Pair<Map<String, Boolean>, Map<String, Boolean>>> prefix
+                = ((VerificationFailed<Pair<Map<String, Boolean>, Map<String, Boolean>>>) res).getPrefix();
+        assertEquals(n + 1, prefix.size());
+        Map<String, Boolean> lastRegs = prefix.get(n).second;
+        assertTrue(lastRegs.get("r" + (n - 1)) && lastRegs.get("r" + (n - 2)));
+
+        assertTrue(FvmFacade.get().verifyCircuitInvariant(c, new AtomicLogicalExp("x", LogicalOp.or, "r0"))
+                instanceof VerificationFailed);
+    }
+
+    @Test
+    public void invariantThatHolds() {
+        // r' = x and not r, p' = r: r is never true twice in a row, so r and p
+        // never hold together
+        CircuitImp c = new CircuitImp(Set.of("r", "p"), Set.of("x"), Set.of());
+        c.addRule(new Pair<>("r", new CompoundLogicalExp(new AtomicLogicalExp("x", LogicalOp.or, "x"), LogicalOp.and,
+                new AtomicLogicalExp("r", LogicalOp.not, null))));
+        c.addRule(new Pair<>("p", new AtomicLogicalExp("r", LogicalOp.or, "r")));
+        LogicalExp inv = new CompoundLogicalExp(new AtomicLogicalExp("r", LogicalOp.and, "p"), LogicalOp.not, null);
+        assertTrue(FvmFacade.get().verifyCircuitInvariant(c, inv) instanceof VerificationSucceeded);
+    }
+
+}
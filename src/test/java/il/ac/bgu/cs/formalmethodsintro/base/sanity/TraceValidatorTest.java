@@ -0,0 +1,89 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.AlternatingSequence;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TraceValidator;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TraceValidator.Reason;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+
+public class TraceValidatorTest {
+
+    private static TransitionSystem<Integer, String, String> counter(int n) {
+        TransitionSystem<Integer, String, String> ts = new TransitionSystem<>();
+        for (int i = 0; i <= n; i++) {
+            ts.addState(i);
+        }
+        ts.addInitialState(0);
+        for (int i = 0; i < n; i++) {
+            ts.addTransition(new TSTransition<>(i, "inc", i + 1));
+        }
+        return ts;
+    }
+
+    @Test(timeout = 10000)
+    public void tracesAreValidatedInParallel() {
+        int n = 50;
+        TransitionSystem<Integer, String, String> ts = counter(n);
+        FvmFacade fvm = FvmFacade.get();
+        List<AlternatingSequence<Integer, String>> traces = new ArrayList<>();
+        for (int from = 0; from < 5; from++) {
+            for (int to = from; to <= n; to++) {
+                AlternatingSequence.Builder<Integer, String> builder = AlternatingSequence.builder(from);
+                for (int i = from + 1; i <= to; i++) {
+                    builder.add(i == 30 ? "dec" : "inc", i);
+                }
+                traces.add(builder.build());
+            }
+        }
+
+        AlternatingSequence.Builder<Integer, String> clean = AlternatingSequence.builder(0);
+        for (int i = 1; i <= n; i++) {
+            clean.add("inc", i);
+        }
+        int cleanIndex = traces.size();
+        traces.add(clean.build());
+
+        TraceValidator<Integer, String> executions = TraceValidator.forExecutions(ts);
+        List<TraceValidator.Result> results = executions.validateAll(traces);
+        assertEquals(traces.size(), results.size());
+        for (int i = 0; i < traces.size(); i++) {
+            AlternatingSequence<Integer, String> trace = traces.get(i);
+            assertEquals(fvm.isExecution(ts, trace), results.get(i).isValid());
+            if (i == cleanIndex) {
+                assertSame(TraceValidator.Result.VALID, results.get(i));
+                assertTrue(results.get(i).isValid());
+                assertEquals(-1, results.get(i).getStep());
+                assertNull(results.get(i).getReason());
+            } else if (trace.head() != 0) {
+                assertEquals(Reason.NOT_INITIAL, results.get(i).getReason());
+                assertEquals(0, results.get(i).getStep());
+            } else if (trace.last() >= 30) {
+                assertEquals(Reason.MISSING_TRANSITION, results.get(i).getReason());
+                assertEquals(29, results.get(i).getStep());
+            } else {
+                assertEquals(Reason.NOT_TERMINAL, results.get(i).getReason());
+                assertEquals(trace.steps(), results.get(i).getStep());
+            }
+        }
+
+        TraceValidator<Integer, String> fragments = TraceValidator.forExecutionFragments(ts);
+        for (AlternatingSequence<Integer, String> trace : traces) {
+            assertEquals(fvm.isExecutionFragment(ts, trace), fragments.validate(trace).isValid());
+        }
+        assertTrue(fragments.validate(AlternatingSequence.of(3, "inc", 4)).isValid());
+        assertFalse(TraceValidator.forExecutions(ts).validate(AlternatingSequence.of(3, "inc", 4)).isValid());
+    }
+
+}
@@ -0,0 +1,131 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.exceptions.StateNotFoundException;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.StAXTransitionSystemXmlFormat;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystemBinaryFormat;
+
+public class TransitionSystemBinaryFormatTest {
+
+    private static TransitionSystem<String, String, String> viaBinary(TransitionSystem<String, String, String> ts) throws IOException {
+        Path file = Files.createTempFile("ts", ".bin");
+        file.toFile().deleteOnExit();
+        TransitionSystemBinaryFormat format = new TransitionSystemBinaryFormat();
+        format.write(ts, file);
+        return format.read(file);
+    }
+
+    @Test
+    public void binaryViewEqualsTheOriginal() throws Exception {
+        TransitionSystem<String, String, String> ts = TransitionSystemXmlTest.sample();
+        TransitionSystem<String, String, String> mapped = viaBinary(ts);
+        assertEquals(ts, mapped);
+        assertEquals(mapped, ts);
+        assertEquals(ts.hashCode(), mapped.hashCode());
+        assertEquals(ts.toString(), mapped.toString());
+        assertEquals(Set.of("s0", "s2"), mapped.getSuccessors("s1"));
+        assertEquals(Set.of("s2"), mapped.getSuccessors("s1", "go"));
+        assertEquals(Set.of("s1", "s2"), mapped.getPredecessors("s2"));
+        assertEquals(Set.of("go", "stop"), mapped.getOutgoingActions("s1"));
+        assertTrue(mapped.hasNoOutgoingTransitions("s3"));
+        assertTrue(mapped.getLabel("s3").isEmpty());
+        assertFalse(mapped.getTransitions().contains(new TSTransition<>("s0", "stop", "s1")));
+
+        // and back to XML
+        StAXTransitionSystemXmlFormat xml = new StAXTransitionSystemXmlFormat();
+        StringWriter out = new StringWriter();
+        xml.write(mapped, out);
+        assertEquals(ts, xml.read(new StringReader(out.toString())));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void binaryViewIsReadOnly() throws Exception {
+        viaBinary(TransitionSystemXmlTest.sample()).addState("s4");
+    }
+
+    @Test(expected = StateNotFoundException.class)
+    public void binaryViewKnowsItsStates() throws Exception {
+        viaBinary(TransitionSystemXmlTest.sample()).getLabel("s4");
+    }
+
+    @Test(timeout = 30000)
+    public void largeBinaryViewsAnswerLikeTheOriginal() throws Exception {
+        Random rnd = new Random(3);
+        TransitionSystem<String, String, String> ts = new TransitionSystem<>();
+        int n = 20_000;
+        for (int i = 0; i < n; i++) {
+            ts.addState("s" + i);
+            if (rnd.nextInt(5) == 0) {
+                ts.addToLabel("s" + i, "p" + rnd.nextInt(70));
+            }
+        }
+        ts.addInitialState("s0");
+        ts.addInitialState("s" + (n - 1));
+        for (int i = 0; i < 5 * n; i++) {
+            ts.addTransition(new TSTransition<>("s" + rnd.nextInt(n), "a" + rnd.nextInt(4), "s" + rnd.nextInt(n)));
+        }
+        TransitionSystem<String, String, String> mapped = viaBinary(ts);
+        assertEquals(ts, mapped);
+        for (int i = 0; i < 1000; i++) {
+            String s = "s" + rnd.nextInt(n);
+            String a = "a" + rnd.nextInt(5);
+            assertEquals(ts.getSuccessors(s, a), mapped.getSuccessors(s, a));
+            assertEquals(ts.getPredecessors(s, a), mapped.getPredecessors(s, a));
+            assertEquals(ts.getLabel(s), mapped.getLabel(s));
+        }
+    }
+
+    private static void assertRejected(byte[] bytes) throws IOException {
+        Path file = Files.createTempFile("ts", ".bin");
+        file.toFile().deleteOnExit();
+        Files.write(file, bytes);
+        try {
+            new TransitionSystemBinaryFormat().read(file);
+            fail("expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void truncatedAndCorruptFilesAreRejected() throws Exception {
+        Path file = Files.createTempFile("ts", ".bin");
+        file.toFile().deleteOnExit();
+        new TransitionSystemBinaryFormat().write(TransitionSystemXmlTest.sample(), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        for (int length : new int[]{0, 8, 12, bytes.length / 2, bytes.length - 1}) {
+            assertRejected(Arrays.copyOf(bytes, length));
+        }
+        assertRejected(Arrays.copyOf(bytes, bytes.length + 8));
+        // the number of states, after the magic number, the version and the name
+        int states = 12 + "sample".length();
+        for (int value : new int[]{-1, 1 << 20, Integer.MAX_VALUE}) {
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).putInt(states, value);
+            assertRejected(corrupt);
+        }
+        byte[] corrupt = bytes.clone();
+        ByteBuffer.wrap(corrupt).putInt(8, bytes.length); // the name length
+        assertRejected(corrupt);
+    }
+
+}
@@ -0,0 +1,50 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.makeCircularTsWithReset;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+
+/**
+ * Checks that the successor/predecessor indexes of {@link TransitionSystem}
+ * follow transition additions and removals.
+ */
+public class TransitionSystemIndexTest {
+
+    FvmFacade fvm = FvmFacade.get();
+
+    @Test(timeout = 2000)
+    public void postAndPreFollowTransitions() {
+        TransitionSystem<Integer, String, String> ts = makeCircularTsWithReset(4);
+
+        assertEquals(Set.of(2, 1), fvm.post(ts, 1));
+        assertEquals(Set.of(2), fvm.post(ts, 1, "a1"));
+        assertEquals(Set.of(1, 2, 3, 4), fvm.pre(ts, 1));
+        assertEquals(Set.of(4), fvm.pre(ts, 1, "a4"));
+
+        ts.removeTransition(new TSTransition<>(1, "a1", 2));
+        assertEquals(Set.of(1), fvm.post(ts, 1));
+        assertEquals(Set.of(), fvm.post(ts, 1, "a1"));
+        assertEquals(Set.of(), fvm.pre(ts, 2, "a1"));
+    }
+
+    @Test(timeout = 2000)
+    public void detachedStateCanBeRemoved() {
+        TransitionSystem<Integer, String, String> ts = new TransitionSystem<>();
+        ts.addTransition(new TSTransition<>(1, "a", 2));
+        ts.removeTransition(new TSTransition<>(1, "a", 2));
+
+        assertTrue(fvm.isStateTerminal(ts, 1));
+        ts.removeState(2);
+        ts.removeAction("a");
+        assertEquals(Set.of(1), ts.getStates());
+    }
+
+}
@@ -0,0 +1,112 @@
+package il.ac.bgu.cs.formalmethodsintro.base.sanity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import il.ac.bgu.cs.formalmethodsintro.base.exceptions.InvalidTSDescriptionException;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.StAXTransitionSystemXmlFormat;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystemXmlReader;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystemXmlWriter;
+
+public class TransitionSystemXmlTest {
+
+    static TransitionSystem<String, String, String> sample() {
+        TransitionSystem<String, String, String> ts = new TransitionSystem<>();
+        ts.setName("sample");
+        ts.addStates("s0", "s1", "s2", "s3");
+        ts.addInitialState("s0");
+        ts.addActions("go", "stop");
+        ts.addAtomicPropositions("p", "q", "r");
+        ts.addToLabel("s0", "p");
+        ts.addToLabel("s1", "p");
+        ts.addToLabel("s1", "q");
+        ts.addTransition(new TSTransition<>("s0", "go", "s1"));
+        ts.addTransition(new TSTransition<>("s1", "go", "s2"));
+        ts.addTransition(new TSTransition<>("s1", "stop", "s0"));
+        ts.addTransition(new TSTransition<>("s2", "stop", "s2"));
+        return ts;
+    }
+
+    @Test
+    public void xmlRoundTripsWithLabels() throws Exception {
+        StAXTransitionSystemXmlFormat format = new StAXTransitionSystemXmlFormat();
+        TransitionSystem<String, String, String> ts = sample();
+        StringWriter out = new StringWriter();
+        format.write(ts, out);
+        TransitionSystem<String, String, String> read = format.read(new StringReader(out.toString()));
+        assertEquals(ts, read);
+        assertEquals(Set.of("p", "q"), read.getLabel("s1"));
+        assertEquals(Set.of("p", "q", "r"), read.getAtomicPropositions());
+    }
+
+    @Test
+    public void elementsAreWrittenAndReadIncrementally() throws Exception {
+        StringWriter out = new StringWriter();
+        try (TransitionSystemXmlWriter xml = new TransitionSystemXmlWriter(out)) {
+            xml.state("a").initialState("a").label("a", Arrays.asList("p"));
+            for (int i = 0; i < 3; i++) {
+                xml.state("b" + i).label("b" + i, Collections.emptyList()).transition(i == 0 ? "a" : "b" + (i - 1), "t", "b" + i);
+            }
+            Iterable<String> once = Stream.of("p", "q")::iterator; // a second iterator() throws
+            xml.label("b2", once);
+        }
+
+        List<String> seen = new ArrayList<>();
+        try (TransitionSystemXmlReader in = new TransitionSystemXmlReader(new StringReader(out.toString()))) {
+            in.readAll(new TransitionSystemXmlReader.Handler() {
+                @Override
+                public void label(String state, String ap) {
+                    seen.add(state + ":" + ap);
+                }
+
+                @Override
+                public void transition(String from, String action, String to) {
+                    seen.add(from + "-" + action + "->" + to);
+                }
+            });
+        }
+        assertEquals(Arrays.asList("a:p", "a-t->b0", "b0-t->b1", "b1-t->b2", "b2:p", "b2:q"), seen);
+
+        TransitionSystem<String, String, String> ts = new StAXTransitionSystemXmlFormat().read(new StringReader(out.toString()));
+        assertEquals(4, ts.getStates().size());
+        assertEquals(Set.of("a"), ts.getInitialStates());
+        assertEquals(Set.of("p", "q"), ts.getLabel("b2"));
+        assertEquals(Set.of("t"), ts.getActions());
+    }
+
+    @Test
+    public void missingAttributesAreAllReported() throws Exception {
+        String xml = "<transitionSystem><states><state sId='a'/><state/></states>"
+                + "<transitions><transition from='a' to='a'/><transition from='a' action='x' to='b'/></transitions>"
+                + "</transitionSystem>";
+        try {
+            new StAXTransitionSystemXmlFormat().read(new StringReader(xml));
+        } catch (InvalidTSDescriptionException e) {
+            assertEquals(2, e.getErrors().size());
+            return;
+        }
+        fail("expected an InvalidTSDescriptionException");
+    }
+
+    @Test(expected = SAXException.class)
+    public void malformedXmlIsASaxException() throws Exception {
+        new StAXTransitionSystemXmlFormat().read(new StringReader("<transitionSystem><states>"));
+    }
+
+}